@@ -46,6 +46,14 @@ public interface SparkClientContext extends SchedulableProgramContext, RuntimeCo
   ClientLocalizationContext, Transactional, ServiceDiscoverer, PluginContext, WorkflowInfoProvider,
   SecureStore, MessagingContext, LineageRecorder, MetadataReader, MetadataWriter {
 
+  /**
+   * Spark configuration of the record schemas that are known to the driver and all the executors of the program, as
+   * a JSON array of schema JSON strings. A {@link io.cdap.cdap.api.data.format.StructuredRecord} with such schema is
+   * serialized with only the schema hash, which can only be read with the same configuration. It must therefore not
+   * be set for programs whose serialized records outlive the run, such as in Spark Streaming checkpoints.
+   */
+  String SHARED_RECORD_SCHEMAS_CONF = "spark.cdap.structured.record.schemas";
+
   /**
    * @return The specification used to configure this {@link Spark} job instance.
    */
@@ -28,6 +28,7 @@ import com.google.inject.PrivateModule;
 import com.google.inject.Provider;
 import com.google.inject.Provides;
 import com.google.inject.Scopes;
+import com.google.inject.Singleton;
 import com.google.inject.TypeLiteral;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
 import com.google.inject.multibindings.Multibinder;
@@ -94,6 +95,7 @@ import io.cdap.cdap.internal.app.runtime.artifact.AuthorizationArtifactRepositor
 import io.cdap.cdap.internal.app.runtime.artifact.DefaultArtifactRepository;
 import io.cdap.cdap.internal.app.runtime.artifact.LocalArtifactRepositoryReader;
 import io.cdap.cdap.internal.app.runtime.artifact.LocalPluginFinder;
+import io.cdap.cdap.internal.app.runtime.artifact.PluginCatalogCache;
 import io.cdap.cdap.internal.app.runtime.artifact.PluginFinder;
 import io.cdap.cdap.internal.app.runtime.schedule.DistributedTimeSchedulerService;
 import io.cdap.cdap.internal.app.runtime.schedule.ExecutorThreadPool;
@@ -430,6 +432,17 @@ public final class AppFabricServiceRuntimeModule extends RuntimeModule {
       return Networks.resolve(address, new InetSocketAddress("localhost", 0).getAddress());
     }
 
+    /**
+     * Provides the plugin cache of the {@link ArtifactStore}. It is only provided in App Fabric, since it is
+     * invalidated by the artifact changes made through App Fabric.
+     */
+    @Provides
+    @Singleton
+    @SuppressWarnings("unused")
+    public PluginCatalogCache providesPluginCatalogCache(CConfiguration cConf) {
+      return new PluginCatalogCache(cConf);
+    }
+
     /**
      * Provides a supplier of quartz scheduler so that initialization of the scheduler can be done after guice
      * injection. It returns a singleton of Scheduler.
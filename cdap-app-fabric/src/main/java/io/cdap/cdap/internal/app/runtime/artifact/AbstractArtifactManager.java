@@ -23,8 +23,8 @@ import io.cdap.cdap.api.artifact.CloseableClassLoader;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.lang.DirectoryClassLoader;
-import io.cdap.cdap.common.lang.jar.BundleJarUtil;
 import io.cdap.cdap.common.lang.jar.ClassLoaderFolder;
+import io.cdap.cdap.common.lang.jar.ClassLoaderFolderCache;
 import io.cdap.cdap.common.utils.DirUtils;
 import io.cdap.cdap.security.spi.authorization.UnauthorizedException;
 import org.apache.twill.filesystem.Location;
@@ -41,10 +41,12 @@ import javax.annotation.Nullable;
  */
 public abstract class AbstractArtifactManager implements ArtifactManager {
 
+  private final CConfiguration cConf;
   private final File tmpDir;
   private final ClassLoader bootstrapClassLoader;
 
   protected AbstractArtifactManager(CConfiguration cConf) {
+    this.cConf = cConf;
     File tmpDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
                            cConf.get(Constants.AppFabric.TEMP_DIR)).getAbsoluteFile();
     this.tmpDir = DirUtils.createTempDir(tmpDir);
@@ -84,8 +86,8 @@ public abstract class AbstractArtifactManager implements ArtifactManager {
   public CloseableClassLoader createClassLoader(@Nullable String namespace, ArtifactInfo artifactInfo,
                                                 @Nullable ClassLoader parentClassLoader)
     throws IOException, UnauthorizedException {
-    ClassLoaderFolder folder = BundleJarUtil.prepareClassLoaderFolder(getArtifactLocation(artifactInfo, namespace),
-                                                                      () -> DirUtils.createTempDir(tmpDir));
+    ClassLoaderFolder folder = ClassLoaderFolderCache.prepareClassLoaderFolder(
+      cConf, getArtifactLocation(artifactInfo, namespace), () -> DirUtils.createTempDir(tmpDir));
     DirectoryClassLoader directoryClassLoader =
       new DirectoryClassLoader(folder.getDir(),
                                parentClassLoader == null ? bootstrapClassLoader : parentClassLoader, "lib");
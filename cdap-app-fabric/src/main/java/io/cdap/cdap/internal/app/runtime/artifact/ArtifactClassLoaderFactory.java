@@ -26,8 +26,8 @@ import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.lang.DirectoryClassLoader;
 import io.cdap.cdap.common.lang.FilterClassLoader;
-import io.cdap.cdap.common.lang.jar.BundleJarUtil;
 import io.cdap.cdap.common.lang.jar.ClassLoaderFolder;
+import io.cdap.cdap.common.lang.jar.ClassLoaderFolderCache;
 import io.cdap.cdap.common.utils.DirUtils;
 import io.cdap.cdap.internal.app.runtime.ProgramClassLoader;
 import io.cdap.cdap.proto.ProgramType;
@@ -112,7 +112,8 @@ final class ArtifactClassLoaderFactory {
   CloseableClassLoader createClassLoader(Location artifactLocation, EntityImpersonator entityImpersonator) {
     try {
       ClassLoaderFolder classLoaderFolder = entityImpersonator.impersonate(
-        () -> BundleJarUtil.prepareClassLoaderFolder(artifactLocation, () -> DirUtils.createTempDir(tmpDir)));
+        () -> ClassLoaderFolderCache.prepareClassLoaderFolder(cConf, artifactLocation,
+                                                              () -> DirUtils.createTempDir(tmpDir)));
 
       CloseableClassLoader classLoader = createClassLoader(classLoaderFolder.getDir());
       return new CloseableClassLoader(classLoader, () -> {
@@ -146,7 +147,8 @@ final class ArtifactClassLoaderFactory {
 
     try {
       ClassLoaderFolder classLoaderFolder = entityImpersonator.impersonate(
-        () -> BundleJarUtil.prepareClassLoaderFolder(artifactLocation, () -> DirUtils.createTempDir(tmpDir)));
+        () -> ClassLoaderFolderCache.prepareClassLoaderFolder(cConf, artifactLocation,
+                                                              () -> DirUtils.createTempDir(tmpDir)));
 
       CloseableClassLoader parentClassLoader = createClassLoader(artifactLocations, entityImpersonator);
       return new CloseableClassLoader(new DirectoryClassLoader(classLoaderFolder.getDir(),
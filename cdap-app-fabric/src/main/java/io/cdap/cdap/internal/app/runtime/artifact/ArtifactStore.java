@@ -25,6 +25,7 @@ import com.google.common.collect.MinMaxPriorityQueue;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import io.cdap.cdap.api.artifact.ApplicationClass;
 import io.cdap.cdap.api.artifact.ArtifactClasses;
 import io.cdap.cdap.api.artifact.ArtifactId;
@@ -42,7 +43,6 @@ import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.id.Id;
 import io.cdap.cdap.common.io.Locations;
 import io.cdap.cdap.common.namespace.NamespacePathLocator;
-import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.internal.app.runtime.plugin.PluginNotExistsException;
 import io.cdap.cdap.internal.io.SchemaTypeAdapter;
 import io.cdap.cdap.proto.artifact.ArtifactSortOrder;
@@ -170,7 +170,14 @@ import javax.annotation.Nullable;
  *
  * In order to prevent deadlock if the storage backend is SQL, if a transaction needs to use multiple tables, the order
  * to use the table will be: artifact_data -> app_data -> plugin_data -> universal_plugin_data
+ *
+ * The plugin_data and universal_plugin_data tables are maintained by {@link #write}, {@link #delete} and
+ * {@link #clear}, such that plugins are looked up by the scan key (parent artifact, plugin type and plugin name)
+ * without reading the plugin artifacts. The deserialized result of each scan, together with the versions of the
+ * parent artifacts, is cached by a {@link PluginCatalogCache}, which is invalidated on every change made by this
+ * class.
  */
+@Singleton
 public class ArtifactStore {
   private static final String ARTIFACTS_PATH = "artifacts";
 
@@ -186,6 +193,7 @@ public class ArtifactStore {
   private final Impersonator impersonator;
   private final Set<String> requirementBlacklist;
   private final TransactionRunner transactionRunner;
+  private PluginCatalogCache pluginCatalog;
 
   @Inject
   ArtifactStore(CConfiguration cConf,
@@ -200,6 +208,16 @@ public class ArtifactStore {
       new HashSet<>(cConf.getTrimmedStringCollection(Constants.REQUIREMENTS_DATASET_TYPE_EXCLUDE))
         .stream().map(String::toLowerCase).collect(Collectors.toSet());
     this.transactionRunner = transactionRunner;
+    this.pluginCatalog = PluginCatalogCache.disabled();
+  }
+
+  /**
+   * Sets the {@link PluginCatalogCache} for caching plugin reads. It is only bound in App Fabric, which is the
+   * process that changes artifacts, hence other processes always read from the store.
+   */
+  @Inject(optional = true)
+  void setPluginCatalogCache(PluginCatalogCache pluginCatalog) {
+    this.pluginCatalog = pluginCatalog;
   }
 
   /**
@@ -488,35 +506,27 @@ public class ArtifactStore {
                                                                           @Nullable String type)
     throws ArtifactNotFoundException, IOException {
 
+    long catalogVersion = pluginCatalog.getVersion();
     return TransactionRunners.run(transactionRunner, context -> {
-      StructuredTable artifactDataTable = getTable(context, StoreDefinition.ArtifactStore.ARTIFACT_DATA_TABLE);
       SortedMap<ArtifactDescriptor, Set<PluginClass>> plugins =
-        getPluginsInArtifact(artifactDataTable, parentArtifactId,
-                             input -> (type == null || type.equals(input.getType())) && isAllowed(input));
+        getPluginsInArtifact(context, parentArtifactId, input -> type == null || type.equals(input.getType()),
+                             catalogVersion);
 
       // Scan plugins
-      StructuredTable pluginTable = getTable(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE);
-      try (CloseableIterator<StructuredRow> iterator =
-             pluginTable.scan(createPluginScanRange(parentArtifactId, type), Integer.MAX_VALUE)) {
-        while (iterator.hasNext()) {
-          StructuredRow row = iterator.next();
-          addPluginToMap(namespace, parentArtifactId, plugins, row);
-        }
+      for (PluginEntry entry : getPluginEntries(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE,
+                                                createPluginScanRange(parentArtifactId, type), catalogVersion)) {
+        addPluginToMap(namespace, parentArtifactId, plugins, entry);
       }
 
       // Scan universal plugins
-      StructuredTable uniPluginTable = getTable(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE);
       List<Range> ranges = Arrays.asList(
         createUniversalPluginScanRange(namespace.getNamespace(), type),
         createUniversalPluginScanRange(NamespaceId.SYSTEM.getNamespace(), type)
       );
-
       for (Range range : ranges) {
-        try (CloseableIterator<StructuredRow> iterator = uniPluginTable.scan(range, Integer.MAX_VALUE)) {
-          while (iterator.hasNext()) {
-            StructuredRow row = iterator.next();
-            addPluginToMap(namespace, parentArtifactId, plugins, row);
-          }
+        for (PluginEntry entry : getPluginEntries(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE,
+                                                  range, catalogVersion)) {
+          addPluginToMap(namespace, parentArtifactId, plugins, entry);
         }
       }
 
@@ -572,10 +582,13 @@ public class ArtifactStore {
     @Nullable final Predicate<io.cdap.cdap.proto.id.ArtifactId> pluginRange, int limit, ArtifactSortOrder order)
     throws IOException, ArtifactNotFoundException, PluginNotExistsException {
 
+    long catalogVersion = pluginCatalog.getVersion();
     SortedMap<ArtifactDescriptor, PluginClass> result = TransactionRunners.run(transactionRunner, context -> {
-      StructuredTable artifactDataTable = getTable(context, StoreDefinition.ArtifactStore.ARTIFACT_DATA_TABLE);
-      List<ArtifactDetail> parentArtifactDetails = getArtifacts(artifactDataTable, parentArtifactRange,
-                                                                Integer.MAX_VALUE, null);
+      List<ArtifactDetail> parentArtifactDetails =
+        getArtifactVersions(context, parentArtifactRange.getNamespace(), parentArtifactRange.getName(),
+                            catalogVersion).stream()
+          .filter(detail -> parentArtifactRange.versionIsInRange(detail.getDescriptor().getArtifactId().getVersion()))
+          .collect(Collectors.toList());
 
       if (parentArtifactDetails.isEmpty()) {
         throw new ArtifactNotFoundException(parentArtifactRange.getNamespace(), parentArtifactRange.getName());
@@ -600,22 +613,20 @@ public class ArtifactStore {
       }
 
       // Add all plugins that extends from the given set of parents
-      StructuredTable pluginTable = getTable(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE);
       PluginKeyPrefix pluginKey = new PluginKeyPrefix(parentArtifactRange.getNamespace(),
                                                       parentArtifactRange.getName(), type, name);
-      try (CloseableIterator<StructuredRow> iterator =
-             pluginTable.scan(Range.singleton(pluginKey.keys), Integer.MAX_VALUE)) {
-        addPluginsInRangeToMap(namespace, parentArtifacts, iterator, plugins, pluginRange, limit);
-      }
+      addPluginsInRangeToMap(namespace, parentArtifacts,
+                             getPluginEntries(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE,
+                                              Range.singleton(pluginKey.keys), catalogVersion),
+                             plugins, pluginRange, limit);
 
       // Add all universal plugins
-      StructuredTable uniPluginTable = getTable(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE);
       for (String ns : Arrays.asList(namespace.getNamespace(), NamespaceId.SYSTEM.getNamespace())) {
         UniversalPluginKeyPrefix universalPluginKey = new UniversalPluginKeyPrefix(ns, type, name);
-        try (CloseableIterator<StructuredRow> iterator =
-               uniPluginTable.scan(Range.singleton(universalPluginKey.keys), Integer.MAX_VALUE)) {
-          addPluginsInRangeToMap(namespace, parentArtifacts, iterator, plugins, pluginRange, limit);
-        }
+        addPluginsInRangeToMap(namespace, parentArtifacts,
+                               getPluginEntries(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE,
+                                                Range.singleton(universalPluginKey.keys), catalogVersion),
+                               plugins, pluginRange, limit);
       }
 
       return Collections.unmodifiableSortedMap(plugins);
@@ -639,6 +650,17 @@ public class ArtifactStore {
                                        Function<Map<String, String>, Map<String, String>> updateFunction)
     throws ArtifactNotFoundException, IOException {
 
+    try {
+      updateArtifactPropertiesInStore(artifactId, updateFunction);
+    } finally {
+      pluginCatalog.invalidate();
+    }
+  }
+
+  private void updateArtifactPropertiesInStore(Id.Artifact artifactId,
+                                               Function<Map<String, String>, Map<String, String>> updateFunction)
+    throws ArtifactNotFoundException, IOException {
+
     TransactionRunners.run(transactionRunner, context -> {
       StructuredTable artifactDataTable = getTable(context, StoreDefinition.ArtifactStore.ARTIFACT_DATA_TABLE);
       ArtifactCell artifactCell = new ArtifactCell(artifactId);
@@ -732,6 +754,8 @@ public class ArtifactStore {
       // TODO: CDAP-14672 define TransactionConflictException for the SPI
       // should throw WriteConflictException(artifactId) on transaction conflict
       throw TransactionRunners.propagate(e, ArtifactAlreadyExistsException.class, IOException.class);
+    } finally {
+      pluginCatalog.invalidate();
     }
   }
 
@@ -762,18 +786,22 @@ public class ArtifactStore {
   public void delete(final Id.Artifact artifactId) throws ArtifactNotFoundException, IOException {
 
     // delete everything in a transaction
-    TransactionRunners.run(transactionRunner, context -> {
-      // first look up details to get plugins and apps in the artifact
-      StructuredTable artifactDataTable = getTable(context, StoreDefinition.ArtifactStore.ARTIFACT_DATA_TABLE);
-      ArtifactCell artifactCell = new ArtifactCell(artifactId);
-      Optional<StructuredRow> optional = artifactDataTable.read(artifactCell.keys);
-      if (!optional.isPresent()) {
-        throw new ArtifactNotFoundException(artifactId.toEntityId());
-      }
-      deleteMeta(context, artifactId,
-                 GSON.fromJson(optional.get().getString(StoreDefinition.ArtifactStore.ARTIFACT_DATA_FIELD),
-                               ArtifactData.class));
-    }, IOException.class, ArtifactNotFoundException.class);
+    try {
+      TransactionRunners.run(transactionRunner, context -> {
+        // first look up details to get plugins and apps in the artifact
+        StructuredTable artifactDataTable = getTable(context, StoreDefinition.ArtifactStore.ARTIFACT_DATA_TABLE);
+        ArtifactCell artifactCell = new ArtifactCell(artifactId);
+        Optional<StructuredRow> optional = artifactDataTable.read(artifactCell.keys);
+        if (!optional.isPresent()) {
+          throw new ArtifactNotFoundException(artifactId.toEntityId());
+        }
+        deleteMeta(context, artifactId,
+                   GSON.fromJson(optional.get().getString(StoreDefinition.ArtifactStore.ARTIFACT_DATA_FIELD),
+                                 ArtifactData.class));
+      }, IOException.class, ArtifactNotFoundException.class);
+    } finally {
+      pluginCatalog.invalidate();
+    }
   }
 
   /**
@@ -784,6 +812,14 @@ public class ArtifactStore {
    */
   @VisibleForTesting
   void clear(final NamespaceId namespace) throws IOException {
+    try {
+      clearInStore(namespace);
+    } finally {
+      pluginCatalog.invalidate();
+    }
+  }
+
+  private void clearInStore(NamespaceId namespace) throws IOException {
     final Id.Namespace namespaceId = Id.Namespace.fromEntityId(namespace);
     namespacePathLocator.get(namespace).append(ARTIFACTS_PATH).delete(true);
 
@@ -985,72 +1021,92 @@ public class ArtifactStore {
     }
   }
 
-  private SortedMap<ArtifactDescriptor, Set<PluginClass>> getPluginsInArtifact(StructuredTable artifactDataTable,
+  /**
+   * Returns the plugins in the given artifact that are accepted by the given filter, and allowed by
+   * {@link #isAllowed(PluginClass)}.
+   *
+   * @throws ArtifactNotFoundException if the artifact does not exist
+   */
+  private SortedMap<ArtifactDescriptor, Set<PluginClass>> getPluginsInArtifact(StructuredTableContext context,
                                                                                Id.Artifact artifactId,
-                                                                               Predicate<PluginClass> filter)
+                                                                               Predicate<PluginClass> filter,
+                                                                               long catalogVersion)
     throws ArtifactNotFoundException, IOException {
     SortedMap<ArtifactDescriptor, Set<PluginClass>> result = new TreeMap<>();
 
     // Make sure the artifact exists
-    ArtifactCell artifactCell = new ArtifactCell(artifactId);
-    Optional<StructuredRow> row = artifactDataTable.read(artifactCell.keys);
-    if (!row.isPresent()) {
-      throw new ArtifactNotFoundException(artifactId.toEntityId());
-    }
-    // include any plugin classes that are inside the artifact itself and is accepted by the filter
-    ArtifactData artifactData = GSON.fromJson(row.get().getString(StoreDefinition.ArtifactStore.ARTIFACT_DATA_FIELD),
-                                              ArtifactData.class);
-    Set<PluginClass> plugins = artifactData.meta.getClasses().getPlugins().stream()
+    String version = artifactId.getVersion().getVersion();
+    ArtifactDetail artifactDetail = getArtifactVersions(context, artifactId.getNamespace().getId(),
+                                                        artifactId.getName(), catalogVersion).stream()
+      .filter(detail -> version.equals(detail.getDescriptor().getArtifactId().getVersion().getVersion()))
+      .findFirst()
+      .orElseThrow(() -> new ArtifactNotFoundException(artifactId.toEntityId()));
+
+    // include any plugin classes that are inside the artifact itself and is accepted by the filter.
+    // The plugins in the artifact detail are already filtered by isAllowed.
+    Set<PluginClass> plugins = artifactDetail.getMeta().getClasses().getPlugins().stream()
       .filter(filter).collect(Collectors.toCollection(LinkedHashSet::new));
 
     if (!plugins.isEmpty()) {
-      Location location = Locations.getLocationFromAbsolutePath(locationFactory, artifactData.getLocationPath());
-      ArtifactDescriptor descriptor = new ArtifactDescriptor(artifactId.getNamespace().getId(),
-                                                             artifactId.toArtifactId(), location);
-      result.put(descriptor, plugins);
+      result.put(artifactDetail.getDescriptor(), plugins);
     }
     return result;
   }
 
-  // this method examines the plugin in the given row and checks if they extend the given parent artifact
-  // and are from an artifact in the given namespace.
-  // if so, information about the plugin artifact and the plugin details are added to the given map.
-  private void addPluginToMap(NamespaceId namespace, Id.Artifact parentArtifactId,
-                              SortedMap<ArtifactDescriptor, Set<PluginClass>> map,
-                              StructuredRow row) {
-    ImmutablePair<ArtifactDescriptor, PluginClass> pluginEntry = getPluginEntry(namespace, parentArtifactId, row);
-    if (pluginEntry != null && isAllowed(pluginEntry.getSecond())) {
-      map.computeIfAbsent(pluginEntry.getFirst(), k -> new HashSet<>()).add(pluginEntry.getSecond());
-    }
+  /**
+   * Returns all versions of the given artifact, with plugins filtered by {@link #isAllowed(PluginClass)}.
+   * The result is served from the {@link PluginCatalogCache} if possible.
+   */
+  private List<ArtifactDetail> getArtifactVersions(StructuredTableContext context, String namespace, String name,
+                                                   long catalogVersion) throws IOException {
+    List<Object> key = Arrays.asList(StoreDefinition.ArtifactStore.ARTIFACT_DATA_TABLE, namespace, name);
+    return pluginCatalog.get(key, catalogVersion, () -> {
+      StructuredTable table = getTable(context, StoreDefinition.ArtifactStore.ARTIFACT_DATA_TABLE);
+      Collection<Field<?>> keys =
+        Arrays.asList(Fields.stringField(StoreDefinition.ArtifactStore.ARTIFACT_NAMESPACE_FIELD, namespace),
+                      Fields.stringField(StoreDefinition.ArtifactStore.ARTIFACT_NAME_FIELD, name));
+      try (CloseableIterator<StructuredRow> iterator = table.scan(Range.singleton(keys), Integer.MAX_VALUE)) {
+        return getArtifacts(iterator, Integer.MAX_VALUE, ArtifactSortOrder.UNORDERED, null);
+      }
+    });
   }
 
   /**
-   * Decode the PluginClass from the table column if it is from an artifact in the given namespace and
-   * extends the given parent artifact. If the plugin's artifact is not in the given namespace, or it does not
-   * extend the given parent artifact, return null.
+   * Returns all the plugins in the given range of the given plugin table. The result is served from the
+   * {@link PluginCatalogCache} if possible.
    */
-  @Nullable
-  private ImmutablePair<ArtifactDescriptor, PluginClass> getPluginEntry(
-    NamespaceId namespace, Id.Artifact parentArtifactId, StructuredRow row) {
-    ImmutablePair<ArtifactDescriptor, PluginData> pluginPair = getPlugin(row, artifactId -> {
-      NamespaceId namespaceId = artifactId.getNamespaceId();
-      return NamespaceId.SYSTEM.equals(namespaceId) || namespace.equals(namespaceId);
+  private List<PluginEntry> getPluginEntries(StructuredTableContext context, StructuredTableId tableId, Range range,
+                                             long catalogVersion) throws IOException {
+    return pluginCatalog.get(Arrays.asList(tableId, range), catalogVersion, () -> {
+      List<PluginEntry> entries = new ArrayList<>();
+      try (CloseableIterator<StructuredRow> iterator = getTable(context, tableId).scan(range, Integer.MAX_VALUE)) {
+        while (iterator.hasNext()) {
+          entries.add(createPluginEntry(iterator.next()));
+        }
+      }
+      return Collections.unmodifiableList(entries);
     });
+  }
 
-    if (pluginPair == null) {
-      return null;
+  // this method examines the given plugin and checks if it extends the given parent artifact
+  // and is from an artifact in the given namespace or the system namespace.
+  // if so, information about the plugin artifact and the plugin details are added to the given map.
+  private void addPluginToMap(NamespaceId namespace, Id.Artifact parentArtifactId,
+                              SortedMap<ArtifactDescriptor, Set<PluginClass>> map,
+                              PluginEntry entry) {
+    NamespaceId namespaceId = entry.artifactId.getNamespaceId();
+    if (!NamespaceId.SYSTEM.equals(namespaceId) && !namespace.equals(namespaceId)) {
+      return;
     }
-
-    PluginData pluginData = pluginPair.getSecond();
     // filter out plugins that don't extend this version of the parent artifact
-    if (pluginData.isUsableBy(parentArtifactId.toEntityId())) {
-      return ImmutablePair.of(pluginPair.getFirst(), pluginData.pluginClass);
+    PluginClass pluginClass = entry.pluginData.pluginClass;
+    if (entry.pluginData.isUsableBy(parentArtifactId.toEntityId()) && isAllowed(pluginClass)) {
+      map.computeIfAbsent(entry.descriptor, k -> new HashSet<>()).add(pluginClass);
     }
-    return null;
   }
 
   private void addPluginsInRangeToMap(final NamespaceId namespace, List<Id.Artifact> parentArtifacts,
-                                      Iterator<StructuredRow> iterator,
+                                      Iterable<PluginEntry> entries,
                                       SortedMap<ArtifactDescriptor, PluginClass> plugins,
                                       @Nullable Predicate<io.cdap.cdap.proto.id.ArtifactId> range,
                                       int limit) {
@@ -1060,18 +1116,16 @@ public class ArtifactStore {
       ? range
       : input -> NamespaceId.SYSTEM.equals(input.getParent()) || input.getParent().equals(namespace);
 
-    while (iterator.hasNext()) {
-      StructuredRow row = iterator.next();
-      ImmutablePair<ArtifactDescriptor, PluginData> pluginPair = getPlugin(row, range);
-      if (pluginPair == null) {
+    for (PluginEntry entry : entries) {
+      if (!range.test(entry.artifactId)) {
         continue;
       }
 
-      PluginData pluginData = pluginPair.getSecond();
+      PluginData pluginData = entry.pluginData;
       // filter out plugins that don't extend this version of the parent artifact
       for (Id.Artifact parentArtifactId : parentArtifacts) {
         if (pluginData.isUsableBy(parentArtifactId.toEntityId()) && isAllowed(pluginData.pluginClass)) {
-          plugins.put(pluginPair.getFirst(), pluginData.pluginClass);
+          plugins.put(entry.descriptor, pluginData.pluginClass);
           break;
         }
       }
@@ -1081,9 +1135,7 @@ public class ArtifactStore {
     }
   }
 
-  @Nullable
-  private ImmutablePair<ArtifactDescriptor, PluginData> getPlugin(StructuredRow row,
-                                                                  Predicate<io.cdap.cdap.proto.id.ArtifactId> range) {
+  private PluginEntry createPluginEntry(StructuredRow row) {
     // column is the artifact namespace, name, and version. value is the serialized PluginData
     Id.Namespace artifactNamespace =
       Id.Namespace.from(row.getString(StoreDefinition.ArtifactStore.ARTIFACT_NAMESPACE_FIELD));
@@ -1091,15 +1143,13 @@ public class ArtifactStore {
       Id.Artifact.from(artifactNamespace, row.getString(StoreDefinition.ArtifactStore.ARTIFACT_NAME_FIELD),
                        row.getString(StoreDefinition.ArtifactStore.ARTIFACT_VER_FIELD));
 
-    if (!range.test(artifactId.toEntityId())) {
-      return null;
-    }
     PluginData pluginData = GSON.fromJson(row.getString(StoreDefinition.ArtifactStore.PLUGIN_DATA_FIELD),
                                           PluginData.class);
-    return ImmutablePair.of(new ArtifactDescriptor(
+    ArtifactDescriptor descriptor = new ArtifactDescriptor(
       artifactId.getNamespace().getId(),
       artifactId.toArtifactId(),
-      Locations.getLocationFromAbsolutePath(locationFactory, pluginData.getArtifactLocationPath())), pluginData);
+      Locations.getLocationFromAbsolutePath(locationFactory, pluginData.getArtifactLocationPath()));
+    return new PluginEntry(artifactId.toEntityId(), descriptor, pluginData);
   }
 
   private Range createArtifactScanRange(NamespaceId namespace) {
@@ -1299,6 +1349,19 @@ public class ArtifactStore {
     }
   }
 
+  // A plugin read from the plugin tables.
+  private static final class PluginEntry {
+    private final io.cdap.cdap.proto.id.ArtifactId artifactId;
+    private final ArtifactDescriptor descriptor;
+    private final PluginData pluginData;
+
+    PluginEntry(io.cdap.cdap.proto.id.ArtifactId artifactId, ArtifactDescriptor descriptor, PluginData pluginData) {
+      this.artifactId = artifactId;
+      this.descriptor = descriptor;
+      this.pluginData = pluginData;
+    }
+  }
+
   // Data that will be stored for an application class.
   private static class AppData {
     private final ApplicationClass appClass;
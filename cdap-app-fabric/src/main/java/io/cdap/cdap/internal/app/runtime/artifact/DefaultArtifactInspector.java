@@ -51,6 +51,7 @@ import io.cdap.cdap.common.id.Id;
 import io.cdap.cdap.common.io.Locations;
 import io.cdap.cdap.common.lang.jar.BundleJarUtil;
 import io.cdap.cdap.common.lang.jar.ClassLoaderFolder;
+import io.cdap.cdap.common.lang.jar.ClassLoaderFolderCache;
 import io.cdap.cdap.common.utils.DirUtils;
 import io.cdap.cdap.internal.app.runtime.plugin.PluginClassLoader;
 import io.cdap.cdap.internal.app.runtime.plugin.PluginInstantiator;
@@ -146,8 +147,8 @@ final class DefaultArtifactInspector implements ArtifactInspector {
 
     Path stageDir = Files.createTempDirectory(tmpDir, artifactFile.getName());
     try (
-      ClassLoaderFolder clFolder = BundleJarUtil.prepareClassLoaderFolder(
-        artifactLocation,
+      ClassLoaderFolder clFolder = ClassLoaderFolderCache.prepareClassLoaderFolder(
+        cConf, artifactLocation,
         () -> Files.createTempDirectory(stageDir, "unpacked-").toFile());
       CloseableClassLoader parentClassLoader = createParentClassLoader(parentDescriptor, entityImpersonator);
       CloseableClassLoader artifactClassLoader = artifactClassLoaderFactory.createClassLoader(clFolder.getDir());
@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.app.runtime.artifact;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.lang.ThrowingSupplier;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A versioned in-memory cache for the {@link ArtifactStore}, for caching the deserialized plugin and parent artifact
+ * rows by their scan key.
+ *
+ * Readers must get the current version by {@link #getVersion()} before reading from the store, and pass it to
+ * {@link #get(Object, long, ThrowingSupplier)}. Writers must call {@link #invalidate()} after changes to the store
+ * are committed. A value read from the store is only cached if no invalidation happened since the version was
+ * obtained, hence a value read before a change is never cached after the change.
+ *
+ * Changes made to the store by other processes are not observed, hence the cache should only be used by the process
+ * that makes the changes, and entries expire after a configurable time.
+ */
+public final class PluginCatalogCache {
+
+  private final Cache<Object, Object> cache;
+  private final boolean enabled;
+  private long version;
+
+  /**
+   * Returns a cache that always loads from the store.
+   */
+  static PluginCatalogCache disabled() {
+    return new PluginCatalogCache(false, 0L, 0L);
+  }
+
+  public PluginCatalogCache(CConfiguration cConf) {
+    this(cConf.getBoolean(Constants.AppFabric.ARTIFACT_PLUGIN_CACHE_ENABLED),
+         cConf.getLong(Constants.AppFabric.ARTIFACT_PLUGIN_CACHE_MAX_ENTRIES),
+         cConf.getLong(Constants.AppFabric.ARTIFACT_PLUGIN_CACHE_EXPIRATION_SECONDS));
+  }
+
+  private PluginCatalogCache(boolean enabled, long maxEntries, long expirationSeconds) {
+    this.enabled = enabled;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(maxEntries)
+      .expireAfterWrite(expirationSeconds, TimeUnit.SECONDS)
+      .build();
+  }
+
+  /**
+   * Returns the current version of the cache.
+   */
+  synchronized long getVersion() {
+    return version;
+  }
+
+  /**
+   * Returns the cached value of the given key, or loads it by the given loader if it is not cached.
+   *
+   * @param key the key of the value
+   * @param version the version returned by {@link #getVersion()} before reading from the store
+   * @param loader the loader for reading the value from the store
+   * @param <T> type of the value
+   * @return the value of the key
+   * @throws IOException if failed to load the value
+   */
+  @SuppressWarnings("unchecked")
+  <T> T get(Object key, long version, ThrowingSupplier<T, IOException> loader) throws IOException {
+    if (!enabled) {
+      return loader.get();
+    }
+    T value = (T) cache.getIfPresent(key);
+    if (value != null) {
+      return value;
+    }
+    value = loader.get();
+    synchronized (this) {
+      if (version == this.version) {
+        cache.put(key, value);
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Removes all the cached values, and prevents values that are being loaded from being cached.
+   */
+  synchronized void invalidate() {
+    version++;
+    cache.invalidateAll();
+  }
+}
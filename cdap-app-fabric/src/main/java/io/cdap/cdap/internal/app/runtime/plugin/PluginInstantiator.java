@@ -48,8 +48,8 @@ import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.io.Locations;
 import io.cdap.cdap.common.lang.CombineClassLoader;
 import io.cdap.cdap.common.lang.InstantiatorFactory;
-import io.cdap.cdap.common.lang.jar.BundleJarUtil;
 import io.cdap.cdap.common.lang.jar.ClassLoaderFolder;
+import io.cdap.cdap.common.lang.jar.ClassLoaderFolderCache;
 import io.cdap.cdap.common.utils.DirUtils;
 import io.cdap.cdap.internal.app.runtime.artifact.Artifacts;
 import io.cdap.cdap.internal.lang.FieldVisitor;
@@ -104,7 +104,10 @@ public class PluginInstantiator implements Closeable {
     .put("string", String.class)
     .build();
 
+  private final CConfiguration cConf;
   private final LoadingCache<ClassLoaderKey, PluginClassLoader> classLoaders;
+  // The folders that the plugin ClassLoaders are created from, which are released when this instance is closed
+  private final List<ClassLoaderFolder> classLoaderFolders;
   private final InstantiatorFactory instantiatorFactory;
   private final File tmpDir;
   private final File pluginDir;
@@ -117,6 +120,7 @@ public class PluginInstantiator implements Closeable {
 
   public PluginInstantiator(CConfiguration cConf, ClassLoader parentClassLoader, File pluginDir,
                             boolean filterClassloader) {
+    this.cConf = cConf;
     this.instantiatorFactory = new InstantiatorFactory(false);
     File tmpDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
                            cConf.get(Constants.AppFabric.TEMP_DIR)).getAbsoluteFile();
@@ -126,6 +130,7 @@ public class PluginInstantiator implements Closeable {
     this.classLoaders = CacheBuilder.newBuilder()
       .removalListener(new ClassLoaderRemovalListener())
       .build(new ClassLoaderCacheLoader());
+    this.classLoaderFolders = Collections.synchronizedList(new ArrayList<>());
     this.parentClassLoader = filterClassloader ? PluginClassLoader.createParent(parentClassLoader) : parentClassLoader;
     this.ownedParentClassLoader = filterClassloader;
   }
@@ -420,6 +425,10 @@ public class PluginInstantiator implements Closeable {
   public void close() throws IOException {
     // Cleanup the ClassLoader cache and the temporary directory for the expanded plugin jar.
     classLoaders.invalidateAll();
+    synchronized (classLoaderFolders) {
+      classLoaderFolders.forEach(Closeables::closeQuietly);
+      classLoaderFolders.clear();
+    }
     if (ownedParentClassLoader) {
       Closeables.closeQuietly((Closeable) parentClassLoader);
     }
@@ -475,8 +484,9 @@ public class PluginInstantiator implements Closeable {
     @Override
     public PluginClassLoader load(ClassLoaderKey key) throws Exception {
       File artifact = new File(pluginDir, Artifacts.getFileName(key.artifact));
-      ClassLoaderFolder classLoaderFolder = BundleJarUtil.prepareClassLoaderFolder(
-        Locations.toLocation(artifact), () -> DirUtils.createTempDir(tmpDir));
+      ClassLoaderFolder classLoaderFolder = ClassLoaderFolderCache.prepareClassLoaderFolder(
+        cConf, Locations.toLocation(artifact), () -> DirUtils.createTempDir(tmpDir));
+      classLoaderFolders.add(classLoaderFolder);
 
       Iterator<ArtifactId> parentIter = key.parents.iterator();
       if (!parentIter.hasNext()) {
@@ -466,6 +466,15 @@ public class ProgramScheduleStoreDataset {
                                           schedule -> programId.equals(schedule.getProgramId()));
   }
 
+  /**
+   * Retrieve all schedule records in all namespaces.
+   *
+   * @return a list of all schedule records; never null
+   */
+  public List<ProgramScheduleRecord> listScheduleRecords() throws IOException {
+    return listScheduleRecordsInRange(Range.all(), schedule -> true);
+  }
+
   /**
    * Find all schedules that have a trigger with a given trigger key.
    *
@@ -541,9 +550,20 @@ public class ProgramScheduleStoreDataset {
   private List<ProgramScheduleRecord> listSchedulesRecordsWithPrefix(Collection<Field<?>> prefixKeys,
                                                                      Predicate<ProgramSchedule> filter)
     throws IOException {
+    return listScheduleRecordsInRange(Range.singleton(prefixKeys), filter);
+  }
+
+  /**
+   * List schedule records in the given range and only returns the schedules that can pass the filter.
+   *
+   * @param range the range of the schedule records to be listed
+   * @param filter a filter that only returns true if the schedule record will be returned in the result
+   * @return the schedule records in the given range that can pass the filter
+   */
+  private List<ProgramScheduleRecord> listScheduleRecordsInRange(Range range, Predicate<ProgramSchedule> filter)
+    throws IOException {
     List<ProgramScheduleRecord> result = new ArrayList<>();
-    try (CloseableIterator<StructuredRow> iterator =
-           scheduleStore.scan(Range.singleton(prefixKeys), Integer.MAX_VALUE)) {
+    try (CloseableIterator<StructuredRow> iterator = scheduleStore.scan(range, Integer.MAX_VALUE)) {
       while (iterator.hasNext()) {
         StructuredRow row = iterator.next();
         String serializedSchedule = row.getString(StoreDefinition.ProgramScheduleStore.SCHEDULE);
@@ -78,6 +78,7 @@ public class AppFabricServer extends AbstractIdleService {
   private final RunRecordCorrectorService runRecordCorrectorService;
   private final ProgramRunStatusMonitorService programRunStatusMonitorService;
   private final RunRecordMonitorService runRecordCounterService;
+  private final RunRecordsTimeIndexBackfillService runRecordsTimeIndexBackfillService;
   private final CoreSchedulerService coreSchedulerService;
   private final ProvisioningService provisioningService;
   private final BootstrapService bootstrapService;
@@ -117,7 +118,8 @@ public class AppFabricServer extends AbstractIdleService {
                          TransactionRunner transactionRunner,
                          EventPublishManager eventPublishManager,
                          RunRecordMonitorService runRecordCounterService,
-                         CommonNettyHttpServiceFactory commonNettyHttpServiceFactory) {
+                         CommonNettyHttpServiceFactory commonNettyHttpServiceFactory,
+                         RunRecordsTimeIndexBackfillService runRecordsTimeIndexBackfillService) {
     this.hostname = hostname;
     this.discoveryService = discoveryService;
     this.handlers = handlers;
@@ -141,6 +143,7 @@ public class AppFabricServer extends AbstractIdleService {
     this.eventPublishManager = eventPublishManager;
     this.runRecordCounterService = runRecordCounterService;
     this.commonNettyHttpServiceFactory = commonNettyHttpServiceFactory;
+    this.runRecordsTimeIndexBackfillService = runRecordsTimeIndexBackfillService;
   }
 
   /**
@@ -163,7 +166,8 @@ public class AppFabricServer extends AbstractIdleService {
         programRunStatusMonitorService.start(),
         coreSchedulerService.start(),
         eventPublishManager.start(),
-        runRecordCounterService.start()
+        runRecordCounterService.start(),
+        runRecordsTimeIndexBackfillService.start()
       )
     ).get();
 
@@ -218,6 +222,7 @@ public class AppFabricServer extends AbstractIdleService {
     provisioningService.stopAndWait();
     eventPublishManager.stopAndWait();
     runRecordCounterService.stopAndWait();
+    runRecordsTimeIndexBackfillService.stopAndWait();
   }
 
   private Cancellable startHttpService(NettyHttpService httpService) throws Exception {
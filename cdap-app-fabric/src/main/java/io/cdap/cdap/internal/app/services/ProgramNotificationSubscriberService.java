@@ -150,6 +150,11 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
     this.store = store;
   }
 
+  @Override
+  protected int getMaxPrefetchBatches() {
+    return cConf.getInt(Constants.AppFabric.STATUS_EVENT_PREFETCH_BATCHES);
+  }
+
   @Override
   protected void doStartUp() throws Exception {
     super.doStartUp();
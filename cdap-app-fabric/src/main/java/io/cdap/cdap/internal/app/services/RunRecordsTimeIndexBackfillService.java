@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.app.services;
+
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import com.google.inject.Inject;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.internal.app.store.AppMetadataStore;
+import io.cdap.cdap.spi.data.transaction.TransactionRunner;
+import io.cdap.cdap.spi.data.transaction.TransactionRunners;
+import io.cdap.cdap.spi.data.transaction.TxCallable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service that adds the run records completed before the run records time index was introduced to the index.
+ * Once all the completed run records are indexed, time range queries of completed runs are served by the index.
+ * The indexing is done in batches, one transaction per batch, and it is skipped if it was completed before.
+ */
+public class RunRecordsTimeIndexBackfillService extends AbstractExecutionThreadService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RunRecordsTimeIndexBackfillService.class);
+
+  private final TransactionRunner transactionRunner;
+  private final int batchSize;
+
+  @Inject
+  RunRecordsTimeIndexBackfillService(CConfiguration cConf, TransactionRunner transactionRunner) {
+    this.transactionRunner = transactionRunner;
+    this.batchSize = cConf.getInt(Constants.AppFabric.RUN_RECORDS_TIME_INDEX_BACKFILL_BATCH_SIZE);
+  }
+
+  @Override
+  protected void run() {
+    try {
+      if (TransactionRunners.run(transactionRunner, (TxCallable<Boolean>) context ->
+        AppMetadataStore.create(context).isRunRecordsTimeIndexed())) {
+        return;
+      }
+
+      LOG.info("Adding completed run records to the run records time index");
+      long startTime = System.nanoTime();
+      long batches = 0;
+      AppMetadataStore.Cursor cursor = AppMetadataStore.Cursor.EMPTY;
+      do {
+        if (!isRunning()) {
+          LOG.info("Stopped adding completed run records to the run records time index before completion");
+          return;
+        }
+        AppMetadataStore.Cursor currentCursor = cursor;
+        cursor = TransactionRunners.run(transactionRunner, context -> {
+          return AppMetadataStore.create(context).backfillRunRecordsTimeIndex(currentCursor, batchSize);
+        });
+        batches++;
+      } while (cursor != AppMetadataStore.Cursor.EMPTY);
+
+      TransactionRunners.run(transactionRunner, context -> {
+        AppMetadataStore.create(context).setRunRecordsTimeIndexed();
+      });
+      LOG.info("Completed adding run records to the run records time index in {} batches in {} seconds",
+               batches, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime));
+    } catch (Exception e) {
+      // Queries will keep scanning the run records until the indexing is completed on the next start
+      LOG.warn("Failed to add completed run records to the run records time index", e);
+    }
+  }
+}
@@ -111,6 +111,13 @@ import javax.annotation.Nullable;
  *
  * Workflow node state is updated whenever program state is updated
  * and we notice that the program belongs to a workflow.
+ *
+ * Completed runs are also indexed by the hourly time buckets that the run was running in, for querying runs
+ * that were running in a given time range without scanning all the completed run records:
+ *
+ * time bucket|namespace|app|version|programtype|program|runid
+ *
+ * Runs that were running for too many time buckets are indexed under a separate bucket instead.
  */
 public class AppMetadataStore {
 
@@ -129,6 +136,18 @@ public class AppMetadataStore {
   private static final String TYPE_RUN_RECORD_UPGRADE_COUNT = "runRecordUpgradeCount";
   private static final String SMALLEST_POSSIBLE_STRING = "";
 
+  private static final long TIME_BUCKET_SECONDS = TimeUnit.HOURS.toSeconds(1);
+  // Queries spanning more time buckets than this scan the run records instead of the time index
+  private static final long MAX_TIME_INDEX_QUERY_BUCKETS = TimeUnit.DAYS.toHours(31);
+  // Runs running over more time buckets than this are indexed in a single bucket that is read by every query
+  private static final long MAX_RUN_TIME_BUCKETS = TimeUnit.DAYS.toHours(7);
+  private static final long LONG_RUN_TIME_BUCKET = -1L;
+  private static final int TIME_INDEX_DELETE_BATCH_SIZE = 1000;
+  // The completion of the time index backfill is recorded in the subscriber state table
+  private static final String TIME_INDEX_STATE_TOPIC = "runRecordsTimeIndex";
+  private static final String TIME_INDEX_STATE_SUBSCRIBER = "backfill";
+  private static final String TIME_INDEX_BACKFILL_COMPLETED = "completed";
+
   private static final Map<ProgramRunStatus, String> STATUS_TYPE_MAP = ImmutableMap.<ProgramRunStatus, String>builder()
     .put(ProgramRunStatus.PENDING, TYPE_RUN_RECORD_ACTIVE)
     .put(ProgramRunStatus.STARTING, TYPE_RUN_RECORD_ACTIVE)
@@ -145,6 +164,7 @@ public class AppMetadataStore {
   private StructuredTable applicationSpecificationTable;
   private StructuredTable workflowNodeStateTable;
   private StructuredTable runRecordsTable;
+  private StructuredTable runRecordsTimeIndexTable;
   private StructuredTable workflowsTable;
   private StructuredTable programCountsTable;
   private StructuredTable subscriberStateTable;
@@ -193,6 +213,17 @@ public class AppMetadataStore {
     return runRecordsTable;
   }
 
+  private StructuredTable getRunRecordsTimeIndexTable() {
+    try {
+      if (runRecordsTimeIndexTable == null) {
+        runRecordsTimeIndexTable = context.getTable(StoreDefinition.AppMetadataStore.RUN_RECORDS_TIME_INDEX);
+      }
+    } catch (TableNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+    return runRecordsTimeIndexTable;
+  }
+
   private StructuredTable getWorkflowsTable() {
     try {
       if (workflowsTable == null) {
@@ -811,6 +842,7 @@ public class AppMetadataStore {
       .build();
 
     writeNewRunRecord(meta, TYPE_RUN_RECORD_COMPLETED);
+    indexCompletedRun(meta);
     LOG.trace("Recorded {} for program {}", ProgramRunStatus.REJECTED, programRunId);
     return meta;
   }
@@ -1091,6 +1123,7 @@ public class AppMetadataStore {
       .build();
     writeToStructuredTableWithPrimaryKeys(
       key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    indexCompletedRun(meta);
     LOG.trace("Recorded {} for program {}", runStatus, programRunId);
     return meta;
   }
@@ -1424,6 +1457,7 @@ public class AppMetadataStore {
       return null;
     }
     delete(detail);
+    deleteCompletedRunIndex(detail);
     return detail;
   }
 
@@ -1614,8 +1648,9 @@ public class AppMetadataStore {
     ApplicationId applicationId = new ApplicationId(namespaceId, appId, versionId);
     getRunRecordsTable()
       .deleteAll(Range.singleton(getRunRecordApplicationPrefix(TYPE_RUN_RECORD_ACTIVE, applicationId)));
-    getRunRecordsTable()
-      .deleteAll(Range.singleton(getRunRecordApplicationPrefix(TYPE_RUN_RECORD_COMPLETED, applicationId)));
+    Range completedRange = Range.singleton(getRunRecordApplicationPrefix(TYPE_RUN_RECORD_COMPLETED, applicationId));
+    deleteCompletedRunsIndex(completedRange);
+    getRunRecordsTable().deleteAll(completedRange);
     getProgramCountsTable().deleteAll(Range.singleton(getCountApplicationPrefix(TYPE_COUNT, applicationId)));
     getProgramCountsTable().deleteAll(
       Range.singleton(getCountApplicationPrefix(TYPE_RUN_RECORD_UPGRADE_COUNT, applicationId)));
@@ -1624,8 +1659,9 @@ public class AppMetadataStore {
   public void deleteProgramHistory(NamespaceId namespaceId) throws IOException {
     getRunRecordsTable().deleteAll(
       Range.singleton(getRunRecordNamespacePrefix(TYPE_RUN_RECORD_ACTIVE, namespaceId)));
-    getRunRecordsTable().deleteAll(Range.singleton(
-      getRunRecordNamespacePrefix(TYPE_RUN_RECORD_COMPLETED, namespaceId)));
+    Range completedRange = Range.singleton(getRunRecordNamespacePrefix(TYPE_RUN_RECORD_COMPLETED, namespaceId));
+    deleteCompletedRunsIndex(completedRange);
+    getRunRecordsTable().deleteAll(completedRange);
     getProgramCountsTable().deleteAll(Range.singleton(getCountNamespacePrefix(TYPE_COUNT, namespaceId)));
     getProgramCountsTable().deleteAll(Range.singleton(
       getCountNamespacePrefix(TYPE_RUN_RECORD_UPGRADE_COUNT, namespaceId)));
@@ -1668,6 +1704,14 @@ public class AppMetadataStore {
    */
   public Set<RunId> getRunningInRangeCompleted(long startTimeInSecs, long endTimeInSecs)
     throws IOException {
+    // Read from the time index if it covers all the completed runs and the query range is not too wide,
+    // otherwise fallback to scan the run records.
+    long fromBucket = getTimeBucket(Math.min(startTimeInSecs, endTimeInSecs - 1));
+    long toBucket = getTimeBucket(Math.max(startTimeInSecs, endTimeInSecs - 1));
+    if ((toBucket - fromBucket) / TIME_BUCKET_SECONDS < MAX_TIME_INDEX_QUERY_BUCKETS && isRunRecordsTimeIndexed()) {
+      return getRunningInRangeFromTimeIndex(startTimeInSecs, endTimeInSecs);
+    }
+
     // This method scans a large amount of data and may timeout. However, the previous implementation would
     // simply return incomplete data. We have doubled the amount of time each transaction can take by using two
     // transactions - and can further get all namespaces from the smaller app spec table and do one transaction per
@@ -1757,6 +1801,170 @@ public class AppMetadataStore {
     getSubscriberStateTable().upsert(keys);
   }
 
+  /**
+   * Returns the completed runs that were running between the given start and end time by reading the time buckets
+   * in the time index that covers the time range.
+   */
+  @VisibleForTesting
+  Set<RunId> getRunningInRangeFromTimeIndex(long startTimeInSecs, long endTimeInSecs) throws IOException {
+    // A run that matches must be running at some time between the start and end time of the query,
+    // hence must be indexed in one of the buckets between them
+    long fromBucket = getTimeBucket(Math.min(startTimeInSecs, endTimeInSecs - 1));
+    long toBucket = getTimeBucket(Math.max(startTimeInSecs, endTimeInSecs - 1));
+    List<Range> ranges = Arrays.asList(
+      Range.singleton(Collections.singleton(
+        Fields.longField(StoreDefinition.AppMetadataStore.TIME_BUCKET, LONG_RUN_TIME_BUCKET))),
+      Range.create(
+        Collections.singleton(Fields.longField(StoreDefinition.AppMetadataStore.TIME_BUCKET, fromBucket)),
+        Range.Bound.INCLUSIVE,
+        Collections.singleton(Fields.longField(StoreDefinition.AppMetadataStore.TIME_BUCKET, toBucket)),
+        Range.Bound.INCLUSIVE));
+
+    // Runs running over multiple buckets are indexed in each of them
+    Set<RunId> runIds = new HashSet<>();
+    try (CloseableIterator<StructuredRow> iterator = getRunRecordsTimeIndexTable().multiScan(ranges,
+                                                                                             Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        long startTs = row.getLong(StoreDefinition.AppMetadataStore.RUN_START_TIME);
+        long stopTs = row.getLong(StoreDefinition.AppMetadataStore.RUN_STOP_TIME);
+        if (startTs < endTimeInSecs && stopTs >= startTimeInSecs) {
+          runIds.add(RunIds.fromString(row.getString(StoreDefinition.AppMetadataStore.RUN_FIELD)));
+        }
+      }
+    }
+    return runIds;
+  }
+
+  /**
+   * Returns whether all the completed runs are indexed in the time index.
+   */
+  public boolean isRunRecordsTimeIndexed() throws IOException {
+    return TIME_INDEX_BACKFILL_COMPLETED.equals(retrieveSubscriberState(TIME_INDEX_STATE_TOPIC,
+                                                                        TIME_INDEX_STATE_SUBSCRIBER));
+  }
+
+  /**
+   * Marks that all the completed runs are indexed in the time index, such that time range queries of completed runs
+   * can be served by the index.
+   */
+  public void setRunRecordsTimeIndexed() throws IOException {
+    persistSubscriberState(TIME_INDEX_STATE_TOPIC, TIME_INDEX_STATE_SUBSCRIBER, TIME_INDEX_BACKFILL_COMPLETED);
+  }
+
+  /**
+   * Adds completed runs to the time index, starting from the given cursor. It is used for indexing the runs
+   * completed before the index was introduced.
+   *
+   * @param cursor the cursor to start indexing. A cursor can be obtained from the previous call to this method,
+   *               or use {@link Cursor#EMPTY} to start from the beginning
+   * @param limit maximum number of runs to index
+   * @return the {@link Cursor} for indexing the next batch of runs, or {@link Cursor#EMPTY} if there is no more runs
+   * @throws IOException if failed to read or write the storage
+   */
+  public Cursor backfillRunRecordsTimeIndex(Cursor cursor, int limit) throws IOException {
+    List<Field<?>> prefix = getRunRecordStatusPrefix(TYPE_RUN_RECORD_COMPLETED);
+    Collection<Field<?>> begin = cursor.fields.isEmpty() ? prefix : cursor.fields;
+    Range range = Range.create(begin, cursor.bound, prefix, Range.Bound.INCLUSIVE);
+
+    Cursor nextCursor = Cursor.EMPTY;
+    try (CloseableIterator<StructuredRow> iterator = getRunRecordsTable().scan(range, limit)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        indexCompletedRun(deserializeRunRecordMeta(row));
+        nextCursor = new Cursor(row.getPrimaryKeys(), Range.Bound.EXCLUSIVE);
+      }
+    }
+    return nextCursor;
+  }
+
+  /**
+   * Adds the given completed run to the time index, under each time bucket that the run was running in.
+   */
+  private void indexCompletedRun(RunRecordDetail meta) throws IOException {
+    Long stopTs = meta.getStopTs();
+    if (stopTs == null) {
+      return;
+    }
+    List<List<Field<?>>> rows = getTimeIndexKeys(meta);
+    for (List<Field<?>> fields : rows) {
+      fields.add(Fields.longField(StoreDefinition.AppMetadataStore.RUN_START_TIME, meta.getStartTs()));
+      fields.add(Fields.longField(StoreDefinition.AppMetadataStore.RUN_STOP_TIME, stopTs));
+    }
+    getRunRecordsTimeIndexTable().multiUpsert(rows);
+  }
+
+  /**
+   * Removes the given completed run from the time index.
+   */
+  private void deleteCompletedRunIndex(RunRecordDetail meta) throws IOException {
+    getRunRecordsTimeIndexTable().multiDelete(getTimeIndexKeys(meta));
+  }
+
+  /**
+   * Removes the completed runs in the given range of the run records from the time index.
+   */
+  private void deleteCompletedRunsIndex(Range range) throws IOException {
+    List<List<Field<?>>> keys = new ArrayList<>();
+    try (CloseableIterator<StructuredRow> iterator = getRunRecordsTable().scan(range, Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        keys.addAll(getTimeIndexKeys(deserializeRunRecordMeta(iterator.next())));
+        if (keys.size() >= TIME_INDEX_DELETE_BATCH_SIZE) {
+          getRunRecordsTimeIndexTable().multiDelete(keys);
+          keys.clear();
+        }
+      }
+    }
+    getRunRecordsTimeIndexTable().multiDelete(keys);
+  }
+
+  /**
+   * Returns the keys of the given run in the time index, or an empty list if the run is not completed.
+   */
+  private List<List<Field<?>>> getTimeIndexKeys(RunRecordDetail meta) {
+    Long stopTs = meta.getStopTs();
+    if (stopTs == null) {
+      return Collections.emptyList();
+    }
+    List<List<Field<?>>> keys = new ArrayList<>();
+    for (long bucket : getTimeBuckets(meta.getStartTs(), stopTs)) {
+      keys.add(getTimeIndexKey(bucket, meta.getProgramRunId()));
+    }
+    return keys;
+  }
+
+  private List<Field<?>> getTimeIndexKey(long bucket, ProgramRunId programRunId) {
+    List<Field<?>> fields = new ArrayList<>();
+    fields.add(Fields.longField(StoreDefinition.AppMetadataStore.TIME_BUCKET, bucket));
+    fields.addAll(getProgramRunPrimaryKeys(programRunId));
+    return fields;
+  }
+
+  /**
+   * Returns the start time of all the time buckets between the given start and stop time, inclusively.
+   * If there are too many buckets, only the bucket for long runs is returned.
+   */
+  private List<Long> getTimeBuckets(long startTs, long stopTs) {
+    long firstBucket = getTimeBucket(startTs);
+    long lastBucket = getTimeBucket(Math.max(startTs, stopTs));
+    if ((lastBucket - firstBucket) / TIME_BUCKET_SECONDS >= MAX_RUN_TIME_BUCKETS) {
+      return Collections.singletonList(LONG_RUN_TIME_BUCKET);
+    }
+    List<Long> buckets = new ArrayList<>();
+    for (long bucket = firstBucket; bucket <= lastBucket; bucket += TIME_BUCKET_SECONDS) {
+      buckets.add(bucket);
+    }
+    return buckets;
+  }
+
+  /**
+   * Returns the start time of the time bucket that the given time belongs to.
+   */
+  private long getTimeBucket(long timeInSecs) {
+    long time = Math.max(0L, timeInSecs);
+    return time - time % TIME_BUCKET_SECONDS;
+  }
+
   @VisibleForTesting
   Set<RunId> getRunningInRangeForStatus(String statusKey, long startTimeInSecs,
                                         long endTimeInSecs) throws IOException {
@@ -1781,6 +1989,7 @@ public class AppMetadataStore {
     deleteTable(getApplicationSpecificationTable(), StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
     deleteTable(getWorkflowNodeStateTable(), StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
     deleteTable(getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_STATUS);
+    getRunRecordsTimeIndexTable().deleteAll(Range.all());
     deleteTable(getWorkflowsTable(), StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
     deleteTable(getProgramCountsTable(), StoreDefinition.AppMetadataStore.COUNT_TYPE);
     deleteTable(getSubscriberStateTable(), StoreDefinition.AppMetadataStore.SUBSCRIBER_TOPIC);
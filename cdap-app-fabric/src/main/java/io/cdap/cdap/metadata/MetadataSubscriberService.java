@@ -232,6 +232,11 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
     }
   }
 
+  @Override
+  protected int getMaxPrefetchBatches() {
+    return cConf.getInt(Constants.Metadata.MESSAGING_PREFETCH_BATCHES);
+  }
+
   @Override
   protected void doStartUp() throws Exception {
     super.doStartUp();
@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.scheduler;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.cdap.cdap.proto.id.ProgramId;
+import io.cdap.cdap.proto.id.ScheduleId;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Notifies the {@link ConstraintCheckerService} about changes that may change the results of checking the jobs
+ * in the job queue, such that the jobs can be checked without polling the job queue.
+ * Notifications must be sent after the changes are committed.
+ */
+@Singleton
+class ConstraintCheckNotifier {
+
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  @Inject
+  ConstraintCheckNotifier() {
+    // no-op
+  }
+
+  void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Notifies that jobs of the given schedules were added or updated in the job queue.
+   */
+  void schedulesChanged(Collection<ScheduleId> scheduleIds) {
+    for (Listener listener : listeners) {
+      scheduleIds.forEach(listener::scheduleChanged);
+    }
+  }
+
+  /**
+   * Notifies that runs of the given programs have changed status.
+   */
+  void programsChanged(Collection<ProgramId> programIds) {
+    for (Listener listener : listeners) {
+      programIds.forEach(listener::programChanged);
+    }
+  }
+
+  /**
+   * Listener for changes that may change the results of checking jobs.
+   */
+  interface Listener {
+
+    /**
+     * Called when jobs of the given schedule were added or updated in the job queue.
+     */
+    void scheduleChanged(ScheduleId scheduleId);
+
+    /**
+     * Called when a run of the given program has changed status.
+     */
+    void programChanged(ProgramId programId);
+  }
+}
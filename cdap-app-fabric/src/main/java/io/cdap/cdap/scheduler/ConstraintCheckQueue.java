@@ -0,0 +1,191 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.scheduler;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import io.cdap.cdap.internal.app.runtime.schedule.queue.Job;
+import io.cdap.cdap.internal.app.runtime.schedule.queue.JobKey;
+import io.cdap.cdap.proto.id.ProgramId;
+import io.cdap.cdap.proto.id.ScheduleId;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * An in-memory queue of the jobs in a job queue partition, ordered by the time that each job needs to be checked
+ * again. It also collects the schedules whose jobs have changed in the job queue, such that the jobs of them can be
+ * read from the job queue, instead of scanning the whole partition for changes.
+ *
+ * This class is thread safe. Threads waiting in {@link #await(long)} are woken up when the queue has changes.
+ */
+final class ConstraintCheckQueue {
+
+  private final Map<JobKey, Entry> entries = new HashMap<>();
+  // Entries that are replaced or removed are left in the priority queue, and skipped when they are polled
+  private final PriorityQueue<Entry> checkTimes = new PriorityQueue<>(Comparator.comparingLong(e -> e.checkTime));
+  private final SetMultimap<ProgramId, JobKey> programJobs = HashMultimap.create();
+  private final Set<ScheduleId> changedSchedules = new LinkedHashSet<>();
+
+  /**
+   * Sets the time that the given job needs to be checked again, replacing the previous time if there is one.
+   */
+  synchronized void schedule(Job job, long checkTime) {
+    JobKey jobKey = job.getJobKey();
+    Entry entry = new Entry(jobKey, job.getSchedule().getProgramId(), checkTime);
+    Entry existing = entries.put(jobKey, entry);
+    if (existing == null) {
+      programJobs.put(entry.programId, jobKey);
+    }
+    checkTimes.add(entry);
+    if (checkTimes.peek() == entry) {
+      notifyAll();
+    }
+  }
+
+  /**
+   * Removes the given job from the queue.
+   */
+  synchronized void remove(JobKey jobKey) {
+    Entry entry = entries.remove(jobKey);
+    if (entry != null) {
+      programJobs.remove(entry.programId, jobKey);
+    }
+  }
+
+  /**
+   * Removes all the jobs from the queue. Changed schedules that are not yet polled are retained.
+   */
+  synchronized void clear() {
+    entries.clear();
+    checkTimes.clear();
+    programJobs.clear();
+  }
+
+  /**
+   * Records that the jobs of the given schedule have changed.
+   */
+  synchronized void scheduleChanged(ScheduleId scheduleId) {
+    changedSchedules.add(scheduleId);
+    notifyAll();
+  }
+
+  /**
+   * Makes all the jobs of the given program to be checked immediately.
+   */
+  synchronized void programChanged(ProgramId programId) {
+    Set<JobKey> jobKeys = programJobs.get(programId);
+    if (jobKeys.isEmpty()) {
+      return;
+    }
+    for (JobKey jobKey : jobKeys) {
+      Entry entry = new Entry(jobKey, programId, 0L);
+      entries.put(jobKey, entry);
+      checkTimes.add(entry);
+    }
+    notifyAll();
+  }
+
+  /**
+   * Returns and clears the schedules that have changed.
+   */
+  synchronized Set<ScheduleId> pollChangedSchedules() {
+    Set<ScheduleId> result = new LinkedHashSet<>(changedSchedules);
+    changedSchedules.clear();
+    return result;
+  }
+
+  /**
+   * Removes and returns the jobs that need to be checked at or before the given time.
+   */
+  synchronized List<JobKey> pollDueJobs(long now) {
+    List<JobKey> result = new ArrayList<>();
+    Entry entry = peek();
+    while (entry != null && entry.checkTime <= now) {
+      checkTimes.poll();
+      entries.remove(entry.jobKey);
+      programJobs.remove(entry.programId, entry.jobKey);
+      result.add(entry.jobKey);
+      entry = peek();
+    }
+    return result;
+  }
+
+  /**
+   * Returns the earliest time that a job needs to be checked, or {@link Long#MAX_VALUE} if the queue is empty.
+   */
+  synchronized long getNextCheckTime() {
+    Entry entry = peek();
+    return entry == null ? Long.MAX_VALUE : entry.checkTime;
+  }
+
+  /**
+   * Returns the number of jobs in the queue.
+   */
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Waits until there are changed schedules, a job needs to be checked, or the given time is reached.
+   *
+   * @param deadline the time in milliseconds to wait until
+   * @throws InterruptedException if the current thread is interrupted while waiting
+   */
+  synchronized void await(long deadline) throws InterruptedException {
+    while (changedSchedules.isEmpty()) {
+      long waitMillis = Math.min(deadline, getNextCheckTime()) - System.currentTimeMillis();
+      if (waitMillis <= 0) {
+        return;
+      }
+      wait(waitMillis);
+    }
+  }
+
+  /**
+   * Returns the head of the priority queue, skipping the entries that were replaced or removed.
+   */
+  private Entry peek() {
+    Entry entry = checkTimes.peek();
+    while (entry != null && entries.get(entry.jobKey) != entry) {
+      checkTimes.poll();
+      entry = checkTimes.peek();
+    }
+    return entry;
+  }
+
+  /**
+   * An entry in the queue.
+   */
+  private static final class Entry {
+    private final JobKey jobKey;
+    private final ProgramId programId;
+    private final long checkTime;
+
+    Entry(JobKey jobKey, ProgramId programId, long checkTime) {
+      this.jobKey = jobKey;
+      this.programId = programId;
+      this.checkTime = checkTime;
+    }
+  }
+}
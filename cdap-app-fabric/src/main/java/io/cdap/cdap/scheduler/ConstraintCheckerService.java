@@ -34,12 +34,15 @@ import io.cdap.cdap.internal.app.runtime.schedule.constraint.CheckableConstraint
 import io.cdap.cdap.internal.app.runtime.schedule.constraint.ConstraintContext;
 import io.cdap.cdap.internal.app.runtime.schedule.constraint.ConstraintResult;
 import io.cdap.cdap.internal.app.runtime.schedule.queue.Job;
+import io.cdap.cdap.internal.app.runtime.schedule.queue.JobKey;
 import io.cdap.cdap.internal.app.runtime.schedule.queue.JobQueue;
 import io.cdap.cdap.internal.app.runtime.schedule.queue.JobQueueTable;
 import io.cdap.cdap.internal.app.runtime.schedule.store.Schedulers;
 import io.cdap.cdap.internal.app.services.ProgramLifecycleService;
 import io.cdap.cdap.internal.app.services.PropertiesResolver;
 import io.cdap.cdap.internal.schedule.constraint.Constraint;
+import io.cdap.cdap.proto.id.ProgramId;
+import io.cdap.cdap.proto.id.ScheduleId;
 import io.cdap.cdap.spi.data.transaction.TransactionException;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import io.cdap.cdap.spi.data.transaction.TransactionRunners;
@@ -49,15 +52,25 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Polls the JobQueue, checks the jobs for constraint satisfaction, and launches them.
+ *
+ * If event driven constraint checking is enabled, jobs are kept in a {@link ConstraintCheckQueue} per partition,
+ * ordered by the time that each job needs to be checked again. A job is read from the JobQueue only when it is due,
+ * or when its schedule or the status of its program changed, as notified through the {@link ConstraintCheckNotifier}.
+ * The in-memory queues are rebuilt from the JobQueue on startup and periodically, for picking up changes
+ * that are not notified.
  */
 class ConstraintCheckerService extends AbstractIdleService {
   private static final Logger LOG = LoggerFactory.getLogger(ConstraintCheckerService.class);
+  private static final long NO_CHECK = -1L;
 
   private final Store store;
   private final ProgramLifecycleService lifecycleService;
@@ -65,8 +78,10 @@ class ConstraintCheckerService extends AbstractIdleService {
   private final NamespaceQueryAdmin namespaceQueryAdmin;
   private final CConfiguration cConf;
   private final TransactionRunner transactionRunner;
+  private final ConstraintCheckNotifier constraintCheckNotifier;
   private ScheduleTaskRunner taskRunner;
   private ListeningExecutorService taskExecutorService;
+  private ConstraintCheckNotifier.Listener notifierListener;
   private volatile boolean stopping;
 
   @Inject
@@ -74,13 +89,15 @@ class ConstraintCheckerService extends AbstractIdleService {
                            ProgramLifecycleService lifecycleService, PropertiesResolver propertiesResolver,
                            NamespaceQueryAdmin namespaceQueryAdmin,
                            CConfiguration cConf,
-                           TransactionRunner transactionRunner) {
+                           TransactionRunner transactionRunner,
+                           ConstraintCheckNotifier constraintCheckNotifier) {
     this.store = store;
     this.lifecycleService = lifecycleService;
     this.propertiesResolver = propertiesResolver;
     this.namespaceQueryAdmin = namespaceQueryAdmin;
     this.cConf = cConf;
     this.transactionRunner = transactionRunner;
+    this.constraintCheckNotifier = constraintCheckNotifier;
   }
 
   @Override
@@ -91,8 +108,36 @@ class ConstraintCheckerService extends AbstractIdleService {
     taskRunner = new ScheduleTaskRunner(store, lifecycleService, propertiesResolver, namespaceQueryAdmin, cConf);
 
     int numPartitions = cConf.getInt(Constants.Scheduler.JOB_QUEUE_NUM_PARTITIONS);
-    for (int partition = 0; partition < numPartitions; partition++) {
-      taskExecutorService.submit(new ConstraintCheckerThread(partition));
+    if (cConf.getBoolean(Constants.Scheduler.CONSTRAINT_CHECKER_EVENT_DRIVEN)) {
+      long resyncIntervalMillis =
+        TimeUnit.SECONDS.toMillis(cConf.getLong(Constants.Scheduler.CONSTRAINT_CHECKER_RESYNC_INTERVAL_SECONDS));
+      ConstraintCheckQueue[] checkQueues = new ConstraintCheckQueue[numPartitions];
+      for (int partition = 0; partition < numPartitions; partition++) {
+        checkQueues[partition] = new ConstraintCheckQueue();
+      }
+      notifierListener = new ConstraintCheckNotifier.Listener() {
+        @Override
+        public void scheduleChanged(ScheduleId scheduleId) {
+          checkQueues[JobQueueTable.getPartition(scheduleId, numPartitions)].scheduleChanged(scheduleId);
+        }
+
+        @Override
+        public void programChanged(ProgramId programId) {
+          for (ConstraintCheckQueue checkQueue : checkQueues) {
+            checkQueue.programChanged(programId);
+          }
+        }
+      };
+      // Add the listener before the threads start to rebuild the queues, so that no change will be missed
+      constraintCheckNotifier.addListener(notifierListener);
+      for (int partition = 0; partition < numPartitions; partition++) {
+        taskExecutorService.submit(new EventDrivenConstraintCheckerThread(partition, checkQueues[partition],
+                                                                          resyncIntervalMillis));
+      }
+    } else {
+      for (int partition = 0; partition < numPartitions; partition++) {
+        taskExecutorService.submit(new ConstraintCheckerThread(partition));
+      }
     }
     LOG.info("Started ConstraintCheckerService. state: " + state());
   }
@@ -101,6 +146,9 @@ class ConstraintCheckerService extends AbstractIdleService {
   protected void shutDown() throws Exception {
     stopping = true;
     LOG.info("Stopping ConstraintCheckerService.");
+    if (notifierListener != null) {
+      constraintCheckNotifier.removeListener(notifierListener);
+    }
     try {
       // Shutdown the executor and wait for all pending task to be completed for max of 5 seconds
       taskExecutorService.shutdown();
@@ -117,10 +165,10 @@ class ConstraintCheckerService extends AbstractIdleService {
 
   private class ConstraintCheckerThread implements Runnable {
     private final RetryStrategy scheduleStrategy;
-    private final int partition;
+    protected final int partition;
     private final Deque<Job> readyJobs = new ArrayDeque<>();
-    private Job lastConsumed;
-    private int failureCount;
+    protected Job lastConsumed;
+    protected int failureCount;
 
     ConstraintCheckerThread(int partition) {
       // TODO: [CDAP-11370] Need to be configured in cdap-default.xml. Retry with delay ranging from 0.1s to 30s
@@ -168,15 +216,26 @@ class ConstraintCheckerService extends AbstractIdleService {
 
       // If there is any failure, delay the next fetch based on the strategy
       if (failureCount > 0) {
-        // Exponential strategy doesn't use the time component, so doesn't matter what we passed in as startTime
-        return scheduleStrategy.nextRetry(failureCount, 0);
+        return getRetryDelay();
       }
 
       // Sleep for 2 seconds if there's no jobs in the queue
       return emptyFetch && readyJobs.isEmpty() ? 2000L : 0L;
     }
 
-    private boolean checkJobConstraints(JobQueue jobQueue) throws IOException {
+    /**
+     * Returns the delay in milliseconds before retrying after failures.
+     */
+    protected long getRetryDelay() {
+      // Exponential strategy doesn't use the time component, so doesn't matter what we passed in as startTime
+      return scheduleStrategy.nextRetry(failureCount, 0);
+    }
+
+    protected boolean hasReadyJobs() {
+      return !readyJobs.isEmpty();
+    }
+
+    protected boolean checkJobConstraints(JobQueue jobQueue) throws IOException {
       boolean emptyScan = true;
 
       try (CloseableIterator<Job> jobQueueIter = jobQueue.getJobs(partition, lastConsumed)) {
@@ -190,50 +249,81 @@ class ConstraintCheckerService extends AbstractIdleService {
           Job job = jobQueueIter.next();
           lastConsumed = job;
           emptyScan = false;
-          checkAndUpdateJob(jobQueue, job);
+          onJobChecked(job, checkAndUpdateJob(jobQueue, job));
         }
       }
       return emptyScan;
     }
 
-    private void checkAndUpdateJob(JobQueue jobQueue, Job job) throws IOException {
+    /**
+     * Called after a job is checked.
+     *
+     * @param job the job that was checked
+     * @param nextCheckTime the time in milliseconds that the job needs to be checked again,
+     *                      or {@link #NO_CHECK} if the job doesn't need to be checked again
+     */
+    protected void onJobChecked(Job job, long nextCheckTime) {
+      // no-op
+    }
+
+    /**
+     * Checks the given job for deletion, timeout and constraint satisfaction, and updates the job accordingly.
+     *
+     * @return the time in milliseconds that the job needs to be checked again if it is not changed,
+     *         or {@link #NO_CHECK} if the job doesn't need to be checked again by the constraint checker
+     */
+    protected long checkAndUpdateJob(JobQueue jobQueue, Job job) throws IOException {
       long now = System.currentTimeMillis();
       if (job.isToBeDeleted()) {
         // only delete jobs that are pending trigger or pending constraint. If pending launch, the launcher will delete
-        if ((job.getState() == Job.State.PENDING_CONSTRAINT ||
-          // if pending trigger, we need to check if now - deletionTime > 2 * txTimeout. Otherwise the subscriber thread
-          // might update this job concurrently (because its tx does not see the delete flag) and cause a conflict.
-          // It's 2 * txTimeout for:
-          // - the transaction the marked it as to be deleted
-          // - the subscriber's transaction that may not have seen that change
-          (job.getState() == Job.State.PENDING_TRIGGER &&
-            now - job.getDeleteTimeMillis() > 2 * Schedulers.SUBSCRIBER_TX_TIMEOUT_MILLIS))) {
+        if (job.getState() == Job.State.PENDING_CONSTRAINT) {
           jobQueue.deleteJob(job);
+          return NO_CHECK;
+        }
+        // if pending trigger, we need to check if now - deletionTime > 2 * txTimeout. Otherwise the subscriber thread
+        // might update this job concurrently (because its tx does not see the delete flag) and cause a conflict.
+        // It's 2 * txTimeout for:
+        // - the transaction the marked it as to be deleted
+        // - the subscriber's transaction that may not have seen that change
+        if (job.getState() == Job.State.PENDING_TRIGGER) {
+          if (now - job.getDeleteTimeMillis() > 2 * Schedulers.SUBSCRIBER_TX_TIMEOUT_MILLIS) {
+            jobQueue.deleteJob(job);
+            return NO_CHECK;
+          }
+          return job.getDeleteTimeMillis() + 2 * Schedulers.SUBSCRIBER_TX_TIMEOUT_MILLIS + 1;
         }
-        return;
+        return NO_CHECK;
       }
-      if (now - job.getCreationTime() >= job.getSchedule().getTimeoutMillis() +
-        2 * Schedulers.SUBSCRIBER_TX_TIMEOUT_MILLIS) {
+      long timeoutTime = addMillis(job.getCreationTime(),
+                                   addMillis(job.getSchedule().getTimeoutMillis(),
+                                             2 * Schedulers.SUBSCRIBER_TX_TIMEOUT_MILLIS));
+      if (now >= timeoutTime) {
         LOG.info("Deleted job {}, due to timeout value of {}.", job.getJobKey(), job.getSchedule().getTimeoutMillis());
         jobQueue.deleteJob(job);
-        return;
+        return NO_CHECK;
+      }
+      if (job.getState() == Job.State.PENDING_TRIGGER) {
+        return timeoutTime;
       }
       if (job.getState() != Job.State.PENDING_CONSTRAINT) {
-        return;
+        return NO_CHECK;
       }
-      ConstraintResult.SatisfiedState satisfiedState = constraintsSatisfied(job, now);
+      ConstraintResult result = constraintsSatisfied(job, now);
+      ConstraintResult.SatisfiedState satisfiedState = result.getSatisfiedState();
       if (satisfiedState == ConstraintResult.SatisfiedState.NOT_SATISFIED) {
-        return;
+        Long nextCheckTime = result.getNextCheckTime();
+        return nextCheckTime == null ? timeoutTime : Math.min(nextCheckTime, timeoutTime);
       }
       if (satisfiedState == ConstraintResult.SatisfiedState.NEVER_SATISFIED) {
         jobQueue.deleteJob(job);
-        return;
+        return NO_CHECK;
       }
       jobQueue.transitState(job, Job.State.PENDING_LAUNCH);
       readyJobs.add(job);
+      return NO_CHECK;
     }
 
-    private void runReadyJobs() {
+    protected void runReadyJobs() {
       final Iterator<Job> readyJobsIter = readyJobs.iterator();
       while (readyJobsIter.hasNext() && !stopping) {
         final Job job = readyJobsIter.next();
@@ -283,8 +373,15 @@ class ConstraintCheckerService extends AbstractIdleService {
       return true;
     }
 
-    private ConstraintResult.SatisfiedState constraintsSatisfied(Job job, long now) {
-      ConstraintResult.SatisfiedState satisfiedState = ConstraintResult.SatisfiedState.SATISFIED;
+    /**
+     * Checks the constraints of the given job.
+     *
+     * @return {@link ConstraintResult#SATISFIED} if all the constraints are satisfied,
+     *         {@link ConstraintResult#NEVER_SATISFIED} if any of the constraints is never satisfied,
+     *         otherwise the not satisfied result with the earliest next check time
+     */
+    private ConstraintResult constraintsSatisfied(Job job, long now) {
+      ConstraintResult notSatisfied = null;
 
       ConstraintContext constraintContext = new ConstraintContext(job, now, store);
       for (Constraint constraint : job.getSchedule().getConstraints()) {
@@ -299,14 +396,147 @@ class ConstraintCheckerService extends AbstractIdleService {
         ConstraintResult result = abstractConstraint.check(job.getSchedule(), constraintContext);
         if (result.getSatisfiedState() == ConstraintResult.NEVER_SATISFIED.getSatisfiedState()) {
           // if any of the constraints are NEVER_SATISFIED, return NEVER_SATISFIED
-          return ConstraintResult.NEVER_SATISFIED.getSatisfiedState();
+          return ConstraintResult.NEVER_SATISFIED;
+        }
+        if (result.getSatisfiedState() == ConstraintResult.SatisfiedState.NOT_SATISFIED
+          && (notSatisfied == null || result.getNextCheckTime() < notSatisfied.getNextCheckTime())) {
+          notSatisfied = result;
+        }
+      }
+      return notSatisfied == null ? ConstraintResult.SATISFIED : notSatisfied;
+    }
+
+  }
+
+  /**
+   * A {@link ConstraintCheckerThread} that only reads jobs from the JobQueue when they need to be checked.
+   */
+  private final class EventDrivenConstraintCheckerThread extends ConstraintCheckerThread {
+    private final ConstraintCheckQueue checkQueue;
+    private final long resyncIntervalMillis;
+    private long nextResyncTime;
+    private boolean resyncing;
+
+    EventDrivenConstraintCheckerThread(int partition, ConstraintCheckQueue checkQueue, long resyncIntervalMillis) {
+      super(partition);
+      this.checkQueue = checkQueue;
+      this.resyncIntervalMillis = resyncIntervalMillis;
+    }
+
+    @Override
+    public void run() {
+      while (!stopping) {
+        try {
+          long nextCheckTime = checkChangedJobs();
+          if (nextCheckTime > System.currentTimeMillis()) {
+            checkQueue.await(nextCheckTime);
+          }
+        } catch (InterruptedException e) {
+          // wait is interrupted, just exit without doing anything
+          return;
+        }
+      }
+    }
+
+    /**
+     * Checks the jobs that are due or changed, or scans the partition to rebuild the check queue.
+     *
+     * @return the time in milliseconds to check again
+     */
+    private long checkChangedJobs() {
+      long now = System.currentTimeMillis();
+      try {
+        if (resyncing || now >= nextResyncTime) {
+          rebuildCheckQueue(now);
+        } else {
+          Set<ScheduleId> changedSchedules = checkQueue.pollChangedSchedules();
+          List<JobKey> dueJobs = checkQueue.pollDueJobs(now);
+          if (!changedSchedules.isEmpty() || !dueJobs.isEmpty()) {
+            TransactionRunners.run(transactionRunner, context -> {
+              checkJobs(JobQueueTable.getJobQueue(context, cConf), changedSchedules, dueJobs);
+            });
+          }
+        }
+
+        // run any ready jobs
+        runReadyJobs();
+        failureCount = 0;
+      } catch (Exception e) {
+        LOG.warn("Failed to check Job constraints. Will retry in next run", e);
+        failureCount++;
+        // The polled jobs are not checked. Rebuild the check queue to have them checked on retry.
+        resyncing = false;
+        nextResyncTime = 0L;
+      }
+
+      if (failureCount > 0) {
+        return System.currentTimeMillis() + getRetryDelay();
+      }
+      if (resyncing || hasReadyJobs()) {
+        return 0L;
+      }
+      return Math.min(nextResyncTime, checkQueue.getNextCheckTime());
+    }
+
+    /**
+     * Scans a batch of the jobs in the partition and adds them to the check queue. The check queue is cleared
+     * when a new scan starts.
+     */
+    private void rebuildCheckQueue(long now) {
+      if (!resyncing) {
+        checkQueue.clear();
+        lastConsumed = null;
+        resyncing = true;
+      }
+      TransactionRunners.run(transactionRunner, context -> {
+        return checkJobConstraints(JobQueueTable.getJobQueue(context, cConf));
+      });
+      // The scan is completed when there is no last consumed job
+      if (lastConsumed == null) {
+        resyncing = false;
+        nextResyncTime = now + resyncIntervalMillis;
+        LOG.debug("Rebuilt constraint check queue of partition {} with {} jobs", partition, checkQueue.size());
+      }
+    }
+
+    private void checkJobs(JobQueue jobQueue, Set<ScheduleId> changedSchedules,
+                           List<JobKey> dueJobs) throws IOException {
+      Set<JobKey> checked = new HashSet<>();
+      for (ScheduleId scheduleId : changedSchedules) {
+        try (CloseableIterator<Job> jobs = jobQueue.getJobsForSchedule(scheduleId)) {
+          while (jobs.hasNext()) {
+            Job job = jobs.next();
+            checked.add(job.getJobKey());
+            onJobChecked(job, checkAndUpdateJob(jobQueue, job));
+          }
+        }
+      }
+      for (JobKey jobKey : dueJobs) {
+        if (checked.contains(jobKey)) {
+          continue;
         }
-        if (result.getSatisfiedState() == ConstraintResult.SatisfiedState.NOT_SATISFIED) {
-          satisfiedState = ConstraintResult.SatisfiedState.NOT_SATISFIED;
+        // The job may have been removed from the JobQueue, in which case it no longer needs to be checked
+        Job job = jobQueue.getJob(jobKey);
+        if (job != null) {
+          onJobChecked(job, checkAndUpdateJob(jobQueue, job));
         }
       }
-      return satisfiedState;
     }
 
+    @Override
+    protected void onJobChecked(Job job, long nextCheckTime) {
+      if (nextCheckTime == NO_CHECK) {
+        checkQueue.remove(job.getJobKey());
+      } else {
+        checkQueue.schedule(job, nextCheckTime);
+      }
+    }
+  }
+
+  /**
+   * Adds two non-negative time values in milliseconds, capping at {@link Long#MAX_VALUE}.
+   */
+  private static long addMillis(long time, long millis) {
+    return millis > Long.MAX_VALUE - time ? Long.MAX_VALUE : time + millis;
   }
 }
@@ -23,6 +23,7 @@ import com.google.common.util.concurrent.Service;
 import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.gson.Gson;
 import com.google.inject.Inject;
+import io.cdap.cdap.api.ProgramStatus;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.security.AccessException;
 import io.cdap.cdap.app.program.ProgramDescriptor;
@@ -66,12 +67,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
@@ -95,6 +98,7 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
   private final Store appMetaStore;
   private final Impersonator impersonator;
   private final TransactionRunner transactionRunner;
+  private final TriggerKeyIndex triggerKeyIndex;
 
   @Inject
   CoreSchedulerService(TimeSchedulerService timeSchedulerService,
@@ -102,7 +106,7 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
                        ConstraintCheckerService constraintCheckerService,
                        MessagingService messagingService,
                        CConfiguration cConf, Store store, Impersonator impersonator,
-                       TransactionRunner transactionRunner) {
+                       TransactionRunner transactionRunner, TriggerKeyIndex triggerKeyIndex) {
     this.startedLatch = new CountDownLatch(1);
     MultiThreadMessagingContext messagingContext = new MultiThreadMessagingContext(messagingService);
     this.timeSchedulerService = timeSchedulerService;
@@ -110,6 +114,7 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
     this.appMetaStore = store;
     this.impersonator = impersonator;
     this.transactionRunner = transactionRunner;
+    this.triggerKeyIndex = triggerKeyIndex;
     // Use a retry on failure service to make it resilience to transient service unavailability during startup
     this.internalService = new RetryOnStartFailureService(() -> new AbstractIdleService() {
 
@@ -217,13 +222,17 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
   public void addSchedules(Iterable<? extends ProgramSchedule> schedules)
     throws ProfileConflictException, BadRequestException, NotFoundException, AlreadyExistsException {
     checkStarted();
+    List<ScheduleId> scheduleIds = new ArrayList<>();
     for (ProgramSchedule schedule: schedules) {
       if (!schedule.getProgramId().getType().equals(ProgramType.WORKFLOW)) {
         throw new BadRequestException(String.format(
           "Cannot schedule program %s of type %s: Only workflows can be scheduled",
           schedule.getProgramId().getProgram(), schedule.getProgramId().getType()));
       }
+      scheduleIds.add(schedule.getScheduleId());
     }
+    // Match notifications against the store until the added schedules are in the index
+    triggerKeyIndex.beginUpdate();
     try {
       execute((StoreAndProfileTxRunnable<Void, Exception>) (store, profileDataset) -> {
         long updatedTime = store.addSchedules(schedules);
@@ -271,6 +280,8 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
       throw e;
     } catch (Exception e) {
       throw Throwables.propagate(e);
+    } finally {
+      triggerKeyIndex.endUpdate(scheduleIds);
     }
   }
 
@@ -302,6 +313,8 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
   @Override
   public void enableSchedule(ScheduleId scheduleId) throws NotFoundException, ConflictException {
     checkStarted();
+    // Match notifications against the store until the enabled schedule is refreshed in the index
+    triggerKeyIndex.beginUpdate();
     try {
       execute((StoreTxRunnable<Void, Exception>) store -> {
         enableScheduleInternal(store, scheduleId);
@@ -314,12 +327,16 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
       throw new RuntimeException("Exception occurs when enabling schedule " + scheduleId, e);
     } catch (Exception e) {
       throw Throwables.propagate(e);
+    } finally {
+      triggerKeyIndex.endUpdate(Collections.singleton(scheduleId));
     }
   }
 
   @Override
   public void disableSchedule(ScheduleId scheduleId) throws NotFoundException, ConflictException {
     checkStarted();
+    // Stop matching notifications to the schedule before it is disabled
+    triggerKeyIndex.remove(Collections.singleton(scheduleId));
     try {
       execute((StoreAndQueueTxRunnable<Void, Exception>) (store, queue) -> {
         ProgramScheduleRecord record = store.getScheduleRecord(scheduleId);
@@ -338,6 +355,8 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
       throw new RuntimeException("Exception occurs when enabling schedule " + scheduleId, e);
     } catch (Exception e) {
       throw Throwables.propagate(e);
+    } finally {
+      triggerKeyIndex.refresh(Collections.singleton(scheduleId));
     }
   }
 
@@ -375,6 +394,17 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
   @Override
   public void deleteSchedules(Iterable<? extends ScheduleId> scheduleIds) throws NotFoundException {
     checkStarted();
+    List<ScheduleId> deletedIds = new ArrayList<>();
+    scheduleIds.forEach(deletedIds::add);
+    triggerKeyIndex.remove(deletedIds);
+    try {
+      deleteSchedulesInStore(scheduleIds);
+    } finally {
+      triggerKeyIndex.refresh(deletedIds);
+    }
+  }
+
+  private void deleteSchedulesInStore(Iterable<? extends ScheduleId> scheduleIds) throws NotFoundException {
     execute((StoreQueueAndProfileTxRunnable<Void, Exception>) (store, queue, profileDataset) -> {
       long deleteTime = System.currentTimeMillis();
       List<ProgramSchedule> toNotify = new ArrayList<>();
@@ -405,6 +435,15 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
   @Override
   public void deleteSchedules(ApplicationId appId) {
     checkStarted();
+    triggerKeyIndex.remove(appId);
+    try {
+      deleteSchedulesInStore(appId);
+    } finally {
+      triggerKeyIndex.refresh(appId);
+    }
+  }
+
+  private void deleteSchedulesInStore(ApplicationId appId) {
     execute((StoreQueueAndProfileTxRunnable<Void, Exception>) (store, queue, profileDataset) -> {
       long deleteTime = System.currentTimeMillis();
       List<ProgramSchedule> schedules = store.listSchedules(appId);
@@ -436,6 +475,15 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
   @Override
   public void deleteSchedules(ProgramId programId) {
     checkStarted();
+    triggerKeyIndex.remove(programId);
+    try {
+      deleteSchedulesInStore(programId);
+    } finally {
+      triggerKeyIndex.refresh(programId.getParent());
+    }
+  }
+
+  private void deleteSchedulesInStore(ProgramId programId) {
     execute((StoreQueueAndProfileTxRunnable<Void, Exception>) (store, queue, profileDataset) -> {
       long deleteTime = System.currentTimeMillis();
       List<ProgramSchedule> schedules = store.listSchedules(programId);
@@ -467,11 +515,20 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
   @Override
   public void modifySchedulesTriggeredByDeletedProgram(ProgramId programId) {
     checkStarted();
-    execute((StoreAndQueueTxRunnable<Void, Exception>) (store, queue) -> {
-      List<ProgramSchedule> deletedSchedules = store.modifySchedulesTriggeredByDeletedProgram(programId);
-      deletedSchedules.forEach(adminEventPublisher::publishScheduleDeletion);
-      return null;
-    }, RuntimeException.class);
+    Set<ScheduleId> modifiedIds = triggerKeyIndex.getScheduleIds(
+      Arrays.stream(ProgramStatus.values())
+        .map(status -> Schedulers.triggerKeyForProgramStatus(programId, status))
+        .collect(Collectors.toList()));
+    triggerKeyIndex.remove(modifiedIds);
+    try {
+      execute((StoreAndQueueTxRunnable<Void, Exception>) (store, queue) -> {
+        List<ProgramSchedule> deletedSchedules = store.modifySchedulesTriggeredByDeletedProgram(programId);
+        deletedSchedules.forEach(adminEventPublisher::publishScheduleDeletion);
+        return null;
+      }, RuntimeException.class);
+    } finally {
+      triggerKeyIndex.refresh(modifiedIds);
+    }
   }
 
   @Override
@@ -528,6 +585,10 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
   @Override
   public Collection<ProgramScheduleRecord> findSchedules(String triggerKey) {
     checkStarted();
+    Collection<ProgramScheduleRecord> records = triggerKeyIndex.findSchedules(triggerKey);
+    if (records != null) {
+      return records;
+    }
     return execute(store -> store.findSchedules(triggerKey), RuntimeException.class);
   }
 
@@ -535,6 +596,9 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
   public void reEnableSchedules(NamespaceId namespaceId, long startTimeMillis, long endTimeMillis)
     throws ConflictException {
     checkStarted();
+    List<ScheduleId> enabledIds = new ArrayList<>();
+    // Match notifications against the store until the enabled schedules are refreshed in the index
+    triggerKeyIndex.beginUpdate();
     try {
       execute((StoreTxRunnable<Void, Exception>) store -> {
         List<ProgramSchedule> schedules = store.listSchedulesSuspended(namespaceId, startTimeMillis, endTimeMillis);
@@ -543,6 +607,8 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
         for (ScheduleId scheduleId : scheduleIds) {
           enableScheduleInternal(store, scheduleId);
         }
+        enabledIds.clear();
+        enabledIds.addAll(scheduleIds);
         return null;
       }, Exception.class);
     } catch (ConflictException e) {
@@ -552,6 +618,8 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
       throw new RuntimeException("Exception occurs when enabling schedules", e);
     } catch (Exception e) {
       throw Throwables.propagate(e);
+    } finally {
+      triggerKeyIndex.endUpdate(enabledIds);
     }
   }
 
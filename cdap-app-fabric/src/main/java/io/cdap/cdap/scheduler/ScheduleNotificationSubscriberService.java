@@ -49,12 +49,16 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
@@ -68,16 +72,22 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
   private final CConfiguration cConf;
   private final MessagingService messagingService;
   private final MetricsCollectionService metricsCollectionService;
+  private final ConstraintCheckNotifier constraintCheckNotifier;
+  private final TriggerKeyIndex triggerKeyIndex;
   private final List<Service> subscriberServices;
   private ScheduledExecutorService subscriberExecutor;
 
   @Inject
   ScheduleNotificationSubscriberService(CConfiguration cConf, MessagingService messagingService,
                                         MetricsCollectionService metricsCollectionService,
-                                        TransactionRunner transactionRunner) {
+                                        TransactionRunner transactionRunner,
+                                        ConstraintCheckNotifier constraintCheckNotifier,
+                                        TriggerKeyIndex triggerKeyIndex) {
     this.cConf = cConf;
     this.messagingService = messagingService;
     this.metricsCollectionService = metricsCollectionService;
+    this.constraintCheckNotifier = constraintCheckNotifier;
+    this.triggerKeyIndex = triggerKeyIndex;
     this.subscriberServices = Arrays.asList(new SchedulerEventSubscriberService(transactionRunner),
                                             new DataEventSubscriberService(transactionRunner),
                                             new ProgramStatusEventSubscriberService(transactionRunner));
@@ -91,6 +101,13 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
     subscriberExecutor = Executors.newScheduledThreadPool(
       1, Threads.createDaemonThreadFactory("scheduler-notification-subscriber-%d"));
 
+    // Rebuild the trigger key index in the same thread as the subscribers. The first rebuild runs before
+    // any notification is processed. Until the index is loaded, the schedule store is used for matching.
+    if (cConf.getBoolean(Constants.Scheduler.TRIGGER_INDEX_ENABLED)) {
+      long rebuildInterval = cConf.getLong(Constants.Scheduler.TRIGGER_INDEX_REBUILD_INTERVAL_SECONDS);
+      subscriberExecutor.scheduleWithFixedDelay(this::rebuildTriggerKeyIndex, 0, rebuildInterval, TimeUnit.SECONDS);
+    }
+
     // Start all subscriber services. All of them has no-op in start, so they shouldn't fail.
     Futures.successfulAsList(subscriberServices.stream().map(Service::start).collect(Collectors.toList())).get();
   }
@@ -111,15 +128,29 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
     }
 
     subscriberExecutor.shutdownNow();
+    triggerKeyIndex.clear();
     LOG.info("Stopped {}", getClass().getSimpleName());
   }
 
+  private void rebuildTriggerKeyIndex() {
+    try {
+      triggerKeyIndex.rebuild();
+    } catch (Exception e) {
+      // Exception must not be propagated, otherwise the rebuild will not be scheduled again
+      LOG.warn("Failed to rebuild the trigger key index. The schedule store will be used until it is rebuilt.", e);
+    }
+  }
+
   /**
    * Abstract base class for implementing job queue logic for various kind of notifications.
    * No transactions should be started in any of the overrided methods since they are already wrapped in a transaction.
    */
   private abstract class AbstractSchedulerSubscriberService extends AbstractNotificationSubscriberService {
 
+    // Changes are collected while processing messages and notified after the transaction is committed
+    private final Set<ScheduleId> changedSchedules = new HashSet<>();
+    private final Set<ProgramId> changedPrograms = new HashSet<>();
+
     AbstractSchedulerSubscriberService(String name, String topic, int fetchSize,
                                        TransactionRunner transactionRunner) {
       super(name, cConf, topic, fetchSize, cConf.getLong(Constants.Scheduler.EVENT_POLL_DELAY_MILLIS),
@@ -148,11 +179,49 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
       }
     }
 
+    @Override
+    protected void postProcess() {
+      if (!changedSchedules.isEmpty()) {
+        constraintCheckNotifier.schedulesChanged(changedSchedules);
+        changedSchedules.clear();
+      }
+      if (!changedPrograms.isEmpty()) {
+        constraintCheckNotifier.programsChanged(changedPrograms);
+        changedPrograms.clear();
+      }
+    }
+
     @Override
     protected ScheduledExecutorService executor() {
       return subscriberExecutor;
     }
 
+    /**
+     * Adds a notification to the job queue for the given schedule.
+     */
+    protected void addNotification(JobQueueTable jobQueue, ProgramScheduleRecord schedule,
+                                   Notification notification) throws IOException {
+      jobQueue.addNotification(schedule, notification);
+      changedSchedules.add(schedule.getSchedule().getScheduleId());
+    }
+
+    /**
+     * Finds all schedules that have a trigger with the given trigger key, using the trigger key index if it is
+     * loaded, otherwise the schedule store.
+     */
+    protected Collection<ProgramScheduleRecord> findSchedules(ProgramScheduleStoreDataset scheduleStore,
+                                                              String triggerKey) throws IOException {
+      Collection<ProgramScheduleRecord> records = triggerKeyIndex.findSchedules(triggerKey);
+      return records == null ? scheduleStore.findSchedules(triggerKey) : records;
+    }
+
+    /**
+     * Records that a run of the given program has changed status.
+     */
+    protected void programChanged(ProgramId programId) {
+      changedPrograms.add(programId);
+    }
+
     /**
      * Processes a single {@link Notification}.
      */
@@ -206,7 +275,7 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
         LOG.warn("Ignore notification that doesn't have a schedule {} associated with, {}", scheduleId, notification);
         return;
       }
-      jobQueue.addNotification(record, notification);
+      addNotification(jobQueue, record, notification);
     }
   }
 
@@ -230,8 +299,8 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
       }
       DatasetId datasetId = DatasetId.fromString(datasetIdString);
       for (ProgramScheduleRecord schedule :
-        scheduleStore.findSchedules(Schedulers.triggerKeyForPartition(datasetId))) {
-        jobQueue.addNotification(schedule, notification);
+        findSchedules(scheduleStore, Schedulers.triggerKeyForPartition(datasetId))) {
+        addNotification(jobQueue, schedule, notification);
       }
     }
   }
@@ -253,6 +322,16 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
       String programRunIdString = notification.getProperties().get(ProgramOptionConstants.PROGRAM_RUN_ID);
       String programRunStatusString = notification.getProperties().get(ProgramOptionConstants.PROGRAM_STATUS);
 
+      // Ignore notifications which specify an invalid programRunId
+      if (programRunIdString == null) {
+        return;
+      }
+      ProgramRunId programRunId = GSON.fromJson(programRunIdString, ProgramRunId.class);
+      ProgramId programId = programRunId.getParent();
+      // Any status change, including the ones that are not meant to be scheduled, may change the results of
+      // constraints of jobs for the program
+      programChanged(programId);
+
       ProgramStatus programStatus;
       try {
         programStatus = ProgramRunStatus.toProgramStatus(ProgramRunStatus.valueOf(programRunStatusString));
@@ -261,17 +340,15 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
         return;
       }
 
-      // Ignore notifications which specify an invalid programRunId or programStatus
-      if (programRunIdString == null || programStatus == null) {
+      // Ignore notifications which specify an invalid programStatus
+      if (programStatus == null) {
         return;
       }
 
-      ProgramRunId programRunId = GSON.fromJson(programRunIdString, ProgramRunId.class);
-      ProgramId programId = programRunId.getParent();
       String triggerKeyForProgramStatus = Schedulers.triggerKeyForProgramStatus(programId, programStatus);
 
-      for (ProgramScheduleRecord schedule : scheduleStore.findSchedules(triggerKeyForProgramStatus)) {
-        jobQueue.addNotification(schedule, notification);
+      for (ProgramScheduleRecord schedule : findSchedules(scheduleStore, triggerKeyForProgramStatus)) {
+        addNotification(jobQueue, schedule, notification);
       }
     }
   }
@@ -0,0 +1,308 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.scheduler;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.cdap.cdap.common.NotFoundException;
+import io.cdap.cdap.internal.app.runtime.schedule.ProgramSchedule;
+import io.cdap.cdap.internal.app.runtime.schedule.ProgramScheduleRecord;
+import io.cdap.cdap.internal.app.runtime.schedule.store.ProgramScheduleStoreDataset;
+import io.cdap.cdap.internal.app.runtime.schedule.store.Schedulers;
+import io.cdap.cdap.internal.app.runtime.schedule.trigger.SatisfiableTrigger;
+import io.cdap.cdap.proto.id.ApplicationId;
+import io.cdap.cdap.proto.id.ProgramId;
+import io.cdap.cdap.proto.id.ScheduleId;
+import io.cdap.cdap.spi.data.transaction.TransactionRunner;
+import io.cdap.cdap.spi.data.transaction.TransactionRunners;
+import io.cdap.cdap.spi.data.transaction.TxCallable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+
+/**
+ * An in-memory inverted index from trigger key to the schedules that have a trigger with that key, such that
+ * notifications can be matched to schedules without reading the schedule store.
+ *
+ * The index is loaded by {@link #rebuild()}. Changes made to the schedule store must be applied to the index by
+ * removing the affected schedules before the change, and refreshing them from the store after the change is
+ * committed. Changes that add or enable schedules must be wrapped with {@link #beginUpdate()} and
+ * {@link #endUpdate(Collection)}, such that notifications arriving between the commit and the refresh are matched
+ * against the schedule store. If a refresh fails after retries, the index becomes unloaded until the next rebuild.
+ * While the index is unloaded or an update is in progress, {@link #findSchedules(String)} returns {@code null} to
+ * indicate that the schedule store should be used instead.
+ *
+ * This class is thread safe.
+ */
+@Singleton
+class TriggerKeyIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TriggerKeyIndex.class);
+  private static final int REFRESH_ATTEMPTS = 3;
+
+  private final TransactionRunner transactionRunner;
+  // Serializes reading from the schedule store and applying the result, such that a later refresh always wins
+  private final Object refreshLock = new Object();
+  private final Map<ScheduleId, ProgramScheduleRecord> records = new HashMap<>();
+  private final SetMultimap<String, ScheduleId> triggerKeys = HashMultimap.create();
+  private boolean loaded;
+  private int pendingUpdates;
+
+  @Inject
+  TriggerKeyIndex(TransactionRunner transactionRunner) {
+    this.transactionRunner = transactionRunner;
+  }
+
+  /**
+   * Returns whether the index is loaded.
+   */
+  synchronized boolean isLoaded() {
+    return loaded;
+  }
+
+  /**
+   * Finds all schedules that have a trigger with the given trigger key.
+   *
+   * @param triggerKey the trigger key to look up
+   * @return the schedule records that are triggered by the key, or {@code null} if the index is not loaded or
+   *         an update is in progress
+   */
+  @Nullable
+  synchronized Collection<ProgramScheduleRecord> findSchedules(String triggerKey) {
+    if (!loaded || pendingUpdates > 0) {
+      return null;
+    }
+    List<ProgramScheduleRecord> result = new ArrayList<>();
+    for (ScheduleId scheduleId : triggerKeys.get(triggerKey)) {
+      result.add(records.get(scheduleId));
+    }
+    return result;
+  }
+
+  /**
+   * Reloads the index with all the schedules in the schedule store.
+   */
+  void rebuild() throws IOException {
+    synchronized (refreshLock) {
+      List<ProgramScheduleRecord> allRecords = TransactionRunners.run(
+        transactionRunner, (TxCallable<List<ProgramScheduleRecord>>) context -> {
+          return Schedulers.getScheduleStore(context).listScheduleRecords();
+        }, IOException.class);
+
+      synchronized (this) {
+        records.clear();
+        triggerKeys.clear();
+        allRecords.forEach(this::put);
+        loaded = true;
+      }
+      LOG.debug("Loaded {} schedules into the trigger key index", allRecords.size());
+    }
+  }
+
+  /**
+   * Removes all the schedules from the index and marks it as not loaded.
+   */
+  void clear() {
+    synchronized (refreshLock) {
+      synchronized (this) {
+        records.clear();
+        triggerKeys.clear();
+        loaded = false;
+      }
+    }
+  }
+
+  /**
+   * Removes the given schedules from the index.
+   */
+  synchronized void remove(Collection<? extends ScheduleId> scheduleIds) {
+    scheduleIds.forEach(this::remove);
+  }
+
+  /**
+   * Removes all the schedules of the given application from the index.
+   */
+  void remove(ApplicationId appId) {
+    removeIf(schedule -> appId.equals(schedule.getProgramId().getParent()));
+  }
+
+  /**
+   * Removes all the schedules of the given program from the index.
+   */
+  void remove(ProgramId programId) {
+    removeIf(schedule -> programId.equals(schedule.getProgramId()));
+  }
+
+  /**
+   * Returns the ids of the schedules that have a trigger with any of the given trigger keys.
+   */
+  synchronized Set<ScheduleId> getScheduleIds(Collection<String> keys) {
+    Set<ScheduleId> result = new HashSet<>();
+    for (String key : keys) {
+      result.addAll(triggerKeys.get(key));
+    }
+    return result;
+  }
+
+  /**
+   * Marks the start of a change that adds or enables schedules in the schedule store. Until the matching
+   * {@link #endUpdate(Collection)}, {@link #findSchedules(String)} returns {@code null}.
+   */
+  synchronized void beginUpdate() {
+    pendingUpdates++;
+  }
+
+  /**
+   * Marks the end of a change started by {@link #beginUpdate()}, after reloading the given schedules from the
+   * schedule store.
+   */
+  void endUpdate(Collection<? extends ScheduleId> scheduleIds) {
+    try {
+      refresh(scheduleIds);
+    } finally {
+      synchronized (this) {
+        pendingUpdates--;
+      }
+    }
+  }
+
+  /**
+   * Reloads the given schedules from the schedule store. Schedules that no longer exist are removed from the index.
+   */
+  void refresh(Collection<? extends ScheduleId> scheduleIds) {
+    if (scheduleIds.isEmpty()) {
+      return;
+    }
+    refresh(store -> {
+      Map<ScheduleId, ProgramScheduleRecord> result = new HashMap<>();
+      for (ScheduleId scheduleId : scheduleIds) {
+        try {
+          result.put(scheduleId, store.getScheduleRecord(scheduleId));
+        } catch (NotFoundException e) {
+          result.put(scheduleId, null);
+        }
+      }
+      return result;
+    });
+  }
+
+  /**
+   * Reloads all the schedules of the given application from the schedule store.
+   */
+  void refresh(ApplicationId appId) {
+    refresh(store -> {
+      Map<ScheduleId, ProgramScheduleRecord> result = new HashMap<>();
+      synchronized (this) {
+        // Schedules of the application that are no longer in the store are removed
+        records.keySet().stream()
+          .filter(scheduleId -> appId.equals(scheduleId.getParent()))
+          .forEach(scheduleId -> result.put(scheduleId, null));
+      }
+      for (ProgramScheduleRecord record : store.listScheduleRecords(appId)) {
+        result.put(record.getSchedule().getScheduleId(), record);
+      }
+      return result;
+    });
+  }
+
+  /**
+   * Reads schedule records from the schedule store and applies them to the index. A {@code null} record in the
+   * result of the reader means that the schedule no longer exists.
+   */
+  private void refresh(ScheduleStoreReader reader) {
+    synchronized (refreshLock) {
+      if (!isLoaded()) {
+        return;
+      }
+      for (int attempt = 1; ; attempt++) {
+        try {
+          Map<ScheduleId, ProgramScheduleRecord> result = TransactionRunners.run(
+            transactionRunner, (TxCallable<Map<ScheduleId, ProgramScheduleRecord>>) context -> {
+              return reader.read(Schedulers.getScheduleStore(context));
+            }, IOException.class);
+
+          synchronized (this) {
+            for (Map.Entry<ScheduleId, ProgramScheduleRecord> entry : result.entrySet()) {
+              remove(entry.getKey());
+              if (entry.getValue() != null) {
+                put(entry.getValue());
+              }
+            }
+          }
+          return;
+        } catch (Exception e) {
+          if (attempt >= REFRESH_ATTEMPTS) {
+            // Fallback to use the schedule store until the index is rebuilt
+            LOG.warn("Failed to refresh schedules in the trigger key index after {} attempts. "
+                       + "The index will be rebuilt.", attempt, e);
+            clear();
+            return;
+          }
+          LOG.debug("Failed to refresh schedules in the trigger key index. Retrying.", e);
+        }
+      }
+    }
+  }
+
+  private synchronized void removeIf(Predicate<ProgramSchedule> predicate) {
+    Iterator<ProgramScheduleRecord> iterator = records.values().iterator();
+    while (iterator.hasNext()) {
+      ProgramSchedule schedule = iterator.next().getSchedule();
+      if (predicate.test(schedule)) {
+        iterator.remove();
+        getTriggerKeys(schedule).forEach(key -> triggerKeys.remove(key, schedule.getScheduleId()));
+      }
+    }
+  }
+
+  private void put(ProgramScheduleRecord record) {
+    ProgramSchedule schedule = record.getSchedule();
+    records.put(schedule.getScheduleId(), record);
+    getTriggerKeys(schedule).forEach(key -> triggerKeys.put(key, schedule.getScheduleId()));
+  }
+
+  private void remove(ScheduleId scheduleId) {
+    ProgramScheduleRecord record = records.remove(scheduleId);
+    if (record != null) {
+      getTriggerKeys(record.getSchedule()).forEach(key -> triggerKeys.remove(key, scheduleId));
+    }
+  }
+
+  private static Set<String> getTriggerKeys(ProgramSchedule schedule) {
+    return ((SatisfiableTrigger) schedule.getTrigger()).getTriggerKeys();
+  }
+
+  /**
+   * Reads schedule records from the schedule store.
+   */
+  private interface ScheduleStoreReader {
+    Map<ScheduleId, ProgramScheduleRecord> read(ProgramScheduleStoreDataset store) throws IOException;
+  }
+}
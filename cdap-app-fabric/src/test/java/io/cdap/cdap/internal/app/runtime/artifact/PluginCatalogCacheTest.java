@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.app.runtime.artifact;
+
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit test for {@link PluginCatalogCache}.
+ */
+public class PluginCatalogCacheTest {
+
+  @Test
+  public void testVersioning() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.setBoolean(Constants.AppFabric.ARTIFACT_PLUGIN_CACHE_ENABLED, true);
+    PluginCatalogCache cache = new PluginCatalogCache(cConf);
+    AtomicInteger loads = new AtomicInteger();
+
+    // The value is loaded once and then served from the cache
+    long version = cache.getVersion();
+    Assert.assertEquals("v1", cache.get("key", version, () -> "v" + loads.incrementAndGet()));
+    Assert.assertEquals("v1", cache.get("key", version, () -> "v" + loads.incrementAndGet()));
+    Assert.assertEquals(1, loads.get());
+
+    // Invalidation removes the cached value
+    cache.invalidate();
+    Assert.assertEquals("v2", cache.get("key", cache.getVersion(), () -> "v" + loads.incrementAndGet()));
+
+    // A value loaded with a version obtained before an invalidation is not cached
+    long staleVersion = cache.getVersion();
+    cache.invalidate();
+    Assert.assertEquals("v3", cache.get("key", staleVersion, () -> "v" + loads.incrementAndGet()));
+    Assert.assertEquals("v4", cache.get("key", cache.getVersion(), () -> "v" + loads.incrementAndGet()));
+    Assert.assertEquals("v4", cache.get("key", cache.getVersion(), () -> "v" + loads.incrementAndGet()));
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.setBoolean(Constants.AppFabric.ARTIFACT_PLUGIN_CACHE_ENABLED, false);
+    PluginCatalogCache cache = new PluginCatalogCache(cConf);
+    AtomicInteger loads = new AtomicInteger();
+
+    Assert.assertEquals("v1", cache.get("key", cache.getVersion(), () -> "v" + loads.incrementAndGet()));
+    Assert.assertEquals("v2", cache.get("key", cache.getVersion(), () -> "v" + loads.incrementAndGet()));
+
+    cache = PluginCatalogCache.disabled();
+    Assert.assertEquals("v3", cache.get("key", cache.getVersion(), () -> "v" + loads.incrementAndGet()));
+    Assert.assertEquals("v4", cache.get("key", cache.getVersion(), () -> "v" + loads.incrementAndGet()));
+  }
+}
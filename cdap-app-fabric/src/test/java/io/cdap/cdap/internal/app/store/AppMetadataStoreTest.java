@@ -22,6 +22,7 @@ import com.google.common.collect.Lists;
 import io.cdap.cdap.AllProgramsApp;
 import io.cdap.cdap.api.app.ApplicationSpecification;
 import io.cdap.cdap.api.artifact.ArtifactId;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.app.store.ScanApplicationsRequest;
 import io.cdap.cdap.common.app.RunIds;
 import io.cdap.cdap.internal.AppFabricTestHelper;
@@ -35,8 +36,11 @@ import io.cdap.cdap.proto.id.ProfileId;
 import io.cdap.cdap.proto.id.ProgramId;
 import io.cdap.cdap.proto.id.ProgramRunId;
 import io.cdap.cdap.spi.data.SortOrder;
+import io.cdap.cdap.spi.data.StructuredRow;
+import io.cdap.cdap.spi.data.table.field.Range;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import io.cdap.cdap.spi.data.transaction.TransactionRunners;
+import io.cdap.cdap.store.StoreDefinition;
 import org.apache.twill.api.RunId;
 import org.junit.Assert;
 import org.junit.Before;
@@ -472,6 +476,115 @@ public abstract class AppMetadataStoreTest {
     });
   }
 
+  @Test
+  public void testRunningInRangeTimeIndex() throws Exception {
+    // Add completed runs that start every 20 minutes and run for different durations, spanning multiple hours
+    long baseTime = TimeUnit.DAYS.toSeconds(10);
+    List<ProgramRunId> programRunIds = new ArrayList<>();
+    for (int i = 0; i < 60; i++) {
+      long startTime = baseTime + TimeUnit.MINUTES.toSeconds(20) * i;
+      long stopTime = startTime + TimeUnit.MINUTES.toSeconds(17) * (i % 7);
+      programRunIds.add(recordCompletedRun(NamespaceId.DEFAULT.app("app" + (i % 3)), i, startTime, stopTime));
+    }
+    // A run that is running for too long to be indexed in each time bucket
+    recordCompletedRun(NamespaceId.DEFAULT.app("app0"), 60, baseTime - TimeUnit.DAYS.toSeconds(20),
+                       baseTime + TimeUnit.DAYS.toSeconds(10));
+
+    // Time ranges relative to the base time, covering bucket boundaries, single bucket and empty ranges
+    long[][] ranges = {
+      {0, 1}, {0, 3600}, {3599, 3601}, {1200, 1200}, {1800, 900}, {-7200, 0}, {-3600, 3600 * 30},
+      {3600 * 5, 3600 * 5 + 59}, {3600 * 19, 3600 * 30}, {3600 * 20, 3600 * 21}, {7000, 22000},
+      {-3600 * 24 * 25, -3600 * 24 * 19}, {-3600 * 24 * 30, -3600 * 24 * 21}
+    };
+    assertTimeIndexQueries(baseTime, ranges);
+
+    // Before the index is marked as completed, the run records are scanned. Otherwise the index is used.
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      Assert.assertFalse(store.isRunRecordsTimeIndexed());
+      Assert.assertEquals(store.getRunningInRangeForStatus("runRecordCompleted", baseTime, baseTime + 7200),
+                          store.getRunningInRangeCompleted(baseTime, baseTime + 7200));
+      store.setRunRecordsTimeIndexed();
+      Assert.assertTrue(store.isRunRecordsTimeIndexed());
+      Assert.assertEquals(store.getRunningInRangeFromTimeIndex(baseTime, baseTime + 7200),
+                          store.getRunningInRangeCompleted(baseTime, baseTime + 7200));
+    });
+
+    // Deleted runs are removed from the index
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      for (int i = 0; i < programRunIds.size(); i += 4) {
+        ProgramRunId programRunId = programRunIds.get(i);
+        Assert.assertNotNull(store.deleteRunIfTerminated(programRunId, store.getRun(programRunId).getSourceId()));
+      }
+    });
+    assertTimeIndexQueries(baseTime, ranges);
+
+    // Deleting the program history removes the runs from the index
+    TransactionRunners.run(transactionRunner, context -> {
+      ApplicationId app1 = NamespaceId.DEFAULT.app("app1");
+      AppMetadataStore.create(context).deleteProgramHistory(app1.getNamespace(), app1.getApplication(),
+                                                            app1.getVersion());
+      try (CloseableIterator<StructuredRow> iterator = context.getTable(
+        StoreDefinition.AppMetadataStore.RUN_RECORDS_TIME_INDEX).scan(Range.all(), Integer.MAX_VALUE)) {
+        Assert.assertTrue(iterator.hasNext());
+        while (iterator.hasNext()) {
+          Assert.assertNotEquals("app1", iterator.next().getString(StoreDefinition.AppMetadataStore.APPLICATION_FIELD));
+        }
+      }
+    });
+    assertTimeIndexQueries(baseTime, ranges);
+
+    // Remove the index and backfill it from the run records
+    TransactionRunners.run(transactionRunner, context -> {
+      context.getTable(StoreDefinition.AppMetadataStore.RUN_RECORDS_TIME_INDEX).deleteAll(Range.all());
+      Assert.assertTrue(AppMetadataStore.create(context).getRunningInRangeFromTimeIndex(0, Long.MAX_VALUE).isEmpty());
+    });
+    AppMetadataStore.Cursor cursor = AppMetadataStore.Cursor.EMPTY;
+    int batches = 0;
+    do {
+      AppMetadataStore.Cursor currentCursor = cursor;
+      cursor = TransactionRunners.run(transactionRunner, context -> {
+        return AppMetadataStore.create(context).backfillRunRecordsTimeIndex(currentCursor, 7);
+      });
+      batches++;
+    } while (cursor != AppMetadataStore.Cursor.EMPTY);
+    // 31 remaining runs in batches of 7, plus the last empty batch
+    Assert.assertEquals(6, batches);
+    assertTimeIndexQueries(baseTime, ranges);
+  }
+
+  private void assertTimeIndexQueries(long baseTime, long[][] ranges) {
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      for (long[] range : ranges) {
+        long startTime = baseTime + range[0];
+        long endTime = baseTime + range[1];
+        Assert.assertEquals("Mismatch for range " + Arrays.toString(range),
+                            store.getRunningInRangeForStatus("runRecordCompleted", startTime, endTime),
+                            store.getRunningInRangeFromTimeIndex(startTime, endTime));
+      }
+    });
+  }
+
+  private ProgramRunId recordCompletedRun(ApplicationId application, int i, long startTime, long stopTime) {
+    return TransactionRunners.run(transactionRunner, context -> {
+      return recordCompletedRun(AppMetadataStore.create(context), application, i, startTime, stopTime);
+    });
+  }
+
+  private ProgramRunId recordCompletedRun(AppMetadataStore store, ApplicationId application, int i,
+                                          long startTime, long stopTime) throws IOException {
+    ProgramRunId programRunId = application.program(ProgramType.WORKFLOW, "program" + (i % 2))
+      .run(RunIds.generate(TimeUnit.SECONDS.toMillis(startTime)));
+    recordProvisionAndStart(programRunId, store);
+    store.recordProgramRunning(programRunId, startTime, null,
+                               AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+    store.recordProgramStop(programRunId, stopTime, STOP_STATUSES.get(i % STOP_STATUSES.size()), null,
+                            AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+    return programRunId;
+  }
+
   @Test
   public void testGetRuns() throws Exception {
     // Add some run records
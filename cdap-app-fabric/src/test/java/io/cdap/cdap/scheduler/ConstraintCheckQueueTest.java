@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.scheduler;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.cdap.cdap.internal.app.runtime.schedule.ProgramSchedule;
+import io.cdap.cdap.internal.app.runtime.schedule.queue.Job;
+import io.cdap.cdap.internal.app.runtime.schedule.queue.SimpleJob;
+import io.cdap.cdap.internal.app.runtime.schedule.trigger.TimeTrigger;
+import io.cdap.cdap.proto.id.ApplicationId;
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.proto.id.WorkflowId;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit test for {@link ConstraintCheckQueue}.
+ */
+public class ConstraintCheckQueueTest {
+
+  private static final ApplicationId APP_ID = NamespaceId.DEFAULT.app("app");
+  private static final WorkflowId WORKFLOW1 = APP_ID.workflow("wf1");
+  private static final WorkflowId WORKFLOW2 = APP_ID.workflow("wf2");
+
+  @Test
+  public void testDueJobs() {
+    ConstraintCheckQueue queue = new ConstraintCheckQueue();
+    Job job1 = createJob("s1", WORKFLOW1);
+    Job job2 = createJob("s2", WORKFLOW1);
+    Job job3 = createJob("s3", WORKFLOW2);
+
+    Assert.assertEquals(Long.MAX_VALUE, queue.getNextCheckTime());
+    queue.schedule(job1, 300L);
+    queue.schedule(job2, 100L);
+    queue.schedule(job3, 200L);
+    Assert.assertEquals(3, queue.size());
+    Assert.assertEquals(100L, queue.getNextCheckTime());
+
+    // Rescheduling replaces the previous check time
+    queue.schedule(job2, 400L);
+    Assert.assertEquals(200L, queue.getNextCheckTime());
+    Assert.assertTrue(queue.pollDueJobs(199L).isEmpty());
+    Assert.assertEquals(Arrays.asList(job3.getJobKey(), job1.getJobKey()), queue.pollDueJobs(300L));
+    Assert.assertEquals(1, queue.size());
+
+    // Removed jobs are not returned
+    queue.remove(job2.getJobKey());
+    Assert.assertEquals(0, queue.size());
+    Assert.assertEquals(Long.MAX_VALUE, queue.getNextCheckTime());
+    Assert.assertTrue(queue.pollDueJobs(Long.MAX_VALUE).isEmpty());
+  }
+
+  @Test
+  public void testProgramChanged() {
+    ConstraintCheckQueue queue = new ConstraintCheckQueue();
+    Job job1 = createJob("s1", WORKFLOW1);
+    Job job2 = createJob("s2", WORKFLOW1);
+    Job job3 = createJob("s3", WORKFLOW2);
+    queue.schedule(job1, 1000L);
+    queue.schedule(job2, 2000L);
+    queue.schedule(job3, 3000L);
+
+    // Jobs of the changed program are due immediately
+    queue.programChanged(WORKFLOW1);
+    Assert.assertEquals(0L, queue.getNextCheckTime());
+    Assert.assertEquals(ImmutableSet.of(job1.getJobKey(), job2.getJobKey()),
+                        ImmutableSet.copyOf(queue.pollDueJobs(0L)));
+    Assert.assertEquals(3000L, queue.getNextCheckTime());
+
+    // Polled jobs are no longer affected by program changes
+    queue.programChanged(WORKFLOW1);
+    Assert.assertEquals(3000L, queue.getNextCheckTime());
+  }
+
+  @Test
+  public void testChangedSchedules() throws InterruptedException {
+    ConstraintCheckQueue queue = new ConstraintCheckQueue();
+    Job job = createJob("s1", WORKFLOW1);
+    queue.schedule(job, Long.MAX_VALUE);
+    queue.scheduleChanged(job.getSchedule().getScheduleId());
+
+    // Clearing the queue retains the changed schedules
+    queue.clear();
+    Assert.assertEquals(0, queue.size());
+    Assert.assertEquals(Collections.singleton(job.getSchedule().getScheduleId()), queue.pollChangedSchedules());
+    Assert.assertTrue(queue.pollChangedSchedules().isEmpty());
+
+    // Waiting returns when the deadline is reached
+    long startTime = System.currentTimeMillis();
+    queue.await(startTime + 100L);
+    Assert.assertTrue(System.currentTimeMillis() - startTime >= 100L);
+
+    // Waiting returns when a schedule is changed
+    CountDownLatch latch = new CountDownLatch(1);
+    Thread thread = new Thread(() -> {
+      try {
+        queue.await(Long.MAX_VALUE);
+        latch.countDown();
+      } catch (InterruptedException e) {
+        // exit
+      }
+    });
+    thread.start();
+    queue.scheduleChanged(job.getSchedule().getScheduleId());
+    Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+    // Waiting returns when a job becomes due
+    queue.pollChangedSchedules();
+    CountDownLatch dueLatch = new CountDownLatch(1);
+    thread = new Thread(() -> {
+      try {
+        queue.await(Long.MAX_VALUE);
+        dueLatch.countDown();
+      } catch (InterruptedException e) {
+        // exit
+      }
+    });
+    thread.start();
+    queue.schedule(job, System.currentTimeMillis() + 100L);
+    Assert.assertTrue(dueLatch.await(10, TimeUnit.SECONDS));
+  }
+
+  private Job createJob(String scheduleName, WorkflowId workflowId) {
+    ProgramSchedule schedule = new ProgramSchedule(scheduleName, "time schedule", workflowId,
+                                                   ImmutableMap.of(), new TimeTrigger("* * * * *"),
+                                                   ImmutableList.of());
+    return new SimpleJob(schedule, 0, System.currentTimeMillis(), Collections.emptyList(),
+                         Job.State.PENDING_CONSTRAINT, 0L);
+  }
+}
@@ -18,6 +18,7 @@ package io.cdap.cdap.scheduler;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Service;
@@ -57,10 +58,12 @@ import io.cdap.cdap.internal.app.runtime.ProgramOptionConstants;
 import io.cdap.cdap.internal.app.runtime.SimpleProgramOptions;
 import io.cdap.cdap.internal.app.runtime.SystemArguments;
 import io.cdap.cdap.internal.app.runtime.schedule.ProgramSchedule;
+import io.cdap.cdap.internal.app.runtime.schedule.ProgramScheduleRecord;
 import io.cdap.cdap.internal.app.runtime.schedule.ProgramScheduleStatus;
 import io.cdap.cdap.internal.app.runtime.schedule.TriggeringScheduleInfoAdapter;
 import io.cdap.cdap.internal.app.runtime.schedule.queue.Job;
 import io.cdap.cdap.internal.app.runtime.schedule.queue.JobQueueTable;
+import io.cdap.cdap.internal.app.runtime.schedule.store.Schedulers;
 import io.cdap.cdap.internal.app.runtime.schedule.trigger.PartitionTrigger;
 import io.cdap.cdap.internal.app.runtime.schedule.trigger.TimeTrigger;
 import io.cdap.cdap.internal.app.services.http.AppFabricTestBase;
@@ -101,10 +104,13 @@ import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
 public class CoreSchedulerServiceTest extends AppFabricTestBase {
@@ -260,6 +266,76 @@ public class CoreSchedulerServiceTest extends AppFabricTestBase {
     Assert.assertEquals(ImmutableList.of(psched2), scheduler.listSchedules(PROG2_ID));
   }
 
+  @Test
+  public void testTriggerKeyIndex() throws Exception {
+    TriggerKeyIndex triggerKeyIndex = getInjector().getInstance(TriggerKeyIndex.class);
+    Tasks.waitFor(true, triggerKeyIndex::isLoaded, 10, TimeUnit.SECONDS);
+    String triggerKey1 = Schedulers.triggerKeyForPartition(DS1_ID);
+    String triggerKey2 = Schedulers.triggerKeyForPartition(DS2_ID);
+
+    ProgramSchedule psched1 = new ProgramSchedule("psched1", "one partition schedule", PROG1_ID,
+                                                  ImmutableMap.of(), new PartitionTrigger(DS1_ID, 1),
+                                                  Collections.emptyList());
+    ProgramSchedule psched2 = new ProgramSchedule("psched2", "two partition schedule", PROG2_ID,
+                                                  ImmutableMap.of(), new PartitionTrigger(DS2_ID, 2),
+                                                  Collections.emptyList());
+    scheduler.addSchedules(ImmutableList.of(psched1, psched2));
+    assertIndexedSchedules(triggerKeyIndex, triggerKey1, ProgramScheduleStatus.SUSPENDED, psched1);
+    assertIndexedSchedules(triggerKeyIndex, triggerKey2, ProgramScheduleStatus.SUSPENDED, psched2);
+
+    // Status changes are reflected in the index
+    scheduler.enableSchedule(PSCHED1_ID);
+    assertIndexedSchedules(triggerKeyIndex, triggerKey1, ProgramScheduleStatus.SCHEDULED, psched1);
+    scheduler.disableSchedule(PSCHED1_ID);
+    assertIndexedSchedules(triggerKeyIndex, triggerKey1, ProgramScheduleStatus.SUSPENDED, psched1);
+
+    // While an update is in progress, notifications are matched against the schedule store
+    triggerKeyIndex.beginUpdate();
+    Assert.assertNull(triggerKeyIndex.findSchedules(triggerKey1));
+    Assert.assertEquals(1, scheduler.findSchedules(triggerKey1).size());
+    triggerKeyIndex.endUpdate(Collections.singleton(PSCHED1_ID));
+    assertIndexedSchedules(triggerKeyIndex, triggerKey1, ProgramScheduleStatus.SUSPENDED, psched1);
+
+    // Failed deletion leaves the index unchanged
+    try {
+      scheduler.deleteSchedules(ImmutableList.of(PSCHED1_ID, TSCHED1_ID));
+      Assert.fail("expected NotFoundException");
+    } catch (NotFoundException e) {
+      // expected
+    }
+    assertIndexedSchedules(triggerKeyIndex, triggerKey1, ProgramScheduleStatus.SUSPENDED, psched1);
+
+    // Rebuilding the index yields the same result
+    triggerKeyIndex.rebuild();
+    assertIndexedSchedules(triggerKeyIndex, triggerKey1, ProgramScheduleStatus.SUSPENDED, psched1);
+    assertIndexedSchedules(triggerKeyIndex, triggerKey2, ProgramScheduleStatus.SUSPENDED, psched2);
+
+    // Deleted schedules are removed from the index
+    scheduler.deleteSchedule(PSCHED1_ID);
+    assertIndexedSchedules(triggerKeyIndex, triggerKey1, ProgramScheduleStatus.SUSPENDED);
+    scheduler.deleteSchedules(APP2_ID);
+    assertIndexedSchedules(triggerKeyIndex, triggerKey2, ProgramScheduleStatus.SUSPENDED);
+  }
+
+  /**
+   * Asserts that the trigger key index and the schedule store have the same schedules for the given trigger key.
+   */
+  private static void assertIndexedSchedules(TriggerKeyIndex triggerKeyIndex, String triggerKey,
+                                             ProgramScheduleStatus expectedStatus,
+                                             ProgramSchedule... expectedSchedules) {
+    Collection<ProgramScheduleRecord> indexed = triggerKeyIndex.findSchedules(triggerKey);
+    Assert.assertNotNull(indexed);
+    Collection<ProgramScheduleRecord> stored = TransactionRunners.run(transactionRunner, context -> {
+      return Schedulers.getScheduleStore(context).findSchedules(triggerKey);
+    });
+    Assert.assertEquals(new HashSet<>(stored), new HashSet<>(indexed));
+    Assert.assertEquals(ImmutableSet.copyOf(expectedSchedules),
+                        indexed.stream().map(ProgramScheduleRecord::getSchedule).collect(Collectors.toSet()));
+    for (ProgramScheduleRecord record : indexed) {
+      Assert.assertEquals(expectedStatus, record.getMeta().getStatus());
+    }
+  }
+
   private static void verifyNotFound(Scheduler scheduler, ScheduleId scheduleId) {
     try {
       scheduler.getSchedule(scheduleId);
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016-2019 Cask Data, Inc.
+ * Copyright © 2016-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -26,6 +26,7 @@ import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.api.spark.AbstractSpark;
 import io.cdap.cdap.api.spark.SparkClientContext;
 import io.cdap.cdap.etl.api.streaming.StreamingSource;
+import io.cdap.cdap.etl.common.CachingLookupProvider;
 import io.cdap.cdap.etl.common.Constants;
 import io.cdap.cdap.etl.common.LocationAwareMDCWrapperLogger;
 import io.cdap.cdap.etl.common.plugin.PipelinePluginContext;
@@ -100,6 +101,8 @@ public class DataStreamsSparkLauncher extends AbstractSpark {
     sparkConf.set("spark.streaming.backpressure.enabled", "true");
     sparkConf.set("spark.spark.streaming.blockInterval", String.valueOf(spec.getBatchIntervalMillis() / 5));
     sparkConf.set("spark.maxRemoteBlockSizeFetchToMem", String.valueOf(Integer.MAX_VALUE - 512));
+    // Schemas are not shared through the SparkConf, since records serialized with a shared schema can only be read
+    // with the same shared schemas, while the records in a checkpoint are read after the pipeline is updated
 
     // spark... makes you set this to at least the number of receivers (streaming sources)
     // because it holds one thread per receiver, or one core in distributed mode.
@@ -149,6 +152,7 @@ public class DataStreamsSparkLauncher extends AbstractSpark {
   @Override
   public void destroy() {
     super.destroy();
+    CachingLookupProvider.releaseCaches(getContext());
     ProgramStatus status = getContext().getState().getStatus();
     WRAPPERLOGGER.info("Pipeline '{}' {}", getContext().getApplicationSpecification().getName(),
                        status == ProgramStatus.COMPLETED ? "succeeded" : status.name().toLowerCase());
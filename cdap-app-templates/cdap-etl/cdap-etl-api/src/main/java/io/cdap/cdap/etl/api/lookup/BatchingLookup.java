@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.api.lookup;
+
+import io.cdap.cdap.etl.api.Lookup;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces single key lookups into batch lookups on a {@link Lookup}. Each lookup is queued with a callback, and the
+ * queued lookups are performed with a single {@link Lookup#lookup(Set)} call once the batch size is reached, or when
+ * {@link #flush()} is called. Callbacks are invoked in the order of the lookups, with the value of the key or
+ * {@code null} if the key has no value.
+ *
+ * This is meant for plugins that process many records at once, such as all the records of a partition, and that can
+ * defer the processing of a record until the value for its key is available. {@link #flush()} must be called after
+ * the last lookup.
+ *
+ * @param <T> the type of object that will be returned for a lookup
+ */
+public class BatchingLookup<T> {
+
+  private final Lookup<T> lookup;
+  private final int batchSize;
+  private final Set<String> keys;
+  private final List<Map.Entry<String, Consumer<T>>> requests;
+
+  /**
+   * @param lookup the lookup to perform the batch lookups on
+   * @param batchSize the number of distinct keys to look up in a single batch
+   */
+  public BatchingLookup(Lookup<T> lookup, int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be greater than 0");
+    }
+    this.lookup = lookup;
+    this.batchSize = batchSize;
+    this.keys = new LinkedHashSet<>();
+    this.requests = new ArrayList<>();
+  }
+
+  /**
+   * Queues a lookup. The batch of queued lookups is performed if it reached the batch size.
+   *
+   * @param key the key to lookup
+   * @param callback the callback to invoke with the value associated with the key
+   */
+  public void lookup(String key, Consumer<T> callback) {
+    keys.add(key);
+    requests.add(new AbstractMap.SimpleImmutableEntry<>(key, callback));
+    if (keys.size() >= batchSize) {
+      flush();
+    }
+  }
+
+  /**
+   * Performs all the queued lookups and invokes their callbacks.
+   */
+  public void flush() {
+    if (requests.isEmpty()) {
+      return;
+    }
+    Map<String, T> values = lookup.lookup(new LinkedHashSet<>(keys));
+    List<Map.Entry<String, Consumer<T>>> batch = new ArrayList<>(requests);
+    // clear before invoking the callbacks, as they may queue more lookups
+    keys.clear();
+    requests.clear();
+    for (Map.Entry<String, Consumer<T>> request : batch) {
+      request.getValue().accept(values.get(request.getKey()));
+    }
+  }
+}
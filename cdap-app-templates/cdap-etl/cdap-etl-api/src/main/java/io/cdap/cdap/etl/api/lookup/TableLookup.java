@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017 Cask Data, Inc.
+ * Copyright © 2017-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,11 +18,15 @@ package io.cdap.cdap.etl.api.lookup;
 
 import com.google.common.collect.ImmutableSet;
 import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.table.Get;
 import io.cdap.cdap.api.dataset.table.Row;
 import io.cdap.cdap.api.dataset.table.Table;
 import io.cdap.cdap.etl.api.Lookup;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -49,9 +53,15 @@ public class TableLookup implements Lookup<Row> {
 
   @Override
   public Map<String, Row> lookup(Set<String> keys) {
-    Map<String, Row> results = new HashMap<>();
+    // read all the rows in one batch
+    List<Get> gets = new ArrayList<>(keys.size());
     for (String key : keys) {
-      results.put(key, lookup(key));
+      gets.add(new Get(key));
+    }
+    Map<String, Row> results = new HashMap<>();
+    Iterator<String> keyIterator = keys.iterator();
+    for (Row row : table.get(gets)) {
+      results.put(keyIterator.next(), row);
     }
     return results;
   }
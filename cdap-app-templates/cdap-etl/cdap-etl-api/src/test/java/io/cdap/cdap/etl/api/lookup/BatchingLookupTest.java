@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.api.lookup;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.cdap.cdap.etl.api.Lookup;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link BatchingLookup}.
+ */
+public class BatchingLookupTest {
+
+  @Test
+  public void testBatching() {
+    Map<String, String> values = ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "v3");
+    List<Set<String>> batches = new ArrayList<>();
+    Lookup<String> lookup = new Lookup<String>() {
+      @Override
+      public String lookup(String key) {
+        throw new UnsupportedOperationException("Lookups must be batched");
+      }
+
+      @Override
+      public Map<String, String> lookup(String... keys) {
+        return lookup(ImmutableSet.copyOf(keys));
+      }
+
+      @Override
+      public Map<String, String> lookup(Set<String> keys) {
+        batches.add(ImmutableSet.copyOf(keys));
+        Map<String, String> results = new HashMap<>();
+        for (String key : keys) {
+          if (values.containsKey(key)) {
+            results.put(key, values.get(key));
+          }
+        }
+        return results;
+      }
+    };
+
+    List<String> results = new ArrayList<>();
+    BatchingLookup<String> batchingLookup = new BatchingLookup<>(lookup, 2);
+    batchingLookup.lookup("k1", results::add);
+    batchingLookup.lookup("k1", results::add);
+    Assert.assertTrue(batches.isEmpty());
+    batchingLookup.lookup("k0", results::add);
+    batchingLookup.lookup("k3", results::add);
+    batchingLookup.flush();
+    batchingLookup.flush();
+
+    Assert.assertEquals(ImmutableList.of(ImmutableSet.of("k1", "k0"), ImmutableSet.of("k3")), batches);
+    List<String> expected = new ArrayList<>();
+    expected.add("v1");
+    expected.add("v1");
+    expected.add(null);
+    expected.add("v3");
+    Assert.assertEquals(expected, results);
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2019 Cask Data, Inc.
+ * Copyright © 2015-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -37,6 +37,7 @@ import io.cdap.cdap.etl.api.batch.BatchAggregator;
 import io.cdap.cdap.etl.api.batch.BatchJoiner;
 import io.cdap.cdap.etl.api.lineage.field.FieldOperation;
 import io.cdap.cdap.etl.batch.BatchPhaseSpec;
+import io.cdap.cdap.etl.common.CachingLookupProvider;
 import io.cdap.cdap.etl.common.Constants;
 import io.cdap.cdap.etl.common.DefaultMacroEvaluator;
 import io.cdap.cdap.etl.common.FieldOperationTypeAdapter;
@@ -208,6 +209,7 @@ public class ETLMapReduce extends AbstractMapReduce {
       // this can be null if the initialize() method failed.
       finisher.onFinish(isSuccessful);
     }
+    CachingLookupProvider.releaseCaches(getContext());
     LOG.info("Batch Run finished : status = {}", getContext().getState());
   }
 
@@ -98,10 +98,11 @@ public class MapReduceTransformExecutorFactory<T> extends TransformExecutorFacto
                                            BasicArguments arguments,
                                            String sourceStageName,
                                            boolean collectStageStatistics,
+                                           boolean fuseTransforms,
                                            OutputWriter<Object, Object> outputWriter) {
     super(pluginInstantiator, new DefaultMacroEvaluator(arguments, taskContext.getLogicalStartTime(),
                                                         taskContext, taskContext, taskContext.getNamespace()),
-          metrics, sourceStageName, collectStageStatistics);
+          metrics, sourceStageName, collectStageStatistics, fuseTransforms);
     this.taskContext = taskContext;
     JobContext hadoopContext = (JobContext) taskContext.getHadoopContext();
     Configuration hConf = hadoopContext.getConfiguration();
@@ -103,7 +103,9 @@ public class TransformRunner<KEY, VALUE> {
     MapReduceTransformExecutorFactory<KeyValue<KEY, VALUE>> transformExecutorFactory =
       new MapReduceTransformExecutorFactory<>(context, pluginInstantiator, metrics,
                                               new BasicArguments(context.getWorkflowToken(), runtimeArgs),
-                                              sourceStage, phaseSpec.pipelineContainsCondition(), outputWriter);
+                                              sourceStage, phaseSpec.pipelineContainsCondition(),
+                                              Boolean.parseBoolean(runtimeArgs.get(Constants.FUSE_TRANSFORMS)),
+                                              outputWriter);
     this.transformExecutor = transformExecutorFactory.create(phase);
   }
 
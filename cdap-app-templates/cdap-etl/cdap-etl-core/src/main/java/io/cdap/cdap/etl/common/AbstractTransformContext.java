@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -36,7 +36,9 @@ public abstract class AbstractTransformContext extends AbstractStageContext impl
 
   protected AbstractTransformContext(PipelineRuntime pipelineRuntime, StageSpec stageSpec, LookupProvider lookup) {
     super(pipelineRuntime, stageSpec);
-    this.lookup = lookup;
+    this.lookup = new CachingLookupProvider(lookup, CachingLookupProvider.getLookupConfig(arguments.asMap()),
+                                            pipelineRuntime.getNamespace(), pipelineRuntime.getPipelineName(),
+                                            pipelineRuntime.getRunId(), getMetrics());
   }
 
   @Override
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.common;
+
+import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableSet;
+import io.cdap.cdap.etl.api.Lookup;
+import io.cdap.cdap.etl.api.StageMetrics;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * {@link Lookup} that caches the values of another {@link Lookup}. Keys without value are cached as well, such that
+ * they are not looked up again. The number of cache hits and misses are emitted as metrics of the stage.
+ *
+ * @param <T> the type of object that will be returned for a lookup
+ */
+public class CachingLookup<T> implements Lookup<T> {
+
+  private final Lookup<T> delegate;
+  private final Cache<String, Optional<T>> cache;
+  private final StageMetrics stageMetrics;
+
+  public CachingLookup(Lookup<T> delegate, Cache<String, Optional<T>> cache, StageMetrics stageMetrics) {
+    this.delegate = delegate;
+    this.cache = cache;
+    this.stageMetrics = stageMetrics;
+  }
+
+  @Override
+  public T lookup(String key) {
+    Optional<T> cached = cache.getIfPresent(key);
+    if (cached != null) {
+      stageMetrics.count(Constants.Metrics.LOOKUP_CACHE_HITS, 1);
+      return cached.orElse(null);
+    }
+
+    stageMetrics.count(Constants.Metrics.LOOKUP_CACHE_MISSES, 1);
+    T value = delegate.lookup(key);
+    cache.put(key, Optional.ofNullable(value));
+    return value;
+  }
+
+  @Override
+  public Map<String, T> lookup(String... keys) {
+    return lookup(ImmutableSet.copyOf(keys));
+  }
+
+  @Override
+  public Map<String, T> lookup(Set<String> keys) {
+    Map<String, T> results = new HashMap<>();
+    Set<String> missing = new HashSet<>();
+    for (String key : keys) {
+      Optional<T> cached = cache.getIfPresent(key);
+      if (cached == null) {
+        missing.add(key);
+      } else {
+        cached.ifPresent(value -> results.put(key, value));
+      }
+    }
+    if (keys.size() > missing.size()) {
+      stageMetrics.count(Constants.Metrics.LOOKUP_CACHE_HITS, keys.size() - missing.size());
+    }
+    if (missing.isEmpty()) {
+      return results;
+    }
+
+    // only look up the keys that are not cached, in a single batch
+    stageMetrics.count(Constants.Metrics.LOOKUP_CACHE_MISSES, missing.size());
+    Map<String, T> values = delegate.lookup(missing);
+    for (String key : missing) {
+      T value = values.get(key);
+      cache.put(key, Optional.ofNullable(value));
+      if (value != null) {
+        results.put(key, value);
+      }
+    }
+    return results;
+  }
+}
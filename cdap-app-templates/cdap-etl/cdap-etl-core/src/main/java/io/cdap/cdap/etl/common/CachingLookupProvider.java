@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.common;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.RuntimeContext;
+import io.cdap.cdap.etl.api.CacheConfig;
+import io.cdap.cdap.etl.api.Lookup;
+import io.cdap.cdap.etl.api.LookupConfig;
+import io.cdap.cdap.etl.api.LookupProvider;
+import io.cdap.cdap.etl.api.LookupTableConfig;
+import io.cdap.cdap.etl.api.StageMetrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * {@link LookupProvider} that caches the lookups of another {@link LookupProvider} for the tables that have caching
+ * enabled in the {@link LookupConfig}.
+ *
+ * The caches are shared by all the stages and tasks of the same program run that run in the same JVM, such that each
+ * executor only looks up the same key once, as long as it stays in the cache. A cache is bounded by the maximum size
+ * and the expiry of the {@link CacheConfig} of its table. The caches of a run are dropped by
+ * {@link #releaseCaches(RuntimeContext)} when the run ends.
+ */
+public class CachingLookupProvider implements LookupProvider {
+
+  private static final String MAX_SIZE_SUFFIX = ".max.size";
+  private static final String EXPIRY_SECONDS_SUFFIX = ".expiry.seconds";
+
+  // Caches by program run, and then by table, dataset arguments and cache config
+  private static final ConcurrentMap<RunKey, ConcurrentMap<CacheKey, Cache<String, Optional<Object>>>> CACHES =
+    new ConcurrentHashMap<>();
+
+  private final LookupProvider delegate;
+  private final LookupConfig lookupConfig;
+  private final RunKey runKey;
+  private final StageMetrics stageMetrics;
+
+  public CachingLookupProvider(LookupProvider delegate, LookupConfig lookupConfig, String namespace,
+                               String pipelineName, String runId, StageMetrics stageMetrics) {
+    this.delegate = delegate;
+    this.lookupConfig = lookupConfig;
+    this.runKey = new RunKey(namespace, pipelineName, runId);
+    this.stageMetrics = stageMetrics;
+  }
+
+  /**
+   * Drops the lookup caches of the program run of the given context. This should be called when the run ends.
+   */
+  public static void releaseCaches(RuntimeContext context) {
+    releaseCaches(context.getNamespace(), context.getApplicationSpecification().getName(),
+                  context.getRunId().getId());
+  }
+
+  /**
+   * Drops the lookup caches of the given program run.
+   */
+  static void releaseCaches(String namespace, String pipelineName, String runId) {
+    CACHES.remove(new RunKey(namespace, pipelineName, runId));
+  }
+
+  /**
+   * Creates the {@link LookupConfig} from the given pipeline arguments. Caching is enabled for a table if the
+   * maximum size of its cache is set with {@link Constants#LOOKUP_CACHE_PREFIX}{@code <table>.max.size}. The expiry
+   * after write can be set with {@link Constants#LOOKUP_CACHE_PREFIX}{@code <table>.expiry.seconds}, and defaults to
+   * no expiry.
+   *
+   * @throws IllegalArgumentException if the value of any of the arguments is not a non-negative integer
+   */
+  public static LookupConfig getLookupConfig(Map<String, String> arguments) {
+    Map<String, LookupTableConfig> tables = new HashMap<>();
+    for (Map.Entry<String, String> entry : arguments.entrySet()) {
+      String name = entry.getKey();
+      if (!name.startsWith(Constants.LOOKUP_CACHE_PREFIX) || !name.endsWith(MAX_SIZE_SUFFIX)) {
+        continue;
+      }
+      String table = name.substring(Constants.LOOKUP_CACHE_PREFIX.length(), name.length() - MAX_SIZE_SUFFIX.length());
+      int maxSize = (int) parseNonNegative(name, entry.getValue(), Integer.MAX_VALUE);
+      String expiryName = Constants.LOOKUP_CACHE_PREFIX + table + EXPIRY_SECONDS_SUFFIX;
+      String expirySeconds = arguments.get(expiryName);
+      CacheConfig cacheConfig = new CacheConfig(
+        expirySeconds == null ? 0L : parseNonNegative(expiryName, expirySeconds, Long.MAX_VALUE), maxSize);
+      tables.put(table, new LookupTableConfig(LookupTableConfig.TableType.DATASET, cacheConfig,
+                                              ImmutableMap.of(), maxSize > 0));
+    }
+    return new LookupConfig(tables);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> Lookup<T> provide(String table, Map<String, String> arguments) {
+    Lookup<T> lookup = delegate.provide(table, arguments);
+    LookupTableConfig tableConfig = lookupConfig.getTable(table);
+    if (tableConfig == null || !tableConfig.isCacheEnabled()) {
+      return lookup;
+    }
+
+    CacheConfig cacheConfig = tableConfig.getCacheConfig();
+    Cache<String, Optional<Object>> cache = CACHES.computeIfAbsent(runKey, key -> new ConcurrentHashMap<>())
+      .computeIfAbsent(new CacheKey(table, arguments, cacheConfig), key -> createCache(cacheConfig));
+    return new CachingLookup<>(lookup, (Cache<String, Optional<T>>) (Cache<?, ?>) cache, stageMetrics);
+  }
+
+  private static long parseNonNegative(String name, String value, long maxValue) {
+    try {
+      long result = Long.parseLong(value.trim());
+      if (result >= 0 && result <= maxValue) {
+        return result;
+      }
+    } catch (NumberFormatException e) {
+      // Fall through to fail with a message that names the argument
+    }
+    throw new IllegalArgumentException(
+      String.format("Invalid value '%s' for pipeline argument '%s'. It must be an integer between 0 and %d.",
+                    value, name, maxValue));
+  }
+
+  private static Cache<String, Optional<Object>> createCache(CacheConfig cacheConfig) {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(cacheConfig.getMaxSize());
+    if (cacheConfig.getExpirySeconds() > 0) {
+      builder.expireAfterWrite(cacheConfig.getExpirySeconds(), TimeUnit.SECONDS);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Identifies a program run.
+   */
+  private static final class RunKey {
+    private final String namespace;
+    private final String pipelineName;
+    private final String runId;
+
+    private RunKey(String namespace, String pipelineName, String runId) {
+      this.namespace = namespace;
+      this.pipelineName = pipelineName;
+      this.runId = runId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      RunKey that = (RunKey) o;
+      return namespace.equals(that.namespace) && pipelineName.equals(that.pipelineName) && runId.equals(that.runId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(namespace, pipelineName, runId);
+    }
+  }
+
+  /**
+   * Identifies a cache of a program run by the table, the arguments of its dataset and the cache config.
+   */
+  private static final class CacheKey {
+    private final String table;
+    private final Map<String, String> arguments;
+    private final int maxSize;
+    private final long expirySeconds;
+
+    private CacheKey(String table, @Nullable Map<String, String> arguments, CacheConfig cacheConfig) {
+      this.table = table;
+      this.arguments = arguments == null ? Collections.emptyMap() : new HashMap<>(arguments);
+      this.maxSize = cacheConfig.getMaxSize();
+      this.expirySeconds = cacheConfig.getExpirySeconds();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey that = (CacheKey) o;
+      return table.equals(that.table) && arguments.equals(that.arguments)
+        && maxSize == that.maxSize && expirySeconds == that.expirySeconds;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(table, arguments, maxSize, expirySeconds);
+    }
+  }
+}
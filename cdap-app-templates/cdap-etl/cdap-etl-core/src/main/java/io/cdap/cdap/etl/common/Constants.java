@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2021 Cask Data, Inc.
+ * Copyright © 2015-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -39,8 +39,19 @@ public final class Constants {
   public static final String DATASET_KRYO_ENABLED = "spark.cdap.pipeline.dataset.kryo.enable";
   public static final String DATASET_AGGREGATE_ENABLED = "spark.cdap.pipeline.aggregate.dataset.enable";
   public static final String DISABLE_ELT_PUSHDOWN = "cdap.pipeline.pushdown.disable";
+  public static final String FUSE_TRANSFORMS = "cdap.pipeline.transforms.fuse.enable";
   public static final String DATASET_AGGREGATE_IGNORE_PARTITIONS =
     "spark.cdap.pipeline.aggregate.dataset.partitions.ignore";
+  public static final String DATAFRAME_RELATIONAL_ENABLED = "spark.cdap.pipeline.relational.dataframe.enable";
+  public static final String ADAPTIVE_JOIN_ENABLED = "spark.cdap.pipeline.join.adaptive.enable";
+  public static final String ADAPTIVE_JOIN_BROADCAST_THRESHOLD =
+    "spark.cdap.pipeline.join.adaptive.broadcast.threshold";
+  public static final String ADAPTIVE_JOIN_SAMPLE_FRACTION = "spark.cdap.pipeline.join.adaptive.sample.fraction";
+  public static final String ADAPTIVE_JOIN_SKEW_THRESHOLD = "spark.cdap.pipeline.join.adaptive.skew.threshold";
+  public static final String ADAPTIVE_JOIN_DISTRIBUTION_FACTOR =
+    "spark.cdap.pipeline.join.adaptive.distribution.factor";
+  // lookup caches are configured per table, with <prefix><table>.max.size and <prefix><table>.expiry.seconds
+  public static final String LOOKUP_CACHE_PREFIX = "cdap.pipeline.lookup.cache.";
   public static final String DEFAULT_CACHING_STORAGE_LEVEL = "DISK_ONLY";
 
   private Constants() {
@@ -74,6 +85,13 @@ public final class Constants {
     public static final String RECORDS_ALERT = "records.alert";
     public static final String AGG_GROUPS = "aggregator.groups";
     public static final String JOIN_KEYS = "joiner.keys";
+    public static final String JOIN_INPUT_RECORDS = "joiner.input.records";
+    public static final String JOIN_INPUT_BYTES = "joiner.input.bytes";
+    public static final String JOIN_INPUT_SKEW = "joiner.input.skew";
+    public static final String JOIN_BROADCAST_STAGES = "joiner.broadcast.stages";
+    public static final String JOIN_DISTRIBUTION_FACTOR = "joiner.distribution.factor";
+    public static final String LOOKUP_CACHE_HITS = "lookup.cache.hits";
+    public static final String LOOKUP_CACHE_MISSES = "lookup.cache.misses";
     public static final String DRAFT_COUNT = "draft.count";
 
     public static final class Connection {
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017 Cask Data, Inc.
+ * Copyright © 2017-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -42,6 +42,7 @@ public class PipelineRuntime implements Serializable {
   private final String namespace;
   private final String pipelineName;
   private final long logicalStartTime;
+  private final String runId;
   private final BasicArguments arguments;
   private final Metrics metrics;
   private final PluginContext pluginContext;
@@ -53,37 +54,41 @@ public class PipelineRuntime implements Serializable {
 
   public PipelineRuntime(SparkClientContext context) {
     this(context.getNamespace(), context.getApplicationSpecification().getName(), context.getLogicalStartTime(),
-         new BasicArguments(context), context.getMetrics(), context, context, context, context, context, context);
+         context.getRunId().getId(), new BasicArguments(context), context.getMetrics(), context, context, context,
+         context, context, context);
   }
 
   public PipelineRuntime(CustomActionContext context, Metrics metrics) {
     this(context.getNamespace(), context.getApplicationSpecification().getName(), context.getLogicalStartTime(),
-         new BasicArguments(context), metrics, context, context, context, context, context, context);
+         context.getRunId().getId(), new BasicArguments(context), metrics, context, context, context, context, context,
+         context);
   }
 
   public PipelineRuntime(MapReduceTaskContext context, Metrics metrics, BasicArguments arguments) {
     this(context.getNamespace(), context.getApplicationSpecification().getName(), context.getLogicalStartTime(),
-         arguments, metrics, context, context, context, null, null, context);
+         context.getRunId().getId(), arguments, metrics, context, context, context, null, null, context);
   }
 
   public PipelineRuntime(MapReduceContext context, Metrics metrics) {
     this(context.getNamespace(), context.getApplicationSpecification().getName(), context.getLogicalStartTime(),
-         new BasicArguments(context), metrics, context, context, context, context, context, context);
+         context.getRunId().getId(), new BasicArguments(context), metrics, context, context, context, context, context,
+         context);
   }
 
   public PipelineRuntime(WorkflowContext context, Metrics metrics) {
     this(context.getNamespace(), context.getApplicationSpecification().getName(), context.getLogicalStartTime(),
-         new BasicArguments(context.getToken(), context.getRuntimeArguments()), metrics, context, context, context,
-         context, context, context);
+         context.getRunId().getId(), new BasicArguments(context.getToken(), context.getRuntimeArguments()), metrics,
+         context, context, context, context, context, context);
   }
 
-  public PipelineRuntime(String namespace, String pipelineName, long logicalStartTime, BasicArguments arguments,
-                         Metrics metrics, PluginContext pluginContext, ServiceDiscoverer serviceDiscoverer,
-                         SecureStore secureStore, MetadataReader metadataReader, MetadataWriter metadataWriter,
-                         FeatureFlagsProvider featureFlagsProvider) {
+  public PipelineRuntime(String namespace, String pipelineName, long logicalStartTime, String runId,
+                         BasicArguments arguments, Metrics metrics, PluginContext pluginContext,
+                         ServiceDiscoverer serviceDiscoverer, SecureStore secureStore, MetadataReader metadataReader,
+                         MetadataWriter metadataWriter, FeatureFlagsProvider featureFlagsProvider) {
     this.namespace = namespace;
     this.pipelineName = pipelineName;
     this.logicalStartTime = logicalStartTime;
+    this.runId = runId;
     this.arguments = arguments;
     this.metrics = metrics;
     this.pluginContext = pluginContext;
@@ -106,6 +111,13 @@ public class PipelineRuntime implements Serializable {
     return logicalStartTime;
   }
 
+  /**
+   * @return the id of the program run
+   */
+  public String getRunId() {
+    return runId;
+  }
+
   public BasicArguments getArguments() {
     return arguments;
   }
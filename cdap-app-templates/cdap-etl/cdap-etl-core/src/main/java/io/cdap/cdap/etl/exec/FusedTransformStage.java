@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.exec;
+
+import io.cdap.cdap.etl.api.Destroyable;
+import io.cdap.cdap.etl.api.Emitter;
+import io.cdap.cdap.etl.api.InvalidEntry;
+import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.cdap.etl.api.Transformation;
+import io.cdap.cdap.etl.common.Constants;
+import io.cdap.cdap.etl.common.Destroyables;
+import io.cdap.cdap.etl.common.RecordInfo;
+import io.cdap.cdap.etl.common.StageStatisticsCollector;
+
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A transform stage that can be fused with the transform stage that follows it. Records emitted by the transform
+ * are handed directly to the next fused stage, without being wrapped in a {@link RecordInfo} or going through
+ * a {@link PipeEmitter}. When there is no next fused stage, records are emitted through the {@link PipeEmitter}
+ * as usual. Errors and alerts always go through the {@link PipeEmitter}.
+ *
+ * Instead of updating the stage metrics and statistics for every record, counts are accumulated locally and
+ * flushed after every {@link #FLUSH_INTERVAL} input records, as well as when the stage is destroyed.
+ *
+ * @param <IN> type of input object
+ */
+public class FusedTransformStage<IN> extends PipeStage<RecordInfo<IN>> {
+
+  static final int FLUSH_INTERVAL = 1000;
+
+  private final Transformation<IN, Object> transform;
+  private final StageMetrics stageMetrics;
+  private final StageStatisticsCollector collector;
+  private final Emitter<Object> pipeEmitter;
+  private final FusedTransformStage<Object> next;
+  private final Emitter<Object> emitter;
+  private int inCount;
+  private int outCount;
+  private int errorCount;
+  private int alertCount;
+
+  public FusedTransformStage(String stageName, Transformation<IN, Object> transform, StageMetrics stageMetrics,
+                             StageStatisticsCollector collector, Emitter<Object> pipeEmitter,
+                             @Nullable FusedTransformStage<Object> next) {
+    super(stageName);
+    this.transform = transform;
+    this.stageMetrics = stageMetrics;
+    this.collector = collector;
+    this.pipeEmitter = pipeEmitter;
+    this.next = next;
+    this.emitter = new FusedEmitter();
+  }
+
+  @Override
+  protected void consumeInput(RecordInfo<IN> input) {
+    process(input.getValue());
+  }
+
+  /**
+   * Runs the transform on the given input, sending the outputs down the fused chain.
+   *
+   * @param input the input to transform
+   * @throws StageFailureException if there was an exception processing the input
+   */
+  void process(IN input) {
+    inCount++;
+    try {
+      transform.transform(input, emitter);
+    } catch (Exception e) {
+      throw toStageFailure(e);
+    }
+    if (inCount >= FLUSH_INTERVAL) {
+      flushMetrics();
+    }
+  }
+
+  /**
+   * Publishes the accumulated counts to the stage metrics and statistics collector.
+   */
+  void flushMetrics() {
+    if (inCount > 0) {
+      stageMetrics.count(Constants.Metrics.RECORDS_IN, inCount);
+      collector.incrementInputRecordCount(inCount);
+      inCount = 0;
+    }
+    if (outCount > 0) {
+      stageMetrics.count(Constants.Metrics.RECORDS_OUT, outCount);
+      collector.incrementOutputRecordCount(outCount);
+      outCount = 0;
+    }
+    if (errorCount > 0) {
+      stageMetrics.count(Constants.Metrics.RECORDS_ERROR, errorCount);
+      collector.incrementErrorRecordCount(errorCount);
+      errorCount = 0;
+    }
+    if (alertCount > 0) {
+      stageMetrics.count(Constants.Metrics.RECORDS_ALERT, alertCount);
+      alertCount = 0;
+    }
+  }
+
+  @Override
+  public void destroy() {
+    flushMetrics();
+    if (transform instanceof Destroyable) {
+      Destroyables.destroyQuietly((Destroyable) transform);
+    }
+  }
+
+  /**
+   * Emitter given to the transform, which counts the records and forwards them.
+   */
+  private final class FusedEmitter implements Emitter<Object> {
+
+    @Override
+    public void emit(Object value) {
+      outCount++;
+      if (next == null) {
+        pipeEmitter.emit(value);
+      } else {
+        next.process(value);
+      }
+    }
+
+    @Override
+    public void emitAlert(Map<String, String> payload) {
+      alertCount++;
+      pipeEmitter.emitAlert(payload);
+    }
+
+    @Override
+    public void emitError(InvalidEntry<Object> invalidEntry) {
+      errorCount++;
+      pipeEmitter.emitError(invalidEntry);
+    }
+  }
+}
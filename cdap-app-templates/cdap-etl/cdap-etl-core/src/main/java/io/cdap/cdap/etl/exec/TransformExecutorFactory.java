@@ -25,6 +25,7 @@ import io.cdap.cdap.etl.api.ErrorTransform;
 import io.cdap.cdap.etl.api.SplitterTransform;
 import io.cdap.cdap.etl.api.StageLifecycle;
 import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.cdap.etl.api.Transform;
 import io.cdap.cdap.etl.api.TransformContext;
 import io.cdap.cdap.etl.api.Transformation;
 import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
@@ -58,15 +59,30 @@ public abstract class TransformExecutorFactory<T> {
   protected final PipelinePluginInstantiator pluginInstantiator;
   protected final Metrics metrics;
   protected final boolean collectStageStatistics;
+  protected final boolean fuseTransforms;
 
   protected TransformExecutorFactory(PipelinePluginInstantiator pluginInstantiator, MacroEvaluator macroEvaluator,
                                      Metrics metrics, @Nullable String sourceStageName,
                                      boolean collectStageStatistics) {
+    this(pluginInstantiator, macroEvaluator, metrics, sourceStageName, collectStageStatistics, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param fuseTransforms whether to fuse chains of transforms into {@link FusedTransformStage FusedTransformStages}.
+   *                       Metrics of fused stages are only published periodically and when the executor is destroyed,
+   *                       so it should only be enabled when the created executors are always destroyed.
+   */
+  protected TransformExecutorFactory(PipelinePluginInstantiator pluginInstantiator, MacroEvaluator macroEvaluator,
+                                     Metrics metrics, @Nullable String sourceStageName,
+                                     boolean collectStageStatistics, boolean fuseTransforms) {
     this.pluginInstantiator = pluginInstantiator;
     this.metrics = metrics;
     this.sourceStageName = sourceStageName;
     this.macroEvaluator = macroEvaluator;
     this.collectStageStatistics = collectStageStatistics;
+    this.fuseTransforms = fuseTransforms;
   }
 
   protected abstract DataTracer getDataTracer(String stageName);
@@ -202,11 +218,48 @@ public abstract class TransformExecutorFactory<T> {
     if (SplitterTransform.PLUGIN_TYPE.equals(pluginType)) {
       // this is a SplitterTransform, needs to emit records to the right outputs based on port
       return new MultiOutputTransformPipeStage<>(stageName, getMultiOutputTransform(stageSpec), pipeEmitter);
+    } else if (canFuse(pipeline, stageSpec)) {
+      return getFusedTransformStage(pipeline, stageSpec, pipeEmitter, pipeStages);
     } else {
       return new UnwrapPipeStage<>(stageName, getTransformation(stageSpec), pipeEmitter);
     }
   }
 
+  /**
+   * Returns whether the given stage can be executed as a {@link FusedTransformStage}. Only plain transforms
+   * with a single input are fused, and only if data tracing is disabled for the stage, since fused stages
+   * do not trace individual records.
+   */
+  private boolean canFuse(PipelinePhase pipeline, StageSpec stageSpec) {
+    String stageName = stageSpec.getName();
+    return fuseTransforms && Transform.PLUGIN_TYPE.equals(stageSpec.getPluginType())
+      && !pipeline.getSources().contains(stageName) && pipeline.getStageInputs(stageName).size() == 1
+      && !getDataTracer(stageName).isEnabled();
+  }
+
+  @SuppressWarnings("unchecked")
+  private <IN> FusedTransformStage<IN> getFusedTransformStage(PipelinePhase pipeline, StageSpec stageSpec,
+                                                              PipeEmitter pipeEmitter,
+                                                              Map<String, PipeStage> pipeStages) throws Exception {
+    String stageName = stageSpec.getName();
+    StageMetrics stageMetrics = new DefaultStageMetrics(metrics, stageName);
+    StageStatisticsCollector collector = collectStageStatistics ?
+      getStatisticsCollector(stageName) : NoopStageStatisticsCollector.INSTANCE;
+
+    // if the only output is also fused, records are handed to it directly instead of going through the pipe emitter.
+    // A fused stage only has a single input, hence the pipe emitter would not have any other consumer to send it to.
+    FusedTransformStage<Object> next = null;
+    Set<String> outputs = pipeline.getStageOutputs(stageName);
+    if (outputs.size() == 1) {
+      PipeStage outputStage = pipeStages.get(outputs.iterator().next());
+      if (outputStage instanceof FusedTransformStage) {
+        next = (FusedTransformStage<Object>) outputStage;
+      }
+    }
+    Transformation<IN, Object> transformation = getInitializedTransformation(stageSpec);
+    return new FusedTransformStage<>(stageName, transformation, stageMetrics, collector, pipeEmitter, next);
+  }
+
   /**
    * Instantiates and initializes the plugin for the stage.
    *
@@ -0,0 +1,196 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.common;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.cdap.cdap.etl.api.Lookup;
+import io.cdap.cdap.etl.api.LookupConfig;
+import io.cdap.cdap.etl.api.LookupProvider;
+import io.cdap.cdap.etl.api.LookupTableConfig;
+import io.cdap.cdap.etl.api.StageMetrics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link CachingLookupProvider} and {@link CachingLookup}.
+ */
+public class CachingLookupProviderTest {
+  private static final Map<String, String> VALUES = ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "v3");
+
+  private static final String NAMESPACE = "default";
+  private static final String PIPELINE = "pipeline";
+  private static final String RUN_ID = "run";
+
+  @After
+  public void releaseCaches() {
+    CachingLookupProvider.releaseCaches(NAMESPACE, PIPELINE, RUN_ID);
+  }
+
+  @Test
+  public void testLookupConfig() {
+    LookupConfig config = CachingLookupProvider.getLookupConfig(
+      ImmutableMap.of(Constants.LOOKUP_CACHE_PREFIX + "users.max.size", "100",
+                      Constants.LOOKUP_CACHE_PREFIX + "users.expiry.seconds", "60",
+                      Constants.LOOKUP_CACHE_PREFIX + "items.max.size", "0",
+                      "other", "value"));
+
+    LookupTableConfig users = config.getTable("users");
+    Assert.assertTrue(users.isCacheEnabled());
+    Assert.assertEquals(100, users.getCacheConfig().getMaxSize());
+    Assert.assertEquals(60L, users.getCacheConfig().getExpirySeconds());
+    Assert.assertFalse(config.getTable("items").isCacheEnabled());
+    Assert.assertNull(config.getTable("other"));
+  }
+
+  @Test
+  public void testInvalidLookupConfig() {
+    String maxSize = Constants.LOOKUP_CACHE_PREFIX + "users.max.size";
+    String expiry = Constants.LOOKUP_CACHE_PREFIX + "users.expiry.seconds";
+    List<Map<String, String>> invalidArguments = Arrays.asList(
+      ImmutableMap.of(maxSize, "many"),
+      ImmutableMap.of(maxSize, "-1"),
+      ImmutableMap.of(maxSize, "10000000000"),
+      ImmutableMap.of(maxSize, "100", expiry, "1m"));
+    for (Map<String, String> arguments : invalidArguments) {
+      try {
+        CachingLookupProvider.getLookupConfig(arguments);
+        Assert.fail("Expected IllegalArgumentException for " + arguments);
+      } catch (IllegalArgumentException e) {
+        String name = arguments.containsKey(expiry) ? expiry : maxSize;
+        Assert.assertTrue(e.getMessage(), e.getMessage().contains(name));
+      }
+    }
+  }
+
+  @Test
+  public void testCachedLookups() {
+    List<Object> delegateLookups = new ArrayList<>();
+    LookupProvider delegate = new MapLookupProvider(delegateLookups);
+    LookupConfig config = CachingLookupProvider.getLookupConfig(
+      Collections.singletonMap(Constants.LOOKUP_CACHE_PREFIX + "users.max.size", "100"));
+
+    MockMetrics metrics = new MockMetrics();
+    Lookup<String> lookup = createProvider(delegate, config, RUN_ID, new DefaultStageMetrics(metrics, "stage"))
+      .provide("users", Collections.emptyMap());
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertNull(lookup.lookup("k0"));
+    Assert.assertNull(lookup.lookup("k0"));
+    Assert.assertEquals(ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "v3"), lookup.lookup("k0", "k1", "k2", "k3"));
+    // only the keys that are not cached are looked up, in a single batch
+    Assert.assertEquals(ImmutableSet.of("k1", "k0", ImmutableSet.of("k2", "k3")), ImmutableSet.copyOf(delegateLookups));
+    Assert.assertEquals(3, delegateLookups.size());
+    Assert.assertEquals(4, metrics.getCount("stage." + Constants.Metrics.LOOKUP_CACHE_HITS));
+    Assert.assertEquals(4, metrics.getCount("stage." + Constants.Metrics.LOOKUP_CACHE_MISSES));
+
+    // the cache is shared by other stages
+    MockMetrics otherMetrics = new MockMetrics();
+    lookup = createProvider(delegate, config, RUN_ID, new DefaultStageMetrics(otherMetrics, "other"))
+      .provide("users", Collections.emptyMap());
+    Assert.assertEquals("v3", lookup.lookup("k3"));
+    Assert.assertEquals(3, delegateLookups.size());
+    Assert.assertEquals(1, otherMetrics.getCount("other." + Constants.Metrics.LOOKUP_CACHE_HITS));
+
+    // but not by lookups with different dataset arguments
+    lookup = createProvider(delegate, config, RUN_ID, new DefaultStageMetrics(otherMetrics, "other"))
+      .provide("users", Collections.singletonMap("arg", "value"));
+    Assert.assertEquals("v3", lookup.lookup("k3"));
+    Assert.assertEquals(4, delegateLookups.size());
+
+    // nor by other runs
+    lookup = createProvider(delegate, config, "otherRun", new DefaultStageMetrics(otherMetrics, "other"))
+      .provide("users", Collections.emptyMap());
+    Assert.assertEquals("v3", lookup.lookup("k3"));
+    Assert.assertEquals(5, delegateLookups.size());
+
+    // the caches are dropped when the run ends
+    CachingLookupProvider.releaseCaches(NAMESPACE, PIPELINE, RUN_ID);
+    lookup = createProvider(delegate, config, RUN_ID, new DefaultStageMetrics(metrics, "stage"))
+      .provide("users", Collections.emptyMap());
+    Assert.assertEquals("v3", lookup.lookup("k3"));
+    Assert.assertEquals(6, delegateLookups.size());
+    CachingLookupProvider.releaseCaches(NAMESPACE, PIPELINE, "otherRun");
+  }
+
+  @Test
+  public void testUncachedTable() {
+    List<Object> delegateLookups = new ArrayList<>();
+    LookupConfig config = CachingLookupProvider.getLookupConfig(Collections.emptyMap());
+    Lookup<String> lookup = createProvider(new MapLookupProvider(delegateLookups), config, RUN_ID,
+                                           new DefaultStageMetrics(new MockMetrics(), "stage"))
+      .provide("users", Collections.emptyMap());
+    Assert.assertFalse(lookup instanceof CachingLookup);
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertEquals(2, delegateLookups.size());
+  }
+
+  private CachingLookupProvider createProvider(LookupProvider delegate, LookupConfig config, String runId,
+                                               StageMetrics stageMetrics) {
+    return new CachingLookupProvider(delegate, config, NAMESPACE, PIPELINE, runId, stageMetrics);
+  }
+
+  /**
+   * A {@link LookupProvider} of lookups on {@link #VALUES}, which records the keys of every lookup.
+   */
+  private static final class MapLookupProvider implements LookupProvider {
+    private final List<Object> lookups;
+
+    private MapLookupProvider(List<Object> lookups) {
+      this.lookups = lookups;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> Lookup<T> provide(String table, Map<String, String> arguments) {
+      return (Lookup<T>) new Lookup<String>() {
+        @Override
+        public String lookup(String key) {
+          lookups.add(key);
+          return VALUES.get(key);
+        }
+
+        @Override
+        public Map<String, String> lookup(String... keys) {
+          return lookup(ImmutableSet.copyOf(keys));
+        }
+
+        @Override
+        public Map<String, String> lookup(Set<String> keys) {
+          lookups.add(ImmutableSet.copyOf(keys));
+          Map<String, String> results = new HashMap<>();
+          for (String key : keys) {
+            if (VALUES.containsKey(key)) {
+              results.put(key, VALUES.get(key));
+            }
+          }
+          return results;
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.exec;
+
+import io.cdap.cdap.etl.api.Emitter;
+import io.cdap.cdap.etl.api.InvalidEntry;
+import io.cdap.cdap.etl.api.Transform;
+import io.cdap.cdap.etl.common.DefaultStageMetrics;
+import io.cdap.cdap.etl.common.MockMetrics;
+import io.cdap.cdap.etl.common.NoopStageStatisticsCollector;
+import io.cdap.cdap.etl.common.RecordInfo;
+import io.cdap.cdap.etl.common.TrackedTransform;
+import io.cdap.cdap.internal.app.preview.NoopDataTracerFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit test for {@link FusedTransformStage}.
+ */
+public class FusedTransformStageTest {
+
+  private static final String SOURCE = "source";
+  private static final String SINK = "sink";
+  private static final int NUM_STAGES = 10;
+
+  private final NoopDataTracerFactory dataTracerFactory = new NoopDataTracerFactory();
+
+  @Test
+  public void testFusedChain() {
+    MockMetrics metrics = new MockMetrics();
+    CollectingStage sink = new CollectingStage();
+    PipeTransformExecutor<Integer> executor = createExecutor(metrics, sink, true);
+
+    for (int i = 0; i < 10; i++) {
+      executor.runOneIteration(i);
+    }
+
+    // every odd number is filtered out by the first stage, and every stage adds one to the value.
+    List<Object> expected = new ArrayList<>();
+    for (int i = 0; i < 10; i += 2) {
+      expected.add(i + NUM_STAGES);
+    }
+    Assert.assertEquals(expected, sink.values);
+
+    // metrics are only published once the stage is destroyed
+    Assert.assertEquals(0L, metrics.getCount("stage0.records.in"));
+    executor.destroy();
+    Assert.assertEquals(10L, metrics.getCount("stage0.records.in"));
+    Assert.assertEquals(5L, metrics.getCount("stage0.records.out"));
+    Assert.assertEquals(5L, metrics.getCount("stage0.records.error"));
+    for (int i = 1; i < NUM_STAGES; i++) {
+      Assert.assertEquals(5L, metrics.getCount("stage" + i + ".records.in"));
+      Assert.assertEquals(5L, metrics.getCount("stage" + i + ".records.out"));
+    }
+  }
+
+  @Test
+  public void testMetricsFlush() {
+    MockMetrics metrics = new MockMetrics();
+    PipeTransformExecutor<Integer> executor = createExecutor(metrics, new CollectingStage(), true);
+
+    for (int i = 0; i < FusedTransformStage.FLUSH_INTERVAL; i++) {
+      executor.runOneIteration(i * 2);
+    }
+    Assert.assertEquals(FusedTransformStage.FLUSH_INTERVAL, metrics.getCount("stage0.records.in"));
+    Assert.assertEquals(FusedTransformStage.FLUSH_INTERVAL, metrics.getCount("stage9.records.out"));
+    executor.destroy();
+  }
+
+  @Test
+  public void testFailure() {
+    Map<String, PipeStage> stages = new HashMap<>();
+    FusedTransformStage<Object> failing = new FusedTransformStage<>(
+      "failing", new Transform<Object, Object>() {
+        @Override
+        public void transform(Object input, Emitter<Object> emitter) {
+          throw new IllegalStateException("failure");
+        }
+      }, new DefaultStageMetrics(new MockMetrics(), "failing"), NoopStageStatisticsCollector.INSTANCE,
+      PipeEmitter.builder("failing").build(), null);
+    stages.put("failing", failing);
+    stages.put("first", new FusedTransformStage<>("first", new AddOne(), new DefaultStageMetrics(new MockMetrics(),
+                                                                                                  "first"),
+                                                  NoopStageStatisticsCollector.INSTANCE,
+                                                  PipeEmitter.builder("first").build(), failing));
+    PipeTransformExecutor<Integer> executor = new PipeTransformExecutor<>(stages, Collections.singleton("first"));
+    try {
+      executor.runOneIteration(0);
+      Assert.fail("Expected stage failure");
+    } catch (StageFailureException e) {
+      // the failure must be reported for the stage that failed, not the head of the chain
+      Assert.assertTrue(e.getMessage().contains("'failing'"));
+    }
+  }
+
+  @Test
+  public void testSameAsUnfused() {
+    MockMetrics fusedMetrics = new MockMetrics();
+    CollectingStage fusedSink = new CollectingStage();
+    PipeTransformExecutor<Integer> fusedExecutor = createExecutor(fusedMetrics, fusedSink, true);
+    MockMetrics unfusedMetrics = new MockMetrics();
+    CollectingStage unfusedSink = new CollectingStage();
+    PipeTransformExecutor<Integer> unfusedExecutor = createExecutor(unfusedMetrics, unfusedSink, false);
+
+    for (int i = 0; i < 100; i++) {
+      fusedExecutor.runOneIteration(i);
+      unfusedExecutor.runOneIteration(i);
+    }
+    fusedExecutor.destroy();
+    unfusedExecutor.destroy();
+
+    Assert.assertEquals(unfusedSink.values, fusedSink.values);
+    for (int i = 0; i < NUM_STAGES; i++) {
+      for (String metric : new String[] { ".records.in", ".records.out", ".records.error" }) {
+        Assert.assertEquals(unfusedMetrics.getCount("stage" + i + metric),
+                            fusedMetrics.getCount("stage" + i + metric));
+      }
+    }
+  }
+
+  /**
+   * Creates an executor for a pipeline of a source, followed by {@link #NUM_STAGES} transforms and a sink. The first
+   * transform filters out odd numbers and the others add one to the value.
+   */
+  private PipeTransformExecutor<Integer> createExecutor(MockMetrics metrics, CollectingStage sink, boolean fused) {
+    Map<String, PipeStage> stages = new HashMap<>();
+    stages.put(SINK, sink);
+
+    PipeStage next = sink;
+    for (int i = NUM_STAGES - 1; i >= 0; i--) {
+      String stageName = "stage" + i;
+      Transform<Integer, Object> transform = i == 0 ? new EvenFilter() : new AddOne();
+      DefaultStageMetrics stageMetrics = new DefaultStageMetrics(metrics, stageName);
+      PipeEmitter emitter = PipeEmitter.builder(stageName).addOutputConsumer(next).build();
+      PipeStage stage;
+      if (fused) {
+        FusedTransformStage<Object> nextFused = next instanceof FusedTransformStage ?
+          (FusedTransformStage<Object>) next : null;
+        stage = new FusedTransformStage<>(stageName, transform, stageMetrics, NoopStageStatisticsCollector.INSTANCE,
+                                          emitter, nextFused);
+      } else {
+        stage = new UnwrapPipeStage<>(stageName, new TrackedTransform<>(transform, stageMetrics,
+                                                                        dataTracerFactory.getDataTracer(null,
+                                                                                                        stageName)),
+                                    emitter);
+      }
+      stages.put(stageName, stage);
+      next = stage;
+    }
+
+    PipeEmitter sourceEmitter = PipeEmitter.builder(SOURCE).addOutputConsumer(next).build();
+    stages.put(SOURCE, new UnwrapPipeStage<>(SOURCE, (Integer input, Emitter<Object> emitter) -> emitter.emit(input),
+                                             sourceEmitter));
+    return new PipeTransformExecutor<>(stages, Collections.singleton(SOURCE));
+  }
+
+  /**
+   * Transform that only keeps even numbers and emits odd numbers as errors.
+   */
+  private static final class EvenFilter extends Transform<Integer, Object> {
+    @Override
+    public void transform(Integer input, Emitter<Object> emitter) {
+      if (input % 2 == 0) {
+        emitter.emit(input + 1);
+      } else {
+        emitter.emitError(new InvalidEntry<>(1, "odd", input));
+      }
+    }
+  }
+
+  /**
+   * Transform that adds one to the input.
+   */
+  private static final class AddOne extends Transform<Integer, Object> {
+    @Override
+    public void transform(Integer input, Emitter<Object> emitter) {
+      emitter.emit(input + 1);
+    }
+  }
+
+  /**
+   * Pipe stage that collects the values it consumes.
+   */
+  private static final class CollectingStage extends PipeStage<RecordInfo<Object>> {
+    private final List<Object> values = new ArrayList<>();
+
+    CollectingStage() {
+      super(SINK);
+    }
+
+    @Override
+    protected void consumeInput(RecordInfo<Object> input) {
+      values.add(input.getValue());
+    }
+
+    @Override
+    public void destroy() {
+      // no-op
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark;
+
+import com.google.gson.Gson;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.data.schema.SchemaHash;
+import io.cdap.cdap.api.spark.SparkClientContext;
+import io.cdap.cdap.etl.proto.v2.spec.StageSpec;
+import org.apache.spark.SparkConf;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Shares the schemas of the stages of a pipeline with all the executors through the {@link SparkConf}. The platform
+ * serializes a {@link StructuredRecord} with a shared schema with only the schema hash instead of the full schema.
+ * Since such records can only be read with the same shared schemas, this is only used for batch pipelines, whose
+ * serialized records never outlive the run.
+ */
+public final class SharedSchemas {
+
+  private static final Gson GSON = new Gson();
+
+  private SharedSchemas() {
+    // no-op
+  }
+
+  /**
+   * Sets the record schemas of the given stages in the given {@link SparkConf}. Schemas that are unknown until
+   * runtime are not shared, and records with such schemas carry the full schema.
+   */
+  public static void set(SparkConf sparkConf, Iterable<StageSpec> stages) {
+    Set<SchemaHash> hashes = new HashSet<>();
+    List<String> schemas = new ArrayList<>();
+    for (StageSpec stage : stages) {
+      for (Schema schema : stage.getInputSchemas().values()) {
+        add(schema, hashes, schemas);
+      }
+      for (StageSpec.Port port : stage.getOutputPorts().values()) {
+        add(port.getSchema(), hashes, schemas);
+      }
+      add(stage.getOutputSchema(), hashes, schemas);
+      add(stage.getErrorSchema(), hashes, schemas);
+    }
+    if (!schemas.isEmpty()) {
+      sparkConf.set(SparkClientContext.SHARED_RECORD_SCHEMAS_CONF, GSON.toJson(schemas));
+    }
+  }
+
+  private static void add(@Nullable Schema schema, Set<SchemaHash> hashes, List<String> schemas) {
+    if (schema != null && schema.getType() == Schema.Type.RECORD && hashes.add(schema.getSchemaHash())) {
+      schemas.add(schema.toString());
+    }
+  }
+}
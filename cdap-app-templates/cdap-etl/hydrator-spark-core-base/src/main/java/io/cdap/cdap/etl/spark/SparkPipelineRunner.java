@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -65,7 +65,9 @@ import io.cdap.cdap.etl.common.plugin.PluginWrapper;
 import io.cdap.cdap.etl.planner.CombinerDag;
 import io.cdap.cdap.etl.planner.Dag;
 import io.cdap.cdap.etl.proto.v2.spec.StageSpec;
+import io.cdap.cdap.etl.spark.batch.DataframeCollection;
 import io.cdap.cdap.etl.spark.batch.SQLBackedCollection;
+import io.cdap.cdap.etl.spark.batch.WrappedDataframeCollection;
 import io.cdap.cdap.etl.spark.batch.WrappedSQLEngineCollection;
 import io.cdap.cdap.etl.spark.function.AlertPassFilter;
 import io.cdap.cdap.etl.spark.function.BatchSinkFunction;
@@ -555,6 +557,7 @@ public abstract class SparkPipelineRunner {
       // it is checked by PipelinePhasePreparer at the start of the run.
       JoinDefinition joinDefinition = autoJoiner.define(autoJoinerContext);
       failureCollector.getOrThrowException();
+      joinDefinition = planAutoJoin(stageName, joinDefinition, inputDataCollections);
       if (joinDefinition.getStages().stream().noneMatch(JoinStage::isBroadcast)) {
         shufflers.add(stageName);
       }
@@ -566,6 +569,22 @@ public abstract class SparkPipelineRunner {
     }
   }
 
+  /**
+   * Plans how the given auto join is executed before it is performed, for example by choosing which stages are
+   * broadcast. This is called before the join is handled, such that the returned definition is used for the join
+   * and to determine whether the join stage shuffles data. The default implementation returns the plugin's
+   * definition as is.
+   *
+   * @param stageName the name of the join stage
+   * @param joinDefinition the join definition returned by the plugin
+   * @param inputDataCollections the input collections of the join stage, which may be replaced by the planner
+   * @return the join definition to execute
+   */
+  protected JoinDefinition planAutoJoin(String stageName, JoinDefinition joinDefinition,
+                                        Map<String, SparkCollection<Object>> inputDataCollections) {
+    return joinDefinition;
+  }
+
   protected SparkCollection<Object> handleAutoJoin(String stageName, JoinDefinition joinDefinition,
                                                    Map<String, SparkCollection<Object>> inputDataCollections,
                                                    @Nullable Integer numPartitions) {
@@ -994,6 +1013,10 @@ public abstract class SparkPipelineRunner {
       return new WrappedSQLEngineCollection<>((SQLBackedCollection<Object>) collection,
                                               (c) -> c.map(new RecordInfoWrapper<>(stageName)));
     }
+    // Similarly, a DataframeCollection is wrapped in order to keep the rows in the Dataset for the next stages.
+    if ((SparkCollection<?>) collection instanceof DataframeCollection) {
+      return new WrappedDataframeCollection(stageName, (DataframeCollection) (SparkCollection<?>) collection);
+    }
 
     return collection.map(new RecordInfoWrapper<>(stageName));
   }
@@ -1050,6 +1073,10 @@ public abstract class SparkPipelineRunner {
       return new WrappedSQLEngineCollection<>((SQLBackedCollection<RecordInfo<Object>>) stageData,
                                               (c) -> c.flatMap(stageSpec, new OutputPassFilter<>(port)));
     }
+    // All the records of a wrapped DataframeCollection are output records without a port
+    if (port == null && stageData instanceof WrappedDataframeCollection) {
+      return (SparkCollection<Object>) (SparkCollection<?>) ((WrappedDataframeCollection) stageData).getRecords();
+    }
 
     return stageData.flatMap(stageSpec, new OutputPassFilter<>(port));
   }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017 Cask Data, Inc.
+ * Copyright © 2017-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -28,7 +28,8 @@ public class SparkPipelineRuntime extends PipelineRuntime {
 
   public SparkPipelineRuntime(SparkClientContext context) {
     super(context.getNamespace(), context.getApplicationSpecification().getName(), context.getLogicalStartTime(),
-          new BasicArguments(context), context.getMetrics(), context, context, context, context, context, context);
+          context.getRunId().getId(), new BasicArguments(context), context.getMetrics(), context, context, context,
+          context, context, context);
   }
 
   public SparkPipelineRuntime(JavaSparkExecutionContext sec) {
@@ -36,7 +37,7 @@ public class SparkPipelineRuntime extends PipelineRuntime {
   }
 
   public SparkPipelineRuntime(JavaSparkExecutionContext sec, long batchTime) {
-    super(sec.getNamespace(), sec.getApplicationSpecification().getName(), batchTime,
+    super(sec.getNamespace(), sec.getApplicationSpecification().getName(), batchTime, sec.getRunId().getId(),
           new BasicArguments(sec), sec.getMetrics(), sec.getPluginContext(), sec.getServiceDiscoverer(),
           sec.getSecureStore(), null, null, sec.getPluginContext());
   }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -68,7 +68,6 @@ import org.apache.spark.api.java.function.FlatMapFunction;
 import org.apache.spark.api.java.function.Function;
 import org.apache.spark.api.java.function.Function2;
 import org.apache.spark.api.java.function.PairFlatMapFunction;
-import org.apache.spark.sql.Column;
 import org.apache.spark.sql.SQLContext;
 import org.apache.spark.storage.StorageLevel;
 import org.slf4j.Logger;
@@ -120,15 +119,21 @@ public abstract class BaseRDDCollection<T> implements SparkCollection<T> {
 
   @Override
   public SparkCollection<T> cache() {
+    StorageLevel cacheStorageLevel = getCacheStorageLevel(jsc);
+    return cacheStorageLevel == null ? wrap(rdd) : wrap(rdd.persist(cacheStorageLevel));
+  }
+
+  /**
+   * Returns the {@link StorageLevel} to use for caching collections, or {@code null} if caching is disabled.
+   */
+  @Nullable
+  static StorageLevel getCacheStorageLevel(JavaSparkContext jsc) {
     SparkConf sparkConf = jsc.getConf();
-    if (sparkConf.getBoolean(Constants.SPARK_PIPELINE_AUTOCACHE_ENABLE_FLAG, true)) {
-      String cacheStorageLevelString = sparkConf.get(Constants.SPARK_PIPELINE_CACHING_STORAGE_LEVEL,
-                                                     Constants.DEFAULT_CACHING_STORAGE_LEVEL);
-      StorageLevel cacheStorageLevel = StorageLevel.fromString(cacheStorageLevelString);
-      return wrap(rdd.persist(cacheStorageLevel));
-    } else {
-      return wrap(rdd);
+    if (!sparkConf.getBoolean(Constants.SPARK_PIPELINE_AUTOCACHE_ENABLE_FLAG, true)) {
+      return null;
     }
+    return StorageLevel.fromString(sparkConf.get(Constants.SPARK_PIPELINE_CACHING_STORAGE_LEVEL,
+                                                 Constants.DEFAULT_CACHING_STORAGE_LEVEL));
   }
 
   @SuppressWarnings("unchecked")
@@ -315,13 +320,6 @@ public abstract class BaseRDDCollection<T> implements SparkCollection<T> {
     return new RDDCollection<>(sec, functionCacheFactory, jsc, sqlContext, datasetContext, sinkFactory, rdd);
   }
 
-  protected Column eq(Column left, Column right, boolean isNullSafe) {
-    if (isNullSafe) {
-      return left.eqNullSafe(right);
-    }
-    return left.equalTo(right);
-  }
-
   static String getSQL(JoinExpressionRequest join) {
     JoinCondition.OnExpression condition = join.getCondition();
     Map<String, String> datasetAliases = condition.getDatasetAliases();
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -43,6 +43,7 @@ import io.cdap.cdap.etl.batch.connector.SingleConnectorFactory;
 import io.cdap.cdap.etl.common.BasicArguments;
 import io.cdap.cdap.etl.common.Constants;
 import io.cdap.cdap.etl.common.DefaultMacroEvaluator;
+import io.cdap.cdap.etl.common.DefaultStageMetrics;
 import io.cdap.cdap.etl.common.RecordInfo;
 import io.cdap.cdap.etl.common.SetMultimapCodec;
 import io.cdap.cdap.etl.common.StageStatisticsCollector;
@@ -60,6 +61,7 @@ import io.cdap.cdap.etl.spark.function.FunctionCache;
 import io.cdap.cdap.etl.spark.function.JoinMergeFunction;
 import io.cdap.cdap.etl.spark.function.JoinOnFunction;
 import io.cdap.cdap.etl.spark.function.PluginFunctionContext;
+import io.cdap.cdap.etl.spark.join.AdaptiveJoinPlanner;
 import io.cdap.cdap.internal.io.SchemaTypeAdapter;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.api.java.function.FlatMapFunction;
@@ -99,6 +101,8 @@ public class BatchSparkPipelineDriver extends SparkPipelineRunner implements Jav
   private transient Map<String, Integer> stagePartitions;
   private transient FunctionCache.Factory functionCacheFactory;
   private transient BatchSQLEngineAdapter sqlEngineAdapter;
+  private transient boolean useDataframeRelationalEngine;
+  private transient AdaptiveJoinPlanner adaptiveJoinPlanner;
 
   /**
    * Empty constructor, used when instantiating this class.
@@ -200,6 +204,18 @@ public class BatchSparkPipelineDriver extends SparkPipelineRunner implements Jav
         sec.getRuntimeArguments().getOrDefault(Constants.CACHE_FUNCTIONS, Boolean.TRUE.toString()));
       boolean shouldDisablePushdown = Boolean.parseBoolean(
         sec.getRuntimeArguments().getOrDefault(Constants.DISABLE_ELT_PUSHDOWN, Boolean.FALSE.toString()));
+      useDataframeRelationalEngine = Boolean.parseBoolean(
+        sec.getRuntimeArguments().getOrDefault(Constants.DATAFRAME_RELATIONAL_ENABLED, Boolean.FALSE.toString()));
+      boolean useAdaptiveJoins = Boolean.parseBoolean(
+        sec.getRuntimeArguments().getOrDefault(Constants.ADAPTIVE_JOIN_ENABLED, Boolean.FALSE.toString()));
+      // The planner caches the join inputs to compute their statistics. Without caching, the inputs would be
+      // computed once for the statistics and again for the join, so planning is skipped.
+      if (useAdaptiveJoins && BaseRDDCollection.getCacheStorageLevel(jsc) == null) {
+        LOG.warn("Adaptive join planning is enabled with '{}' but is skipped because caching is disabled with '{}'.",
+                 Constants.ADAPTIVE_JOIN_ENABLED, Constants.SPARK_PIPELINE_AUTOCACHE_ENABLE_FLAG);
+        useAdaptiveJoins = false;
+      }
+      adaptiveJoinPlanner = useAdaptiveJoins ? AdaptiveJoinPlanner.create(sec.getRuntimeArguments()) : null;
       boolean isPreviewEnabled =
         phaseSpec.getPhase().size() == 0
           || sec.getDataTracer(phaseSpec.getPhase().iterator().next().getName()).isEnabled();
@@ -266,6 +282,18 @@ public class BatchSparkPipelineDriver extends SparkPipelineRunner implements Jav
     }
   }
 
+  @Override
+  protected JoinDefinition planAutoJoin(String stageName, JoinDefinition joinDefinition,
+                                        Map<String, SparkCollection<Object>> inputDataCollections) {
+    // Joins executed in the SQL engine are left to the SQL engine to plan
+    if (adaptiveJoinPlanner == null
+      || (sqlEngineAdapter != null && canJoinOnSQLEngine(stageName, joinDefinition, inputDataCollections))) {
+      return joinDefinition;
+    }
+    return adaptiveJoinPlanner.plan(stageName, joinDefinition, inputDataCollections,
+                                    new DefaultStageMetrics(sec.getMetrics(), stageName));
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   protected SparkCollection<Object> handleAutoJoin(String stageName, JoinDefinition joinDefinition,
@@ -367,34 +395,44 @@ public class BatchSparkPipelineDriver extends SparkPipelineRunner implements Jav
 
   /**
    * If SQL Engine is present, supports relational transform and current stage data is already
-   * provided by SQL engine, adds SQL Engine implementation of relational engine
+   * provided by SQL engine, adds SQL Engine implementation of relational engine.
+   * If relational transforms on Spark Datasets are enabled, the Spark relational engine is added after it.
    * @param stageData
    * @return
    */
   @Override
   protected Iterable<SparkCollectionRelationalEngine> getRelationalEngines(StageSpec stageSpec,
                                                                            SparkCollection<Object> stageData) {
+    Iterable<SparkCollectionRelationalEngine> engines = super.getRelationalEngines(stageSpec, stageData);
+    if (useDataframeRelationalEngine) {
+      engines = Iterables.concat(
+        engines,
+        Collections.singletonList(new DataframeRelationalEngine(sec, functionCacheFactory, jsc, new SQLContext(jsc),
+                                                                datasetContext, sinkFactory))
+      );
+    }
+
     if (sqlEngineAdapter == null || !sqlEngineAdapter.supportsRelationalTranform()) {
       //Relational transform on SQL engine is not supported
-      return super.getRelationalEngines(stageSpec, stageData);
+      return engines;
     }
 
     // Explicitly skip this stage if the stage is configured as an excluded stage.
     if (shouldForceSkipSQLEngine(stageSpec.getName())) {
-      return super.getRelationalEngines(stageSpec, stageData);
+      return engines;
     }
 
     // If this stage is not pushed down and it's not in the included stages, we can skip relational transformation
     // in the SQL engine.
     if (!(stageData instanceof SQLBackedCollection) && !shouldForcePushToSQLEngine(stageSpec.getName())) {
-      return super.getRelationalEngines(stageSpec, stageData);
+      return engines;
     }
 
     SQLEngineRelationalEngine relationalEngine = new SQLEngineRelationalEngine(
       sec, functionCacheFactory, jsc, new SQLContext(jsc), datasetContext, sinkFactory, sqlEngineAdapter);
     return Iterables.concat(
       Collections.singletonList(relationalEngine),
-      super.getRelationalEngines(stageSpec, stageData)
+      engines
     );
   }
 
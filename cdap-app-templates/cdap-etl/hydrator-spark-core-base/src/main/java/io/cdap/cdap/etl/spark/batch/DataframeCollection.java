@@ -0,0 +1,638 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark.batch;
+
+import io.cdap.cdap.api.data.DatasetContext;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.spark.JavaSparkExecutionContext;
+import io.cdap.cdap.api.spark.sql.DataFrames;
+import io.cdap.cdap.etl.api.batch.SparkCompute;
+import io.cdap.cdap.etl.api.batch.SparkSink;
+import io.cdap.cdap.etl.api.join.JoinField;
+import io.cdap.cdap.etl.api.streaming.Windower;
+import io.cdap.cdap.etl.common.Constants;
+import io.cdap.cdap.etl.common.PhaseSpec;
+import io.cdap.cdap.etl.common.RecordInfo;
+import io.cdap.cdap.etl.common.StageStatisticsCollector;
+import io.cdap.cdap.etl.proto.v2.spec.StageSpec;
+import io.cdap.cdap.etl.spark.SparkCollection;
+import io.cdap.cdap.etl.spark.SparkPairCollection;
+import io.cdap.cdap.etl.spark.function.CountingExpression;
+import io.cdap.cdap.etl.spark.function.FunctionCache;
+import io.cdap.cdap.etl.spark.function.RowCounter;
+import io.cdap.cdap.etl.spark.join.JoinCollection;
+import io.cdap.cdap.etl.spark.join.JoinExpressionRequest;
+import io.cdap.cdap.etl.spark.join.JoinRequest;
+import io.cdap.cdap.etl.spark.plugin.LiteralsBridge;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.api.java.function.Function;
+import org.apache.spark.api.java.function.PairFlatMapFunction;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SQLContext;
+import org.apache.spark.sql.functions;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.apache.spark.storage.StorageLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.collection.JavaConversions;
+import scala.collection.Seq;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.Nullable;
+
+import static org.apache.spark.sql.functions.coalesce;
+
+/**
+ * A collection of {@link StructuredRecord} that is backed by a Spark {@link Dataset} of {@link Row}.
+ *
+ * Joins and relational transforms are performed on the {@link Dataset} directly, such that consecutive relational
+ * stages are planned and optimized together by Spark. The rows are only converted to {@link StructuredRecord} when
+ * the collection is used by a stage that operates on records, by unwrapping it into a {@link RDDCollection}.
+ */
+public class DataframeCollection implements SparkCollection<StructuredRecord> {
+  private static final Logger LOG = LoggerFactory.getLogger(DataframeCollection.class);
+
+  private final JavaSparkExecutionContext sec;
+  private final FunctionCache.Factory functionCacheFactory;
+  private final JavaSparkContext jsc;
+  private final SQLContext sqlContext;
+  private final DatasetContext datasetContext;
+  private final SparkBatchSinkFactory sinkFactory;
+  private final Dataset<Row> dataframe;
+  private final Schema schema;
+  private final boolean ignorePartitionsDuringDatasetAggregation;
+  private SparkCollection<StructuredRecord> unwrapped;
+
+  public DataframeCollection(JavaSparkExecutionContext sec, FunctionCache.Factory functionCacheFactory,
+                             JavaSparkContext jsc, SQLContext sqlContext,
+                             DatasetContext datasetContext, SparkBatchSinkFactory sinkFactory,
+                             Dataset<Row> dataframe, Schema schema) {
+    this.sec = sec;
+    this.functionCacheFactory = functionCacheFactory;
+    this.jsc = jsc;
+    this.sqlContext = sqlContext;
+    this.datasetContext = datasetContext;
+    this.sinkFactory = sinkFactory;
+    this.dataframe = dataframe;
+    this.schema = schema;
+    this.ignorePartitionsDuringDatasetAggregation = Boolean.parseBoolean(
+      sec.getRuntimeArguments().getOrDefault(Constants.DATASET_AGGREGATE_IGNORE_PARTITIONS, Boolean.TRUE.toString()));
+  }
+
+  /**
+   * Returns the {@link Dataset} backing this collection. The columns of the {@link Dataset} are the fields of
+   * {@link #getSchema()} in the same order.
+   */
+  public Dataset<Row> getDataframe() {
+    return dataframe;
+  }
+
+  /**
+   * Returns the schema of the records in this collection.
+   */
+  public Schema getSchema() {
+    return schema;
+  }
+
+  /**
+   * Converts the rows to records. This is done lazily, as creating the {@link JavaRDD} of a {@link Dataset} plans
+   * the query, which is unnecessary if the collection is only used by other relational operations.
+   */
+  private SparkCollection<StructuredRecord> unwrap() {
+    if (unwrapped == null) {
+      Schema recordSchema = schema;
+      JavaRDD<StructuredRecord> records = dataframe.javaRDD().map(row -> DataFrames.fromRow(row, recordSchema));
+      unwrapped = new RDDCollection<>(sec, functionCacheFactory, jsc, sqlContext, datasetContext, sinkFactory,
+                                      records);
+    }
+    return unwrapped;
+  }
+
+  @Override
+  public <C> C getUnderlying() {
+    return unwrap().getUnderlying();
+  }
+
+  @Override
+  public DataframeCollection cache() {
+    StorageLevel cacheStorageLevel = BaseRDDCollection.getCacheStorageLevel(jsc);
+    if (cacheStorageLevel == null) {
+      return this;
+    }
+    // cache the rows instead of the records, so that the cached data stays in the columnar format
+    return new DataframeCollection(sec, functionCacheFactory, jsc, sqlContext, datasetContext, sinkFactory,
+                                   dataframe.persist(cacheStorageLevel), schema);
+  }
+
+  @Override
+  public SparkCollection<StructuredRecord> union(SparkCollection<StructuredRecord> other) {
+    return unwrap().union(other);
+  }
+
+  @Override
+  public SparkCollection<RecordInfo<Object>> transform(StageSpec stageSpec, StageStatisticsCollector collector) {
+    return unwrap().transform(stageSpec, collector);
+  }
+
+  @Override
+  public SparkCollection<RecordInfo<Object>> multiOutputTransform(StageSpec stageSpec,
+                                                                  StageStatisticsCollector collector) {
+    return unwrap().multiOutputTransform(stageSpec, collector);
+  }
+
+  @Override
+  public <U> SparkCollection<U> map(Function<StructuredRecord, U> function) {
+    return unwrap().map(function);
+  }
+
+  @Override
+  public <U> SparkCollection<U> flatMap(StageSpec stageSpec, FlatMapFunction<StructuredRecord, U> function) {
+    return unwrap().flatMap(stageSpec, function);
+  }
+
+  @Override
+  public SparkCollection<RecordInfo<Object>> aggregate(StageSpec stageSpec, @Nullable Integer partitions,
+                                                       StageStatisticsCollector collector) {
+    return unwrap().aggregate(stageSpec, partitions, collector);
+  }
+
+  @Override
+  public SparkCollection<RecordInfo<Object>> reduceAggregate(StageSpec stageSpec, @Nullable Integer partitions,
+                                                             StageStatisticsCollector collector) {
+    return unwrap().reduceAggregate(stageSpec, partitions, collector);
+  }
+
+  @Override
+  public <K, V> SparkPairCollection<K, V> flatMapToPair(PairFlatMapFunction<StructuredRecord, K, V> function) {
+    return unwrap().flatMapToPair(function);
+  }
+
+  @Override
+  public <U> SparkCollection<U> compute(StageSpec stageSpec, SparkCompute<StructuredRecord, U> compute)
+    throws Exception {
+    return unwrap().compute(stageSpec, compute);
+  }
+
+  @Override
+  public Runnable createStoreTask(StageSpec stageSpec,
+                                  PairFlatMapFunction<StructuredRecord, Object, Object> sinkFunction) {
+    return unwrap().createStoreTask(stageSpec, sinkFunction);
+  }
+
+  @Override
+  public Runnable createMultiStoreTask(PhaseSpec phaseSpec, Set<String> group, Set<String> sinks,
+                                      Map<String, StageStatisticsCollector> collectors) {
+    return unwrap().createMultiStoreTask(phaseSpec, group, sinks, collectors);
+  }
+
+  @Override
+  public Runnable createStoreTask(StageSpec stageSpec, SparkSink<StructuredRecord> sink) throws Exception {
+    return unwrap().createStoreTask(stageSpec, sink);
+  }
+
+  @Override
+  public void publishAlerts(StageSpec stageSpec, StageStatisticsCollector collector) throws Exception {
+    unwrap().publishAlerts(stageSpec, collector);
+  }
+
+  @Override
+  public SparkCollection<StructuredRecord> window(StageSpec stageSpec, Windower windower) {
+    return unwrap().window(stageSpec, windower);
+  }
+
+  @Override
+  public SparkCollection<StructuredRecord> join(JoinRequest joinRequest) {
+    String stageName = joinRequest.getStageName();
+    Dataset<Row> joined = join(joinRequest, this, (data, dataSchema) -> toCountedDataset(data, dataSchema, stageName),
+                               ignorePartitionsDuringDatasetAggregation);
+    return toCountedCollection(joined, joinRequest.getOutputSchema(), stageName);
+  }
+
+  @Override
+  public SparkCollection<StructuredRecord> join(JoinExpressionRequest joinRequest) {
+    String stageName = joinRequest.getStageName();
+    Dataset<Row> joined = join(sqlContext, joinRequest, this,
+                               (data, dataSchema) -> toCountedDataset(data, dataSchema, stageName));
+    return toCountedCollection(joined, joinRequest.getOutputSchema(), stageName);
+  }
+
+  /**
+   * Joins the rows of the given collection with the rows of the other stages of the given request.
+   *
+   * @param joinRequest the join to perform
+   * @param leftData the data of the left stage of the join
+   * @param toRows function that returns the rows of the data of a stage that is joined, with the given schema
+   * @param ignorePartitions whether to ignore the number of partitions of the request
+   * @return the joined rows, with the output fields of the request as columns
+   */
+  static Dataset<Row> join(JoinRequest joinRequest, SparkCollection<?> leftData,
+                           BiFunction<SparkCollection<?>, Schema, Dataset<Row>> toRows, boolean ignorePartitions) {
+    Map<String, Dataset> collections = new HashMap<>();
+    StructType leftSparkSchema = DataFrames.toDataType(joinRequest.getLeftSchema());
+    Dataset<Row> left = toRows.apply(leftData, joinRequest.getLeftSchema());
+    collections.put(joinRequest.getLeftStage(), left);
+
+    List<Column> leftJoinColumns = joinRequest.getLeftKey().stream()
+      .map(left::col)
+      .collect(Collectors.toList());
+
+    /*
+        This flag keeps track of whether there is at least one required stage in the join.
+        This is needed in case there is a join like:
+
+        A (optional), B (required), C (optional), D (required)
+
+        The correct thing to do here is:
+
+        1. A right outer join B as TMP1
+        2. TMP1 left outer join C as TMP2
+        3. TMP2 inner join D
+
+        Join #1 is a straightforward join between 2 sides.
+        Join #2 is a left outer because TMP1 becomes 'required', since it uses required input B.
+        Join #3 is an inner join even though it contains 2 optional datasets, because 'B' is still required.
+     */
+    Integer joinPartitions = joinRequest.getNumPartitions();
+    boolean seenRequired = joinRequest.isLeftRequired();
+    Dataset<Row> joined = left;
+    List<List<Column>> listOfListOfLeftCols = new ArrayList<>();
+
+    for (JoinCollection toJoin : joinRequest.getToJoin()) {
+      StructType sparkSchema = DataFrames.toDataType(toJoin.getSchema());
+      Dataset<Row> right = toRows.apply(toJoin.getData(), toJoin.getSchema());
+      collections.put(toJoin.getStage(), right);
+
+      List<Column> rightJoinColumns = toJoin.getKey().stream()
+        .map(right::col)
+        .collect(Collectors.toList());
+
+      // UUID for salt column name to avoid name collisions
+      String saltColumn = UUID.randomUUID().toString();
+      if (joinRequest.isDistributionEnabled()) {
+
+        boolean isLeftStageSkewed =
+          joinRequest.getLeftStage().equals(joinRequest.getDistribution().getSkewedStageName());
+
+        // Apply salt/explode transformations to each Dataset
+        if (isLeftStageSkewed) {
+          left = saltDataset(left, saltColumn, joinRequest.getDistribution().getDistributionFactor());
+          right = explodeDataset(right, saltColumn, joinRequest.getDistribution().getDistributionFactor());
+        } else {
+          left = explodeDataset(left, saltColumn, joinRequest.getDistribution().getDistributionFactor());
+          right = saltDataset(right, saltColumn, joinRequest.getDistribution().getDistributionFactor());
+        }
+
+        // Add the salt column to the join key
+        leftJoinColumns.add(left.col(saltColumn));
+        rightJoinColumns.add(right.col(saltColumn));
+
+        // Updating other values that will be used later in join
+        joined = left;
+        sparkSchema = sparkSchema.add(saltColumn, DataTypes.IntegerType, false);
+        leftSparkSchema = leftSparkSchema.add(saltColumn, DataTypes.IntegerType, false);
+      }
+
+      Column joinOn;
+      List<Column> finalLeftJoinColumns = leftJoinColumns; //Making effectively final to use in streams
+
+      if (seenRequired) {
+        joinOn = IntStream.range(0, leftJoinColumns.size())
+          .mapToObj(i -> eq(finalLeftJoinColumns.get(i), rightJoinColumns.get(i), joinRequest.isNullSafe()))
+          .reduce((a, b) -> a.and(b)).get();
+      } else {
+        // For the case when all joins are outer. Collect left keys at each level (each iteration)
+        // coalesce these keys at each level and compare with right
+        joinOn = IntStream.range(0, leftJoinColumns.size())
+          .mapToObj(i -> {
+            collectLeftJoinOnCols(listOfListOfLeftCols, i, finalLeftJoinColumns.get(i));
+            return eq(getLeftJoinOnCoalescedColumn(finalLeftJoinColumns.get(i), i, listOfListOfLeftCols),
+                      rightJoinColumns.get(i),
+                      joinRequest.isNullSafe());
+          })
+          .reduce((a, b) -> a.and(b)).get();
+      }
+
+      String joinType;
+      if (seenRequired && toJoin.isRequired()) {
+        joinType = "inner";
+      } else if (seenRequired && !toJoin.isRequired()) {
+        joinType = "leftouter";
+      } else if (!seenRequired && toJoin.isRequired()) {
+        joinType = "rightouter";
+      } else {
+        joinType = "outer";
+      }
+      seenRequired = seenRequired || toJoin.isRequired();
+
+      if (toJoin.isBroadcast()) {
+        right = functions.broadcast(right);
+      }
+      // repartition on the join keys with the number of partitions specified in the join request.
+      // since they are partitioned on the same thing, spark will not repartition during the join,
+      // which allows us to use a different number of partitions per joiner instead of using the global
+      // spark.sql.shuffle.partitions setting in the spark conf.
+      // Note that it does not work with Spark 2.3+ as they changed partitioning column set in
+      // https://github.com/apache/spark/pull/19937. Now we ignore user setting unless
+      // we are forced to with spark.cdap.pipeline.aggregate.dataset.partitions.ignore = false
+      if (!ignorePartitions && joinPartitions != null && !toJoin.isBroadcast()) {
+        List<String> rightKeys = new ArrayList<>(toJoin.getKey());
+        List<String> leftKeys = new ArrayList<>(joinRequest.getLeftKey());
+
+        // If distribution is enabled we need to add it to the partition keys to ensure we end up with the desired
+        // number of partitions
+        if (joinRequest.isDistributionEnabled()) {
+          rightKeys.add(saltColumn);
+          leftKeys.add(saltColumn);
+        }
+        right = partitionOnKey(right, rightKeys, joinRequest.isNullSafe(), sparkSchema, joinPartitions);
+        // only need to repartition the left side if this is the first join,
+        // as intermediate joins will already be partitioned on the key
+        if (joined == left) {
+          joined = partitionOnKey(joined, leftKeys, joinRequest.isNullSafe(),
+                                  leftSparkSchema, joinPartitions);
+        }
+      }
+      joined = joined.join(right, joinOn, joinType);
+
+      /*
+           Consider stages A, B, C:
+
+           A (id, email) = (2, charles@example.com)
+           B (id, name) = (0, alice), (1, bob)
+           C (id, age) = (0, 25)
+
+           where A, B, C are joined on A.id = B.id = C.id, where B and C are required and A is optional.
+           This RDDCollection is the data for stage A.
+
+           this is implemented as a join of (A right outer join B on A.id = B.id) as TMP1
+           followed by (TMP1 inner join C on TMP1.B.id = C.id) as OUT
+
+           TMP1 looks like:
+           TMP1 (A.id, A.name, B.id, B.email) = (null, null, 0, alice), (null, null, 1, bob)
+
+           and the final output looks like:
+           OUT (A.id, A.name, B.id, B.email, C.id, C.age) = (null, null, 0, alice, 0, 25)
+
+           It's important to join on B.id = C.id and not on A.id = C.id, because joining on A.id = C.id will result
+           in an empty output, as A.id is always null in the TMP1 dataset. In general, the principle is to join on the
+           required fields and not on the optional fields when possible.
+       */
+      /*
+           Additionally if none of the datasets are required until now, which means all of the joines will outer.
+           In this case also we need to pass on the join columns as we need to compare using coalesce of all previous
+           columns with the right dataset
+       */
+      if (toJoin.isRequired() || !seenRequired) {
+        leftJoinColumns = rightJoinColumns;
+      }
+    }
+
+    // select and alias fields in the expected order
+    List<Column> outputColumns = new ArrayList<>(joinRequest.getFields().size());
+    for (JoinField field : joinRequest.getFields()) {
+      Column column = collections.get(field.getStageName()).col(field.getFieldName());
+      if (field.getAlias() != null) {
+        column = column.alias(field.getAlias());
+      }
+      outputColumns.add(column);
+    }
+
+    Seq<Column> outputColumnSeq = JavaConversions.asScalaBuffer(outputColumns).toSeq();
+    return joined.select(outputColumnSeq);
+  }
+
+  /**
+   * Joins the rows of the left and right stages of the given request.
+   *
+   * @param sqlContext the context to run the join query in
+   * @param joinRequest the join to perform
+   * @param leftData the data of the left stage of the join
+   * @param toRows function that returns the rows of the data of a stage that is joined, with the given schema
+   * @return the joined rows, with the output fields of the request as columns
+   */
+  static Dataset<Row> join(SQLContext sqlContext, JoinExpressionRequest joinRequest, SparkCollection<?> leftData,
+                           BiFunction<SparkCollection<?>, Schema, Dataset<Row>> toRows) {
+    JoinCollection leftInfo = joinRequest.getLeft();
+    Dataset<Row> leftDF = toRows.apply(leftData, leftInfo.getSchema());
+
+    JoinCollection rightInfo = joinRequest.getRight();
+    Dataset<Row> rightDF = toRows.apply(rightInfo.getData(), rightInfo.getSchema());
+
+    // if this is not a broadcast join, Spark will reprocess each side multiple times, depending on the number
+    // of partitions. If the left side has N partitions and the right side has M partitions,
+    // the left side gets reprocessed M times and the right side gets reprocessed N times.
+    // Cache the input to prevent confusing metrics and potential source re-reading.
+    // this is only necessary for inner joins, since outer joins are automatically changed to
+    // BroadcastNestedLoopJoins by Spark
+    boolean isInner = joinRequest.getLeft().isRequired() && joinRequest.getRight().isRequired();
+    boolean isBroadcast = joinRequest.getLeft().isBroadcast() || joinRequest.getRight().isBroadcast();
+    if (isInner && !isBroadcast) {
+      leftDF = leftDF.persist(StorageLevel.DISK_ONLY());
+      rightDF = rightDF.persist(StorageLevel.DISK_ONLY());
+    }
+
+    // register using unique names to avoid collisions.
+    String leftId = UUID.randomUUID().toString().replaceAll("-", "");
+    String rightId = UUID.randomUUID().toString().replaceAll("-", "");
+    leftDF.registerTempTable(leftId);
+    rightDF.registerTempTable(rightId);
+
+    /*
+        Suppose the join was originally:
+
+          select P.id as id, users.name as username
+          from purchases as P join users
+          on P.user_id = users.id or P.user_id = 0
+
+        After registering purchases as uuid0 and users as uuid1,
+        the query needs to be rewritten to replace the original names with the new generated ids,
+        as the query needs to be:
+
+          select P.id as id, uuid1.name as username
+          from uuid0 as P join uuid1
+          on P.user_id = uuid1.id or P.user_id = 0
+     */
+    String sql = BaseRDDCollection.getSQL(joinRequest.rename(leftId, rightId));
+    LOG.debug("Executing join stage {} using SQL: \n{}", joinRequest.getStageName(), sql);
+    return sqlContext.sql(sql);
+  }
+
+  /**
+   * Helper method that adds a salt column to a dataframe for join distribution
+   *
+   * @param data               Dataframe add salt to
+   * @param saltColumnName     Name to use for the new salt column
+   * @param distributionFactor The desired salt size, values in the salt column will range [0,distributionFactor)
+   * @return Dataframe with an additional salt column
+   */
+  private static Dataset saltDataset(Dataset data, String saltColumnName, int distributionFactor) {
+    Dataset saltedData = data.withColumn(saltColumnName, functions.rand().multiply(distributionFactor));
+    saltedData = saltedData.withColumn(saltColumnName,
+                                       functions.floor(saltedData.col(saltColumnName)).cast(DataTypes.IntegerType));
+    return saltedData;
+  }
+
+  /**
+   * Helper method that adds salt column to a dataframe and explodes the rows
+   *
+   * @param data               Dataframe to explode
+   * @param saltColumnName     Name to use for the new salt column
+   * @param distributionFactor The desired salt size, this will increase the number of rows by a factor of
+   *                           distributionFactor
+   * @return Dataframe with an additional salt column
+   */
+  private static Dataset explodeDataset(Dataset data, String saltColumnName, int distributionFactor) {
+    //Array of [0,distributionFactor) to be used in to prepare for the explode
+    Integer[] numbers = IntStream.range(0, distributionFactor).boxed().toArray(Integer[]::new);
+
+    // Add a column that uses the 'numbers' array as the value for every row
+    Dataset explodedData = data.withColumn(saltColumnName,
+                                           functions.array(
+                                             Arrays.stream(numbers).map(functions::lit).toArray(Column[]::new)
+                                           ));
+    explodedData = explodedData.withColumn(saltColumnName, functions.explode(explodedData.col(saltColumnName)));
+    return explodedData;
+  }
+
+  private static Dataset<Row> partitionOnKey(Dataset<Row> df, List<String> key, boolean isNullSafe,
+                                             StructType sparkSchema, int numPartitions) {
+    List<Column> columns = getPartitionColumns(df, key, isNullSafe, sparkSchema);
+    return df.repartition(numPartitions, JavaConversions.asScalaBuffer(columns).toSeq());
+  }
+
+  private static List<Column> getPartitionColumns(Dataset<Row> df, List<String> key, boolean isNullSafe,
+                                                  StructType sparkSchema) {
+    if (!isNullSafe) {
+      return key.stream().map(df::col).collect(Collectors.toList());
+    }
+
+    // if a null safe join is happening, spark will partition on coalesce(col, [default val]),
+    // where the default val is dependent on the column type and defined in
+    // org.apache.spark.sql.catalyst.expressions.Literal
+    return key.stream().map(keyCol -> {
+      int fieldIndex = sparkSchema.fieldIndex(keyCol);
+      DataType dataType = sparkSchema.fields()[fieldIndex].dataType();
+      Column defaultCol = new Column(LiteralsBridge.defaultLiteral(dataType));
+      return functions.coalesce(df.col(keyCol), defaultCol);
+    }).collect(Collectors.toList());
+  }
+
+  private static void collectLeftJoinOnCols(List<List<Column>> listOfListOfColumns, int index,
+                                            Column leftJoinOnCurrent) {
+    if (listOfListOfColumns.size() <= index) {
+      listOfListOfColumns.add(new ArrayList<Column>());
+    }
+    listOfListOfColumns.get(index).add(leftJoinOnCurrent);
+  }
+
+  private static Column getLeftJoinOnCoalescedColumn(Column leftJoinOnCurrent, int index,
+                                                     List<List<Column>> listOfListOfColumns) {
+    Column[] colArray = new Column[listOfListOfColumns.get(index).size()];
+    Column coalesedCol = coalesce(listOfListOfColumns.get(index).toArray(colArray));
+    return coalesedCol;
+  }
+
+  /**
+   * Returns the rows of the given collection as a {@link Dataset} with the given schema, counting them as records
+   * going into the given stage.
+   */
+  private Dataset<Row> toCountedDataset(SparkCollection<?> data, Schema dataSchema, String stageName) {
+    return CountingExpression.count(toDataset(sqlContext, data, DataFrames.toDataType(dataSchema)),
+                                    new RowCounter(stageName, sec.getMetrics(), Constants.Metrics.RECORDS_IN,
+                                                   sec.getDataTracer(stageName), dataSchema));
+  }
+
+  /**
+   * Returns the rows of the given collection as a {@link Dataset} with the given schema. The rows of a
+   * {@link DataframeCollection} are used as is if their columns have the types of the schema, while the records of
+   * any other collection are converted to rows.
+   */
+  static Dataset<Row> toDataset(SQLContext sqlContext, SparkCollection<?> data, StructType sparkSchema) {
+    if (data instanceof DataframeCollection) {
+      try {
+        return conform(((DataframeCollection) data).getDataframe(), sparkSchema);
+      } catch (IllegalArgumentException e) {
+        // convert the records to rows with the expected types, which fails for records that don't match the schema
+        LOG.debug("Rows do not match the schema {}, converting them from the records", sparkSchema, e);
+      }
+    }
+    JavaRDD<StructuredRecord> records = data.getUnderlying();
+    return sqlContext.createDataFrame(records.map(record -> DataFrames.toRow(record, sparkSchema)).rdd(),
+                                      sparkSchema);
+  }
+
+  /**
+   * Returns a {@link DataframeCollection} of the given rows, counting them as records going out of the given stage.
+   */
+  DataframeCollection toCountedCollection(Dataset<Row> rows, Schema rowSchema, String stageName) {
+    Dataset<Row> counted = CountingExpression.count(rows, new RowCounter(
+      stageName, sec.getMetrics(), Constants.Metrics.RECORDS_OUT, sec.getDataTracer(stageName), rowSchema));
+    return new DataframeCollection(sec, functionCacheFactory, jsc, sqlContext, datasetContext, sinkFactory,
+                                   counted, rowSchema);
+  }
+
+  /**
+   * Selects the columns of the given {@link Dataset} that are in the given schema, in the order of the schema.
+   * Columns are never cast, as a cast silently turns values that cannot be converted into nulls.
+   *
+   * @throws IllegalArgumentException if a field of the schema is not a column of the {@link Dataset}, or if the
+   *                                  column is of a different type than the field
+   */
+  static Dataset<Row> conform(Dataset<Row> rows, StructType sparkSchema) {
+    StructType rowsSchema = rows.schema();
+    Set<String> rowsColumns = new HashSet<>(Arrays.asList(rowsSchema.fieldNames()));
+    List<Column> columns = new ArrayList<>(sparkSchema.size());
+    for (StructField field : sparkSchema.fields()) {
+      if (!rowsColumns.contains(field.name())) {
+        throw new IllegalArgumentException(String.format("Column '%s' does not exist in %s",
+                                                         field.name(), rowsSchema.simpleString()));
+      }
+      DataType columnType = rowsSchema.apply(field.name()).dataType();
+      if (!columnType.equals(field.dataType())) {
+        throw new IllegalArgumentException(String.format("Column '%s' is of type %s instead of %s", field.name(),
+                                                         columnType.simpleString(), field.dataType().simpleString()));
+      }
+      columns.add(rows.col(field.name()));
+    }
+    return rows.select(JavaConversions.asScalaBuffer(columns).toSeq());
+  }
+
+  private static Column eq(Column left, Column right, boolean isNullSafe) {
+    if (isNullSafe) {
+      return left.eqNullSafe(right);
+    }
+    return left.equalTo(right);
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark.batch;
+
+import io.cdap.cdap.etl.api.relational.Capability;
+import io.cdap.cdap.etl.api.relational.Engine;
+import io.cdap.cdap.etl.api.relational.ExpressionFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Relational {@link Engine} that executes relational transforms in Spark on a {@link DataframeRelation}.
+ */
+public class DataframeEngine implements Engine {
+  private static final List<ExpressionFactory<?>> EXPRESSION_FACTORIES =
+    Collections.singletonList(new SparkSQLExpressionFactory());
+
+  @Override
+  public Set<Capability> getCapabilities() {
+    return Collections.emptySet();
+  }
+
+  @Override
+  public List<ExpressionFactory<?>> getExpressionFactories() {
+    return EXPRESSION_FACTORIES;
+  }
+}
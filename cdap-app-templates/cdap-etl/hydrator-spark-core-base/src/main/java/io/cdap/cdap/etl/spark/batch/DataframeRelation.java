@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark.batch;
+
+import io.cdap.cdap.etl.api.aggregation.GroupByAggregationDefinition;
+import io.cdap.cdap.etl.api.relational.Expression;
+import io.cdap.cdap.etl.api.relational.InvalidRelation;
+import io.cdap.cdap.etl.api.relational.Relation;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.functions;
+import scala.collection.JavaConversions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link Relation} backed by a Spark {@link Dataset} of {@link Row}. Each operation is translated to the
+ * equivalent {@link Dataset} operation, which Spark analyzes right away and only executes when the result is used.
+ * Operations that cannot be analyzed, for example because an expression refers to a missing column,
+ * result in an {@link InvalidRelation}.
+ */
+public class DataframeRelation implements Relation {
+  private final Dataset<Row> dataframe;
+
+  public DataframeRelation(Dataset<Row> dataframe) {
+    this.dataframe = dataframe;
+  }
+
+  /**
+   * Returns the {@link Dataset} of this relation.
+   */
+  public Dataset<Row> getDataframe() {
+    return dataframe;
+  }
+
+  @Override
+  public boolean isValid() {
+    return true;
+  }
+
+  @Override
+  public String getValidationError() {
+    return null;
+  }
+
+  @Override
+  public Relation setColumn(String column, Expression value) {
+    return apply(Collections.singletonList(value), () -> dataframe.withColumn(column, toColumn(value)));
+  }
+
+  @Override
+  public Relation dropColumn(String column) {
+    return apply(Collections.emptyList(), () -> dataframe.drop(column));
+  }
+
+  @Override
+  public Relation select(Map<String, Expression> columns) {
+    return apply(columns.values(), () -> {
+      List<Column> selected = columns.entrySet().stream()
+        .map(e -> toColumn(e.getValue()).alias(e.getKey()))
+        .collect(Collectors.toList());
+      return dataframe.select(JavaConversions.asScalaBuffer(selected).toSeq());
+    });
+  }
+
+  @Override
+  public Relation filter(Expression filter) {
+    return apply(Collections.singletonList(filter), () -> dataframe.filter(toColumn(filter)));
+  }
+
+  @Override
+  public Relation groupBy(GroupByAggregationDefinition aggregationDefinition) {
+    List<Expression> groupBy = aggregationDefinition.getGroupByExpressions();
+    Map<String, Expression> select = aggregationDefinition.getSelectExpressions();
+    List<Expression> expressions = new ArrayList<>(groupBy);
+    expressions.addAll(select.values());
+
+    return apply(expressions, () -> {
+      // The select expressions are a mix of grouping keys and aggregate functions. They are aggregated under internal
+      // names and then selected under their own names, as Dataset.groupBy() always adds the grouping keys to the
+      // output, which may have the same names as the select expressions.
+      List<Column> groupByColumns = groupBy.stream().map(DataframeRelation::toColumn).collect(Collectors.toList());
+      List<Column> aggregateColumns = new ArrayList<>(select.size());
+      List<Column> selectedColumns = new ArrayList<>(select.size());
+      for (Map.Entry<String, Expression> entry : select.entrySet()) {
+        String aggregateName = "__select_" + aggregateColumns.size();
+        aggregateColumns.add(toColumn(entry.getValue()).alias(aggregateName));
+        selectedColumns.add(functions.col(aggregateName).alias(entry.getKey()));
+      }
+      List<Column> otherAggregateColumns = aggregateColumns.subList(1, aggregateColumns.size());
+      return dataframe.groupBy(JavaConversions.asScalaBuffer(groupByColumns).toSeq())
+        .agg(aggregateColumns.get(0), JavaConversions.asScalaBuffer(otherAggregateColumns).toSeq())
+        .select(JavaConversions.asScalaBuffer(selectedColumns).toSeq());
+    });
+  }
+
+  /**
+   * Applies an operation with the given expressions, if they are valid Spark SQL expressions.
+   */
+  private Relation apply(Collection<Expression> expressions, Supplier<Dataset<Row>> operation) {
+    for (Expression expression : expressions) {
+      if (!(expression instanceof SparkSQLExpression)) {
+        return new InvalidRelation("Expression '" + expression + "' is not supported by the Spark engine");
+      }
+      if (!expression.isValid()) {
+        return new InvalidRelation(expression.getValidationError());
+      }
+    }
+    try {
+      return new DataframeRelation(operation.get());
+    } catch (Exception e) {
+      return new InvalidRelation(e.getMessage());
+    }
+  }
+
+  private static Column toColumn(Expression expression) {
+    return ((SparkSQLExpression) expression).toColumn();
+  }
+}
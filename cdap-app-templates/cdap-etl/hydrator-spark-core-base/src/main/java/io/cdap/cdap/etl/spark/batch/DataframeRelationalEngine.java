@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark.batch;
+
+import io.cdap.cdap.api.data.DatasetContext;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.spark.JavaSparkExecutionContext;
+import io.cdap.cdap.api.spark.sql.DataFrames;
+import io.cdap.cdap.etl.api.relational.Engine;
+import io.cdap.cdap.etl.api.relational.Relation;
+import io.cdap.cdap.etl.api.relational.RelationalTransform;
+import io.cdap.cdap.etl.common.Constants;
+import io.cdap.cdap.etl.proto.v2.spec.StageSpec;
+import io.cdap.cdap.etl.spark.SparkCollection;
+import io.cdap.cdap.etl.spark.SparkCollectionRelationalEngine;
+import io.cdap.cdap.etl.spark.function.CountingExpression;
+import io.cdap.cdap.etl.spark.function.FunctionCache;
+import io.cdap.cdap.etl.spark.function.RowCounter;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SQLContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Spark Collection relational engine that executes relational transforms in Spark on a {@link Dataset} of
+ * {@link Row}. The output of a transform is a {@link DataframeCollection}, such that consecutive relational stages
+ * and joins stay as a {@link Dataset} and are optimized together by Spark.
+ */
+public class DataframeRelationalEngine implements SparkCollectionRelationalEngine {
+  private static final Logger LOG = LoggerFactory.getLogger(DataframeRelationalEngine.class);
+  private static final Engine ENGINE = new DataframeEngine();
+
+  private final JavaSparkExecutionContext sec;
+  private final FunctionCache.Factory functionCacheFactory;
+  private final JavaSparkContext jsc;
+  private final SQLContext sqlContext;
+  private final DatasetContext datasetContext;
+  private final SparkBatchSinkFactory sinkFactory;
+
+  public DataframeRelationalEngine(JavaSparkExecutionContext sec,
+                                   FunctionCache.Factory functionCacheFactory,
+                                   JavaSparkContext jsc,
+                                   SQLContext sqlContext,
+                                   DatasetContext datasetContext,
+                                   SparkBatchSinkFactory sinkFactory) {
+    this.sec = sec;
+    this.functionCacheFactory = functionCacheFactory;
+    this.jsc = jsc;
+    this.sqlContext = sqlContext;
+    this.datasetContext = datasetContext;
+    this.sinkFactory = sinkFactory;
+  }
+
+  @Override
+  public Engine getRelationalEngine() {
+    return ENGINE;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> Optional<SparkCollection<T>> tryRelationalTransform(
+    StageSpec stageSpec, RelationalTransform transform, Map<String, SparkCollection<Object>> input) {
+
+    String stageName = stageSpec.getName();
+    Map<String, Schema> inputSchemas = stageSpec.getInputSchemas();
+    Schema outputSchema = stageSpec.getOutputSchema();
+    // Records can only be represented as rows if their schema is known
+    if (outputSchema == null || input.keySet().stream().anyMatch(name -> inputSchemas.get(name) == null)) {
+      return Optional.empty();
+    }
+
+    Map<String, Relation> inputRelations = new HashMap<>();
+    for (Map.Entry<String, SparkCollection<Object>> entry : input.entrySet()) {
+      Schema inputSchema = inputSchemas.get(entry.getKey());
+      Dataset<Row> rows = DataframeCollection.toDataset(sqlContext, entry.getValue(),
+                                                        DataFrames.toDataType(inputSchema));
+      rows = CountingExpression.count(rows, new RowCounter(
+        stageName, sec.getMetrics(), Constants.Metrics.RECORDS_IN, sec.getDataTracer(stageName), inputSchema));
+      inputRelations.put(entry.getKey(), new DataframeRelation(rows));
+    }
+
+    BasicRelationalTransformContext pluginContext = new BasicRelationalTransformContext(
+      ENGINE, inputRelations, inputSchemas, outputSchema);
+    if (!transform.transform(pluginContext)) {
+      //Plugin was not able to do relational tranform with this engine
+      return Optional.empty();
+    }
+    Relation outputRelation = pluginContext.getOutputRelation();
+    if (outputRelation == null) {
+      //Plugin said that tranformation was success but failed to set output
+      throw new IllegalStateException("Plugin " + transform + " did not produce a relational output");
+    }
+    if (!outputRelation.isValid()) {
+      LOG.debug("Stage {} cannot be executed as a Spark relational transform: {}",
+                stageName, outputRelation.getValidationError());
+      return Optional.empty();
+    }
+    if (!(outputRelation instanceof DataframeRelation)) {
+      return Optional.empty();
+    }
+
+    Dataset<Row> output;
+    try {
+      output = DataframeCollection.conform(((DataframeRelation) outputRelation).getDataframe(),
+                                           DataFrames.toDataType(outputSchema));
+    } catch (Exception e) {
+      LOG.debug("Output of stage {} does not match its output schema {}", stageName, outputSchema, e);
+      return Optional.empty();
+    }
+
+    output = CountingExpression.count(output, new RowCounter(
+      stageName, sec.getMetrics(), Constants.Metrics.RECORDS_OUT, sec.getDataTracer(stageName), outputSchema));
+    return Optional.of((SparkCollection<T>) new DataframeCollection(sec, functionCacheFactory, jsc, sqlContext,
+                                                                    datasetContext, sinkFactory, output,
+                                                                    outputSchema));
+  }
+}
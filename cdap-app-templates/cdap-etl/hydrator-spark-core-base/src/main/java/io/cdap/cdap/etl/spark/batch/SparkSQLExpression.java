@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark.batch;
+
+import io.cdap.cdap.etl.api.relational.ExtractableExpression;
+import io.cdap.cdap.etl.api.relational.InvalidExtractableExpressionException;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.functions;
+
+import javax.annotation.Nullable;
+
+/**
+ * A Spark SQL expression created by {@link SparkSQLExpressionFactory}. The expression is parsed when it is created,
+ * and resolved against the columns of a {@link DataframeRelation} when it is used.
+ */
+public class SparkSQLExpression implements ExtractableExpression<String> {
+  private final String expression;
+  private final String validationError;
+
+  private SparkSQLExpression(String expression, @Nullable String validationError) {
+    this.expression = expression;
+    this.validationError = validationError;
+  }
+
+  /**
+   * Creates a {@link SparkSQLExpression} from the given SQL, which is invalid if the SQL cannot be parsed.
+   */
+  static SparkSQLExpression of(String expression) {
+    try {
+      functions.expr(expression);
+      return new SparkSQLExpression(expression, null);
+    } catch (Exception e) {
+      return new SparkSQLExpression(expression, e.getMessage());
+    }
+  }
+
+  @Override
+  public boolean isValid() {
+    return validationError == null;
+  }
+
+  @Nullable
+  @Override
+  public String getValidationError() {
+    return validationError;
+  }
+
+  @Override
+  public String extract() throws InvalidExtractableExpressionException {
+    if (validationError != null) {
+      throw new InvalidExtractableExpressionException(validationError);
+    }
+    return expression;
+  }
+
+  /**
+   * Returns the SQL of this expression.
+   */
+  public String getExpression() {
+    return expression;
+  }
+
+  /**
+   * Returns this expression as a {@link Column}.
+   */
+  public Column toColumn() {
+    return functions.expr(expression);
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark.batch;
+
+import io.cdap.cdap.etl.api.relational.Capability;
+import io.cdap.cdap.etl.api.relational.CoreExpressionCapabilities;
+import io.cdap.cdap.etl.api.relational.Expression;
+import io.cdap.cdap.etl.api.relational.ExpressionFactory;
+import io.cdap.cdap.etl.api.relational.ExpressionFactoryType;
+import io.cdap.cdap.etl.api.relational.ExtractableExpression;
+import io.cdap.cdap.etl.api.relational.Relation;
+import io.cdap.cdap.etl.api.relational.StringExpressionFactoryType;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * {@link ExpressionFactory} of the {@link DataframeEngine}, compiling SQL expressions in the Spark SQL dialect.
+ */
+public class SparkSQLExpressionFactory implements ExpressionFactory<String> {
+  private static final Set<Capability> CAPABILITIES =
+    Collections.singleton(CoreExpressionCapabilities.CAN_GET_QUALIFIED_COLUMN_NAME);
+
+  @Override
+  public ExpressionFactoryType<String> getType() {
+    return StringExpressionFactoryType.SQL;
+  }
+
+  @Override
+  public Set<Capability> getCapabilities() {
+    return CAPABILITIES;
+  }
+
+  @Override
+  public Expression compile(String expression) {
+    return SparkSQLExpression.of(expression);
+  }
+
+  @Override
+  public ExtractableExpression<String> getQualifiedColumnName(Relation dataSet, String column) {
+    return SparkSQLExpression.of(quote(column));
+  }
+
+  /**
+   * Quotes the given identifier, such that it can be used in a Spark SQL expression.
+   */
+  static String quote(String identifier) {
+    return "`" + identifier.replace("`", "``") + "`";
+  }
+}
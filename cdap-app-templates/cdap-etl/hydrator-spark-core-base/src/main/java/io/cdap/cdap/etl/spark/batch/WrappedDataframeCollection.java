@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark.batch;
+
+import io.cdap.cdap.etl.api.batch.SparkCompute;
+import io.cdap.cdap.etl.api.batch.SparkSink;
+import io.cdap.cdap.etl.api.streaming.Windower;
+import io.cdap.cdap.etl.common.PhaseSpec;
+import io.cdap.cdap.etl.common.RecordInfo;
+import io.cdap.cdap.etl.common.StageStatisticsCollector;
+import io.cdap.cdap.etl.proto.v2.spec.StageSpec;
+import io.cdap.cdap.etl.spark.SparkCollection;
+import io.cdap.cdap.etl.spark.SparkPairCollection;
+import io.cdap.cdap.etl.spark.join.JoinExpressionRequest;
+import io.cdap.cdap.etl.spark.join.JoinRequest;
+import io.cdap.cdap.etl.spark.streaming.function.RecordInfoWrapper;
+import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.api.java.function.Function;
+import org.apache.spark.api.java.function.PairFlatMapFunction;
+
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * The output records of a stage, as {@link RecordInfo}, for a stage whose output is a {@link DataframeCollection}.
+ *
+ * Since all records of such a stage are regular output records, the {@link DataframeCollection} can be retrieved
+ * with {@link #getRecords()} instead of filtering the output records, keeping the rows in a Spark Dataset for the
+ * next stages. The records are only wrapped in {@link RecordInfo} when this collection is used otherwise.
+ */
+public class WrappedDataframeCollection implements SparkCollection<RecordInfo<Object>> {
+  private final String stageName;
+  private final DataframeCollection records;
+  private SparkCollection<RecordInfo<Object>> unwrapped;
+
+  public WrappedDataframeCollection(String stageName, DataframeCollection records) {
+    this.stageName = stageName;
+    this.records = records;
+  }
+
+  /**
+   * Returns the output records of the stage.
+   */
+  public DataframeCollection getRecords() {
+    return records;
+  }
+
+  @SuppressWarnings("unchecked")
+  private SparkCollection<RecordInfo<Object>> unwrap() {
+    if (unwrapped == null) {
+      unwrapped = ((SparkCollection<Object>) (SparkCollection<?>) records).map(new RecordInfoWrapper<>(stageName));
+    }
+    return unwrapped;
+  }
+
+  @Override
+  public <C> C getUnderlying() {
+    return unwrap().getUnderlying();
+  }
+
+  @Override
+  public SparkCollection<RecordInfo<Object>> cache() {
+    return new WrappedDataframeCollection(stageName, records.cache());
+  }
+
+  @Override
+  public SparkCollection<RecordInfo<Object>> union(SparkCollection<RecordInfo<Object>> other) {
+    return unwrap().union(other);
+  }
+
+  @Override
+  public SparkCollection<RecordInfo<Object>> transform(StageSpec stageSpec, StageStatisticsCollector collector) {
+    return unwrap().transform(stageSpec, collector);
+  }
+
+  @Override
+  public SparkCollection<RecordInfo<Object>> multiOutputTransform(StageSpec stageSpec,
+                                                                  StageStatisticsCollector collector) {
+    return unwrap().multiOutputTransform(stageSpec, collector);
+  }
+
+  @Override
+  public <U> SparkCollection<U> map(Function<RecordInfo<Object>, U> function) {
+    return unwrap().map(function);
+  }
+
+  @Override
+  public <U> SparkCollection<U> flatMap(StageSpec stageSpec, FlatMapFunction<RecordInfo<Object>, U> function) {
+    return unwrap().flatMap(stageSpec, function);
+  }
+
+  @Override
+  public SparkCollection<RecordInfo<Object>> aggregate(StageSpec stageSpec, @Nullable Integer partitions,
+                                                       StageStatisticsCollector collector) {
+    return unwrap().aggregate(stageSpec, partitions, collector);
+  }
+
+  @Override
+  public SparkCollection<RecordInfo<Object>> reduceAggregate(StageSpec stageSpec, @Nullable Integer partitions,
+                                                             StageStatisticsCollector collector) {
+    return unwrap().reduceAggregate(stageSpec, partitions, collector);
+  }
+
+  @Override
+  public <K, V> SparkPairCollection<K, V> flatMapToPair(PairFlatMapFunction<RecordInfo<Object>, K, V> function) {
+    return unwrap().flatMapToPair(function);
+  }
+
+  @Override
+  public <U> SparkCollection<U> compute(StageSpec stageSpec,
+                                        SparkCompute<RecordInfo<Object>, U> compute) throws Exception {
+    return unwrap().compute(stageSpec, compute);
+  }
+
+  @Override
+  public Runnable createStoreTask(StageSpec stageSpec,
+                                  PairFlatMapFunction<RecordInfo<Object>, Object, Object> sinkFunction) {
+    return unwrap().createStoreTask(stageSpec, sinkFunction);
+  }
+
+  @Override
+  public Runnable createMultiStoreTask(PhaseSpec phaseSpec, Set<String> group, Set<String> sinks,
+                                       Map<String, StageStatisticsCollector> collectors) {
+    return unwrap().createMultiStoreTask(phaseSpec, group, sinks, collectors);
+  }
+
+  @Override
+  public Runnable createStoreTask(StageSpec stageSpec, SparkSink<RecordInfo<Object>> sink) throws Exception {
+    return unwrap().createStoreTask(stageSpec, sink);
+  }
+
+  @Override
+  public void publishAlerts(StageSpec stageSpec, StageStatisticsCollector collector) throws Exception {
+    unwrap().publishAlerts(stageSpec, collector);
+  }
+
+  @Override
+  public SparkCollection<RecordInfo<Object>> window(StageSpec stageSpec, Windower windower) {
+    return unwrap().window(stageSpec, windower);
+  }
+
+  @Override
+  public SparkCollection<RecordInfo<Object>> join(JoinRequest joinRequest) {
+    return unwrap().join(joinRequest);
+  }
+
+  @Override
+  public SparkCollection<RecordInfo<Object>> join(JoinExpressionRequest joinRequest) {
+    return unwrap().join(joinRequest);
+  }
+}
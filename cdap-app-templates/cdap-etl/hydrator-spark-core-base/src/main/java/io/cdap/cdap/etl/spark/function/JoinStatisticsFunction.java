@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark.function;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.etl.spark.join.JoinSideStatistics;
+import org.apache.spark.api.java.function.Function2;
+import org.apache.spark.util.SizeEstimator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Computes the {@link JoinSideStatistics} of a partition of the data of one side of a join.
+ * Every record is counted, while the size and the join key are only computed for a random sample of the records,
+ * which always includes the first record of the partition.
+ *
+ * @param <T> the type of the records
+ */
+public class JoinStatisticsFunction<T> implements Function2<Integer, Iterator<T>, Iterator<JoinSideStatistics>> {
+  private final List<String> keyFields;
+  private final double sampleFraction;
+
+  public JoinStatisticsFunction(List<String> keyFields, double sampleFraction) {
+    this.keyFields = keyFields;
+    this.sampleFraction = sampleFraction;
+  }
+
+  @Override
+  public Iterator<JoinSideStatistics> call(Integer partition, Iterator<T> records) {
+    // seed with the partition such that the statistics are the same if the partition is recomputed
+    Random random = new Random(partition);
+    JoinSideStatistics statistics = new JoinSideStatistics();
+    boolean first = true;
+    while (records.hasNext()) {
+      T record = records.next();
+      if (first || random.nextDouble() < sampleFraction) {
+        statistics.addSampled(SizeEstimator.estimate(getValues(record)), getKeyHash(record));
+        first = false;
+      } else {
+        statistics.add();
+      }
+    }
+    return Collections.singletonList(statistics.trim()).iterator();
+  }
+
+  /**
+   * Returns the values of a record, without the schema that is shared by all the records and is not part of the size
+   * of the data.
+   */
+  private static Object getValues(Object value) {
+    if (!(value instanceof StructuredRecord)) {
+      return value;
+    }
+    StructuredRecord record = (StructuredRecord) value;
+    List<Schema.Field> fields = record.getSchema().getFields();
+    Object[] values = new Object[fields.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = getValues(record.get(fields.get(i).getName()));
+    }
+    return values;
+  }
+
+  private int getKeyHash(T record) {
+    if (keyFields.isEmpty() || !(record instanceof StructuredRecord)) {
+      return 0;
+    }
+    Object[] key = new Object[keyFields.size()];
+    for (int i = 0; i < key.length; i++) {
+      key[i] = ((StructuredRecord) record).get(keyFields.get(i));
+    }
+    // deepHashCode hashes the content of byte arrays
+    return Arrays.deepHashCode(key);
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2020 Cask Data, Inc.
+ * Copyright © 2020-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -87,8 +87,8 @@ public class MultiSinkFunction implements PairFlatMapFunction<RecordInfo<Object>
                            Map<String, StageStatisticsCollector> collectors) {
     this.pipelineRuntime = new PipelineRuntime(
       sec.getNamespace(), sec.getApplicationSpecification().getName(), sec.getLogicalStartTime(),
-      new BasicArguments(sec), sec.getMetrics(), sec.getPluginContext(), sec.getServiceDiscoverer(),
-      sec.getSecureStore(), null, null, sec.getPluginContext());
+      sec.getRunId().getId(), new BasicArguments(sec), sec.getMetrics(), sec.getPluginContext(),
+      sec.getServiceDiscoverer(), sec.getSecureStore(), null, null, sec.getPluginContext());
     // create a copy because BatchPhaseSpec contains things that are not serializable while PhaseSpec does not
     this.phaseSpec = new PhaseSpec(phaseSpec.getPhaseName(), phaseSpec.getPhase(), phaseSpec.getConnectorDatasets(),
                                    phaseSpec.isStageLoggingEnabled(), phaseSpec.isProcessTimingEnabled());
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -54,6 +54,7 @@ public class PluginFunctionContext implements Serializable {
   private final String namespace;
   private final String pipelineName;
   private final long logicalStartTime;
+  private final String runId;
   private final BasicArguments arguments;
   private final PluginContext pluginContext;
   private final ServiceDiscoverer serviceDiscoverer;
@@ -75,6 +76,7 @@ public class PluginFunctionContext implements Serializable {
     this.pipelineName = sec.getApplicationSpecification().getName();
     this.stageSpec = stageSpec;
     this.logicalStartTime = logicalStartTime;
+    this.runId = sec.getRunId().getId();
     this.arguments = new BasicArguments(sec);
     this.pluginContext = sec.getPluginContext();
     this.serviceDiscoverer = sec.getServiceDiscoverer();
@@ -136,7 +138,7 @@ public class PluginFunctionContext implements Serializable {
   }
 
   public SparkBatchRuntimeContext createBatchRuntimeContext() {
-    PipelineRuntime pipelineRuntime = new PipelineRuntime(namespace, pipelineName, logicalStartTime,
+    PipelineRuntime pipelineRuntime = new PipelineRuntime(namespace, pipelineName, logicalStartTime, runId,
                                                           arguments, metrics, pluginContext,
                                                           serviceDiscoverer, secureStore,
                                                           null, null,
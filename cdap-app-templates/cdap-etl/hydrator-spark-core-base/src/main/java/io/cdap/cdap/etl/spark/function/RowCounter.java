@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark.function;
+
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.metrics.Metrics;
+import io.cdap.cdap.api.preview.DataTracer;
+import io.cdap.cdap.api.spark.sql.DataFrames;
+import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.cdap.etl.common.DefaultStageMetrics;
+import org.apache.spark.sql.Row;
+
+import java.io.Serializable;
+import javax.annotation.Nullable;
+
+/**
+ * Emits counts for the number of rows from a stage. This is the {@link CountingFunction} for stages that process a
+ * {@link org.apache.spark.sql.Dataset} of {@link Row}, and is evaluated for each row by a {@link CountingExpression}
+ * in the plan of the {@link org.apache.spark.sql.Dataset}.
+ */
+public class RowCounter implements Serializable {
+  private final String stageName;
+  private final Metrics metrics;
+  private final String metricName;
+  private final DataTracer dataTracer;
+  private final Schema schema;
+  private transient StageMetrics stageMetrics;
+
+  public RowCounter(String stageName, Metrics metrics, String metricName, @Nullable DataTracer dataTracer,
+                    Schema schema) {
+    this.stageName = stageName;
+    this.metrics = metrics;
+    this.metricName = metricName;
+    this.dataTracer = dataTracer;
+    this.schema = schema;
+  }
+
+  /**
+   * Returns whether the rows are traced, in which case they must be given to {@link #count(Row)}.
+   */
+  public boolean isTracing() {
+    return dataTracer != null && dataTracer.isEnabled();
+  }
+
+  /**
+   * Counts one row.
+   *
+   * @param row the row to trace, or {@code null} if the rows are not traced
+   */
+  public void count(@Nullable Row row) {
+    if (stageMetrics == null) {
+      stageMetrics = new DefaultStageMetrics(metrics, stageName);
+    }
+    if (row != null && dataTracer != null) {
+      dataTracer.info(metricName, DataFrames.fromRow(row, schema));
+    }
+    stageMetrics.count(metricName, 1);
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark.join;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.cdap.etl.api.join.InvalidJoinException;
+import io.cdap.cdap.etl.api.join.JoinCondition;
+import io.cdap.cdap.etl.api.join.JoinDefinition;
+import io.cdap.cdap.etl.api.join.JoinKey;
+import io.cdap.cdap.etl.api.join.JoinStage;
+import io.cdap.cdap.etl.common.Constants;
+import io.cdap.cdap.etl.spark.SparkCollection;
+import io.cdap.cdap.etl.spark.function.JoinStatisticsFunction;
+import org.apache.spark.api.java.JavaRDD;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+
+/**
+ * Chooses how an auto join is executed based on statistics of its inputs computed at runtime, instead of relying
+ * on the broadcast and distribution settings of the plugin.
+ *
+ * The smallest inputs are broadcast if their estimated total size is below the broadcast threshold. Otherwise,
+ * a join of two inputs is distributed if the heaviest join key of a required input holds more than the skew
+ * threshold of its records. All other joins are executed as regular shuffle joins.
+ *
+ * Computing the statistics runs a Spark job over each input, so the inputs are cached before, such that the join
+ * does not compute them again. Hence the planner must only be used when caching is enabled.
+ *
+ * A distribution set by the plugin overrides the planner, and such joins are executed as defined.
+ */
+public class AdaptiveJoinPlanner {
+  private static final Logger LOG = LoggerFactory.getLogger(AdaptiveJoinPlanner.class);
+  // same default as spark.sql.autoBroadcastJoinThreshold
+  private static final long DEFAULT_BROADCAST_THRESHOLD = 10L * 1024 * 1024;
+  private static final double DEFAULT_SAMPLE_FRACTION = 0.01d;
+  private static final double DEFAULT_SKEW_THRESHOLD = 0.1d;
+  private static final int DEFAULT_DISTRIBUTION_FACTOR = 10;
+
+  private final long broadcastThreshold;
+  private final double sampleFraction;
+  private final double skewThreshold;
+  private final int distributionFactor;
+
+  @VisibleForTesting
+  AdaptiveJoinPlanner(long broadcastThreshold, double sampleFraction, double skewThreshold, int distributionFactor) {
+    this.broadcastThreshold = broadcastThreshold;
+    this.sampleFraction = sampleFraction;
+    this.skewThreshold = skewThreshold;
+    this.distributionFactor = distributionFactor;
+  }
+
+  /**
+   * Creates a planner configured from the given runtime arguments.
+   */
+  public static AdaptiveJoinPlanner create(Map<String, String> arguments) {
+    String broadcastThreshold = arguments.get(Constants.ADAPTIVE_JOIN_BROADCAST_THRESHOLD);
+    String sampleFraction = arguments.get(Constants.ADAPTIVE_JOIN_SAMPLE_FRACTION);
+    String skewThreshold = arguments.get(Constants.ADAPTIVE_JOIN_SKEW_THRESHOLD);
+    String distributionFactor = arguments.get(Constants.ADAPTIVE_JOIN_DISTRIBUTION_FACTOR);
+    return new AdaptiveJoinPlanner(
+      broadcastThreshold == null ? DEFAULT_BROADCAST_THRESHOLD : Long.parseLong(broadcastThreshold),
+      sampleFraction == null ? DEFAULT_SAMPLE_FRACTION : Double.parseDouble(sampleFraction),
+      skewThreshold == null ? DEFAULT_SKEW_THRESHOLD : Double.parseDouble(skewThreshold),
+      distributionFactor == null ? DEFAULT_DISTRIBUTION_FACTOR : Integer.parseInt(distributionFactor));
+  }
+
+  /**
+   * Computes the statistics of the inputs of a join and plans the join based on them. The input collections are
+   * replaced by cached collections in the given map. The statistics and the decision are recorded as metrics of the
+   * join stage.
+   *
+   * @param stageName the name of the join stage
+   * @param joinDefinition the join definition of the plugin
+   * @param inputDataCollections the input collections of the join stage
+   * @param stageMetrics the metrics of the join stage
+   * @return the join definition to execute
+   */
+  public JoinDefinition plan(String stageName, JoinDefinition joinDefinition,
+                             Map<String, SparkCollection<Object>> inputDataCollections, StageMetrics stageMetrics) {
+    if (joinDefinition.getDistribution() != null) {
+      LOG.info("Join stage '{}' distributes skewed stage '{}' with factor {} as defined by the plugin.",
+               stageName, joinDefinition.getDistribution().getSkewedStageName(),
+               joinDefinition.getDistribution().getDistributionFactor());
+      return joinDefinition;
+    }
+
+    Map<String, List<String>> keys = getKeys(joinDefinition);
+    Map<String, JoinSideStatistics> statistics = new HashMap<>();
+    for (JoinStage stage : joinDefinition.getStages()) {
+      String inputStage = stage.getStageName();
+      SparkCollection<Object> collection = inputDataCollections.get(inputStage).cache();
+      inputDataCollections.put(inputStage, collection);
+
+      JavaRDD<Object> rdd = collection.getUnderlying();
+      JoinSideStatistics inputStatistics = rdd
+        .mapPartitionsWithIndex(new JoinStatisticsFunction<>(keys.getOrDefault(inputStage, Collections.emptyList()),
+                                                             sampleFraction), false)
+        .fold(new JoinSideStatistics(), JoinSideStatistics::merge);
+      statistics.put(inputStage, inputStatistics);
+
+      stageMetrics.gauge(Constants.Metrics.JOIN_INPUT_RECORDS + "." + inputStage, inputStatistics.getRecords());
+      stageMetrics.gauge(Constants.Metrics.JOIN_INPUT_BYTES + "." + inputStage, inputStatistics.getEstimatedBytes());
+      stageMetrics.gauge(Constants.Metrics.JOIN_INPUT_SKEW + "." + inputStage,
+                         Math.round(inputStatistics.getTopKeyFraction() * 100));
+    }
+
+    JoinDefinition planned = plan(joinDefinition, statistics);
+    List<String> broadcastStages = planned.getStages().stream()
+      .filter(JoinStage::isBroadcast)
+      .map(JoinStage::getStageName)
+      .collect(Collectors.toList());
+    int plannedDistributionFactor = planned.getDistribution() == null
+      ? 0 : planned.getDistribution().getDistributionFactor();
+    stageMetrics.gauge(Constants.Metrics.JOIN_BROADCAST_STAGES, broadcastStages.size());
+    stageMetrics.gauge(Constants.Metrics.JOIN_DISTRIBUTION_FACTOR, plannedDistributionFactor);
+
+    if (!broadcastStages.isEmpty()) {
+      LOG.info("Join stage '{}' broadcasts stages {} based on input statistics {}.",
+               stageName, broadcastStages, statistics);
+    } else if (planned.getDistribution() != null) {
+      LOG.info("Join stage '{}' distributes skewed stage '{}' with factor {} based on input statistics {}.",
+               stageName, planned.getDistribution().getSkewedStageName(), plannedDistributionFactor, statistics);
+    } else {
+      LOG.info("Join stage '{}' shuffles all stages based on input statistics {}.", stageName, statistics);
+    }
+    return planned;
+  }
+
+  /**
+   * Plans the join based on the given statistics of its inputs.
+   *
+   * @param joinDefinition the join definition of the plugin
+   * @param statistics the statistics of each input stage
+   * @return the join definition with the broadcast and distribution settings chosen from the statistics, or the
+   *         given join definition if the plugin set a distribution
+   */
+  @VisibleForTesting
+  JoinDefinition plan(JoinDefinition joinDefinition, Map<String, JoinSideStatistics> statistics) {
+    if (joinDefinition.getDistribution() != null) {
+      return joinDefinition;
+    }
+
+    List<JoinStage> stages = joinDefinition.getStages();
+    Set<String> broadcastStages = getBroadcastStages(stages, statistics);
+    String skewedStage = broadcastStages.isEmpty() ? getSkewedStage(joinDefinition, statistics) : null;
+
+    List<JoinStage> plannedStages = new ArrayList<>(stages.size());
+    for (JoinStage stage : stages) {
+      plannedStages.add(JoinStage.builder(stage).setBroadcast(broadcastStages.contains(stage.getStageName())).build());
+    }
+    JoinDefinition.Builder builder = JoinDefinition.builder()
+      .select(joinDefinition.getSelectedFields())
+      .from(plannedStages)
+      .on(joinDefinition.getCondition())
+      .setOutputSchema(joinDefinition.getOutputSchema());
+    if (skewedStage != null) {
+      builder.setDistributionFactor(distributionFactor, skewedStage);
+    }
+
+    try {
+      return builder.build();
+    } catch (InvalidJoinException e) {
+      // should not happen, as only valid settings are chosen, but the plugin's definition is still valid
+      LOG.warn("Failed to plan join based on input statistics, the join will be executed as defined.", e);
+      return joinDefinition;
+    }
+  }
+
+  /**
+   * Returns the stages to broadcast, which are the smallest stages whose total size is within the broadcast
+   * threshold. The largest stage is never broadcast, and only stages that Spark can broadcast for the join type
+   * are considered, which are any stage of an inner join, or the optional stages of an outer join.
+   */
+  private Set<String> getBroadcastStages(List<JoinStage> stages, Map<String, JoinSideStatistics> statistics) {
+    Set<String> broadcastStages = new HashSet<>();
+    if (broadcastThreshold <= 0) {
+      return broadcastStages;
+    }
+
+    boolean allRequired = stages.stream().allMatch(JoinStage::isRequired);
+    boolean anyRequired = stages.stream().anyMatch(JoinStage::isRequired);
+    Comparator<JoinStage> bySize = Comparator.comparingLong(s -> statistics.get(s.getStageName()).getEstimatedBytes());
+    List<JoinStage> bySizeStages = new ArrayList<>(stages);
+    bySizeStages.sort(bySize);
+
+    long totalBytes = 0L;
+    // the last stage is the largest one, which is never broadcast
+    for (JoinStage stage : bySizeStages.subList(0, bySizeStages.size() - 1)) {
+      if (!allRequired && (stage.isRequired() || !anyRequired)) {
+        continue;
+      }
+      totalBytes += statistics.get(stage.getStageName()).getEstimatedBytes();
+      if (totalBytes > broadcastThreshold) {
+        break;
+      }
+      broadcastStages.add(stage.getStageName());
+    }
+    return broadcastStages;
+  }
+
+  /**
+   * Returns the stage to distribute for a join of two stages on keys, which is the required stage that is too large
+   * to broadcast and has the largest fraction of records with the same key above the skew threshold.
+   */
+  @Nullable
+  private String getSkewedStage(JoinDefinition joinDefinition, Map<String, JoinSideStatistics> statistics) {
+    if (distributionFactor <= 1 || joinDefinition.getStages().size() != 2
+      || joinDefinition.getCondition().getOp() != JoinCondition.Op.KEY_EQUALITY) {
+      return null;
+    }
+
+    String skewedStage = null;
+    double maxFraction = skewThreshold;
+    for (JoinStage stage : joinDefinition.getStages()) {
+      JoinSideStatistics stageStatistics = statistics.get(stage.getStageName());
+      if (!stage.isRequired() || stageStatistics.getEstimatedBytes() <= broadcastThreshold) {
+        continue;
+      }
+      double fraction = stageStatistics.getTopKeyFraction();
+      if (fraction >= maxFraction) {
+        skewedStage = stage.getStageName();
+        maxFraction = fraction;
+      }
+    }
+    return skewedStage;
+  }
+
+  private static Map<String, List<String>> getKeys(JoinDefinition joinDefinition) {
+    if (joinDefinition.getCondition().getOp() != JoinCondition.Op.KEY_EQUALITY) {
+      return Collections.emptyMap();
+    }
+    return ((JoinCondition.OnKeys) joinDefinition.getCondition()).getKeys().stream()
+      .collect(Collectors.toMap(JoinKey::getStageName, JoinKey::getFields));
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark.join;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Runtime statistics of the data of one side of a join, computed over all the records for the record count and
+ * over a sample of the records for the size and the key distribution.
+ *
+ * Only the most frequent keys of the sample are kept, identified by the hash of their values, which is enough to
+ * estimate how much of the data belongs to the heaviest key.
+ */
+public class JoinSideStatistics implements Serializable {
+  static final int MAX_KEYS = 16;
+  private static final long serialVersionUID = 5383719651372453262L;
+
+  private long records;
+  private long sampledRecords;
+  private long sampledBytes;
+  private final Map<Integer, Long> keyCounts;
+
+  public JoinSideStatistics() {
+    this.keyCounts = new HashMap<>();
+  }
+
+  /**
+   * Adds a record that is not part of the sample.
+   */
+  public void add() {
+    records++;
+  }
+
+  /**
+   * Adds a record that is part of the sample.
+   *
+   * @param bytes the estimated size of the record in bytes
+   * @param keyHash the hash of the join key of the record
+   */
+  public void addSampled(long bytes, int keyHash) {
+    records++;
+    sampledRecords++;
+    sampledBytes += bytes;
+    keyCounts.merge(keyHash, 1L, Long::sum);
+  }
+
+  /**
+   * Merges the given statistics into this one.
+   *
+   * @return this statistics
+   */
+  public JoinSideStatistics merge(JoinSideStatistics other) {
+    records += other.records;
+    sampledRecords += other.sampledRecords;
+    sampledBytes += other.sampledBytes;
+    other.keyCounts.forEach((key, count) -> keyCounts.merge(key, count, Long::sum));
+    return trim();
+  }
+
+  /**
+   * Only keeps the {@link #MAX_KEYS} most frequent keys.
+   *
+   * @return this statistics
+   */
+  public JoinSideStatistics trim() {
+    if (keyCounts.size() > MAX_KEYS) {
+      Set<Integer> topKeys = keyCounts.entrySet().stream()
+        .sorted(Map.Entry.<Integer, Long>comparingByValue().reversed())
+        .limit(MAX_KEYS)
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toSet());
+      keyCounts.keySet().retainAll(topKeys);
+    }
+    return this;
+  }
+
+  /**
+   * @return the number of records
+   */
+  public long getRecords() {
+    return records;
+  }
+
+  /**
+   * @return the estimated size of all the records in bytes
+   */
+  public long getEstimatedBytes() {
+    if (sampledRecords == 0) {
+      return 0L;
+    }
+    return (long) ((double) sampledBytes / sampledRecords * records);
+  }
+
+  /**
+   * @return the estimated fraction of the records that have the most frequent join key, between 0 and 1
+   */
+  public double getTopKeyFraction() {
+    if (sampledRecords == 0) {
+      return 0d;
+    }
+    long topCount = keyCounts.values().stream().mapToLong(Long::longValue).max().orElse(0L);
+    return (double) topCount / sampledRecords;
+  }
+
+  @Override
+  public String toString() {
+    return "JoinSideStatistics{" +
+      "records=" + records +
+      ", estimatedBytes=" + getEstimatedBytes() +
+      ", topKeyFraction=" + getTopKeyFraction() +
+      '}';
+  }
+}
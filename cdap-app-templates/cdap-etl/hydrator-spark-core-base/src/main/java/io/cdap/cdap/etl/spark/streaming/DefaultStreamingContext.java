@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016-2019 Cask Data, Inc.
+ * Copyright © 2016-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -53,8 +53,8 @@ public class DefaultStreamingContext extends AbstractStageContext implements Str
 
   public DefaultStreamingContext(StageSpec stageSpec, JavaSparkExecutionContext sec, JavaStreamingContext jsc) {
     super(new PipelineRuntime(sec.getNamespace(), sec.getApplicationSpecification().getName(),
-                              sec.getLogicalStartTime(), new BasicArguments(sec), sec.getMetrics(),
-                              sec.getPluginContext(), sec.getServiceDiscoverer(), sec, sec, sec,
+                              sec.getLogicalStartTime(), sec.getRunId().getId(), new BasicArguments(sec),
+                              sec.getMetrics(), sec.getPluginContext(), sec.getServiceDiscoverer(), sec, sec, sec,
                               sec.getPluginContext()), stageSpec);
     this.sec = sec;
     this.jsc = jsc;
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark.function
+
+import org.apache.spark.sql.catalyst.expressions.codegen.CodegenFallback
+import org.apache.spark.sql.catalyst.expressions.{Expression, Nondeterministic}
+import org.apache.spark.sql.catalyst.{CatalystTypeConverters, InternalRow}
+import org.apache.spark.sql.types.{BooleanType, DataType}
+import org.apache.spark.sql.{Column, Dataset, Row}
+
+/**
+ * Filter condition that keeps every row and counts it with a [[RowCounter]]. Since it is nondeterministic, the
+ * optimizer neither moves it across operators that change the rows nor evaluates it more than once per row, while
+ * the rest of the plan is still optimized and code generated. The columns are only children of the expression if
+ * the rows are traced, so that counting doesn't prevent column pruning.
+ */
+case class CountingExpression(counter: RowCounter, children: Seq[Expression])
+  extends Expression with Nondeterministic with CodegenFallback {
+
+  @transient private lazy val converters = children.map(c => CatalystTypeConverters.createToScalaConverter(c.dataType))
+
+  override def nullable: Boolean = false
+
+  override def dataType: DataType = BooleanType
+
+  override protected def initializeInternal(partitionIndex: Int): Unit = {}
+
+  override protected def evalInternal(input: InternalRow): Any = {
+    if (children.isEmpty) {
+      counter.count(null)
+    } else {
+      counter.count(Row.fromSeq(children.zip(converters).map { case (c, convert) => convert(c.eval(input)) }))
+    }
+    true
+  }
+}
+
+object CountingExpression {
+
+  /**
+   * Returns the given rows, counted by the given counter.
+   */
+  def count(rows: Dataset[Row], counter: RowCounter): Dataset[Row] = {
+    val children = if (counter.isTracing) rows.queryExecution.analyzed.output else Nil
+    rows.filter(new Column(CountingExpression(counter, children)))
+  }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark.batch;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.metrics.Metrics;
+import io.cdap.cdap.api.preview.DataTracer;
+import io.cdap.cdap.api.spark.sql.DataFrames;
+import io.cdap.cdap.etl.api.aggregation.GroupByAggregationDefinition;
+import io.cdap.cdap.etl.api.relational.Expression;
+import io.cdap.cdap.etl.api.relational.ExpressionFactory;
+import io.cdap.cdap.etl.api.relational.Relation;
+import io.cdap.cdap.etl.spark.function.CountingExpression;
+import io.cdap.cdap.etl.spark.function.RowCounter;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link DataframeRelation}.
+ */
+public class DataframeRelationTest {
+
+  private static final Map<String, AtomicLong> COUNTS = new ConcurrentHashMap<>();
+  private static final Queue<String> TRACED = new ConcurrentLinkedQueue<>();
+  private static final ExpressionFactory<String> FACTORY = new SparkSQLExpressionFactory();
+  private static final StructType PURCHASE_TYPE = new StructType()
+    .add("user", DataTypes.StringType)
+    .add("item", DataTypes.StringType)
+    .add("price", DataTypes.IntegerType);
+
+  private static SparkSession session;
+  private static Dataset<Row> purchases;
+
+  @BeforeClass
+  public static void init() {
+    session = SparkSession.builder().master("local[1]").appName("DataframeRelationTest").getOrCreate();
+    purchases = session.createDataFrame(Arrays.asList(RowFactory.create("alice", "apple", 1),
+                                                      RowFactory.create("alice", "pear", 3),
+                                                      RowFactory.create("bob", "apple", 2)),
+                                        PURCHASE_TYPE);
+  }
+
+  @AfterClass
+  public static void finish() {
+    session.stop();
+  }
+
+  @Test
+  public void testLinearOperations() {
+    Map<String, Expression> columns = new LinkedHashMap<>();
+    columns.put("name", FACTORY.compile("upper(user)"));
+    columns.put("cost", FACTORY.compile("total"));
+
+    Relation relation = new DataframeRelation(purchases)
+      .setColumn("total", FACTORY.compile("price * 10"))
+      .filter(FACTORY.compile("item = 'apple'"))
+      .dropColumn("item")
+      .select(columns);
+
+    Assert.assertTrue(relation.isValid());
+    Dataset<Row> result = ((DataframeRelation) relation).getDataframe();
+    Assert.assertArrayEquals(new String[] { "name", "cost" }, result.columns());
+    Assert.assertEquals(toSet(RowFactory.create("ALICE", 10), RowFactory.create("BOB", 20)),
+                        new HashSet<>(result.collectAsList()));
+  }
+
+  @Test
+  public void testGroupBy() {
+    Map<String, Expression> columns = new LinkedHashMap<>();
+    columns.put("user", FACTORY.compile("user"));
+    columns.put("items", FACTORY.compile("count(*)"));
+    columns.put("spent", FACTORY.compile("sum(price)"));
+    GroupByAggregationDefinition definition = GroupByAggregationDefinition.builder()
+      .groupBy(FACTORY.getQualifiedColumnName(null, "user"))
+      .select(columns)
+      .build();
+
+    Relation relation = new DataframeRelation(purchases).groupBy(definition);
+
+    Assert.assertTrue(relation.isValid());
+    Dataset<Row> result = ((DataframeRelation) relation).getDataframe();
+    Assert.assertArrayEquals(new String[] { "user", "items", "spent" }, result.columns());
+    Assert.assertEquals(toSet(RowFactory.create("alice", 2L, 4L), RowFactory.create("bob", 1L, 2L)),
+                        new HashSet<>(result.collectAsList()));
+    // the aggregation must not leave anything behind in the session catalog
+    Assert.assertTrue(session.catalog().listTables().collectAsList().isEmpty());
+  }
+
+  @Test
+  public void testGlobalAggregation() {
+    Map<String, Expression> columns = new LinkedHashMap<>();
+    columns.put("price", FACTORY.compile("max(price)"));
+    columns.put("users", FACTORY.compile("count(distinct user)"));
+    GroupByAggregationDefinition definition = GroupByAggregationDefinition.builder()
+      .groupBy(Collections.emptyList())
+      .select(columns)
+      .build();
+
+    Relation relation = new DataframeRelation(purchases).groupBy(definition);
+
+    Assert.assertTrue(relation.isValid());
+    Dataset<Row> result = ((DataframeRelation) relation).getDataframe();
+    Assert.assertArrayEquals(new String[] { "price", "users" }, result.columns());
+    Assert.assertEquals(Collections.singletonList(RowFactory.create(3, 2L)), result.collectAsList());
+  }
+
+  @Test
+  public void testInvalidOperations() {
+    Relation relation = new DataframeRelation(purchases);
+
+    // Syntax error
+    Expression unparsable = FACTORY.compile("price +");
+    Assert.assertFalse(unparsable.isValid());
+    Assert.assertFalse(relation.filter(unparsable).isValid());
+
+    // Unknown column
+    Assert.assertTrue(FACTORY.compile("quantity * price").isValid());
+    Assert.assertFalse(relation.setColumn("total", FACTORY.compile("quantity * price")).isValid());
+
+    // Expression from another engine
+    Expression other = new Expression() {
+      @Override
+      public boolean isValid() {
+        return true;
+      }
+
+      @Override
+      public String getValidationError() {
+        return null;
+      }
+    };
+    Assert.assertFalse(relation.filter(other).isValid());
+  }
+
+  @Test
+  public void testConform() {
+    StructType schema = new StructType()
+      .add("price", DataTypes.IntegerType)
+      .add("user", DataTypes.StringType);
+    Dataset<Row> result = DataframeCollection.conform(purchases, schema);
+    Assert.assertEquals(schema, result.schema());
+    Assert.assertEquals(toSet(RowFactory.create(1, "alice"), RowFactory.create(3, "alice"),
+                              RowFactory.create(2, "bob")),
+                        new HashSet<>(result.collectAsList()));
+
+    try {
+      DataframeCollection.conform(purchases, schema.add("quantity", DataTypes.IntegerType));
+      Assert.fail("Expected failure for a missing column");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    // columns are never cast, as a cast would turn values that cannot be converted into nulls
+    try {
+      DataframeCollection.conform(purchases, new StructType().add("user", DataTypes.IntegerType));
+      Assert.fail("Expected failure for a column of a different type");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCount() {
+    COUNTS.clear();
+    Dataset<Row> counted = CountingExpression.count(
+      purchases, new RowCounter("stage", new CountingMetrics(), "records.in", null,
+                                DataFrames.toSchema(PURCHASE_TYPE)));
+
+    // each row is counted once, no matter which operations follow and how many times the result is computed
+    Assert.assertEquals(1L, counted.filter("user = 'bob'").count());
+    Assert.assertEquals(3L, COUNTS.get("stage.records.in").get());
+    Assert.assertEquals(toSet(RowFactory.create("alice"), RowFactory.create("bob")),
+                        new HashSet<>(counted.select("user").distinct().collectAsList()));
+    Assert.assertEquals(6L, COUNTS.get("stage.records.in").get());
+
+    // rows are counted as they are read, even if a partition is not read to the end
+    Assert.assertEquals(1, counted.limit(1).collectAsList().size());
+    Assert.assertTrue(COUNTS.get("stage.records.in").get() > 6L);
+  }
+
+  @Test
+  public void testCountTrace() {
+    COUNTS.clear();
+    TRACED.clear();
+    Dataset<Row> counted = CountingExpression.count(
+      purchases, new RowCounter("stage", new CountingMetrics(), "records.out", new CollectingDataTracer(),
+                                DataFrames.toSchema(PURCHASE_TYPE)));
+
+    // the rows are traced with all of their columns, even if only some columns are used afterwards
+    Assert.assertEquals(toSet(RowFactory.create("alice"), RowFactory.create("bob")),
+                        new HashSet<>(counted.select("user").distinct().collectAsList()));
+    Assert.assertEquals(3L, COUNTS.get("stage.records.out").get());
+    Assert.assertEquals(Arrays.asList("alice:apple:1", "alice:pear:3", "bob:apple:2"),
+                        TRACED.stream().sorted().collect(Collectors.toList()));
+  }
+
+  private static Set<Row> toSet(Row... rows) {
+    List<Row> list = Arrays.asList(rows);
+    return new HashSet<>(list);
+  }
+
+  /**
+   * {@link DataTracer} that keeps the traced records in memory, such that they can be checked after a Spark job.
+   */
+  private static final class CollectingDataTracer implements DataTracer, Serializable {
+
+    @Override
+    public void info(String propertyName, Object propertyValue) {
+      StructuredRecord record = (StructuredRecord) propertyValue;
+      TRACED.add(record.get("user") + ":" + record.get("item") + ":" + record.get("price"));
+    }
+
+    @Override
+    public String getName() {
+      return "stage";
+    }
+
+    @Override
+    public boolean isEnabled() {
+      return true;
+    }
+
+    @Override
+    public int getMaximumTracedRecords() {
+      return Integer.MAX_VALUE;
+    }
+  }
+
+  /**
+   * {@link Metrics} that keeps the counts in memory, such that they can be checked after a Spark job.
+   */
+  private static final class CountingMetrics implements Metrics, Serializable {
+
+    @Override
+    public void count(String metricName, int delta) {
+      countLong(metricName, delta);
+    }
+
+    @Override
+    public void countLong(String metricName, long delta) {
+      COUNTS.computeIfAbsent(metricName, name -> new AtomicLong()).addAndGet(delta);
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      // no-op
+    }
+
+    @Override
+    public Metrics child(Map<String, String> tags) {
+      return this;
+    }
+
+    @Override
+    public Map<String, String> getTags() {
+      return Collections.emptyMap();
+    }
+  }
+}
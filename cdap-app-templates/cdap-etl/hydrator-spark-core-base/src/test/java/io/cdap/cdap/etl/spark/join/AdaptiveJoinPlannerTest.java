@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark.join;
+
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.etl.api.join.JoinCondition;
+import io.cdap.cdap.etl.api.join.JoinDefinition;
+import io.cdap.cdap.etl.api.join.JoinField;
+import io.cdap.cdap.etl.api.join.JoinKey;
+import io.cdap.cdap.etl.api.join.JoinStage;
+import io.cdap.cdap.etl.spark.function.JoinStatisticsFunction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for {@link AdaptiveJoinPlanner}.
+ */
+public class AdaptiveJoinPlannerTest {
+  private static final Schema PURCHASE_SCHEMA = Schema.recordOf("purchase",
+                                                                Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
+                                                                Schema.Field.of("item", Schema.of(Schema.Type.STRING)));
+  private static final Schema USER_SCHEMA = Schema.recordOf("user",
+                                                            Schema.Field.of("id", Schema.of(Schema.Type.STRING)),
+                                                            Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+  private static final Schema ITEM_SCHEMA = Schema.recordOf("item",
+                                                            Schema.Field.of("id", Schema.of(Schema.Type.STRING)),
+                                                            Schema.Field.of("price", Schema.of(Schema.Type.LONG)));
+
+  private final AdaptiveJoinPlanner planner = new AdaptiveJoinPlanner(1000L, 0.1d, 0.2d, 5);
+
+  @Test
+  public void testBroadcastSmallStages() {
+    JoinDefinition definition = define(true, true, true);
+    JoinDefinition planned = planner.plan(definition, ImmutableMap.of("purchases", statistics(1000, 10, 0d),
+                                                                      "users", statistics(20, 10, 0d),
+                                                                      "items", statistics(90, 10, 0d)));
+    Assert.assertEquals(Collections.singletonList("users"), getBroadcastStages(planned));
+    Assert.assertNull(planned.getDistribution());
+    Assert.assertEquals(definition.getOutputSchema(), planned.getOutputSchema());
+    Assert.assertEquals(definition.getSelectedFields(), planned.getSelectedFields());
+
+    planned = planner.plan(definition, ImmutableMap.of("purchases", statistics(1000, 10, 0d),
+                                                       "users", statistics(20, 10, 0d),
+                                                       "items", statistics(30, 10, 0d)));
+    Assert.assertEquals(ImmutableMap.of("users", true, "items", true, "purchases", false),
+                        planned.getStages().stream()
+                          .collect(Collectors.toMap(JoinStage::getStageName, JoinStage::isBroadcast)));
+  }
+
+  @Test
+  public void testLargestStageNotBroadcast() {
+    JoinDefinition definition = define(true, true);
+    JoinDefinition planned = planner.plan(definition, ImmutableMap.of("purchases", statistics(5, 10, 0d),
+                                                                      "users", statistics(10, 10, 0d)));
+    Assert.assertEquals(Collections.singletonList("purchases"), getBroadcastStages(planned));
+  }
+
+  @Test
+  public void testOuterJoinBroadcast() {
+    JoinDefinition definition = define(false, true);
+    JoinDefinition planned = planner.plan(definition, ImmutableMap.of("purchases", statistics(5, 10, 0d),
+                                                                      "users", statistics(10, 10, 0d)));
+    Assert.assertEquals(Collections.singletonList("purchases"), getBroadcastStages(planned));
+
+    // the required stage of an outer join cannot be broadcast
+    planned = planner.plan(definition, ImmutableMap.of("purchases", statistics(10, 10, 0d),
+                                                       "users", statistics(5, 10, 0d)));
+    Assert.assertTrue(getBroadcastStages(planned).isEmpty());
+
+    // no stage can be broadcast for a full outer join
+    definition = define(false, false);
+    planned = planner.plan(definition, ImmutableMap.of("purchases", statistics(10, 10, 0d),
+                                                       "users", statistics(5, 10, 0d)));
+    Assert.assertTrue(getBroadcastStages(planned).isEmpty());
+  }
+
+  @Test
+  public void testShuffleOverridesPluginBroadcast() {
+    JoinDefinition definition = JoinDefinition.builder()
+      .select(new JoinField("purchases", "item"), new JoinField("users", "name"))
+      .from(JoinStage.builder("purchases", PURCHASE_SCHEMA).isRequired().build(),
+            JoinStage.builder("users", USER_SCHEMA).isRequired().setBroadcast(true).build())
+      .on(JoinCondition.onKeys()
+            .addKey(new JoinKey("purchases", Collections.singletonList("user")))
+            .addKey(new JoinKey("users", Collections.singletonList("id")))
+            .build())
+      .build();
+    JoinDefinition planned = planner.plan(definition, ImmutableMap.of("purchases", statistics(1000, 10, 0d),
+                                                                      "users", statistics(1000, 10, 0d)));
+    Assert.assertTrue(getBroadcastStages(planned).isEmpty());
+    Assert.assertNull(planned.getDistribution());
+  }
+
+  @Test
+  public void testDistributeSkewedStage() {
+    JoinDefinition definition = define(true, true);
+    JoinDefinition planned = planner.plan(definition, ImmutableMap.of("purchases", statistics(1000, 10, 0.5d),
+                                                                      "users", statistics(500, 10, 0d)));
+    Assert.assertTrue(getBroadcastStages(planned).isEmpty());
+    Assert.assertNotNull(planned.getDistribution());
+    Assert.assertEquals("purchases", planned.getDistribution().getSkewedStageName());
+    Assert.assertEquals(5, planned.getDistribution().getDistributionFactor());
+
+    // not skewed enough
+    planned = planner.plan(definition, ImmutableMap.of("purchases", statistics(1000, 10, 0.1d),
+                                                       "users", statistics(500, 10, 0d)));
+    Assert.assertNull(planned.getDistribution());
+
+    // the skewed stage must be required
+    planned = planner.plan(define(false, true), ImmutableMap.of("purchases", statistics(1000, 10, 0.5d),
+                                                                "users", statistics(500, 10, 0d)));
+    Assert.assertNull(planned.getDistribution());
+
+    // distribution is only supported for two stages
+    planned = planner.plan(define(true, true, true), ImmutableMap.of("purchases", statistics(1000, 10, 0.5d),
+                                                                     "users", statistics(500, 10, 0d),
+                                                                     "items", statistics(500, 10, 0d)));
+    Assert.assertNull(planned.getDistribution());
+  }
+
+  @Test
+  public void testPluginDistributionOverridesPlanner() {
+    JoinDefinition definition = JoinDefinition.builder()
+      .select(new JoinField("purchases", "item"), new JoinField("users", "name"))
+      .from(JoinStage.builder("purchases", PURCHASE_SCHEMA).isRequired().build(),
+            JoinStage.builder("users", USER_SCHEMA).isRequired().build())
+      .on(JoinCondition.onKeys()
+            .addKey(new JoinKey("purchases", Collections.singletonList("user")))
+            .addKey(new JoinKey("users", Collections.singletonList("id")))
+            .build())
+      .setDistributionFactor(20, "purchases")
+      .build();
+
+    // small enough to broadcast, but the plugin's distribution is kept
+    JoinDefinition planned = planner.plan(definition, ImmutableMap.of("purchases", statistics(1000, 10, 0d),
+                                                                      "users", statistics(20, 10, 0d)));
+    Assert.assertTrue(getBroadcastStages(planned).isEmpty());
+    Assert.assertNotNull(planned.getDistribution());
+    Assert.assertEquals("purchases", planned.getDistribution().getSkewedStageName());
+    Assert.assertEquals(20, planned.getDistribution().getDistributionFactor());
+  }
+
+  @Test
+  public void testStatisticsFunction() {
+    List<StructuredRecord> purchases = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      purchases.add(StructuredRecord.builder(PURCHASE_SCHEMA)
+                      .set("user", i % 2 == 0 ? "alice" : "user" + i)
+                      .set("item", "item" + i)
+                      .build());
+    }
+
+    JoinStatisticsFunction<StructuredRecord> function =
+      new JoinStatisticsFunction<>(Collections.singletonList("user"), 0.5d);
+    JoinSideStatistics statistics = new JoinSideStatistics()
+      .merge(function.call(0, purchases.subList(0, 500).iterator()).next())
+      .merge(function.call(1, purchases.subList(500, 1000).iterator()).next())
+      .merge(function.call(2, Collections.emptyIterator()).next());
+
+    Assert.assertEquals(1000, statistics.getRecords());
+    Assert.assertTrue(statistics.getEstimatedBytes() > 0);
+    Assert.assertEquals(0.5d, statistics.getTopKeyFraction(), 0.1d);
+
+    // sampling everything gives the exact fraction
+    function = new JoinStatisticsFunction<>(Collections.singletonList("user"), 1d);
+    Iterator<JoinSideStatistics> result = function.call(0, purchases.iterator());
+    Assert.assertEquals(0.5d, result.next().getTopKeyFraction(), 0d);
+    Assert.assertFalse(result.hasNext());
+  }
+
+  /**
+   * Defines a join of purchases with users, and with items if three stages are given.
+   */
+  private static JoinDefinition define(boolean... required) {
+    List<JoinStage> stages = new ArrayList<>();
+    stages.add(JoinStage.builder("purchases", PURCHASE_SCHEMA).setRequired(required[0]).build());
+    stages.add(JoinStage.builder("users", USER_SCHEMA).setRequired(required[1]).build());
+    JoinCondition.OnKeys.Builder condition = JoinCondition.onKeys()
+      .addKey(new JoinKey("purchases", Collections.singletonList("user")))
+      .addKey(new JoinKey("users", Collections.singletonList("id")));
+    List<JoinField> fields = new ArrayList<>();
+    fields.add(new JoinField("purchases", "item"));
+    fields.add(new JoinField("users", "name"));
+    if (required.length > 2) {
+      stages.add(JoinStage.builder("items", ITEM_SCHEMA).setRequired(required[2]).build());
+      condition = JoinCondition.onKeys()
+        .addKey(new JoinKey("purchases", Collections.singletonList("item")))
+        .addKey(new JoinKey("users", Collections.singletonList("id")))
+        .addKey(new JoinKey("items", Collections.singletonList("id")));
+      fields.add(new JoinField("items", "price"));
+    }
+    return JoinDefinition.builder().select(fields).from(stages).on(condition.build()).build();
+  }
+
+  /**
+   * Creates statistics of the given number of records of the given size, sampling every record, where the given
+   * fraction of the records has the same key.
+   */
+  private static JoinSideStatistics statistics(int records, long recordBytes, double topKeyFraction) {
+    JoinSideStatistics statistics = new JoinSideStatistics();
+    int topKeyRecords = (int) (records * topKeyFraction);
+    for (int i = 0; i < records; i++) {
+      statistics.addSampled(recordBytes, i < topKeyRecords ? -1 : i);
+    }
+    return statistics;
+  }
+
+  private static List<String> getBroadcastStages(JoinDefinition definition) {
+    return definition.getStages().stream()
+      .filter(JoinStage::isBroadcast)
+      .map(JoinStage::getStageName)
+      .collect(Collectors.toList());
+  }
+}
@@ -225,11 +225,29 @@ public final class Constants {
     public static final String APP_SCHEDULER_QUEUE = "apps.scheduler.queue";
     public static final String STATUS_EVENT_FETCH_SIZE = "app.program.status.event.fetch.size";
     public static final String STATUS_EVENT_POLL_DELAY_MILLIS = "app.program.status.event.poll.delay.millis";
+    public static final String STATUS_EVENT_PREFETCH_BATCHES = "app.program.status.event.prefetch.batches";
     public static final String MAPREDUCE_JOB_CLIENT_CONNECT_MAX_RETRIES = "mapreduce.jobclient.connect.max.retries";
     public static final String MAPREDUCE_INCLUDE_CUSTOM_CLASSES = "mapreduce.include.custom.format.classes";
     public static final String MAPREDUCE_STATUS_REPORT_INTERVAL_SECONDS = "mapreduce.status.report.interval.seconds";
     public static final String PROGRAM_RUNID_CORRECTOR_INTERVAL_SECONDS = "app.program.runid.corrector.interval";
     public static final String PROGRAM_RUNID_CORRECTOR_TX_BATCH_SIZE = "app.program.runid.corrector.tx.batch.size";
+    public static final String RUN_RECORDS_TIME_INDEX_BACKFILL_BATCH_SIZE =
+      "app.program.run.records.time.index.backfill.batch.size";
+
+    /**
+     * Node local cache of expanded artifact jars, shared by the processes that use the same cache directory.
+     */
+    public static final String ARTIFACT_UNPACK_CACHE_ENABLED = "app.artifact.unpack.cache.enabled";
+    public static final String ARTIFACT_UNPACK_CACHE_DIR = "app.artifact.unpack.cache.dir";
+    public static final String ARTIFACT_UNPACK_CACHE_MAX_SIZE_MB = "app.artifact.unpack.cache.max.size.mb";
+
+    /**
+     * In-process cache of the plugin catalog read from the artifact store.
+     */
+    public static final String ARTIFACT_PLUGIN_CACHE_ENABLED = "app.artifact.plugin.cache.enabled";
+    public static final String ARTIFACT_PLUGIN_CACHE_MAX_ENTRIES = "app.artifact.plugin.cache.max.entries";
+    public static final String ARTIFACT_PLUGIN_CACHE_EXPIRATION_SECONDS =
+      "app.artifact.plugin.cache.expiration.seconds";
     public static final String LOCAL_DATASET_DELETER_INTERVAL_SECONDS = "app.program.local.dataset.deleter.interval";
     public static final String LOCAL_DATASET_DELETER_INITIAL_DELAY_SECONDS
       = "app.program.local.dataset.deleter.initial.delay";
@@ -531,6 +549,20 @@ public final class Constants {
     public static final String PROGRAM_STATUS_EVENT_FETCH_SIZE = "scheduler.program.status.event.fetch.size";
 
     public static final String JOB_QUEUE_NUM_PARTITIONS = "scheduler.job.queue.num.partitions";
+
+    /**
+     * Whether the constraint checker checks jobs when they change instead of polling the job queue.
+     */
+    public static final String CONSTRAINT_CHECKER_EVENT_DRIVEN = "scheduler.constraint.checker.event.driven";
+    public static final String CONSTRAINT_CHECKER_RESYNC_INTERVAL_SECONDS =
+      "scheduler.constraint.checker.resync.interval.seconds";
+
+    /**
+     * Whether notifications are matched to schedules using an in-memory index of the schedule trigger keys.
+     */
+    public static final String TRIGGER_INDEX_ENABLED = "scheduler.trigger.index.enabled";
+    public static final String TRIGGER_INDEX_REBUILD_INTERVAL_SECONDS =
+      "scheduler.trigger.index.rebuild.interval.seconds";
   }
 
   /**
@@ -636,6 +668,9 @@ public final class Constants {
     public static final String DATA_STORAGE_SQL_PROPERTY_PREFIX = "data.storage.sql.jdbc.property.";
     public static final String DATA_STORAGE_SQL_CONNECTION_SIZE = "data.storage.sql.jdbc.connection.pool.size";
     public static final String DATA_STORAGE_SQL_SCAN_FETCH_SIZE_ROWS = "data.storage.sql.scan.size.rows";
+    public static final String DATA_STORAGE_SQL_STATEMENT_CACHE_SIZE = "data.storage.sql.statement.cache.size";
+    public static final String DATA_STORAGE_TABLE_CACHE_ENABLED = "data.storage.table.cache.enabled";
+    public static final String DATA_STORAGE_TABLE_CACHE_MAX_ROWS = "data.storage.table.cache.max.rows";
 
     // used for Guice named bindings
     public static final String TABLE_TYPE = "table.type";
@@ -738,6 +773,7 @@ public final class Constants {
     public static final String SERVER_BOSS_THREADS = "router.server.boss.threads";
     public static final String SERVER_WORKER_THREADS = "router.server.worker.threads";
     public static final String CONNECTION_TIMEOUT_SECS = "router.connection.idle.timeout.secs";
+    public static final String UPSTREAM_POOL_MAX_IDLE_CONNECTIONS = "router.upstream.pool.max.idle.connections";
     public static final String ROUTER_AUDIT_PATH_CHECK_ENABLED = "router.audit.path.check.enabled";
     public static final String ROUTER_AUDIT_LOG_ENABLED = "router.audit.log.enabled";
 
@@ -787,6 +823,8 @@ public final class Constants {
     public static final String METRICS_TABLE_WRITE_PARRALELISM = "metrics.data.table.write.parallelism";
     public static final String METRICS_TABLE_PREFIX = "metrics.data.table.prefix";
     public static final String TIME_SERIES_TABLE_ROLL_TIME = "metrics.data.table.ts.rollTime";
+    public static final String TIME_SERIES_TABLE_PACK_ENABLED = "metrics.data.table.ts.pack.enabled";
+    public static final String TIME_SERIES_TABLE_PACK_DELAY_SECONDS = "metrics.data.table.ts.pack.delay.seconds";
 
     public static final String METRICS_MINIMUM_RESOLUTION_SECONDS = "metrics.minimum.resolution.seconds";
     public static final String MINIMUM_RESOLUTION_RETENTION_SECONDS =
@@ -1049,6 +1087,8 @@ public final class Constants {
       public static final String ACTIVE_CONNECTIONS = "structured.table.connection.active";
       public static final String IDLE_CONNECTIONS = "structured.table.connection.idle";
       public static final String ERROR_CONNECTIONS = "structured.table.connection.error";
+      public static final String STATEMENT_CACHE_HITS = "structured.table.statement.cache.hit";
+      public static final String STATEMENT_CACHE_MISSES = "structured.table.statement.cache.miss";
     }
 
     /**
@@ -1652,6 +1692,7 @@ public final class Constants {
     public static final String MESSAGING_TOPIC = "metadata.messaging.topic";
     public static final String MESSAGING_FETCH_SIZE = "metadata.messaging.fetch.size";
     public static final String MESSAGING_POLL_DELAY_MILLIS = "metadata.messaging.poll.delay.millis";
+    public static final String MESSAGING_PREFETCH_BATCHES = "metadata.messaging.prefetch.batches";
     public static final String MESSAGING_RETRIES_ON_CONFLICT = "metadata.messaging.retries.on.conflict";
     public static final String MESSAGING_PUBLISH_SIZE_LIMIT = "metadata.messaging.publish.size.limit";
 
@@ -1678,8 +1719,16 @@ public final class Constants {
     public static final String LOCAL_DATA_DIR = "messaging.local.data.dir";
     public static final String LOCAL_DATA_CLEANUP_FREQUENCY = "messaging.local.data.cleanup.frequency.secs";
     public static final String LOCAL_DATA_PARTITION_SECONDS = "messaging.local.data.partition.secs";
+    public static final String LOCAL_DATA_PARTITION_READ_AHEAD_THREADS =
+      "messaging.local.data.partition.read.ahead.threads";
 
     public static final String CACHE_SIZE_MB = "messaging.cache.size.mb";
+    public static final String CACHE_TYPE = "messaging.cache.type";
+
+    public static final String GROUP_COMMIT_ENABLED = "messaging.group.commit.enabled";
+    public static final String GROUP_COMMIT_MAX_LINGER_MS = "messaging.group.commit.max.linger.ms";
+    public static final String GROUP_COMMIT_MAX_BATCH_BYTES = "messaging.group.commit.max.batch.bytes";
+    public static final String GROUP_COMMIT_THREADS = "messaging.group.commit.threads";
 
     public static final String HBASE_MAX_SCAN_THREADS = "messaging.hbase.max.scan.threads";
     public static final String HBASE_SCAN_CACHE_ROWS = "messaging.hbase.scan.cache.rows";
@@ -1700,6 +1749,7 @@ public final class Constants {
     public static final String HTTP_SERVER_MAX_REQUEST_SIZE_MB = "messaging.http.server.max.request.size.mb";
     public static final String HTTP_SERVER_CONSUME_CHUNK_SIZE = "messaging.http.server.consume.chunk.size";
     public static final String HTTP_COMPRESS_PAYLOAD = "messaging.http.compress.payload";
+    public static final String HTTP_FETCH_BINARY_FRAMES = "messaging.http.fetch.binary.frames";
 
     // Distributed mode related configurations
     public static final String HA_FENCING_DELAY_SECONDS = "messaging.ha.fencing.delay.seconds";
@@ -33,12 +33,12 @@ import java.util.jar.JarFile;
  */
 public final class ClassLoaderFolder implements Closeable {
   private final File dir;
-  private final boolean needDelete;
+  private final Closeable cleanup;
 
   ClassLoaderFolder(Location location, ThrowingSupplier<File, IOException> targetDirSupplier) throws IOException {
     if ("file".equals(location.toURI().getScheme()) && location.isDirectory()) {
       this.dir = new File(location.toURI());
-      this.needDelete = false;
+      this.cleanup = () -> { };
     } else {
       File targetDir = targetDirSupplier.get();
       Files.createDirectories(targetDir.toPath());
@@ -51,18 +51,32 @@ public final class ClassLoaderFolder implements Closeable {
       Locations.linkOrCopy(location, artifactTempName);
 
       this.dir = targetDir;
-      this.needDelete = true;
+      this.cleanup = () -> {
+        if (targetDir.exists()) {
+          DirUtils.deleteDirectoryContents(targetDir);
+        }
+      };
     }
   }
 
+  /**
+   * Creates an instance for a directory that is managed by the caller, such as a directory in the
+   * {@link ClassLoaderFolderCache}.
+   *
+   * @param dir the directory that is ready for ClassLoader to use
+   * @param cleanup the action to perform on {@link #close()}
+   */
+  ClassLoaderFolder(File dir, Closeable cleanup) {
+    this.dir = dir;
+    this.cleanup = cleanup;
+  }
+
   public File getDir() {
     return dir;
   }
 
   @Override
   public void close() throws IOException {
-    if (needDelete && dir.exists()) {
-      DirUtils.deleteDirectoryContents(dir);
-    }
+    cleanup.close();
   }
 }
@@ -0,0 +1,485 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.common.lang.jar;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.lang.ThrowingSupplier;
+import io.cdap.cdap.common.utils.DirUtils;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A node local cache of {@link ClassLoaderFolder}, such that a jar is only expanded once, no matter how many times
+ * ClassLoaders are created from it, and by how many processes. Entries are keyed by the SHA-256 hash of the jar
+ * content, hence the same jar stored at different locations shares the same entry.
+ *
+ * The cache directory contains:
+ * <ul>
+ *   <li>{@code <hash>/}: the expanded jar, as prepared by {@link BundleJarUtil#prepareClassLoaderFolder}</li>
+ *   <li>{@code <hash>.lock}: the lock file of the entry. A process holds a shared lock on it while using the entry,
+ *     and an exclusive lock while evicting the entry. The lock file is deleted together with the entry, after
+ *     marking it as deleted by writing to it, such that a process that locks the deleted file opens it again.</li>
+ *   <li>{@code tmp/}: the directory for expanding jars before moving them into the cache</li>
+ * </ul>
+ *
+ * Entries are reference counted within the process. When the total size of the entries exceeds the limit, the
+ * least recently used entries that are not used by any process are evicted.
+ *
+ * Instances of this class are thread safe.
+ */
+public final class ClassLoaderFolderCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ClassLoaderFolderCache.class);
+  private static final Map<File, ClassLoaderFolderCache> INSTANCES = new HashMap<>();
+  private static final Pattern ENTRY_NAME_PATTERN = Pattern.compile("[0-9a-f]{64}");
+  private static final String LOCK_FILE_SUFFIX = ".lock";
+  // Lock files are empty, unless they are deleted
+  private static final byte[] DELETED_LOCK_FILE_MARKER = new byte[] { 1 };
+  private static final long TEMP_DIR_EXPIRY_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private final File cacheDir;
+  private final File tempDir;
+  private final long maxSizeBytes;
+  // Content hashes of the jars, keyed by the jar location, last modified time and size
+  private final Cache<String, String> contentHashes;
+  // Sizes of the entries, which never change as the entries are content addressed
+  private final Map<String, Long> entrySizes;
+  private final Object evictionLock;
+  // The entries that are in use by this process
+  private final Map<String, Entry> entries;
+  // The entries that are being loaded or evicted by this process
+  private final Set<String> busyEntries;
+
+  /**
+   * Prepares a {@link ClassLoaderFolder} from the given jar. If the cache is enabled, the folder is acquired from
+   * the cache, and closing the folder releases it. Otherwise, it is the same as calling
+   * {@link BundleJarUtil#prepareClassLoaderFolder(Location, ThrowingSupplier)}.
+   *
+   * @param cConf the configuration for determining whether the cache is enabled and the cache settings
+   * @param jarLocation location of the jar file or local directory with already unpacked jar files
+   * @param destinationSupplier supply the directory to expand into when the cache is not used
+   * @return a {@link ClassLoaderFolder} containing the directory with the content ready for classloader creation
+   * @throws IOException if failed to expand the jar
+   */
+  public static ClassLoaderFolder prepareClassLoaderFolder(CConfiguration cConf, Location jarLocation,
+                                                           ThrowingSupplier<File, IOException> destinationSupplier)
+    throws IOException {
+    if (!cConf.getBoolean(Constants.AppFabric.ARTIFACT_UNPACK_CACHE_ENABLED)
+      || ("file".equals(jarLocation.toURI().getScheme()) && jarLocation.isDirectory())) {
+      return BundleJarUtil.prepareClassLoaderFolder(jarLocation, destinationSupplier);
+    }
+    return getInstance(cConf).getClassLoaderFolder(jarLocation);
+  }
+
+  /**
+   * Returns the cache for the cache directory in the given configuration. The same instance is returned for the
+   * same directory within the process.
+   */
+  public static ClassLoaderFolderCache getInstance(CConfiguration cConf) {
+    File cacheDir = new File(cConf.get(Constants.AppFabric.ARTIFACT_UNPACK_CACHE_DIR));
+    if (!cacheDir.isAbsolute()) {
+      cacheDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR), cacheDir.getPath());
+    }
+    return getInstance(cacheDir.getAbsoluteFile(),
+                       cConf.getLong(Constants.AppFabric.ARTIFACT_UNPACK_CACHE_MAX_SIZE_MB) * 1024 * 1024);
+  }
+
+  /**
+   * Returns the cache for the given directory. The maximum size is only used when the cache is first created for
+   * the directory within the process, and a warning is logged if a different maximum size is given afterwards.
+   */
+  @VisibleForTesting
+  static synchronized ClassLoaderFolderCache getInstance(File cacheDir, long maxSizeBytes) {
+    ClassLoaderFolderCache cache = INSTANCES.computeIfAbsent(cacheDir,
+                                                             dir -> new ClassLoaderFolderCache(dir, maxSizeBytes));
+    if (cache.maxSizeBytes != maxSizeBytes) {
+      LOG.warn("Ignoring maximum size of {} bytes for cache directory {}, which is already used with a maximum " +
+                 "size of {} bytes", maxSizeBytes, cacheDir, cache.maxSizeBytes);
+    }
+    return cache;
+  }
+
+  private ClassLoaderFolderCache(File cacheDir, long maxSizeBytes) {
+    this.cacheDir = cacheDir;
+    this.tempDir = new File(cacheDir, "tmp");
+    this.maxSizeBytes = maxSizeBytes;
+    this.contentHashes = CacheBuilder.newBuilder().maximumSize(10000).build();
+    this.entrySizes = new ConcurrentHashMap<>();
+    this.evictionLock = new Object();
+    this.entries = new HashMap<>();
+    this.busyEntries = new HashSet<>();
+  }
+
+  /**
+   * Acquires a {@link ClassLoaderFolder} for the given jar from the cache, expanding the jar if it is not yet in the
+   * cache. The folder must be closed to release it, and must not be modified.
+   *
+   * @param jarLocation location of the jar file
+   * @return a {@link ClassLoaderFolder} containing the directory with the content ready for classloader creation
+   * @throws IOException if failed to read or expand the jar
+   */
+  public ClassLoaderFolder getClassLoaderFolder(Location jarLocation) throws IOException {
+    String hash = getContentHash(jarLocation);
+    File dir = acquire(hash, jarLocation);
+    AtomicBoolean released = new AtomicBoolean();
+    return new ClassLoaderFolder(dir, () -> {
+      if (released.compareAndSet(false, true)) {
+        release(hash);
+      }
+    });
+  }
+
+  /**
+   * Returns the number of entries that are in use by this process.
+   */
+  @VisibleForTesting
+  synchronized int getInUseCount() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the SHA-256 hash of the content of the given jar. The hash is only computed once for the same
+   * location, last modified time and size.
+   */
+  private String getContentHash(Location jarLocation) throws IOException {
+    long lastModified = jarLocation.lastModified();
+    String key = jarLocation.toURI() + ":" + lastModified + ":" + jarLocation.length();
+    String hash = lastModified > 0 ? contentHashes.getIfPresent(key) : null;
+    if (hash != null) {
+      return hash;
+    }
+
+    Hasher hasher = Hashing.sha256().newHasher();
+    try (InputStream is = jarLocation.getInputStream()) {
+      ByteStreams.copy(is, Funnels.asOutputStream(hasher));
+    }
+    hash = hasher.hash().toString();
+    if (lastModified > 0) {
+      contentHashes.put(key, hash);
+    }
+    return hash;
+  }
+
+  /**
+   * Acquires the entry of the given hash, loading it into the cache if needed.
+   *
+   * @return the directory of the entry
+   */
+  private File acquire(String hash, Location jarLocation) throws IOException {
+    synchronized (this) {
+      Entry entry = entries.get(hash);
+      while (entry == null && !busyEntries.add(hash)) {
+        // Another thread is loading or evicting the entry
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for cache entry " + hash);
+        }
+        entry = entries.get(hash);
+      }
+      if (entry != null) {
+        entry.refCount++;
+        return entry.dir;
+      }
+    }
+
+    Entry entry = null;
+    try {
+      entry = load(hash, jarLocation);
+    } finally {
+      synchronized (this) {
+        busyEntries.remove(hash);
+        if (entry != null) {
+          entries.put(hash, entry);
+        }
+        notifyAll();
+      }
+    }
+    evictIfNeeded();
+    return entry.dir;
+  }
+
+  /**
+   * Releases the entry of the given hash. When the entry is no longer used by this process, the shared lock is
+   * released, such that the entry can be evicted.
+   */
+  private void release(String hash) {
+    synchronized (this) {
+      Entry entry = entries.get(hash);
+      if (entry == null || --entry.refCount > 0) {
+        return;
+      }
+      entries.remove(hash);
+      touch(entry.dir);
+      entry.close();
+    }
+    evictIfNeeded();
+  }
+
+  /**
+   * Loads the entry of the given hash by taking the shared lock of it, and expanding the jar if the entry directory
+   * doesn't exist.
+   */
+  private Entry load(String hash, Location jarLocation) throws IOException {
+    if (!DirUtils.mkdirs(tempDir)) {
+      throw new IOException("Failed to create directory " + tempDir);
+    }
+    File dir = new File(cacheDir, hash);
+    FileChannel channel = openLockFile(hash);
+    try {
+      // Holding the shared lock prevents other processes from evicting the entry
+      FileLock lock = channel.lock(0L, Long.MAX_VALUE, true);
+      while (isDeleted(channel)) {
+        // The lock file was deleted by eviction after it was opened, hence open the new one
+        Closeables.closeQuietly(channel);
+        channel = openLockFile(hash);
+        lock = channel.lock(0L, Long.MAX_VALUE, true);
+      }
+      if (dir.isDirectory()) {
+        LOG.trace("Found jar {} in cache directory {}", jarLocation, dir);
+      } else {
+        expand(jarLocation, dir);
+      }
+      touch(dir);
+      return new Entry(dir, channel, lock);
+    } catch (IOException | RuntimeException e) {
+      Closeables.closeQuietly(channel);
+      throw e;
+    }
+  }
+
+  /**
+   * Expands the given jar into a temporary directory, then atomically moves it to the given directory.
+   */
+  private void expand(Location jarLocation, File dir) throws IOException {
+    LOG.debug("Expanding jar {} into cache directory {}", jarLocation, dir);
+    try (ClassLoaderFolder folder = BundleJarUtil.prepareClassLoaderFolder(jarLocation,
+                                                                           () -> DirUtils.createTempDir(tempDir))) {
+      try {
+        Files.move(folder.getDir().toPath(), dir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        // Another process may have expanded the same jar concurrently
+        if (!dir.isDirectory()) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Evicts the least recently used entries that are not in use, until the total size of the cache is within the
+   * limit. Failure in eviction is only logged.
+   */
+  private void evictIfNeeded() {
+    synchronized (evictionLock) {
+      try {
+        deleteExpiredTempDirs();
+
+        Map<String, Long> lastAccessTimes = new HashMap<>();
+        long totalSize = 0L;
+        for (File dir : DirUtils.listFiles(cacheDir, f -> f.isDirectory()
+          && ENTRY_NAME_PATTERN.matcher(f.getName()).matches())) {
+          lastAccessTimes.put(dir.getName(), dir.lastModified());
+          totalSize += getSize(dir);
+        }
+        if (totalSize <= maxSizeBytes) {
+          return;
+        }
+
+        List<String> hashes = new ArrayList<>(lastAccessTimes.keySet());
+        hashes.sort((h1, h2) -> Long.compare(lastAccessTimes.get(h1), lastAccessTimes.get(h2)));
+        for (String hash : hashes) {
+          if (totalSize <= maxSizeBytes) {
+            break;
+          }
+          long size = getSize(new File(cacheDir, hash));
+          if (evict(hash)) {
+            totalSize -= size;
+          }
+        }
+        if (totalSize > maxSizeBytes) {
+          LOG.debug("Size of cache directory {} is {} bytes, which exceeds the limit of {} bytes, " +
+                      "since the remaining entries are in use", cacheDir, totalSize, maxSizeBytes);
+        }
+      } catch (Exception e) {
+        LOG.warn("Failed to evict entries from cache directory {}", cacheDir, e);
+      }
+    }
+  }
+
+  /**
+   * Evicts the entry of the given hash if it is not in use by any process.
+   *
+   * @return {@code true} if the entry was evicted
+   */
+  private boolean evict(String hash) throws IOException {
+    synchronized (this) {
+      if (entries.containsKey(hash) || !busyEntries.add(hash)) {
+        return false;
+      }
+    }
+    try (FileChannel channel = openLockFile(hash)) {
+      FileLock lock = channel.tryLock();
+      if (lock == null) {
+        // The entry is in use by another process
+        return false;
+      }
+      try {
+        if (isDeleted(channel)) {
+          // The entry was evicted by another process after the lock file was opened
+          return false;
+        }
+        LOG.debug("Evicting entry {} from cache directory {}", hash, cacheDir);
+        // Move the entry out of the cache first, such that a partially deleted entry is never used
+        File evictDir = new File(tempDir, hash + "-" + System.nanoTime());
+        Files.move(new File(cacheDir, hash).toPath(), evictDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        deleteLockFile(hash, channel);
+        DirUtils.deleteDirectoryContents(evictDir);
+        entrySizes.remove(hash);
+        return true;
+      } finally {
+        lock.release();
+      }
+    } finally {
+      synchronized (this) {
+        busyEntries.remove(hash);
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Deletes the temporary directories left behind by processes that failed while expanding jars.
+   */
+  private void deleteExpiredTempDirs() throws IOException {
+    long expiry = System.currentTimeMillis() - TEMP_DIR_EXPIRY_MILLIS;
+    for (File dir : DirUtils.listFiles(tempDir, f -> f.isDirectory() && f.lastModified() < expiry)) {
+      DirUtils.deleteDirectoryContents(dir);
+    }
+  }
+
+  private long getSize(File dir) throws IOException {
+    Long size = entrySizes.get(dir.getName());
+    if (size != null) {
+      return size;
+    }
+    try (Stream<Path> paths = Files.walk(dir.toPath())) {
+      size = paths.map(Path::toFile).filter(File::isFile).mapToLong(File::length).sum();
+    }
+    entrySizes.put(dir.getName(), size);
+    return size;
+  }
+
+  private FileChannel openLockFile(String hash) throws IOException {
+    return FileChannel.open(getLockFile(hash), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE);
+  }
+
+  private Path getLockFile(String hash) {
+    return new File(cacheDir, hash + LOCK_FILE_SUFFIX).toPath();
+  }
+
+  /**
+   * Deletes the lock file of the given entry, which must be exclusively locked through the given channel. The file
+   * is marked as deleted after it is deleted, for processes that opened it before the deletion. Failure to delete
+   * the file is only logged, in which case it is kept as is for reuse.
+   */
+  private void deleteLockFile(String hash, FileChannel channel) {
+    try {
+      Files.delete(getLockFile(hash));
+      channel.write(ByteBuffer.wrap(DELETED_LOCK_FILE_MARKER), 0L);
+    } catch (IOException e) {
+      LOG.debug("Failed to delete lock file of entry {} in cache directory {}", hash, cacheDir, e);
+    }
+  }
+
+  /**
+   * Returns whether the lock file opened by the given channel was deleted. The lock on the channel must be held.
+   */
+  private static boolean isDeleted(FileChannel channel) throws IOException {
+    return channel.size() > 0;
+  }
+
+  /**
+   * Updates the last modified time of the given entry directory, which is used as the last access time.
+   */
+  private static void touch(File dir) {
+    if (!dir.setLastModified(System.currentTimeMillis())) {
+      LOG.trace("Failed to update last modified time of {}", dir);
+    }
+  }
+
+  /**
+   * An entry that is in use by this process.
+   */
+  private static final class Entry {
+    private final File dir;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private int refCount;
+
+    Entry(File dir, FileChannel channel, FileLock lock) {
+      this.dir = dir;
+      this.channel = channel;
+      this.lock = lock;
+      this.refCount = 1;
+    }
+
+    void close() {
+      try {
+        lock.release();
+      } catch (IOException e) {
+        LOG.trace("Failed to release lock of {}", dir, e);
+      }
+      Closeables.closeQuietly(channel);
+    }
+  }
+}
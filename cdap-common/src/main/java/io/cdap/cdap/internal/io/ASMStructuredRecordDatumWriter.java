@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.io;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.common.io.Encoder;
+import io.cdap.cdap.format.io.StructuredRecordDatumWriter;
+import io.cdap.cdap.internal.asm.ByteCodeClassLoader;
+import io.cdap.cdap.internal.asm.ClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * A {@link StructuredRecordDatumWriter} that encodes each {@link StructuredRecord} with a writer generated by
+ * {@link StructuredRecordDatumWriterGenerator} for the record schema. The output is the same as the one produced
+ * by {@link StructuredRecordDatumWriter}. Generated writers are cached by schema hash.
+ * This class is thread safe.
+ */
+public final class ASMStructuredRecordDatumWriter extends StructuredRecordDatumWriter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ASMStructuredRecordDatumWriter.class);
+  private static final int DEFAULT_MAX_SCHEMAS = 1000;
+
+  private final LoadingCache<Schema, StructuredRecordDatumWriter> writers;
+
+  public ASMStructuredRecordDatumWriter() {
+    this(DEFAULT_MAX_SCHEMAS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxSchemas maximum number of schemas to keep generated writers for
+   */
+  public ASMStructuredRecordDatumWriter(int maxSchemas) {
+    this.writers = CacheBuilder.newBuilder().maximumSize(maxSchemas).build(new WriterLoader());
+  }
+
+  @Override
+  public void encode(StructuredRecord data, Encoder encoder) throws IOException {
+    writers.getUnchecked(data.getSchema()).encode(data, encoder);
+  }
+
+  /**
+   * A {@link CacheLoader} for generating the writer for a schema.
+   */
+  private static final class WriterLoader extends CacheLoader<Schema, StructuredRecordDatumWriter> {
+
+    @Override
+    public StructuredRecordDatumWriter load(Schema schema) {
+      try {
+        StructuredRecordDatumWriterGenerator generator = new StructuredRecordDatumWriterGenerator();
+        ClassDefinition classDef = generator.generate(schema);
+
+        // Each generated class has its own ClassLoader, so that it can be garbage collected once evicted from cache
+        ClassLoader classLoader = new ByteCodeClassLoader(ASMStructuredRecordDatumWriter.class.getClassLoader())
+          .addClass(classDef);
+        Class<?> writerClass = classLoader.loadClass(classDef.getClassName());
+        return (StructuredRecordDatumWriter) writerClass.getConstructor(Schema.Field[].class)
+          .newInstance((Object) generator.getFields());
+      } catch (Exception | LinkageError e) {
+        LOG.warn("Failed to generate writer for schema {}. Records of the schema will be encoded without it.",
+                 schema.getRecordName(), e);
+        return new StructuredRecordDatumWriter();
+      }
+    }
+  }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.io;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.data.schema.SchemaHash;
+import io.cdap.cdap.common.io.Encoder;
+import io.cdap.cdap.format.io.StructuredRecordDatumWriter;
+import io.cdap.cdap.internal.asm.ClassDefinition;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import static io.cdap.cdap.internal.asm.Methods.getMethod;
+
+/**
+ * Class for generating {@link StructuredRecordDatumWriter} bytecodes that are specialized for a given record
+ * {@link Schema} using ASM. The generated class encodes the fields one by one without looping through the schema
+ * or switching on the schema type. Fields of simple types, nested records and nullable unions of those are encoded
+ * directly, while all other fields, as well as values that are not of the expected type, are encoded through
+ * {@link StructuredRecordDatumWriter#encodeRecordField(Encoder, Schema.Field, Object)}, hence producing exactly
+ * the same output and errors as {@link StructuredRecordDatumWriter}.
+ *
+ * The class generated will have a skeleton looks like the following:
+ * <pre>
+ * {@code
+ *
+ *  public final class StructuredRecordDatumWriter<schema_hash> extends StructuredRecordDatumWriter {
+ *    private final Schema.Field[] fields;
+ *
+ *    public StructuredRecordDatumWriter<schema_hash>(Schema.Field[] fields) {
+ *      this.fields = fields;
+ *    }
+ *
+ *    @Override
+ *    public void encode(StructuredRecord record, Encoder encoder) throws IOException {
+ *      encode<schema_hash>(record, encoder);
+ *    }
+ *
+ *    private void encode<schema_hash>(StructuredRecord record, Encoder encoder) throws IOException {
+ *      Object value = record.get("id");
+ *      if (value instanceof Long) {
+ *        encoder.writeLong(((Long) value).longValue());
+ *      } else {
+ *        encodeRecordField(encoder, fields[0], value);
+ *      }
+ *
+ *      value = record.get("name");
+ *      if (value == null) {
+ *        encoder.writeInt(1);
+ *        encoder.writeNull();
+ *      } else if (value instanceof String) {
+ *        encoder.writeInt(0);
+ *        encoder.writeString((String) value);
+ *      } else {
+ *        encodeRecordField(encoder, fields[1], value);
+ *      }
+ *      ...
+ *    }
+ *
+ *    // More encode methods for nested records...
+ *  }
+ * }
+ * </pre>
+ */
+@NotThreadSafe
+final class StructuredRecordDatumWriterGenerator {
+
+  private static final Type ENCODER_TYPE = Type.getType(Encoder.class);
+  private static final Type FIELD_TYPE = Type.getType(Schema.Field.class);
+  private static final Type FIELD_ARRAY_TYPE = Type.getType(Schema.Field[].class);
+  private static final Type STRUCTURED_RECORD_TYPE = Type.getType(StructuredRecord.class);
+  private static final Type WRITER_TYPE = Type.getType(StructuredRecordDatumWriter.class);
+
+  private final Map<SchemaHash, Method> encodeMethods = new HashMap<>();
+  private final List<Schema.Field> fields = new ArrayList<>();
+  private ClassWriter classWriter;
+  private Type classType;
+
+  /**
+   * Generates a {@link StructuredRecordDatumWriter} class for encoding {@link StructuredRecord} of the given schema.
+   * The generated class has a public constructor that takes the array returned by {@link #getFields()}.
+   *
+   * @param schema the record schema
+   * @return A {@link ClassDefinition} that contains generated class information.
+   */
+  ClassDefinition generate(Schema schema) {
+    if (schema.getType() != Schema.Type.RECORD || schema.getFields() == null) {
+      throw new IllegalArgumentException("Expected a record schema. Got: " + schema);
+    }
+    encodeMethods.clear();
+    fields.clear();
+    classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+    // The generated class is in this package, named after the writer class and the schema hash
+    String packageName = StructuredRecordDatumWriterGenerator.class.getPackage().getName().replace('.', '/');
+    String className = String.format("%s/%s%s", packageName,
+                                     StructuredRecordDatumWriter.class.getSimpleName(), schema.getSchemaHash());
+    classType = Type.getObjectType(className);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL, className, null,
+                      WRITER_TYPE.getInternalName(), null);
+
+    classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, "fields",
+                           FIELD_ARRAY_TYPE.getDescriptor(), null, null).visitEnd();
+
+    generateConstructor();
+    generateEncode(schema);
+
+    classWriter.visitEnd();
+    return new ClassDefinition(classWriter.toByteArray(), className);
+  }
+
+  /**
+   * Returns the fields that need to be passed to the constructor of the class generated by the last call to
+   * {@link #generate(Schema)}.
+   */
+  Schema.Field[] getFields() {
+    return fields.toArray(new Schema.Field[0]);
+  }
+
+  /**
+   * Generates the constructor, which has the signature {@code (Schema.Field[])}.
+   */
+  private void generateConstructor() {
+    Method constructor = new Method("<init>", Type.VOID_TYPE, new Type[] { FIELD_ARRAY_TYPE });
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, constructor, null, null, classWriter);
+
+    // super();
+    mg.loadThis();
+    mg.invokeConstructor(WRITER_TYPE, getMethod(void.class, "<init>"));
+
+    // this.fields = fields;
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.putField(classType, "fields", FIELD_ARRAY_TYPE);
+
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates the {@link StructuredRecordDatumWriter#encode(StructuredRecord, Encoder)} method.
+   */
+  private void generateEncode(Schema schema) {
+    Method method = getMethod(void.class, "encode", StructuredRecord.class, Encoder.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, method, null,
+                                               new Type[] { Type.getType(IOException.class) }, classWriter);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.loadArg(1);
+    mg.invokeVirtual(classType, getEncodeMethod(schema));
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Returns the method for encoding records of the given schema, generating it if it was not generated yet.
+   */
+  private Method getEncodeMethod(Schema schema) {
+    Method method = encodeMethods.get(schema.getSchemaHash());
+    if (method != null) {
+      return method;
+    }
+
+    method = getMethod(void.class, "encode" + schema.getSchemaHash(), StructuredRecord.class, Encoder.class);
+    // Put the method into map first before generating the body in order to support recursive schema.
+    encodeMethods.put(schema.getSchemaHash(), method);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE, method, null,
+                                               new Type[] { Type.getType(IOException.class) }, classWriter);
+    int value = mg.newLocal(Type.getType(Object.class));
+    for (Schema.Field field : schema.getFields()) {
+      // value = record.get(fieldName);
+      mg.loadArg(0);
+      mg.push(field.getName());
+      mg.invokeVirtual(STRUCTURED_RECORD_TYPE, getMethod(Object.class, "get", String.class));
+      mg.storeLocal(value);
+
+      Label fallback = mg.newLabel();
+      Label end = mg.newLabel();
+      generateEncodeField(mg, field.getSchema(), value, fallback);
+      mg.goTo(end);
+
+      // encodeRecordField(encoder, fields[i], value);
+      mg.mark(fallback);
+      mg.loadThis();
+      mg.loadArg(1);
+      mg.loadThis();
+      mg.getField(classType, "fields", FIELD_ARRAY_TYPE);
+      mg.push(fields.size());
+      mg.arrayLoad(FIELD_TYPE);
+      mg.loadLocal(value);
+      mg.invokeVirtual(classType, getMethod(void.class, "encodeRecordField",
+                                            Encoder.class, Schema.Field.class, Object.class));
+      mg.mark(end);
+      fields.add(field);
+    }
+    mg.returnValue();
+    mg.endMethod();
+    return method;
+  }
+
+  /**
+   * Generates code to encode a field value, jumping to the fallback label if the field cannot be encoded directly.
+   */
+  private void generateEncodeField(GeneratorAdapter mg, Schema schema, int value, Label fallback) {
+    if (schema.getType() == Schema.Type.NULL) {
+      writeNull(mg);
+      return;
+    }
+    if (schema.getType() == Schema.Type.UNION) {
+      List<Schema> unionSchemas = schema.getUnionSchemas();
+      int nullIdx = unionSchemas.size() == 2 ? unionSchemas.indexOf(Schema.of(Schema.Type.NULL)) : -1;
+      Class<?> valueClass = nullIdx < 0 ? null : getDirectClass(unionSchemas.get(1 - nullIdx));
+      if (valueClass == null) {
+        mg.goTo(fallback);
+        return;
+      }
+
+      // if (value == null) { encoder.writeInt(nullIdx); encoder.writeNull(); }
+      Label notNull = mg.newLabel();
+      Label end = mg.newLabel();
+      mg.loadLocal(value);
+      mg.ifNonNull(notNull);
+      writeInt(mg, nullIdx);
+      writeNull(mg);
+      mg.goTo(end);
+
+      // else if (value instanceof valueClass) { encoder.writeInt(1 - nullIdx); encode value }
+      mg.mark(notNull);
+      mg.loadLocal(value);
+      mg.instanceOf(Type.getType(valueClass));
+      mg.ifZCmp(GeneratorAdapter.EQ, fallback);
+      writeInt(mg, 1 - nullIdx);
+      generateEncodeValue(mg, unionSchemas.get(1 - nullIdx), valueClass, value);
+      mg.mark(end);
+      return;
+    }
+
+    Class<?> valueClass = getDirectClass(schema);
+    if (valueClass == null) {
+      mg.goTo(fallback);
+      return;
+    }
+    // if (value instanceof valueClass) { encode value }
+    mg.loadLocal(value);
+    mg.instanceOf(Type.getType(valueClass));
+    mg.ifZCmp(GeneratorAdapter.EQ, fallback);
+    generateEncodeValue(mg, schema, valueClass, value);
+  }
+
+  /**
+   * Generates code to encode a value that is known to be of the given class.
+   */
+  private void generateEncodeValue(GeneratorAdapter mg, Schema schema, Class<?> valueClass, int value) {
+    if (valueClass == StructuredRecord.class) {
+      // encode<hash>((StructuredRecord) value, encoder)
+      mg.loadThis();
+      mg.loadLocal(value);
+      mg.checkCast(STRUCTURED_RECORD_TYPE);
+      mg.loadArg(1);
+      mg.invokeVirtual(classType, getEncodeMethod(schema));
+      return;
+    }
+
+    mg.loadArg(1);
+    mg.loadLocal(value);
+    mg.checkCast(Type.getType(valueClass));
+    if (valueClass == byte[].class) {
+      // encoder.writeBytes(bytes, 0, bytes.length)
+      mg.push(0);
+      mg.loadLocal(value);
+      mg.checkCast(Type.getType(byte[].class));
+      mg.arrayLength();
+      mg.invokeInterface(ENCODER_TYPE, getMethod(Encoder.class, "writeBytes", byte[].class, int.class, int.class));
+      mg.pop();
+      return;
+    }
+
+    Type unboxedType = Type.getType(valueClass);
+    String writeMethod;
+    switch (schema.getType()) {
+      case BOOLEAN:
+        writeMethod = "writeBool";
+        unboxedType = Type.BOOLEAN_TYPE;
+        break;
+      case INT:
+        writeMethod = "writeInt";
+        unboxedType = Type.INT_TYPE;
+        break;
+      case LONG:
+        writeMethod = "writeLong";
+        unboxedType = Type.LONG_TYPE;
+        break;
+      case FLOAT:
+        writeMethod = "writeFloat";
+        unboxedType = Type.FLOAT_TYPE;
+        break;
+      case DOUBLE:
+        writeMethod = "writeDouble";
+        unboxedType = Type.DOUBLE_TYPE;
+        break;
+      case STRING:
+        writeMethod = "writeString";
+        break;
+      default:
+        // Should not happen, as getDirectClass only returns a class for the types above
+        throw new IllegalStateException("Unsupported schema type " + schema.getType());
+    }
+    if (unboxedType.getSort() != Type.OBJECT) {
+      mg.unbox(unboxedType);
+    }
+    mg.invokeInterface(ENCODER_TYPE, new Method(writeMethod, ENCODER_TYPE, new Type[] { unboxedType }));
+    mg.pop();
+  }
+
+  /**
+   * Returns the Java class of the values of the given schema that can be encoded directly by the generated code,
+   * or {@code null} if values of the schema have to be encoded by {@link StructuredRecordDatumWriter}.
+   */
+  @Nullable
+  private static Class<?> getDirectClass(Schema schema) {
+    switch (schema.getType()) {
+      case BOOLEAN:
+        return Boolean.class;
+      case INT:
+        return Integer.class;
+      case LONG:
+        return Long.class;
+      case FLOAT:
+        return Float.class;
+      case DOUBLE:
+        return Double.class;
+      case STRING:
+        return String.class;
+      case BYTES:
+        return byte[].class;
+      case RECORD:
+        return schema.getFields() == null ? null : StructuredRecord.class;
+      default:
+        return null;
+    }
+  }
+
+  private void writeInt(GeneratorAdapter mg, int value) {
+    mg.loadArg(1);
+    mg.push(value);
+    mg.invokeInterface(ENCODER_TYPE, getMethod(Encoder.class, "writeInt", int.class));
+    mg.pop();
+  }
+
+  private void writeNull(GeneratorAdapter mg) {
+    mg.loadArg(1);
+    mg.invokeInterface(ENCODER_TYPE, getMethod(Encoder.class, "writeNull"));
+    mg.pop();
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.common.lang.jar;
+
+import com.google.common.io.Files;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.io.Locations;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link ClassLoaderFolderCache}.
+ */
+public class ClassLoaderFolderCacheTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testSharedEntry() throws IOException {
+    File cacheDir = TEMP_FOLDER.newFolder();
+    ClassLoaderFolderCache cache = ClassLoaderFolderCache.getInstance(cacheDir, Long.MAX_VALUE);
+    // The same instance is used for the same directory, even if a different maximum size is given
+    Assert.assertSame(cache, ClassLoaderFolderCache.getInstance(cacheDir, 1024L));
+
+    // The same jar content at different locations shares the same entry
+    File jar1 = createJar(1024);
+    File jar2 = new File(TEMP_FOLDER.newFolder(), "copy.jar");
+    Files.copy(jar1, jar2);
+
+    ClassLoaderFolder folder1 = cache.getClassLoaderFolder(Locations.toLocation(jar1));
+    ClassLoaderFolder folder2 = cache.getClassLoaderFolder(Locations.toLocation(jar2));
+    Assert.assertEquals(folder1.getDir(), folder2.getDir());
+    Assert.assertEquals(1, cache.getInUseCount());
+
+    // The entry is kept after all the folders are closed, and closing the same folder twice has no effect
+    folder1.close();
+    folder1.close();
+    Assert.assertEquals(1, cache.getInUseCount());
+    folder2.close();
+    Assert.assertEquals(0, cache.getInUseCount());
+    Assert.assertTrue(folder1.getDir().isDirectory());
+
+    try (ClassLoaderFolder folder = cache.getClassLoaderFolder(Locations.toLocation(jar1))) {
+      Assert.assertEquals(folder1.getDir(), folder.getDir());
+    }
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    int fileSize = 10 * 1024;
+    ClassLoaderFolderCache cache = ClassLoaderFolderCache.getInstance(TEMP_FOLDER.newFolder(), fileSize * 3 / 2);
+
+    // Entries that are in use are not evicted, even if the cache exceeds the limit
+    ClassLoaderFolder folder1 = cache.getClassLoaderFolder(Locations.toLocation(createJar(fileSize)));
+    ClassLoaderFolder folder2 = cache.getClassLoaderFolder(Locations.toLocation(createJar(fileSize)));
+    Assert.assertTrue(folder1.getDir().isDirectory());
+    Assert.assertTrue(folder2.getDir().isDirectory());
+
+    // Releasing an entry makes it available for eviction, which deletes the lock file of the entry too.
+    // The deleted lock file is marked as deleted for processes that have it opened.
+    try (FileChannel channel = FileChannel.open(getLockFile(folder2).toPath(), StandardOpenOption.READ)) {
+      folder2.close();
+      Assert.assertFalse(folder2.getDir().exists());
+      Assert.assertFalse(getLockFile(folder2).exists());
+      Assert.assertTrue(channel.size() > 0);
+    }
+    Assert.assertTrue(folder1.getDir().isDirectory());
+    Assert.assertTrue(getLockFile(folder1).exists());
+
+    // The least recently used entry that is not in use is evicted when a new entry is added
+    folder1.close();
+    Assert.assertTrue(folder1.getDir().isDirectory());
+    try (ClassLoaderFolder folder3 = cache.getClassLoaderFolder(Locations.toLocation(createJar(fileSize)))) {
+      Assert.assertFalse(folder1.getDir().exists());
+      Assert.assertFalse(getLockFile(folder1).exists());
+      Assert.assertTrue(folder3.getDir().isDirectory());
+    }
+
+    // An evicted entry is loaded again with a new lock file
+    try (ClassLoaderFolder folder = cache.getClassLoaderFolder(Locations.toLocation(createJar(fileSize)))) {
+      Assert.assertTrue(folder.getDir().isDirectory());
+      Assert.assertTrue(getLockFile(folder).exists());
+    }
+  }
+
+  @Test
+  public void testLocalDirectory() throws IOException {
+    // A local directory is used as is, without going through the cache
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
+    File dir = TEMP_FOLDER.newFolder();
+    ClassLoaderFolder folder = ClassLoaderFolderCache.prepareClassLoaderFolder(cConf, Locations.toLocation(dir), () -> {
+      throw new IOException("Directory should not be expanded");
+    });
+    Assert.assertEquals(dir, folder.getDir());
+    folder.close();
+    Assert.assertTrue(dir.isDirectory());
+  }
+
+  private File getLockFile(ClassLoaderFolder folder) {
+    return new File(folder.getDir().getParentFile(), folder.getDir().getName() + ".lock");
+  }
+
+  /**
+   * Creates a jar that contains a file with the given number of random bytes.
+   */
+  private File createJar(int size) throws IOException {
+    File dir = TEMP_FOLDER.newFolder();
+    byte[] content = new byte[size];
+    new Random().nextBytes(content);
+    Files.write(content, new File(dir, "file.bin"));
+
+    File jar = new File(TEMP_FOLDER.newFolder(), "test.jar");
+    BundleJarUtil.createJar(dir, jar);
+    return jar;
+  }
+}
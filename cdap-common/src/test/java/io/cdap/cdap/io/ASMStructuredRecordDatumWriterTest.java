@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.io;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.common.io.BinaryDecoder;
+import io.cdap.cdap.common.io.BinaryEncoder;
+import io.cdap.cdap.format.io.StructuredRecordDatumReader;
+import io.cdap.cdap.format.io.StructuredRecordDatumWriter;
+import io.cdap.cdap.internal.io.ASMStructuredRecordDatumWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit test for {@link ASMStructuredRecordDatumWriter}.
+ */
+public class ASMStructuredRecordDatumWriterTest {
+
+  private static final Schema INNER_SCHEMA = Schema.recordOf(
+    "inner",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("tag", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "outer",
+    Schema.Field.of("boolean", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("long", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("float", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("double", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("string", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("buffer", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("null", Schema.of(Schema.Type.NULL)),
+    Schema.Field.of("enum", Schema.enumWith("a", "b", "c")),
+    Schema.Field.of("array", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.INT))),
+    Schema.Field.of("record", INNER_SCHEMA),
+    Schema.Field.of("nullableInt", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("nullableString", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("nullableRecord", Schema.nullableOf(INNER_SCHEMA)),
+    Schema.Field.of("nullFirst", Schema.unionOf(Schema.of(Schema.Type.NULL), Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("union", Schema.unionOf(Schema.of(Schema.Type.INT), Schema.of(Schema.Type.STRING),
+                                            Schema.of(Schema.Type.NULL))),
+    Schema.Field.of("date", Schema.of(Schema.LogicalType.DATE)),
+    Schema.Field.of("timestamp", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))));
+
+  @Test
+  public void testEncode() throws IOException {
+    StructuredRecord inner = StructuredRecord.builder(INNER_SCHEMA).set("id", 10L).set("tag", "t").build();
+    StructuredRecord record = StructuredRecord.builder(SCHEMA)
+      .set("boolean", true)
+      .set("int", 1)
+      .set("long", 2L)
+      .set("float", 3.0f)
+      .set("double", 4.0d)
+      .set("string", "five")
+      .set("bytes", Bytes.toBytes("six"))
+      .set("buffer", ByteBuffer.wrap(Bytes.toBytes("seven")))
+      .set("null", null)
+      .set("enum", "b")
+      .set("array", ImmutableList.of("x", "y"))
+      .set("map", ImmutableMap.of("k", 8))
+      .set("record", inner)
+      .set("nullableInt", 9)
+      .set("nullableString", null)
+      .set("nullableRecord", inner)
+      .set("nullFirst", 10.0d)
+      .set("union", "eleven")
+      .set("date", 12)
+      .set("timestamp", 13L)
+      .build();
+    assertSameEncoding(record);
+
+    // Encode with the nullable fields set to null
+    record = StructuredRecord.builder(SCHEMA)
+      .set("boolean", false)
+      .set("int", -1)
+      .set("long", -2L)
+      .set("float", -3.0f)
+      .set("double", -4.0d)
+      .set("string", "")
+      .set("bytes", new byte[0])
+      .set("buffer", ByteBuffer.allocate(0))
+      .set("null", null)
+      .set("enum", "c")
+      .set("array", new String[] { "z" })
+      .set("map", ImmutableMap.of("k1", 1, "k2", 2))
+      .set("record", StructuredRecord.builder(INNER_SCHEMA).set("id", 0L).build())
+      .set("nullableInt", null)
+      .set("nullableString", "str")
+      .set("nullableRecord", null)
+      .set("nullFirst", null)
+      .set("union", 14)
+      .set("date", 15)
+      .set("timestamp", null)
+      .build();
+    assertSameEncoding(record);
+  }
+
+  @Test
+  public void testRecursiveSchema() throws IOException {
+    Schema schema = Schema.recordOf(
+      "node",
+      Schema.Field.of("value", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("next", Schema.nullableOf(Schema.recordOf("node"))));
+
+    StructuredRecord record = null;
+    for (int i = 0; i < 5; i++) {
+      record = StructuredRecord.builder(schema).set("value", i).set("next", record).build();
+    }
+    assertSameEncoding(record);
+  }
+
+  @Test
+  public void testTypeMismatch() throws IOException {
+    Schema schema = Schema.recordOf(
+      "mismatch",
+      Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("nullableLong", Schema.nullableOf(Schema.of(Schema.Type.LONG))));
+
+    // Short is not encoded directly, but accepted by the union resolution
+    StructuredRecord record = StructuredRecord.builder(schema).set("int", 1).set("nullableLong", (short) 1).build();
+    IOException expected = null;
+    try {
+      new StructuredRecordDatumWriter().encode(record, new BinaryEncoder(new ByteArrayOutputStream()));
+    } catch (IOException e) {
+      expected = e;
+    }
+    Assert.assertNotNull(expected);
+    try {
+      new ASMStructuredRecordDatumWriter().encode(record, new BinaryEncoder(new ByteArrayOutputStream()));
+      Assert.fail("Expected IOException");
+    } catch (IOException e) {
+      Assert.assertEquals(expected.getMessage(), e.getMessage());
+    }
+
+    record = StructuredRecord.builder(schema).set("int", 1L).set("nullableLong", 1L).build();
+    try {
+      new ASMStructuredRecordDatumWriter().encode(record, new BinaryEncoder(new ByteArrayOutputStream()));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains("'int'"));
+    }
+  }
+
+  @Test
+  public void testWideRecord() throws IOException {
+    int numFields = 100;
+    List<Schema.Field> fields = new ArrayList<>();
+    for (int i = 0; i < numFields; i++) {
+      switch (i % 4) {
+        case 0:
+          fields.add(Schema.Field.of("f" + i, Schema.of(Schema.Type.INT)));
+          break;
+        case 1:
+          fields.add(Schema.Field.of("f" + i, Schema.of(Schema.Type.LONG)));
+          break;
+        case 2:
+          fields.add(Schema.Field.of("f" + i, Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+          break;
+        default:
+          fields.add(Schema.Field.of("f" + i, Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))));
+      }
+    }
+    Schema schema = Schema.recordOf("wide", fields);
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (int i = 0; i < numFields; i++) {
+      switch (i % 4) {
+        case 0:
+          builder.set("f" + i, i);
+          break;
+        case 1:
+          builder.set("f" + i, (long) i);
+          break;
+        case 2:
+          builder.set("f" + i, "value" + i);
+          break;
+        default:
+          builder.set("f" + i, i % 8 == 3 ? null : (double) i);
+      }
+    }
+    assertSameEncoding(builder.build());
+  }
+
+  private void assertSameEncoding(StructuredRecord record) throws IOException {
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    new StructuredRecordDatumWriter().encode(record, new BinaryEncoder(expected));
+
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    ASMStructuredRecordDatumWriter writer = new ASMStructuredRecordDatumWriter();
+    // Encode twice to use both newly generated and cached writer
+    for (int i = 0; i < 2; i++) {
+      actual.reset();
+      writer.encode(record, new BinaryEncoder(actual));
+      Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    StructuredRecord decoded = new StructuredRecordDatumReader().read(
+      new BinaryDecoder(new ByteArrayInputStream(actual.toByteArray())), record.getSchema());
+    Assert.assertEquals(record.getSchema(), decoded.getSchema());
+  }
+}
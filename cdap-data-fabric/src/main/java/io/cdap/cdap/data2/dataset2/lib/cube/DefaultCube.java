@@ -332,6 +332,26 @@ public class DefaultCube implements Cube, MeteredDataset {
     }
   }
 
+  /**
+   * Packs the facts of the given resolution into the packed row format.
+   *
+   * @param resolution resolution of the facts to pack
+   * @param startTs start of the time range, exclusive, in seconds
+   * @param endTs end of the time range, inclusive, in seconds
+   * @return number of rows packed
+   * @see FactTable#pack(long, long)
+   */
+  public int pack(int resolution, long startTs, long endTs) {
+    FactTable factTable = resolutionToFactTable.get(resolution);
+    if (factTable == null) {
+      throw new IllegalArgumentException("There's no data aggregated for specified resolution to be packed: "
+                                           + resolution);
+    }
+    int packedRows = factTable.pack(startTs, endTs);
+    incrementMetric("cube.tsFact.packed.count", packedRows);
+    return packedRows;
+  }
+
   @Override
   public Collection<DimensionValue> findDimensionValues(CubeExploreQuery query) {
     LOG.trace("Searching for next-level context, query: {}", query);
@@ -73,6 +73,19 @@ class MetricsTableOnTable implements MetricsTable {
     return table.compareAndSwap(row, column, oldValue, newValue);
   }
 
+  @Override
+  public boolean swapAndDelete(byte[] row, byte[] column, @Nullable byte[] oldValue, byte[] newValue,
+                               byte[][] deleteColumns) {
+    // the swap and the delete are done in the same transaction, hence they are committed together
+    if (!table.compareAndSwap(row, column, oldValue, newValue)) {
+      return false;
+    }
+    if (deleteColumns.length > 0) {
+      table.delete(row, deleteColumns);
+    }
+    return true;
+  }
+
   @Override
   public void increment(byte[] row, Map<byte[], Long> increments) {
     Increment increment = new Increment(row);
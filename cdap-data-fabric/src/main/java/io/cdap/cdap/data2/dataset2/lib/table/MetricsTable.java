@@ -56,6 +56,17 @@ public interface MetricsTable extends Dataset {
    */
   boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue);
 
+  /**
+   * Atomically compare a single column of a row with a expected value, and if it matches, replace it with a new value
+   * and delete other columns of the same row. The new value and the deletes are written as one mutation of the row.
+   * @param oldValue the expected value of the column. If null, this means that the column must not exist.
+   * @param newValue the new value of the column.
+   * @param deleteColumns the columns of the row to delete if the comparison succeeds.
+   * @return whether the write happened, that is, whether the existing value of the column matched the expected value.
+   */
+  boolean swapAndDelete(byte[] row, byte[] column, @Nullable byte[] oldValue, byte[] newValue,
+                        byte[][] deleteColumns);
+
   /**
    * Atomic increment of multiple columns of a row. If a column does not exist prior to the increment,
    * its value is assumed zero. Increments are only guaranteed atomic with respect to other increments.
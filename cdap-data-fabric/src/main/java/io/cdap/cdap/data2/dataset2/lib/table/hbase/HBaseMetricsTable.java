@@ -47,7 +47,9 @@ import org.apache.hadoop.hbase.client.Increment;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.RowMutations;
 import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.CompareFilter;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
@@ -203,6 +205,31 @@ public class HBaseMetricsTable implements MetricsTable {
     }
   }
 
+  @Override
+  public boolean swapAndDelete(byte[] row, byte[] column, @Nullable byte[] oldValue, byte[] newValue,
+                               byte[][] deleteColumns) {
+    try {
+      byte[] distributedKey = createDistributedRowKey(row);
+      DeleteBuilder delete = tableUtil.buildDelete(distributedKey);
+      for (byte[] deleteColumn : deleteColumns) {
+        delete.deleteColumns(columnFamily, deleteColumn);
+      }
+      Put put = tableUtil.buildPut(distributedKey)
+        .add(columnFamily, column, newValue)
+        .build();
+      RowMutations mutations = new RowMutations(distributedKey);
+      // a delete without columns would delete the whole row
+      if (deleteColumns.length > 0) {
+        mutations.add(delete.build());
+      }
+      mutations.add(put);
+      return table.checkAndMutate(distributedKey, columnFamily, column, CompareFilter.CompareOp.EQUAL, oldValue,
+                                  mutations);
+    } catch (IOException e) {
+      throw new DataSetException("Swap failed on table " + tableId, e);
+    }
+  }
+
   @Override
   public void increment(byte[] row, Map<byte[], Long> increments) {
     byte[] distributedKey = createDistributedRowKey(row);
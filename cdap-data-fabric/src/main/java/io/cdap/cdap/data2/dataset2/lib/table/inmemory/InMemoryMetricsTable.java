@@ -90,6 +90,12 @@ public class InMemoryMetricsTable implements MetricsTable {
     return InMemoryTableService.swap(tableName, row, column, oldValue, newValue);
   }
 
+  @Override
+  public boolean swapAndDelete(byte[] row, byte[] column, @Nullable byte[] oldValue, byte[] newValue,
+                               byte[][] deleteColumns) {
+    return InMemoryTableService.swapAndDeleteColumns(tableName, row, column, oldValue, newValue, deleteColumns);
+  }
+
   @Override
   public void increment(byte[] row, Map<byte[], Long> increments) {
     InMemoryTableService.increment(tableName, row, increments);
@@ -201,6 +201,18 @@ public class InMemoryTableService {
     }
   }
 
+  public static synchronized boolean swapAndDeleteColumns(String tableName, byte[] row, byte[] column,
+                                                          @Nullable byte[] oldValue, byte[] newValue,
+                                                          byte[][] deleteColumns) {
+    if (!swap(tableName, row, column, oldValue, newValue)) {
+      return false;
+    }
+    for (byte[] deleteColumn : deleteColumns) {
+      deleteColumns(tableName, row, deleteColumn);
+    }
+    return true;
+  }
+
   public static synchronized void deleteColumns(String tableName, byte[] row, byte[] column) {
     ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
     NavigableMap<byte[], NavigableMap<Long, Update>> columnValues = table.get(row);
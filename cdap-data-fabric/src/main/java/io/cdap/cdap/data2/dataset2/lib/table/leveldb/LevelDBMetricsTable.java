@@ -89,6 +89,16 @@ public class LevelDBMetricsTable implements MetricsTable {
     }
   }
 
+  @Override
+  public synchronized boolean swapAndDelete(byte[] row, byte[] column, @Nullable byte[] oldValue, byte[] newValue,
+                                            byte[][] deleteColumns) {
+    try {
+      return core.swapAndDelete(row, column, oldValue, newValue, deleteColumns);
+    } catch (IOException e) {
+      throw new DataSetException("Swap failed on table " + tableName, e);
+    }
+  }
+
   @Override
   public void increment(byte[] row, Map<byte[], Long> increments) {
     try {
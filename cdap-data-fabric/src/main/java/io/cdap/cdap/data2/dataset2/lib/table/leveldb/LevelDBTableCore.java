@@ -86,12 +86,8 @@ public class LevelDBTableCore {
 
 
   public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
-    byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
     // verify
-    if (oldValue == null && existing != null) {
-      return false;
-    }
-    if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
+    if (!valueEquals(row, column, oldValue)) {
       return false;
     }
     // write
@@ -104,6 +100,32 @@ public class LevelDBTableCore {
     return true;
   }
 
+  /**
+   * Compares a column with an expected value and, if it matches, writes the new value of the column and deletes the
+   * given columns of the row in one batch.
+   */
+  public synchronized boolean swapAndDelete(byte[] row, byte[] column, @Nullable byte[] oldValue, byte[] newValue,
+                                            byte[][] deleteColumns) throws IOException {
+    if (!valueEquals(row, column, oldValue)) {
+      return false;
+    }
+    DB db = getDB();
+    WriteBatch batch = db.createWriteBatch();
+    try (DBIterator iterator = db.iterator()) {
+      for (byte[] deleteColumn : deleteColumns) {
+        addToDeleteBatch(batch, iterator, row, deleteColumn);
+      }
+      batch.put(createPutKey(row, column, Long.MAX_VALUE), newValue);
+      db.write(batch, service.getWriteOptions());
+    }
+    return true;
+  }
+
+  private boolean valueEquals(byte[] row, byte[] column, @Nullable byte[] value) throws IOException {
+    byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
+    return value == null ? existing == null : existing != null && Bytes.equals(value, existing);
+  }
+
   public synchronized Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
     Map<byte[], Long> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
 
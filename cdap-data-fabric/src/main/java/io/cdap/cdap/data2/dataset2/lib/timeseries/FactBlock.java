@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.timeseries;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Serde of the packed row format of {@link FactTable}, in which all the values of a row are stored in a single
+ * block column instead of one column per timestamp.
+ *
+ * Block format:
+ *
+ * <pre>
+ *   [version (byte)][count (varint)]([column index delta (varint)][value delta (zig-zag varint)])*
+ * </pre>
+ *
+ * Column indexes are stored in ascending order, each as the difference from the previous one. Values are stored as
+ * the difference from the previous value, which is small for both counters and gauges that change slowly.
+ */
+final class FactBlock {
+
+  /**
+   * The column that stores the block. It is one byte long, so that it never collides with the two bytes
+   * timestamp columns.
+   */
+  static final byte[] COLUMN = new byte[] { (byte) 0xff };
+
+  private static final byte VERSION = 0;
+
+  private FactBlock() {
+    // protect the constructor
+  }
+
+  /**
+   * Returns {@code true} if the given column is the block column.
+   */
+  static boolean isBlockColumn(byte[] column) {
+    return column.length == COLUMN.length && column[0] == COLUMN[0];
+  }
+
+  /**
+   * Encodes the given values into a block.
+   *
+   * @param values map from column index to value
+   * @return the encoded block
+   */
+  static byte[] encode(NavigableMap<Integer, Long> values) {
+    ByteArrayOutputStream os = new ByteArrayOutputStream(2 + values.size() * 3);
+    os.write(VERSION);
+    writeVarInt(os, values.size());
+
+    int prevIndex = 0;
+    long prevValue = 0L;
+    for (Map.Entry<Integer, Long> entry : values.entrySet()) {
+      writeVarInt(os, entry.getKey() - prevIndex);
+      long value = entry.getValue();
+      long delta = value - prevValue;
+      writeVarInt(os, (delta << 1) ^ (delta >> 63));
+      prevIndex = entry.getKey();
+      prevValue = value;
+    }
+    return os.toByteArray();
+  }
+
+  /**
+   * Decodes all entries of the given block into the given map.
+   */
+  static void decodeInto(byte[] block, Map<Integer, Long> values) {
+    Decoder decoder = new Decoder(block);
+    while (decoder.next()) {
+      values.put(decoder.getIndex(), decoder.getValue());
+    }
+  }
+
+  private static void writeVarInt(ByteArrayOutputStream os, long value) {
+    while ((value & ~0x7FL) != 0) {
+      os.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    os.write((int) value);
+  }
+
+  /**
+   * Decodes the entries of a block one at a time, in ascending order of column index.
+   */
+  static final class Decoder {
+
+    private final byte[] block;
+    private int remaining;
+    private int offset;
+    private int index;
+    private long value;
+
+    Decoder(byte[] block) {
+      if (block.length == 0 || block[0] != VERSION) {
+        throw new IllegalArgumentException("Unsupported fact block version");
+      }
+      this.block = block;
+      this.offset = 1;
+      this.remaining = (int) readVarInt();
+    }
+
+    /**
+     * Moves to the next entry.
+     *
+     * @return {@code true} if there is a next entry, {@code false} if the block is exhausted
+     */
+    boolean next() {
+      if (remaining == 0) {
+        return false;
+      }
+      remaining--;
+      index += (int) readVarInt();
+      long zigZag = readVarInt();
+      value += (zigZag >>> 1) ^ -(zigZag & 1);
+      return true;
+    }
+
+    /**
+     * Returns the column index of the current entry.
+     */
+    int getIndex() {
+      return index;
+    }
+
+    /**
+     * Returns the value of the current entry.
+     */
+    long getValue() {
+      return value;
+    }
+
+    private long readVarInt() {
+      long result = 0;
+      int shift = 0;
+      byte b;
+      do {
+        if (offset >= block.length) {
+          throw new IllegalArgumentException("Fact block is truncated");
+        }
+        b = block[offset++];
+        result |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return result;
+    }
+  }
+}
@@ -264,12 +264,53 @@ public class FactCodec {
   }
 
   public long getTimestamp(byte[] rowKey, byte[] column) {
+    return getTimestamp(rowKey, getColumnIndex(column));
+  }
+
+  /**
+   * Returns the timestamp of the given column index in the given row.
+   */
+  public long getTimestamp(byte[] rowKey, int columnIndex) {
+    // time leftover is the column index times the resolution
+    return getRowTimeBase(rowKey) + (long) columnIndex * resolution;
+  }
+
+  /**
+   * Returns the timebase of the given row, which is the timestamp of the first column in the row.
+   */
+  public int getRowTimeBase(byte[] rowKey) {
     // timebase is encoded as int after the encoded agg group
-    int timebase = Bytes.toInt(rowKey, VERSION.length + entityTable.getIdSize());
-    // time leftover is encoded as 2 byte column name
-    int leftover = Bytes.toShort(column) * resolution;
+    return Bytes.toInt(rowKey, VERSION.length + entityTable.getIdSize());
+  }
+
+  /**
+   * Returns the prefix of the given row key up to the encoded aggregation group, which all the rows of the
+   * aggregation group share.
+   */
+  public byte[] getAggGroupPrefix(byte[] rowKey) {
+    return Arrays.copyOf(rowKey, VERSION.length + entityTable.getIdSize());
+  }
 
-    return timebase + leftover;
+  /**
+   * Returns the row key that sorts before the rows of an aggregation group with timebase that is not smaller than
+   * the given timebase.
+   *
+   * @param aggGroupPrefix the row key prefix of the aggregation group, as returned by {@link #getAggGroupPrefix}
+   * @param timeBase the timebase, which is capped to the range of timebases
+   */
+  public byte[] createTimeBaseRowKey(byte[] aggGroupPrefix, long timeBase) {
+    byte[] rowKey = Arrays.copyOf(aggGroupPrefix, aggGroupPrefix.length + Bytes.SIZEOF_INT);
+    // timebase is encoded as an unsigned int, see getTimeBase
+    Bytes.putInt(rowKey, aggGroupPrefix.length, (int) Math.min(Math.max(timeBase, 0L), 0xffffffffL));
+    return rowKey;
+  }
+
+  /**
+   * Returns the column index encoded in the given timestamp column.
+   */
+  public int getColumnIndex(byte[] column) {
+    // time leftover is encoded as 2 byte column name
+    return Bytes.toShort(column);
   }
 
   static byte[][] getSplits(int aggGroupsCount) {
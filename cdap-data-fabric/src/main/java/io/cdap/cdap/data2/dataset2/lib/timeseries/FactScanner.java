@@ -106,25 +106,31 @@ public final class FactScanner implements Iterator<FactScanResult> {
           //       list of dimension names as we *always* know it (it is given) at the time of scanning
           List<DimensionValue> dimensionValues = codec.getDimensionValues(rowKey);
 
+          Map<byte[], byte[]> columns = rowResult.getColumns();
+          // columns are sorted with the bytes comparator, which the lookup by the block column relies on
+          byte[] block = columns.get(FactBlock.COLUMN);
           boolean exhausted = false;
           List<TimeValue> timeValues = Lists.newLinkedList();
-          // todo: entry set is ordered by ts?
-          for (Map.Entry<byte[], byte[]> columnValue : rowResult.getColumns().entrySet()) {
-            long ts = codec.getTimestamp(rowKey, columnValue.getKey());
-            if (ts < startTs) {
-              continue;
+          if (block == null) {
+            // todo: entry set is ordered by ts?
+            for (Map.Entry<byte[], byte[]> columnValue : columns.entrySet()) {
+              long ts = codec.getTimestamp(rowKey, columnValue.getKey());
+              if (ts < startTs) {
+                continue;
+              }
+
+              if (ts > endTs) {
+                exhausted = true;
+                break;
+              }
+
+              // todo: move Bytes.toLong into codec?
+              TimeValue timeValue = new TimeValue(ts, Bytes.toLong(columnValue.getValue()));
+              timeValues.add(timeValue);
             }
-
-            if (ts > endTs) {
-              exhausted = true;
-              break;
-            }
-
-            // todo: move Bytes.toLong into codec?
-            TimeValue timeValue = new TimeValue(ts, Bytes.toLong(columnValue.getValue()));
-            timeValues.add(timeValue);
+          } else {
+            exhausted = readPackedRow(rowKey, block, columns, timeValues);
           }
-
           if (timeValues.isEmpty() && exhausted) {
             break;
           }
@@ -138,4 +144,52 @@ public final class FactScanner implements Iterator<FactScanResult> {
       }
     };
   }
+
+  /**
+   * Reads the values of a packed row, which has a block column and possibly timestamp columns written after the row
+   * was packed. The block is decoded lazily, only up to the end of the scan time range. For the same timestamp,
+   * the value in the timestamp column is added to the one in the block, since it is an increment that arrived after
+   * the row was packed.
+   *
+   * @return {@code true} if the row has values that are after the end of the scan time range
+   */
+  private boolean readPackedRow(byte[] rowKey, byte[] block, Map<byte[], byte[]> columns,
+                                List<TimeValue> timeValues) {
+    // Timestamp columns are in ascending order of column index, and so are the entries in the block
+    Iterator<Map.Entry<byte[], byte[]>> columnIterator = columns.entrySet().stream()
+      .filter(entry -> !FactBlock.isBlockColumn(entry.getKey()))
+      .iterator();
+    Map.Entry<byte[], byte[]> column = columnIterator.hasNext() ? columnIterator.next() : null;
+    FactBlock.Decoder decoder = new FactBlock.Decoder(block);
+    boolean hasBlockValue = decoder.next();
+
+    while (hasBlockValue || column != null) {
+      int columnIndex = column == null ? Integer.MAX_VALUE : codec.getColumnIndex(column.getKey());
+      int index;
+      long value;
+      if (!hasBlockValue || columnIndex <= decoder.getIndex()) {
+        index = columnIndex;
+        value = Bytes.toLong(column.getValue());
+        if (hasBlockValue && columnIndex == decoder.getIndex()) {
+          value += decoder.getValue();
+          hasBlockValue = decoder.next();
+        }
+        column = columnIterator.hasNext() ? columnIterator.next() : null;
+      } else {
+        index = decoder.getIndex();
+        value = decoder.getValue();
+        hasBlockValue = decoder.next();
+      }
+
+      long ts = codec.getTimestamp(rowKey, index);
+      if (ts < startTs) {
+        continue;
+      }
+      if (ts > endTs) {
+        return true;
+      }
+      timeValues.add(new TimeValue(ts, value));
+    }
+    return false;
+  }
 }
@@ -65,6 +65,10 @@ public final class FactTable implements Closeable {
   // hard limits on some ops to stay on safe side
   private static final int MAX_RECORDS_TO_SCAN_DURING_SEARCH = 10 * 1000 * 1000;
   private static final int MAX_SCANS_DURING_SEARCH = 10 * 1000;
+  private static final int MAX_BLOCK_SWAP_ATTEMPTS = 10;
+  // Writes of windows that end this long before the pack delay already go into the packed blocks, such that a pack
+  // that uses a later clock, because of clock skew or write latency, does not delete a value that it did not read
+  private static final long PACK_WRITE_MARGIN_SECONDS = 60L;
 
   private final MetricsTable timeSeriesTable;
   private final EntityTable entityTable;
@@ -79,6 +83,8 @@ public final class FactTable implements Closeable {
 
   @Nullable
   private MetricsCollector metrics;
+  // Delay after the end of a roll time window before its rows may be packed, or -1 if rows are never packed
+  private long packDelaySeconds = -1L;
 
   /**
    * Creates an instance of {@link FactTable}.
@@ -113,6 +119,18 @@ public final class FactTable implements Closeable {
     this.metrics = metrics;
   }
 
+  /**
+   * Sets the delay after the end of a roll time window before the rows of the window may be packed with
+   * {@link #pack(long, long)}. Values of windows that may be packed are written into the packed block of the row
+   * instead of the timestamp columns, so that a pack never deletes a value that it did not read, and so that gauges
+   * replace the packed value instead of being added to it.
+   *
+   * @param packDelaySeconds the delay in seconds, or a negative value if rows are never packed
+   */
+  public void setPackDelay(long packDelaySeconds) {
+    this.packDelaySeconds = packDelaySeconds;
+  }
+
   public void add(List<Fact> facts) {
     // Simply collecting all rows/cols/values that need to be put to the underlying table.
     NavigableMap<byte[], NavigableMap<byte[], Long>> gaugesTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
@@ -121,15 +139,27 @@ public final class FactTable implements Closeable {
     // this map is used to store metrics which was COUNTER type, but can be considered as GAUGE, which means it is
     // guaranteed to be a new row key in the underlying table.
     NavigableMap<byte[], NavigableMap<byte[], Long>> incGaugeTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    // gauges and increments of the rows that may be packed already
+    NavigableMap<byte[], NavigableMap<Integer, Long>> packedGaugesTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    NavigableMap<byte[], NavigableMap<Integer, Long>> packedIncrementsTable =
+      Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    long packedWindowEnd = packDelaySeconds < 0 || resolution == Integer.MAX_VALUE
+      ? -1L : TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - packDelaySeconds
+      + PACK_WRITE_MARGIN_SECONDS;
     // this map is used to store the updated timestamp for the cache
     Map<FactCacheKey, Long> cacheUpdates = new HashMap<>();
     for (Fact fact : facts) {
       for (Measurement measurement : fact.getMeasurements()) {
         byte[] rowKey = codec.createRowKey(fact.getDimensionValues(), measurement.getName(), fact.getTimestamp());
         byte[] column = codec.createColumn(fact.getTimestamp());
+        boolean packable = codec.getRowTimeBase(rowKey) + rollTime <= packedWindowEnd;
 
         if (MeasureType.COUNTER == measurement.getType()) {
-          if (factCounterCache != null) {
+          if (packable) {
+            packedIncrementsTable
+              .computeIfAbsent(rowKey, k -> new TreeMap<>())
+              .merge(codec.getColumnIndex(column), measurement.getValue(), Long::sum);
+          } else if (factCounterCache != null) {
             // round to the resolution timestamp
             long tsToResolution = fact.getTimestamp() / resolution * resolution;
             FactCacheKey cacheKey = new FactCacheKey(fact.getDimensionValues(), measurement.getName());
@@ -154,6 +184,10 @@ public final class FactTable implements Closeable {
           } else {
             inc(incrementsTable, rowKey, column, measurement.getValue());
           }
+        } else if (packable) {
+          packedGaugesTable
+            .computeIfAbsent(rowKey, k -> new TreeMap<>())
+            .put(codec.getColumnIndex(column), measurement.getValue());
         } else {
           gaugesTable
             .computeIfAbsent(rowKey, k -> Maps.newTreeMap(Bytes.BYTES_COMPARATOR))
@@ -166,6 +200,8 @@ public final class FactTable implements Closeable {
       gaugesTable.putAll(incGaugeTable);
       factCounterCache.putAll(cacheUpdates);
     }
+    putPacked(packedGaugesTable, true, gaugesTable);
+    putPacked(packedIncrementsTable, false, incrementsTable);
     // todo: replace with single call, to be able to optimize rpcs in underlying table
     timeSeriesTable.put(gaugesTable);
     timeSeriesTable.increment(incrementsTable);
@@ -175,6 +211,49 @@ public final class FactTable implements Closeable {
     }
   }
 
+  /**
+   * Writes values into the packed blocks of their rows. Gauges replace the values in the block, and the timestamp
+   * columns of the gauges are deleted together with the write, since values in timestamp columns are added to the
+   * values in the block. Increments are added to the values in the block. Values that cannot be written into the block
+   * because of concurrent writes are added to the given fallback table instead.
+   */
+  private void putPacked(NavigableMap<byte[], NavigableMap<Integer, Long>> packedTable, boolean gauges,
+                         NavigableMap<byte[], NavigableMap<byte[], Long>> fallbackTable) {
+    for (Map.Entry<byte[], NavigableMap<Integer, Long>> entry : packedTable.entrySet()) {
+      byte[] rowKey = entry.getKey();
+      byte[][] columns = entry.getValue().keySet().stream()
+        .map(index -> codec.createColumn(codec.getTimestamp(rowKey, index)))
+        .toArray(byte[][]::new);
+      boolean written = false;
+      for (int i = 0; !written && i < MAX_BLOCK_SWAP_ATTEMPTS; i++) {
+        byte[] block = timeSeriesTable.get(rowKey, FactBlock.COLUMN);
+        NavigableMap<Integer, Long> values = new TreeMap<>();
+        if (block != null) {
+          FactBlock.decodeInto(block, values);
+        }
+        // the block is rewritten by pack() and delete(), hence only replace the block that was read
+        if (gauges) {
+          values.putAll(entry.getValue());
+          written = timeSeriesTable.swapAndDelete(rowKey, FactBlock.COLUMN, block, FactBlock.encode(values), columns);
+        } else {
+          entry.getValue().forEach((index, value) -> values.merge(index, value, Long::sum));
+          written = timeSeriesTable.swap(rowKey, FactBlock.COLUMN, block, FactBlock.encode(values));
+        }
+      }
+      if (!written) {
+        int i = 0;
+        for (Long value : entry.getValue().values()) {
+          if (gauges) {
+            fallbackTable.computeIfAbsent(rowKey, k -> Maps.newTreeMap(Bytes.BYTES_COMPARATOR)).put(columns[i], value);
+          } else {
+            inc(fallbackTable, rowKey, columns[i], value);
+          }
+          i++;
+        }
+      }
+    }
+  }
+
   private class MeasureNameComparator implements Comparator<String> {
     private final Map<String, Long> measureNameToEntityIdMap;
 
@@ -252,8 +331,13 @@ public final class FactTable implements Closeable {
 
         boolean exhausted = false;
         boolean fullRow = true;
-        for (byte[] column : row.getColumns().keySet()) {
-          long ts = codec.getTimestamp(row.getRow(), column);
+        // The block column sorts after the timestamp columns, hence it must be read before iterating the columns
+        byte[] block = row.getColumns().get(FactBlock.COLUMN);
+        for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
+          if (FactBlock.isBlockColumn(column.getKey())) {
+            continue;
+          }
+          long ts = codec.getTimestamp(row.getRow(), column.getKey());
           if (ts < scan.getStartTs()) {
             fullRow = false;
             continue;
@@ -265,7 +349,30 @@ public final class FactTable implements Closeable {
             break;
           }
 
-          columns.add(column);
+          columns.add(column.getKey());
+        }
+
+        if (block != null) {
+          // Rewrite the block without the deleted values, or delete it if there is nothing left
+          byte[] rowKey = row.getRow();
+          NavigableMap<Integer, Long> values = new TreeMap<>();
+          FactBlock.decodeInto(block, values);
+          int size = values.size();
+          values.keySet().removeIf(index -> {
+            long ts = codec.getTimestamp(rowKey, index);
+            return ts >= scan.getStartTs() && ts <= scan.getEndTs();
+          });
+          if (values.isEmpty()) {
+            columns.add(FactBlock.COLUMN);
+          } else {
+            fullRow = false;
+            if (values.size() != size) {
+              NavigableMap<byte[], NavigableMap<byte[], byte[]>> update = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+              update.computeIfAbsent(rowKey, k -> new TreeMap<>(Bytes.BYTES_COMPARATOR))
+                .put(FactBlock.COLUMN, FactBlock.encode(values));
+              timeSeriesTable.putBytes(update);
+            }
+          }
         }
 
         // todo: do deletes efficiently, in batches, not one-by-one
@@ -278,6 +385,123 @@ public final class FactTable implements Closeable {
     }
   }
 
+  /**
+   * Packs rows into the packed row format, in which all the values of a row are stored in a single delta encoded
+   * block column instead of one column per timestamp. This reduces the number of cells stored and scanned,
+   * especially for tables with many columns per row. Only rows of which the roll time window ends in the given time
+   * range are scanned, so that calling this method periodically with consecutive time ranges packs every row once.
+   * Rows that were packed before are packed again only if they have received new values since then, hence this
+   * method can also be used to migrate existing data by passing a start time of {@code 0}.
+   *
+   * Values in the timestamp columns of a packed row are added to the values in the block, both on read and when the
+   * row is packed again. Each row is packed with one atomic swap of its block that also deletes the packed columns,
+   * hence a failure or a concurrent pack of the same row never counts a value twice. If the row has changed since it
+   * was read, it is read again. Values of windows that may be packed are written into the block if
+   * {@link #setPackDelay(long)} is set, such that a value written while a row is being packed is not lost as long as
+   * the time range ends at least the pack delay in the past.
+   *
+   * @param startTs start of the time range, exclusive, in seconds
+   * @param endTs end of the time range, inclusive, in seconds
+   * @return number of rows packed
+   */
+  public int pack(long startTs, long endTs) {
+    // Rows in the total resolution table always receive new increments
+    if (resolution == Integer.MAX_VALUE) {
+      return 0;
+    }
+
+    // Rows with the window end in (startTs, endTs] have the timebase in [minTimeBase, maxTimeBase]
+    long minTimeBase = Math.max(0L, startTs - rollTime + 1);
+    long maxTimeBase = endTs - rollTime;
+    if (maxTimeBase < minTimeBase) {
+      return 0;
+    }
+
+    int packedRows = 0;
+
+    // The timebase comes after the aggregation group in the row key, hence scan the time range of each group
+    byte[] groupStartRow = null;
+    while (true) {
+      byte[] aggGroupPrefix;
+      try (Scanner scanner = timeSeriesTable.scan(groupStartRow, null, null)) {
+        Row row = scanner.next();
+        if (row == null) {
+          break;
+        }
+        aggGroupPrefix = codec.getAggGroupPrefix(row.getRow());
+      }
+
+      try (Scanner scanner = timeSeriesTable.scan(codec.createTimeBaseRowKey(aggGroupPrefix, minTimeBase),
+                                                   codec.createTimeBaseRowKey(aggGroupPrefix, maxTimeBase + 1),
+                                                   null)) {
+        Row row;
+        while ((row = scanner.next()) != null) {
+          if (packRow(row)) {
+            packedRows++;
+          }
+        }
+      }
+
+      groupStartRow = Bytes.stopKeyForPrefix(aggGroupPrefix);
+      if (groupStartRow == null) {
+        break;
+      }
+    }
+
+    LOG.trace("Packed {} rows in fact table {} between {} and {}", packedRows, timeSeriesTable, startTs, endTs);
+    return packedRows;
+  }
+
+  /**
+   * Packs the timestamp columns of the given row into its block. The block is replaced and the columns are deleted
+   * with one atomic swap, which fails if the block was changed since the row was read, in which case the row is read
+   * again.
+   *
+   * @return {@code true} if the row is packed, {@code false} if the row is packed already or could not be packed
+   */
+  private boolean packRow(Row row) {
+    byte[] rowKey = row.getRow();
+    for (int i = 0; i < MAX_BLOCK_SWAP_ATTEMPTS && row != null; i++) {
+      List<byte[]> columns = new ArrayList<>();
+      byte[] block = null;
+      for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
+        if (FactBlock.isBlockColumn(column.getKey())) {
+          block = column.getValue();
+        } else {
+          columns.add(column.getKey());
+        }
+      }
+      // Nothing to do if the row is already packed
+      if (columns.isEmpty()) {
+        return false;
+      }
+
+      // Values in the timestamp columns are added to the ones in the block, which is the same as FactScanner
+      NavigableMap<Integer, Long> values = new TreeMap<>();
+      if (block != null) {
+        FactBlock.decodeInto(block, values);
+      }
+      for (byte[] column : columns) {
+        values.merge(codec.getColumnIndex(column), Bytes.toLong(row.getColumns().get(column)), Long::sum);
+      }
+      if (timeSeriesTable.swapAndDelete(rowKey, FactBlock.COLUMN, block, FactBlock.encode(values),
+                                        columns.toArray(new byte[columns.size()][]))) {
+        return true;
+      }
+      row = readRow(rowKey);
+    }
+    LOG.debug("Failed to pack row {} of fact table {} because of concurrent writes",
+              Bytes.toStringBinary(rowKey), timeSeriesTable);
+    return false;
+  }
+
+  @Nullable
+  private Row readRow(byte[] rowKey) {
+    try (Scanner scanner = timeSeriesTable.scan(rowKey, Bytes.add(rowKey, new byte[] { 0 }), null)) {
+      return scanner.next();
+    }
+  }
+
   /**
    * Searches for first non-null valued dimensions in records that contain given list of dimensions and match given
    * dimension values in given time range. Returned dimension values are those that are not defined in given
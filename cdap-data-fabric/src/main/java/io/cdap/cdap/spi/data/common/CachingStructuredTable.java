@@ -0,0 +1,257 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.data.common;
+
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.spi.data.InvalidFieldException;
+import io.cdap.cdap.spi.data.SortOrder;
+import io.cdap.cdap.spi.data.StructuredRow;
+import io.cdap.cdap.spi.data.StructuredTable;
+import io.cdap.cdap.spi.data.table.field.Field;
+import io.cdap.cdap.spi.data.table.field.Range;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Structured table that takes a delegation and serves reads by primary key from a {@link StructuredRowCache}.
+ * Rows not in the cache are read from the delegation and added to the cache, unless the cache was invalidated
+ * after the generation captured when the transaction started.
+ *
+ * Keys written through this table are recorded in a {@link WriteSet}, which is used to invalidate the cache
+ * once the transaction completes. Once the table is written in a transaction, all subsequent reads in the same
+ * transaction go to the delegation, such that the transaction always reads its own writes.
+ * Scans and counts are never served from the cache.
+ */
+final class CachingStructuredTable implements StructuredTable {
+
+  private final StructuredTable structuredTable;
+  private final StructuredRowCache cache;
+  private final long generation;
+  private final WriteSet writeSet;
+
+  CachingStructuredTable(StructuredTable structuredTable, StructuredRowCache cache, long generation,
+                         WriteSet writeSet) {
+    this.structuredTable = structuredTable;
+    this.cache = cache;
+    this.generation = generation;
+    this.writeSet = writeSet;
+  }
+
+  @Override
+  public void upsert(Collection<Field<?>> fields) throws InvalidFieldException, IOException {
+    writeSet.add(cache.getKey(fields));
+    structuredTable.upsert(fields);
+  }
+
+  @Override
+  public void multiUpsert(Collection<? extends Collection<Field<?>>> multiFields)
+    throws InvalidFieldException, IOException {
+    for (Collection<Field<?>> fields : multiFields) {
+      writeSet.add(cache.getKey(fields));
+    }
+    structuredTable.multiUpsert(multiFields);
+  }
+
+  @Override
+  public void update(Collection<Field<?>> fields) throws InvalidFieldException, IOException {
+    writeSet.add(cache.getKey(fields));
+    structuredTable.update(fields);
+  }
+
+  @Override
+  public Optional<StructuredRow> read(Collection<Field<?>> keys) throws InvalidFieldException, IOException {
+    Set<Field<?>> key = writeSet.isEmpty() ? cache.getReadKey(keys) : null;
+    if (key == null) {
+      return structuredTable.read(keys);
+    }
+
+    Optional<StructuredRow> row = cache.get(key);
+    if (row != null) {
+      return row;
+    }
+    row = structuredTable.read(keys);
+    cache.put(generation, key, row);
+    return row;
+  }
+
+  @Override
+  public Optional<StructuredRow> read(Collection<Field<?>> keys,
+                                      Collection<String> columns) throws InvalidFieldException, IOException {
+    Set<Field<?>> key = writeSet.isEmpty() ? cache.getReadKey(keys) : null;
+    if (key == null) {
+      return structuredTable.read(keys, columns);
+    }
+
+    // A cached row contains all the columns, hence can be returned. Rows with only some of the columns are not cached.
+    Optional<StructuredRow> row = cache.get(key);
+    return row == null ? structuredTable.read(keys, columns) : row;
+  }
+
+  @Override
+  public Collection<StructuredRow> multiRead(Collection<? extends Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException {
+    if (!writeSet.isEmpty()) {
+      return structuredTable.multiRead(multiKeys);
+    }
+
+    List<StructuredRow> result = new ArrayList<>();
+    Set<Set<Field<?>>> hits = new HashSet<>();
+    Map<Set<Field<?>>, Collection<Field<?>>> misses = new LinkedHashMap<>();
+    for (Collection<Field<?>> keys : multiKeys) {
+      Set<Field<?>> key = cache.getReadKey(keys);
+      if (key == null) {
+        // Let the delegation validate the keys
+        return structuredTable.multiRead(multiKeys);
+      }
+      if (hits.contains(key) || misses.containsKey(key)) {
+        continue;
+      }
+      Optional<StructuredRow> row = cache.get(key);
+      if (row == null) {
+        misses.put(key, keys);
+      } else {
+        hits.add(key);
+        row.ifPresent(result::add);
+      }
+    }
+    if (misses.isEmpty()) {
+      return result;
+    }
+
+    for (StructuredRow row : structuredTable.multiRead(misses.values())) {
+      Set<Field<?>> key = cache.getKey(row.getPrimaryKeys());
+      cache.put(generation, key, Optional.of(row));
+      misses.remove(key);
+      result.add(row);
+    }
+    // Cache the keys that are not in the table
+    for (Set<Field<?>> key : misses.keySet()) {
+      cache.put(generation, key, Optional.empty());
+    }
+    return result;
+  }
+
+  @Override
+  public CloseableIterator<StructuredRow> scan(Range keyRange, int limit) throws InvalidFieldException, IOException {
+    return structuredTable.scan(keyRange, limit);
+  }
+
+  @Override
+  public CloseableIterator<StructuredRow> scan(Range keyRange, int limit,
+                                               SortOrder sortOrder) throws InvalidFieldException, IOException {
+    return structuredTable.scan(keyRange, limit, sortOrder);
+  }
+
+  @Override
+  public CloseableIterator<StructuredRow> scan(Field<?> index) throws InvalidFieldException, IOException {
+    return structuredTable.scan(index);
+  }
+
+  @Override
+  public CloseableIterator<StructuredRow> multiScan(Collection<Range> keyRanges,
+                                                    int limit) throws InvalidFieldException, IOException {
+    return structuredTable.multiScan(keyRanges, limit);
+  }
+
+  @Override
+  public boolean compareAndSwap(Collection<Field<?>> keys, Field<?> oldValue, Field<?> newValue)
+    throws InvalidFieldException, IOException {
+    writeSet.add(cache.getKey(keys));
+    return structuredTable.compareAndSwap(keys, oldValue, newValue);
+  }
+
+  @Override
+  public void increment(Collection<Field<?>> keys, String column, long amount)
+    throws InvalidFieldException, IllegalArgumentException, IOException {
+    writeSet.add(cache.getKey(keys));
+    structuredTable.increment(keys, column, amount);
+  }
+
+  @Override
+  public void delete(Collection<Field<?>> keys) throws InvalidFieldException, IOException {
+    writeSet.add(cache.getKey(keys));
+    structuredTable.delete(keys);
+  }
+
+  @Override
+  public void multiDelete(Collection<? extends Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException {
+    for (Collection<Field<?>> keys : multiKeys) {
+      writeSet.add(cache.getKey(keys));
+    }
+    structuredTable.multiDelete(multiKeys);
+  }
+
+  @Override
+  public void deleteAll(Range keyRange) throws InvalidFieldException, IOException {
+    writeSet.addAll();
+    structuredTable.deleteAll(keyRange);
+  }
+
+  @Override
+  public long count(Collection<Range> keyRanges) throws IOException {
+    return structuredTable.count(keyRanges);
+  }
+
+  @Override
+  public void close() throws IOException {
+    structuredTable.close();
+  }
+
+  /**
+   * Records the keys written to a table in a transaction.
+   */
+  static final class WriteSet {
+
+    private final Set<Set<Field<?>>> keys = new HashSet<>();
+    private boolean allKeys;
+
+    boolean isEmpty() {
+      return !allKeys && keys.isEmpty();
+    }
+
+    void add(Set<Field<?>> key) {
+      if (!allKeys) {
+        keys.add(key);
+      }
+    }
+
+    void addAll() {
+      allKeys = true;
+      keys.clear();
+    }
+
+    /**
+     * Invalidates the written keys from the given cache.
+     */
+    void invalidate(StructuredRowCache cache) {
+      if (allKeys) {
+        cache.invalidateAll();
+      } else if (!keys.isEmpty()) {
+        cache.invalidate(keys);
+      }
+    }
+  }
+}
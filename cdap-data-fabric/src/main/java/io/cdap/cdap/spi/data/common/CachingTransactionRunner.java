@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.data.common;
+
+import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.spi.data.StructuredTable;
+import io.cdap.cdap.spi.data.table.StructuredTableId;
+import io.cdap.cdap.spi.data.table.StructuredTableSpecification;
+import io.cdap.cdap.spi.data.transaction.TransactionException;
+import io.cdap.cdap.spi.data.transaction.TransactionRunner;
+import io.cdap.cdap.spi.data.transaction.TxRunnable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link TransactionRunner} that caches rows read by primary key from tables with a cache TTL set in their
+ * {@link StructuredTableSpecification}. Cached rows written by transactions executed through this runner are
+ * invalidated when the transaction completes. Rows written by other processes are visible once the cached rows
+ * expire.
+ */
+public class CachingTransactionRunner implements TransactionRunner {
+
+  private final TransactionRunner txRunner;
+  private final Map<StructuredTableId, StructuredRowCache> caches;
+
+  /**
+   * Constructor.
+   *
+   * @param txRunner the {@link TransactionRunner} for executing the transactions
+   * @param specs specifications of the tables to cache. Tables without a cache TTL are not cached.
+   * @param maxRows the maximum number of rows to cache per table
+   * @param metricsCollector the {@link MetricsCollector} for emitting cache hit and miss metrics
+   */
+  public CachingTransactionRunner(TransactionRunner txRunner, Collection<StructuredTableSpecification> specs,
+                                  long maxRows, MetricsCollector metricsCollector) {
+    this.txRunner = txRunner;
+    this.caches = new HashMap<>();
+    for (StructuredTableSpecification spec : specs) {
+      if (spec.getCacheTtlMillis() > 0) {
+        caches.put(spec.getTableId(), new StructuredRowCache(spec, maxRows, metricsCollector));
+      }
+    }
+  }
+
+  @Override
+  public void run(TxRunnable runnable) throws TransactionException {
+    if (caches.isEmpty()) {
+      txRunner.run(runnable);
+      return;
+    }
+
+    // Capture the cache generations before the transaction starts. Rows read by the transaction are only cached if
+    // no invalidation happened since then, as the transaction may read from a snapshot taken before a later write.
+    // The generations are kept across retries, which at worst makes later attempts skip populating the cache.
+    Map<StructuredTableId, Long> generations = new HashMap<>();
+    for (Map.Entry<StructuredTableId, StructuredRowCache> entry : caches.entrySet()) {
+      generations.put(entry.getKey(), entry.getValue().getGeneration());
+    }
+
+    // The write sets are shared across retries of the transaction, such that writes done by failed attempts
+    // are also invalidated.
+    Map<StructuredTableId, CachingStructuredTable.WriteSet> writeSets = new HashMap<>();
+    try {
+      txRunner.run(context -> runnable.run(tableId -> {
+        StructuredTable table = context.getTable(tableId);
+        StructuredRowCache cache = caches.get(tableId);
+        if (cache == null) {
+          return table;
+        }
+        CachingStructuredTable.WriteSet writeSet = writeSets.computeIfAbsent(
+          tableId, id -> new CachingStructuredTable.WriteSet());
+        return new CachingStructuredTable(table, cache, generations.get(tableId), writeSet);
+      }));
+    } finally {
+      // Invalidate after the transaction completed, so that rows read by other transactions concurrently
+      // with this transaction are not cached.
+      for (Map.Entry<StructuredTableId, CachingStructuredTable.WriteSet> entry : writeSets.entrySet()) {
+        entry.getValue().invalidate(caches.get(entry.getKey()));
+      }
+    }
+  }
+}
@@ -28,6 +28,7 @@ import io.cdap.cdap.spi.data.StructuredTableAdmin;
 import io.cdap.cdap.spi.data.nosql.NoSqlStorageProvider;
 import io.cdap.cdap.spi.data.sql.PostgreSqlStorageProvider;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
+import io.cdap.cdap.store.StoreDefinition;
 
 /**
  * A {@link StorageProvider} that delegates to the actual storage provider implementation based on the configuration.
@@ -41,6 +42,7 @@ public class DefaultStorageProvider implements StorageProvider {
   private final StorageProviderExtensionLoader extensionLoader;
   private final MetricsCollector metricsCollector;
   private volatile StorageProvider delegate;
+  private volatile TransactionRunner txRunner;
 
   @Inject
   DefaultStorageProvider(Injector injector, CConfiguration cConf, SConfiguration sConf,
@@ -74,7 +76,26 @@ public class DefaultStorageProvider implements StorageProvider {
 
   @Override
   public TransactionRunner getTransactionRunner() throws Exception {
-    return getDelegate().getTransactionRunner();
+    TransactionRunner runner = this.txRunner;
+    if (runner != null) {
+      return runner;
+    }
+    synchronized (this) {
+      runner = this.txRunner;
+      if (runner != null) {
+        return runner;
+      }
+
+      runner = getDelegate().getTransactionRunner();
+      // Cache rows of the system tables that enable caching, with the same cache shared by all the transactions
+      if (cConf.getBoolean(Constants.Dataset.DATA_STORAGE_TABLE_CACHE_ENABLED)) {
+        runner = new CachingTransactionRunner(runner, StoreDefinition.getCachedTableSpecs(),
+                                              cConf.getLong(Constants.Dataset.DATA_STORAGE_TABLE_CACHE_MAX_ROWS),
+                                              metricsCollector);
+      }
+      this.txRunner = runner;
+      return runner;
+    }
   }
 
   /**
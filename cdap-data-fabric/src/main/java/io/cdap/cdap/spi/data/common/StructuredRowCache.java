@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.data.common;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.spi.data.StructuredRow;
+import io.cdap.cdap.spi.data.table.StructuredTableSpecification;
+import io.cdap.cdap.spi.data.table.field.Field;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of {@link StructuredRow} of a table, keyed by the primary keys of the rows. Absent rows are cached as
+ * {@link Optional#empty()}. Cached rows expire after the cache TTL of the table specification.
+ *
+ * A generation number is incremented on every invalidation. Rows read from the table are only added to the cache
+ * if no invalidation happened since the reading transaction started, such that a concurrent write cannot be
+ * overwritten in the cache by a row read from a snapshot taken before the write was committed.
+ */
+final class StructuredRowCache {
+
+  private final Set<String> primaryKeys;
+  private final Cache<Set<Field<?>>, Optional<StructuredRow>> cache;
+  private final AtomicLong generation;
+  private final MetricsCollector metricsCollector;
+  private final String hitMetric;
+  private final String missMetric;
+
+  StructuredRowCache(StructuredTableSpecification spec, long maxRows, MetricsCollector metricsCollector) {
+    this.primaryKeys = new HashSet<>(spec.getPrimaryKeys());
+    this.cache = CacheBuilder.newBuilder()
+      .expireAfterWrite(spec.getCacheTtlMillis(), TimeUnit.MILLISECONDS)
+      .maximumSize(maxRows)
+      .build();
+    this.generation = new AtomicLong();
+    this.metricsCollector = metricsCollector;
+    String metricPrefix = Constants.Metrics.StructuredTable.METRICS_PREFIX + spec.getTableId().getName() + ".";
+    this.hitMetric = metricPrefix + "cache.hit";
+    this.missMetric = metricPrefix + "cache.miss";
+  }
+
+  /**
+   * Returns the cache key for the given fields, which contains only the primary key fields.
+   */
+  Set<Field<?>> getKey(Collection<Field<?>> fields) {
+    Set<Field<?>> key = new HashSet<>();
+    for (Field<?> field : fields) {
+      if (primaryKeys.contains(field.getName())) {
+        key.add(field);
+      }
+    }
+    return key;
+  }
+
+  /**
+   * Returns the cache key for reading a row with the given keys, or {@code null} if the keys are not exactly the
+   * primary keys of the table, in which case the read should not go through the cache.
+   */
+  @Nullable
+  Set<Field<?>> getReadKey(Collection<Field<?>> keys) {
+    Set<Field<?>> key = getKey(keys);
+    return key.size() == keys.size() && key.size() == primaryKeys.size() ? key : null;
+  }
+
+  /**
+   * Returns the cached row for the given key, or {@code null} if it is not in the cache.
+   * Hit and miss metrics are emitted for each lookup.
+   */
+  @Nullable
+  Optional<StructuredRow> get(Set<Field<?>> key) {
+    Optional<StructuredRow> row = cache.getIfPresent(key);
+    metricsCollector.increment(row == null ? missMetric : hitMetric, 1L);
+    return row;
+  }
+
+  /**
+   * Returns the current generation, which should be acquired before starting the transaction that reads rows
+   * from the table.
+   */
+  long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Adds a row read from the table to the cache, unless the cache was invalidated after the given generation.
+   */
+  void put(long readGeneration, Set<Field<?>> key, Optional<StructuredRow> row) {
+    if (generation.get() != readGeneration) {
+      return;
+    }
+    cache.put(key, row);
+    // Remove the row if an invalidation happened concurrently with the put
+    if (generation.get() != readGeneration) {
+      cache.invalidate(key);
+    }
+  }
+
+  /**
+   * Removes the given keys from the cache.
+   */
+  void invalidate(Collection<Set<Field<?>>> keys) {
+    generation.incrementAndGet();
+    cache.invalidateAll(keys);
+  }
+
+  /**
+   * Removes all rows from the cache.
+   */
+  void invalidateAll() {
+    generation.incrementAndGet();
+    cache.invalidateAll();
+  }
+}
@@ -29,6 +29,7 @@ import io.cdap.cdap.spi.data.StorageProviderContext;
 import io.cdap.cdap.spi.data.StructuredTableAdmin;
 import io.cdap.cdap.spi.data.sql.jdbc.JDBCDriverShim;
 import io.cdap.cdap.spi.data.sql.jdbc.MetricsDataSource;
+import io.cdap.cdap.spi.data.sql.jdbc.StatementCachingConnectionFactory;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import org.apache.commons.dbcp2.ConnectionFactory;
 import org.apache.commons.dbcp2.DriverManagerConnectionFactory;
@@ -128,6 +129,12 @@ public class PostgreSqlStorageProvider implements StorageProvider {
     LOG.info("Creating the DataSource with jdbc url: {}", jdbcUrl);
 
     ConnectionFactory connectionFactory = new DriverManagerConnectionFactory(jdbcUrl, properties);
+    StatementCachingConnectionFactory statementCachingFactory = null;
+    int statementCacheSize = cConf.getInt(Constants.Dataset.DATA_STORAGE_SQL_STATEMENT_CACHE_SIZE);
+    if (statementCacheSize > 0) {
+      statementCachingFactory = new StatementCachingConnectionFactory(connectionFactory, statementCacheSize);
+      connectionFactory = statementCachingFactory;
+    }
     PoolableConnectionFactory poolableConnectionFactory = new PoolableConnectionFactory(connectionFactory, null);
     // The GenericObjectPool is thread safe according to the javadoc,
     // the PoolingDataSource will be thread safe as long as the connectin pool is thread-safe
@@ -135,7 +142,7 @@ public class PostgreSqlStorageProvider implements StorageProvider {
     poolableConnectionFactory.setPool(connectionPool);
     connectionPool.setMaxTotal(cConf.getInt(Constants.Dataset.DATA_STORAGE_SQL_CONNECTION_SIZE));
     PoolingDataSource<PoolableConnection> dataSource = new PoolingDataSource<>(connectionPool);
-    return new MetricsDataSource(dataSource, metricsCollectionService, connectionPool);
+    return new MetricsDataSource(dataSource, metricsCollectionService, connectionPool, statementCachingFactory);
   }
 
   private static Properties retrieveJDBCConnectionProperties(CConfiguration cConf, SConfiguration sConf) {
@@ -52,6 +52,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import javax.annotation.Nullable;
@@ -62,6 +63,10 @@ import javax.annotation.Nullable;
 public class PostgreSqlStructuredTable implements StructuredTable {
   private static final Logger LOG = LoggerFactory.getLogger(PostgreSqlStructuredTable.class);
 
+  // Number of rows to fetch at a time if the given fetch size is not positive
+  private static final int DEFAULT_FETCH_SIZE = 100;
+  // Maximum number of rows to send in one JDBC batch
+  private static final int MAX_BATCH_SIZE = 1000;
 
   private final Connection connection;
   private final StructuredTableSchema tableSchema;
@@ -72,7 +77,8 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     this.connection = connection;
     this.tableSchema = tableSchema;
     this.fieldValidator = new FieldValidator(tableSchema);
-    this.fetchSize = fetchSize;
+    // A non-positive fetch size makes the JDBC driver read the whole result into memory
+    this.fetchSize = fetchSize > 0 ? fetchSize : DEFAULT_FETCH_SIZE;
   }
 
   @Override
@@ -87,6 +93,26 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     upsertInternal(fields);
   }
 
+  @Override
+  public void multiUpsert(Collection<? extends Collection<Field<?>>> multiFields)
+    throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Write multiple rows {}", tableSchema.getTableId(), multiFields);
+    for (Collection<Field<?>> fields : multiFields) {
+      Set<String> fieldNames = fields.stream().map(Field::getName).collect(Collectors.toSet());
+      if (!fieldNames.containsAll(tableSchema.getPrimaryKeys())) {
+        throw new InvalidFieldException(tableSchema.getTableId(), fields,
+                                        String.format("Given fields %s do not contain all the " +
+                                                        "primary keys %s", fieldNames, tableSchema.getPrimaryKeys()));
+      }
+    }
+    try {
+      executeBatches(multiFields, fields -> getWriteSqlQuery(fields, null));
+    } catch (SQLException e) {
+      throw new IOException(String.format("Failed to write %d rows to table %s", multiFields.size(),
+                                          tableSchema.getTableId().getName()), e);
+    }
+  }
+
   @Override
   public void update(Collection<Field<?>> fields) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: Update fields {}", tableSchema.getTableId(), fields);
@@ -175,14 +201,25 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     );
     queryString.append(";");
 
-    PreparedStatement preparedStatement = connection.prepareStatement(queryString.toString());
-    preparedStatement.setFetchSize(fetchSize);
+    PreparedStatement preparedStatement = prepareScanStatement(queryString.toString());
 
     // Set fields to the statement
     setFields(preparedStatement, keyFields.values().stream().flatMap(Collection::stream)::iterator, 1);
     return preparedStatement;
   }
 
+  /**
+   * Prepares a statement for a query that can return many rows. The statement is forward only and read only by
+   * default. With the fetch size set, the JDBC driver streams the result through a server side cursor when the
+   * connection is not in auto commit mode, which is always the case inside a transaction. The number of rows held
+   * in memory is therefore bounded by the fetch size instead of the size of the result.
+   */
+  private PreparedStatement prepareScanStatement(String sql) throws SQLException {
+    PreparedStatement statement = connection.prepareStatement(sql);
+    statement.setFetchSize(fetchSize);
+    return statement;
+  }
+
   /**
    * Creates a {@link StructuredRow} from the given {@link ResultSet}.
    *
@@ -212,13 +249,13 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     LOG.trace("Table {}: Scan range {} with limit {} order {}", tableSchema.getTableId(), keyRange, limit, sortOrder);
     fieldValidator.validatePrimaryKeys(keyRange.getBegin(), true);
     fieldValidator.validatePrimaryKeys(keyRange.getEnd(), true);
-    String scanQuery = getScanQuery(keyRange, limit, sortOrder);
+    String scanQuery = getScanQuery(keyRange, sortOrder);
 
     // We don't close the statement here because once it is closed, the result set is also closed.
     try {
-      PreparedStatement statement = connection.prepareStatement(scanQuery);
-      statement.setFetchSize(fetchSize);
-      setStatementFieldByRange(keyRange, statement);
+      PreparedStatement statement = prepareScanStatement(scanQuery);
+      int index = setStatementFieldByRange(keyRange, statement, 1);
+      statement.setInt(index, limit);
       LOG.trace("SQL statement: {}", statement);
 
       ResultSet resultSet = statement.executeQuery();
@@ -279,7 +316,7 @@ public class PostgreSqlStructuredTable implements StructuredTable {
    * E.g.
    *
    * SELECT * FROM table WHERE key1 in (?,?) AND key2 in (?,?)
-   * OR ((key3 >= ?) AND (key3 <= ?)) OR ((key4 >= ?) AND (key4 <= ?)) LIMIT limit
+   * OR ((key3 >= ?) AND (key3 <= ?)) OR ((key4 >= ?) AND (key4 <= ?)) LIMIT ?
    *
    * @param keyFields a map from field name to field values that the query has to match with
    * @param ranges the list of ranges to scan
@@ -314,16 +351,16 @@ public class PostgreSqlStructuredTable implements StructuredTable {
       query.append(")");
     }
     query.append(getOrderByClause(tableSchema.getPrimaryKeys()));
-    query.append(" LIMIT ").append(limit).append(";");
+    query.append(" LIMIT ?;");
 
-    PreparedStatement statement = connection.prepareStatement(query.toString());
-    statement.setFetchSize(fetchSize);
+    PreparedStatement statement = prepareScanStatement(query.toString());
 
     // Set the parameters
     int index = setFields(statement, keyFields.values().stream().flatMap(Collection::stream)::iterator, 1);
     for (Range range : ranges) {
       index = setStatementFieldByRange(range, statement, index);
     }
+    statement.setInt(index, limit);
     return statement;
   }
 
@@ -338,8 +375,7 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     String sql = getReadQuery(Collections.singleton(index), null, false);
     // We don't close the statement here because once it is closed, the result set is also closed.
     try {
-      PreparedStatement statement = connection.prepareStatement(sql);
-      statement.setFetchSize(fetchSize);
+      PreparedStatement statement = prepareScanStatement(sql);
       setField(statement, index, 1);
       LOG.trace("SQL statement: {}", statement);
       ResultSet resultSet = statement.executeQuery();
@@ -465,6 +501,21 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public void multiDelete(Collection<? extends Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Delete with multiple keys {}", tableSchema.getTableId(), multiKeys);
+    for (Collection<Field<?>> keys : multiKeys) {
+      fieldValidator.validatePrimaryKeys(keys, false);
+    }
+    try {
+      executeBatches(multiKeys, this::getDeleteQuery);
+    } catch (SQLException e) {
+      throw new IOException(String.format("Failed to delete %d rows from table %s", multiKeys.size(),
+                                          tableSchema.getTableId().getName()), e);
+    }
+  }
+
   @Override
   public void deleteAll(Range keyRange) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: DeleteAll with range {}", tableSchema.getTableId(), keyRange);
@@ -530,6 +581,56 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     }
   }
 
+  /**
+   * Executes a statement for each of the given rows using JDBC batches, so that the rows are sent to the database
+   * in as few round trips as possible. Consecutive rows with the same field names share the same
+   * {@link PreparedStatement}. A new statement is prepared whenever the field names change, which preserves the
+   * order of the operations.
+   *
+   * @param rows the fields of each row
+   * @param queryFunction function to generate the sql query for the fields of a row
+   */
+  private void executeBatches(Collection<? extends Collection<Field<?>>> rows,
+                              Function<Collection<Field<?>>, String> queryFunction) throws SQLException {
+    PreparedStatement statement = null;
+    List<String> statementFieldNames = null;
+    int batchSize = 0;
+    try {
+      for (Collection<Field<?>> fields : rows) {
+        List<String> fieldNames = fields.stream().map(Field::getName).collect(Collectors.toList());
+        if (!fieldNames.equals(statementFieldNames)) {
+          if (statement != null) {
+            executeBatch(statement, batchSize);
+            statement.close();
+          }
+          statement = connection.prepareStatement(queryFunction.apply(fields));
+          statementFieldNames = fieldNames;
+          batchSize = 0;
+        }
+        setFields(statement, fields, 1);
+        statement.addBatch();
+        if (++batchSize >= MAX_BATCH_SIZE) {
+          executeBatch(statement, batchSize);
+          batchSize = 0;
+        }
+      }
+      if (statement != null) {
+        executeBatch(statement, batchSize);
+      }
+    } finally {
+      if (statement != null) {
+        statement.close();
+      }
+    }
+  }
+
+  private void executeBatch(PreparedStatement statement, int batchSize) throws SQLException {
+    if (batchSize > 0) {
+      LOG.trace("SQL statement with batch of {} rows: {}", batchSize, statement);
+      statement.executeBatch();
+    }
+  }
+
   private void updateInternal(Collection<Field<?>> fields) throws IOException {
     String sqlQuery = getUpdateSqlQuery(fields);
     try (PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
@@ -765,14 +866,14 @@ public class PostgreSqlStructuredTable implements StructuredTable {
   /**
    * Get the scan query for the range given. For example, if the range provides key1, key2 as the begin and end to
    * scan, both rows are inclusive, it will generate the following query:
-   * SELECT * FROM simpletable WHERE (key1,key2)>=(?,?) AND (key1,key2)<=(?,?) LIMIT 10;
+   * SELECT * FROM simpletable WHERE (key1,key2)>=(?,?) AND (key1,key2)<=(?,?) LIMIT ?;
+   * The limit is a parameter of the query, so that the same query can be reused for scans with different limits.
    *
    * @param range the range to scan.
-   * @param limit limit number of row
    * @param sortOrder sort order
    * @return the scan query
    */
-  private String getScanQuery(Range range, int limit, SortOrder sortOrder) {
+  private String getScanQuery(Range range, SortOrder sortOrder) {
     StringBuilder queryString = new StringBuilder("SELECT * FROM ").append(tableSchema.getTableId().getName());
     if (!range.getBegin().isEmpty() || !range.getEnd().isEmpty()) {
       queryString.append(" WHERE ");
@@ -780,7 +881,7 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     }
 
     queryString.append(getOrderByClause(tableSchema.getPrimaryKeys(), sortOrder));
-    queryString.append(" LIMIT ").append(limit).append(";");
+    queryString.append(" LIMIT ?;");
     return queryString.toString();
   }
 
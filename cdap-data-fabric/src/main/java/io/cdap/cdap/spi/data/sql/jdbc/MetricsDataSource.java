@@ -26,22 +26,32 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 import javax.sql.DataSource;
 
 /**
- * A metrics data source that will emit metrics about the number of connections.
+ * A metrics data source that will emit metrics about the number of connections, as well as the prepared statement
+ * cache hits and misses if the connections are created by a {@link StatementCachingConnectionFactory}.
  */
 public class MetricsDataSource implements DataSource, AutoCloseable {
 
   private final DataSource dataSource;
   private final MetricsCollectionService metricsCollectionService;
   private final ObjectPool<?> objectPool;
+  private final StatementCachingConnectionFactory statementCachingFactory;
 
   public MetricsDataSource(DataSource dataSource, MetricsCollectionService metricsCollectionService,
                            ObjectPool<?> objectPool) {
+    this(dataSource, metricsCollectionService, objectPool, null);
+  }
+
+  public MetricsDataSource(DataSource dataSource, MetricsCollectionService metricsCollectionService,
+                           ObjectPool<?> objectPool,
+                           @Nullable StatementCachingConnectionFactory statementCachingFactory) {
     this.dataSource = dataSource;
     this.metricsCollectionService = metricsCollectionService;
     this.objectPool = objectPool;
+    this.statementCachingFactory = statementCachingFactory;
   }
 
   @Override
@@ -51,6 +61,7 @@ public class MetricsDataSource implements DataSource, AutoCloseable {
       Connection connection = dataSource.getConnection();
       metricsCollector.gauge(Constants.Metrics.StructuredTable.ACTIVE_CONNECTIONS, objectPool.getNumActive());
       metricsCollector.gauge(Constants.Metrics.StructuredTable.IDLE_CONNECTIONS, objectPool.getNumIdle());
+      emitStatementCacheMetrics(metricsCollector);
       return connection;
     } catch (SQLException e) {
       metricsCollector.increment(Constants.Metrics.StructuredTable.ERROR_CONNECTIONS, 1L);
@@ -65,6 +76,7 @@ public class MetricsDataSource implements DataSource, AutoCloseable {
       Connection connection = dataSource.getConnection(username, password);
       metricsCollector.gauge(Constants.Metrics.StructuredTable.ACTIVE_CONNECTIONS, objectPool.getNumActive());
       metricsCollector.gauge(Constants.Metrics.StructuredTable.IDLE_CONNECTIONS, objectPool.getNumIdle());
+      emitStatementCacheMetrics(metricsCollector);
       return connection;
     } catch (SQLException e) {
       metricsCollector.increment(Constants.Metrics.StructuredTable.ERROR_CONNECTIONS, 1L);
@@ -72,6 +84,23 @@ public class MetricsDataSource implements DataSource, AutoCloseable {
     }
   }
 
+  /**
+   * Emits the number of statement cache hits and misses since the last emission.
+   */
+  private void emitStatementCacheMetrics(MetricsContext metricsCollector) {
+    if (statementCachingFactory == null) {
+      return;
+    }
+    long hits = statementCachingFactory.getAndResetHits();
+    if (hits > 0) {
+      metricsCollector.increment(Constants.Metrics.StructuredTable.STATEMENT_CACHE_HITS, hits);
+    }
+    long misses = statementCachingFactory.getAndResetMisses();
+    if (misses > 0) {
+      metricsCollector.increment(Constants.Metrics.StructuredTable.STATEMENT_CACHE_MISSES, misses);
+    }
+  }
+
   @Override
   public <T> T unwrap(Class<T> iface) throws SQLException {
     return dataSource.unwrap(iface);
@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.data.sql.jdbc;
+
+import org.apache.commons.dbcp2.ConnectionFactory;
+import org.apache.commons.dbcp2.DelegatingPreparedStatement;
+import org.apache.commons.dbcp2.PStmtKey;
+import org.apache.commons.dbcp2.PoolingConnection;
+import org.apache.commons.pool2.KeyedPooledObjectFactory;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ConnectionFactory} that creates connections with a cache of {@link PreparedStatement}. Statements are
+ * cached per connection, keyed by the SQL query. Closing a statement returns it to the cache, so that the next
+ * {@link Connection#prepareStatement(String)} call with the same query on the same connection reuses it,
+ * without building a new statement and parsing the query again.
+ *
+ * The number of cache hits and misses across all the connections are recorded, such that they can be emitted
+ * as metrics.
+ */
+public class StatementCachingConnectionFactory implements ConnectionFactory {
+
+  private final ConnectionFactory connectionFactory;
+  private final int cacheSize;
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+
+  /**
+   * Constructor.
+   *
+   * @param connectionFactory the {@link ConnectionFactory} for creating the actual connections
+   * @param cacheSize the maximum number of statements to cache per connection
+   */
+  public StatementCachingConnectionFactory(ConnectionFactory connectionFactory, int cacheSize) {
+    this.connectionFactory = connectionFactory;
+    this.cacheSize = cacheSize;
+    this.hits = new AtomicLong();
+    this.misses = new AtomicLong();
+  }
+
+  @Override
+  public Connection createConnection() throws SQLException {
+    CachingConnection connection = new CachingConnection(connectionFactory.createConnection());
+
+    // Same configuration as the one used by the dbcp PoolableConnectionFactory for statement pooling.
+    // At most one idle statement is kept per query, and the least recently used idle statements are evicted
+    // when the cache is full.
+    GenericKeyedObjectPoolConfig<DelegatingPreparedStatement> config = new GenericKeyedObjectPoolConfig<>();
+    config.setMaxTotalPerKey(-1);
+    config.setMaxIdlePerKey(1);
+    config.setMaxTotal(cacheSize);
+    config.setBlockWhenExhausted(false);
+    config.setMaxWaitMillis(0);
+    config.setJmxEnabled(false);
+    connection.setStatementPool(new CountingStatementPool(connection, config));
+    return connection;
+  }
+
+  /**
+   * Returns the number of cache hits since the last call to this method.
+   */
+  public long getAndResetHits() {
+    return hits.getAndSet(0L);
+  }
+
+  /**
+   * Returns the number of cache misses since the last call to this method.
+   */
+  public long getAndResetMisses() {
+    return misses.getAndSet(0L);
+  }
+
+  /**
+   * A {@link PoolingConnection} that only uses the SQL query as the cache key.
+   */
+  private static final class CachingConnection extends PoolingConnection {
+
+    CachingConnection(Connection connection) {
+      super(connection);
+    }
+
+    @Override
+    protected PStmtKey createKey(String sql) {
+      // The default implementation includes the catalog and schema of the connection in the key.
+      // Getting the schema requires a query to the database in the PostgreSQL driver, which defeats the purpose
+      // of caching. The connections never switch schema, hence the query alone is sufficient as the key.
+      return new PStmtKey(normalizeSQL(sql));
+    }
+  }
+
+  /**
+   * A {@link GenericKeyedObjectPool} for statements that counts the cache hits and misses.
+   * Since each connection has its own pool and a connection is only used by one thread at a time,
+   * comparing the created count before and after borrowing tells whether the statement is newly created.
+   */
+  private final class CountingStatementPool extends GenericKeyedObjectPool<PStmtKey, DelegatingPreparedStatement> {
+
+    CountingStatementPool(KeyedPooledObjectFactory<PStmtKey, DelegatingPreparedStatement> factory,
+                          GenericKeyedObjectPoolConfig<DelegatingPreparedStatement> config) {
+      super(factory, config);
+    }
+
+    @Override
+    public DelegatingPreparedStatement borrowObject(PStmtKey key, long borrowMaxWaitMillis) throws Exception {
+      long createdCount = getCreatedCount();
+      DelegatingPreparedStatement statement = super.borrowObject(key, borrowMaxWaitMillis);
+      if (getCreatedCount() == createdCount) {
+        hits.incrementAndGet();
+      } else {
+        misses.incrementAndGet();
+      }
+      return statement;
+    }
+  }
+}
@@ -25,6 +25,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A class which contains all the store definition, the table name the store will use, the schema of the table should
@@ -35,6 +38,9 @@ public final class StoreDefinition {
 
   private static final Logger LOG = LoggerFactory.getLogger(StoreDefinition.class);
 
+  // How long rows of the frequently read tables can be cached by the storage layer
+  private static final long CACHE_TTL_SECONDS = 5L;
+
   private StoreDefinition() {
     // prevent instantiation
   }
@@ -71,6 +77,16 @@ public final class StoreDefinition {
     TetheringStore.create(tableAdmin);
   }
 
+  /**
+   * Returns the specifications of the system tables that allow caching of rows read by primary key.
+   */
+  public static Collection<StructuredTableSpecification> getCachedTableSpecs() {
+    return Arrays.asList(NamespaceStore.NAMESPACE_TABLE_SPEC,
+                         PreferencesStore.PREFERENCES_TABLE_SPEC,
+                         AppMetadataStore.APPLICATION_SPECIFICATIONS_TABLE_SPEC,
+                         ProfileStore.PROFILE_STORE_SPEC);
+  }
+
   /**
    * Creates a table if it doesn't exists.
    */
@@ -104,6 +120,7 @@ public final class StoreDefinition {
         .withFields(Fields.stringType(NAMESPACE_FIELD),
                     Fields.stringType(NAMESPACE_METADATA_FIELD))
         .withPrimaryKeys(NAMESPACE_FIELD)
+        .withCacheTtl(CACHE_TTL_SECONDS, TimeUnit.SECONDS)
         .build();
 
     public static void create(StructuredTableAdmin tableAdmin) throws IOException {
@@ -156,6 +173,7 @@ public final class StoreDefinition {
                   Fields.stringType(PROPERTIES_FIELD),
                   Fields.longType(SEQUENCE_ID_FIELD))
       .withPrimaryKeys(NAMESPACE_FIELD, TYPE_FIELD, NAME_FIELD)
+      .withCacheTtl(CACHE_TTL_SECONDS, TimeUnit.SECONDS)
       .build();
 
     public static void create(StructuredTableAdmin tableAdmin) throws IOException {
@@ -364,6 +382,7 @@ public final class StoreDefinition {
     public static final StructuredTableId APPLICATION_SPECIFICATIONS = new StructuredTableId("application_specs");
     public static final StructuredTableId WORKFLOW_NODE_STATES = new StructuredTableId("workflow_node_states");
     public static final StructuredTableId RUN_RECORDS = new StructuredTableId("run_records");
+    public static final StructuredTableId RUN_RECORDS_TIME_INDEX = new StructuredTableId("run_records_time_index");
     public static final StructuredTableId WORKFLOWS = new StructuredTableId("workflows");
     public static final StructuredTableId PROGRAM_COUNTS = new StructuredTableId("program_counts");
     // TODO: CDAP-14876 Move this table into it's own store, along with associated methods
@@ -380,6 +399,8 @@ public final class StoreDefinition {
     public static final String NODE_STATE_DATA = "node_state_data";
     public static final String RUN_STATUS = "run_status";
     public static final String RUN_START_TIME = "run_start_time";
+    public static final String RUN_STOP_TIME = "run_stop_time";
+    public static final String TIME_BUCKET = "time_bucket";
     public static final String RUN_RECORD_DATA = "run_record_data";
     public static final String WORKFLOW_DATA = "workflow_data";
     public static final String COUNT_TYPE = "count_type";
@@ -397,6 +418,7 @@ public final class StoreDefinition {
                     Fields.stringType(VERSION_FIELD),
                     Fields.stringType(APPLICATION_DATA_FIELD))
         .withPrimaryKeys(NAMESPACE_FIELD, APPLICATION_FIELD, VERSION_FIELD)
+        .withCacheTtl(CACHE_TTL_SECONDS, TimeUnit.SECONDS)
         .build();
 
     public static final StructuredTableSpecification WORKFLOW_NODE_STATES_SPEC =
@@ -430,6 +452,24 @@ public final class StoreDefinition {
                          PROGRAM_FIELD, RUN_START_TIME, RUN_FIELD)
         .build();
 
+    // Index of completed runs by the time buckets they were running in.
+    // The start and stop time are stored as is, without inverting.
+    public static final StructuredTableSpecification RUN_RECORDS_TIME_INDEX_SPEC =
+      new StructuredTableSpecification.Builder()
+        .withId(RUN_RECORDS_TIME_INDEX)
+        .withFields(Fields.longType(TIME_BUCKET),
+                    Fields.stringType(NAMESPACE_FIELD),
+                    Fields.stringType(APPLICATION_FIELD),
+                    Fields.stringType(VERSION_FIELD),
+                    Fields.stringType(PROGRAM_TYPE_FIELD),
+                    Fields.stringType(PROGRAM_FIELD),
+                    Fields.stringType(RUN_FIELD),
+                    Fields.longType(RUN_START_TIME),
+                    Fields.longType(RUN_STOP_TIME))
+        .withPrimaryKeys(TIME_BUCKET, NAMESPACE_FIELD, APPLICATION_FIELD, VERSION_FIELD, PROGRAM_TYPE_FIELD,
+                         PROGRAM_FIELD, RUN_FIELD)
+        .build();
+
     public static final StructuredTableSpecification WORKFLOWS_SPEC =
       new StructuredTableSpecification.Builder()
         .withId(WORKFLOWS)
@@ -471,6 +511,7 @@ public final class StoreDefinition {
       createIfNotExists(tableAdmin, APPLICATION_SPECIFICATIONS_TABLE_SPEC);
       createIfNotExists(tableAdmin, WORKFLOW_NODE_STATES_SPEC);
       createIfNotExists(tableAdmin, RUN_RECORDS_SPEC);
+      createIfNotExists(tableAdmin, RUN_RECORDS_TIME_INDEX_SPEC);
       createIfNotExists(tableAdmin, WORKFLOWS_SPEC);
       createIfNotExists(tableAdmin, PROGRAM_COUNTS_SPEC);
       createIfNotExists(tableAdmin, SUBSCRIBER_STATE_SPEC);
@@ -526,6 +567,7 @@ public final class StoreDefinition {
                     Fields.stringType(PROFILE_ID_FIELD),
                     Fields.stringType(PROFILE_DATA_FIELD))
         .withPrimaryKeys(NAMESPACE_FIELD, PROFILE_ID_FIELD)
+        .withCacheTtl(CACHE_TTL_SECONDS, TimeUnit.SECONDS)
         .build();
 
     public static final StructuredTableSpecification PROFILE_ENTITY_STORE_SPEC =
@@ -113,6 +113,17 @@ public class MetricsTableOnTableTest extends MetricsTableTest {
       });
     }
 
+    @Override
+    public boolean swapAndDelete(final byte[] row, final byte[] column, @Nullable final byte[] oldValue,
+                                 final byte[] newValue, final byte[][] deleteColumns) {
+      return txnl.executeUnchecked(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          return delegate.swapAndDelete(row, column, oldValue, newValue, deleteColumns);
+        }
+      });
+    }
+
     @Override
     public void increment(final byte[] row, final Map<byte[], Long> increments) {
       txnl.executeUnchecked(new TransactionExecutor.Subroutine() {
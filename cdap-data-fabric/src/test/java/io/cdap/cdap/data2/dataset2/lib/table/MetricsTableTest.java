@@ -99,6 +99,36 @@ public abstract class MetricsTableTest {
     Assert.assertArrayEquals(Y, table.get(A, Q));
   }
 
+  @Test
+  public void testSwapAndDelete() throws Exception {
+    MetricsTable table = getTable("testSwapAndDelete");
+    table.put(ImmutableSortedMap.<byte[], SortedMap<byte[], Long>>orderedBy(Bytes.BYTES_COMPARATOR)
+              .put(A, mapOf(P, Bytes.toLong(X), Q, Bytes.toLong(Y))).build());
+    table.put(ImmutableSortedMap.<byte[], SortedMap<byte[], Long>>orderedBy(Bytes.BYTES_COMPARATOR)
+              .put(A, mapOf(R, Bytes.toLong(Z))).build());
+
+    // nothing is written or deleted if the value does not match
+    Assert.assertFalse(table.swapAndDelete(A, P, Y, Z, new byte[][] { Q }));
+    Assert.assertFalse(table.swapAndDelete(A, P, null, Z, new byte[][] { Q }));
+    Assert.assertArrayEquals(X, table.get(A, P));
+    Assert.assertArrayEquals(Y, table.get(A, Q));
+
+    // the column is replaced and the other columns are deleted if the value matches
+    Assert.assertTrue(table.swapAndDelete(A, P, X, Z, new byte[][] { Q, R }));
+    Assert.assertArrayEquals(Z, table.get(A, P));
+    Assert.assertNull(table.get(A, Q));
+    Assert.assertNull(table.get(A, R));
+
+    // a column that must not exist
+    table.increment(B, ImmutableMap.of(Q, 5L));
+    Assert.assertTrue(table.swapAndDelete(B, P, null, X, new byte[][] { Q }));
+    Assert.assertArrayEquals(X, table.get(B, P));
+    Assert.assertNull(table.get(B, Q));
+    // deleted counters can be incremented again
+    table.increment(B, ImmutableMap.of(Q, 3L));
+    Assert.assertEquals(3L, Bytes.toLong(table.get(B, Q)));
+  }
+
   protected class IncThread extends Thread implements Closeable {
     final MetricsTable table;
     final byte[] row;
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.timeseries;
+
+import io.cdap.cdap.api.common.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Unit test for {@link FactBlock}.
+ */
+public class FactBlockTest {
+
+  @Test
+  public void testEncodeDecode() {
+    NavigableMap<Integer, Long> values = new TreeMap<>();
+    values.put(0, 10L);
+    values.put(1, 12L);
+    values.put(5, 3L);
+    values.put(300, -1L);
+    values.put(301, Long.MAX_VALUE);
+    values.put(0xfffe, Long.MIN_VALUE);
+
+    byte[] block = FactBlock.encode(values);
+    NavigableMap<Integer, Long> decoded = new TreeMap<>();
+    FactBlock.decodeInto(block, decoded);
+    Assert.assertEquals(values, decoded);
+
+    // Small deltas take much less space than the 8 bytes long values
+    values.clear();
+    for (int i = 0; i < 3600; i++) {
+      values.put(i, 1000L + i % 10);
+    }
+    block = FactBlock.encode(values);
+    Assert.assertTrue(block.length < values.size() * 3);
+    decoded.clear();
+    FactBlock.decodeInto(block, decoded);
+    Assert.assertEquals(values, decoded);
+  }
+
+  @Test
+  public void testEmpty() {
+    byte[] block = FactBlock.encode(new TreeMap<>());
+    Assert.assertFalse(new FactBlock.Decoder(block).next());
+  }
+
+  @Test
+  public void testBlockColumn() {
+    Assert.assertTrue(FactBlock.isBlockColumn(FactBlock.COLUMN));
+    Assert.assertFalse(FactBlock.isBlockColumn(Bytes.toBytes((short) 0xff)));
+    Assert.assertFalse(FactBlock.isBlockColumn(Bytes.toBytes((short) 0xff00)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncated() {
+    NavigableMap<Integer, Long> values = new TreeMap<>();
+    values.put(10, 1000L);
+    byte[] block = FactBlock.encode(values);
+    FactBlock.Decoder decoder = new FactBlock.Decoder(Arrays.copyOf(block, block.length - 1));
+    decoder.next();
+  }
+}
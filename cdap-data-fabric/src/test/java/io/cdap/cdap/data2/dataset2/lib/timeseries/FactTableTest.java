@@ -31,17 +31,25 @@ import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
 import io.cdap.cdap.api.dataset.table.Row;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import io.cdap.cdap.data2.dataset2.lib.table.MetricsTable;
 import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
 import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
 
 /**
  * Test base for {@link io.cdap.cdap.data2.dataset2.lib.timeseries.FactTable}.
@@ -513,6 +521,218 @@ public class FactTableTest {
     }
   }
 
+  @Test
+  public void testPack() throws Exception {
+    InMemoryTableService.create("PackEntityTable");
+    InMemoryTableService.create("PackDataTable");
+    int resolution = 1;
+    int rollTime = 100;
+
+    InMemoryMetricsTable dataTable = new InMemoryMetricsTable("PackDataTable");
+    FactTable table = new FactTable(dataTable, new EntityTable(new InMemoryMetricsTable("PackEntityTable")),
+                                    resolution, rollTime);
+
+    // three full roll time windows in the past, written before packing is enabled
+    long ts = ((System.currentTimeMillis() / 1000) / rollTime) * rollTime - 10 * rollTime;
+    long[] counters = new long[3 * rollTime];
+    long[] gauges = new long[3 * rollTime];
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] = i;
+      gauges[i] = 1000 - i % 7;
+      writeInc(table, "counter", ts + i, (int) counters[i], "dim1", "value1");
+      table.add(ImmutableList.of(new Fact(ts + i, dimValues("dim1", "value1"),
+                                          new Measurement("gauge", MeasureType.GAUGE, gauges[i]))));
+    }
+    Assert.assertEquals(2 * counters.length, countCells(dataTable));
+
+    // pack the first two windows only
+    Assert.assertEquals(4, table.pack(0, ts + 2 * rollTime));
+    Assert.assertEquals(4 + 2 * rollTime, countCells(dataTable));
+    // nothing more to pack in the same range
+    Assert.assertEquals(0, table.pack(0, ts + 2 * rollTime));
+    assertPackScan(table, ts, counters, gauges);
+
+    // with packing enabled, increments of windows that may be packed are added to the packed values and gauges
+    // replace the packed values
+    table.setPackDelay(rollTime);
+    writeInc(table, "counter", ts + 5, 1, "dim1", "value1");
+    counters[5] += 1;
+    table.add(ImmutableList.of(new Fact(ts + 10, dimValues("dim1", "value1"),
+                                        new Measurement("gauge", MeasureType.GAUGE, 5))));
+    gauges[10] = 5;
+    // both are written into the blocks
+    Assert.assertEquals(4 + 2 * rollTime, countCells(dataTable));
+    assertPackScan(table, ts, counters, gauges);
+
+    // pack the rest
+    Assert.assertEquals(2, table.pack(0, ts + 3 * rollTime));
+    Assert.assertEquals(6, countCells(dataTable));
+    assertPackScan(table, ts, counters, gauges);
+
+    // packing again adds increments in timestamp columns to the packed values
+    table.setPackDelay(-1L);
+    writeInc(table, "counter", ts + 5, 2, "dim1", "value1");
+    counters[5] += 2;
+    Assert.assertEquals(7, countCells(dataTable));
+    Assert.assertEquals(1, table.pack(0, ts + 3 * rollTime));
+    Assert.assertEquals(6, countCells(dataTable));
+    assertPackScan(table, ts, counters, gauges);
+
+    // a time range that ends before the end of any window packs nothing
+    writeInc(table, "counter", ts + 5, 3, "dim1", "value1");
+    counters[5] += 3;
+    Assert.assertEquals(0, table.pack(ts + rollTime, ts + 2 * rollTime - 1));
+    Assert.assertEquals(7, countCells(dataTable));
+    assertPackScan(table, ts, counters, gauges);
+
+    // scan part of a packed row
+    Table<String, List<DimensionValue>, List<TimeValue>> expected = HashBasedTable.create();
+    expected.put("counter", dimValues("dim1", "value1"), timeValues(ts + 150, resolution, 150, 151, 152));
+    assertScan(table, expected, new FactScan(ts + 150, ts + 152, "counter", dimValues("dim1", "value1")));
+
+    // delete part of the packed rows, including a row with both a block and timestamp columns
+    table.delete(new FactScan(ts + 50, ts + 249, ImmutableList.of(), dimValues("dim1", "value1")));
+    Table<String, List<DimensionValue>, List<TimeValue>> remaining = HashBasedTable.create();
+    List<TimeValue> counterValues = new ArrayList<>();
+    List<TimeValue> gaugeValues = new ArrayList<>();
+    for (int i = 0; i < counters.length; i++) {
+      if (i < 50 || i >= 250) {
+        counterValues.add(new TimeValue(ts + i, counters[i]));
+        gaugeValues.add(new TimeValue(ts + i, gauges[i]));
+      }
+    }
+    remaining.put("counter", dimValues("dim1", "value1"), counterValues);
+    remaining.put("gauge", dimValues("dim1", "value1"), gaugeValues);
+    assertScan(table, remaining, new FactScan(ts, ts + counters.length, ImmutableList.of(),
+                                              dimValues("dim1", "value1")));
+    // the blocks of the middle window are deleted, the first counter row keeps the column of the last increment
+    Assert.assertEquals(5, countCells(dataTable));
+
+    // the block is deleted from rows that have timestamp columns after the deleted range too
+    writeInc(table, "counter", ts + 299, 1, "dim1", "value1");
+    table.delete(new FactScan(ts + 250, ts + 298, "counter", dimValues("dim1", "value1")));
+    counterValues = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      counterValues.add(new TimeValue(ts + i, counters[i]));
+    }
+    counterValues.add(new TimeValue(ts + 299, counters[299] + 1));
+    remaining.put("counter", dimValues("dim1", "value1"), counterValues);
+    assertScan(table, remaining, new FactScan(ts, ts + counters.length, ImmutableList.of(),
+                                              dimValues("dim1", "value1")));
+  }
+
+  @Test
+  public void testPackFailure() throws Exception {
+    InMemoryTableService.create("PackFailureEntityTable");
+    InMemoryTableService.create("PackFailureDataTable");
+    int rollTime = 100;
+
+    // a table that fails every delete, and the swap of the first pack
+    AtomicInteger swapAndDeletes = new AtomicInteger();
+    MetricsTable dataTable = new DelegatingMetricsTable(new InMemoryMetricsTable("PackFailureDataTable")) {
+      @Override
+      public boolean swapAndDelete(byte[] row, byte[] column, @Nullable byte[] oldValue, byte[] newValue,
+                                   byte[][] deleteColumns) {
+        if (swapAndDeletes.getAndIncrement() == 0) {
+          throw new IllegalStateException("Failure during pack");
+        }
+        return super.swapAndDelete(row, column, oldValue, newValue, deleteColumns);
+      }
+
+      @Override
+      public void delete(byte[] row, byte[][] columns) {
+        throw new IllegalStateException("Failure during delete");
+      }
+    };
+    FactTable table = new FactTable(dataTable, new EntityTable(new InMemoryMetricsTable("PackFailureEntityTable")),
+                                    1, rollTime);
+
+    long ts = ((System.currentTimeMillis() / 1000) / rollTime) * rollTime - 10 * rollTime;
+    long[] counters = new long[rollTime];
+    long[] gauges = new long[rollTime];
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] = i;
+      gauges[i] = 1000 - i;
+      writeInc(table, "counter", ts + i, (int) counters[i], "dim1", "value1");
+      table.add(ImmutableList.of(new Fact(ts + i, dimValues("dim1", "value1"),
+                                          new Measurement("gauge", MeasureType.GAUGE, gauges[i]))));
+    }
+
+    // a failed pack leaves the values unchanged
+    try {
+      table.pack(0, ts + rollTime);
+      Assert.fail("Expected pack to fail");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertPackScan(table, ts, counters, gauges);
+
+    // packing again doesn't count any value twice, and doesn't need separate deletes
+    Assert.assertEquals(2, table.pack(0, ts + rollTime));
+    Assert.assertEquals(2, countCells(dataTable));
+    assertPackScan(table, ts, counters, gauges);
+  }
+
+  @Test
+  public void testConcurrentPack() throws Exception {
+    InMemoryTableService.create("ConcurrentPackEntityTable");
+    InMemoryTableService.create("ConcurrentPackDataTable");
+    int rollTime = 100;
+    EntityTable entityTable = new EntityTable(new InMemoryMetricsTable("ConcurrentPackEntityTable"));
+    long ts = ((System.currentTimeMillis() / 1000) / rollTime) * rollTime - 10 * rollTime;
+
+    // another packer and a writer that pack and write while the row is being packed, after it was read
+    FactTable otherTable = new FactTable(new InMemoryMetricsTable("ConcurrentPackDataTable"), entityTable, 1, rollTime);
+    otherTable.setPackDelay(rollTime);
+    AtomicBoolean interfered = new AtomicBoolean();
+    MetricsTable dataTable = new DelegatingMetricsTable(new InMemoryMetricsTable("ConcurrentPackDataTable")) {
+      @Override
+      public boolean swapAndDelete(byte[] row, byte[] column, @Nullable byte[] oldValue, byte[] newValue,
+                                   byte[][] deleteColumns) {
+        if (interfered.compareAndSet(false, true)) {
+          Assert.assertEquals(1, otherTable.pack(0, ts + rollTime));
+          writeInc(otherTable, "counter", ts + 5, 1000, "dim1", "value1");
+        }
+        return super.swapAndDelete(row, column, oldValue, newValue, deleteColumns);
+      }
+    };
+    FactTable table = new FactTable(dataTable, entityTable, 1, rollTime);
+
+    long[] counters = new long[rollTime];
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] = i;
+      writeInc(table, "counter", ts + i, (int) counters[i], "dim1", "value1");
+    }
+    counters[5] += 1000;
+
+    // the row was packed by the other packer already
+    Assert.assertEquals(0, table.pack(0, ts + rollTime));
+    Assert.assertTrue(interfered.get());
+    Assert.assertEquals(1, countCells(dataTable));
+    Table<String, List<DimensionValue>, List<TimeValue>> expected = HashBasedTable.create();
+    expected.put("counter", dimValues("dim1", "value1"), timeValues(ts, 1, counters));
+    assertScan(table, expected, new FactScan(ts, ts + counters.length, "counter", dimValues("dim1", "value1")));
+  }
+
+  private void assertPackScan(FactTable table, long ts, long[] counters, long[] gauges) {
+    Table<String, List<DimensionValue>, List<TimeValue>> expected = HashBasedTable.create();
+    expected.put("counter", dimValues("dim1", "value1"), timeValues(ts, 1, counters));
+    expected.put("gauge", dimValues("dim1", "value1"), timeValues(ts, 1, gauges));
+    assertScan(table, expected, new FactScan(ts, ts + counters.length, ImmutableList.of(),
+                                             dimValues("dim1", "value1")));
+  }
+
+  private int countCells(MetricsTable table) {
+    int count = 0;
+    try (Scanner scanner = table.scan(null, null, null)) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        count += row.getColumns().size();
+      }
+    }
+    return count;
+  }
+
   @Test
   public void testPreSplits() throws Exception {
     InMemoryTableService.create("presplitEntityTable");
@@ -708,4 +928,72 @@ public class FactTableTest {
       return lastGaugeSize;
     }
   }
+
+  /**
+   * A {@link MetricsTable} that delegates to another table, for tests to intercept operations.
+   */
+  private static class DelegatingMetricsTable implements MetricsTable {
+    private final MetricsTable delegate;
+
+    DelegatingMetricsTable(MetricsTable delegate) {
+      this.delegate = delegate;
+    }
+
+    @Nullable
+    @Override
+    public byte[] get(byte[] row, byte[] column) {
+      return delegate.get(row, column);
+    }
+
+    @Override
+    public void put(SortedMap<byte[], ? extends SortedMap<byte[], Long>> updates) {
+      delegate.put(updates);
+    }
+
+    @Override
+    public void putBytes(SortedMap<byte[], ? extends SortedMap<byte[], byte[]>> updates) {
+      delegate.putBytes(updates);
+    }
+
+    @Override
+    public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
+      return delegate.swap(row, column, oldValue, newValue);
+    }
+
+    @Override
+    public boolean swapAndDelete(byte[] row, byte[] column, @Nullable byte[] oldValue, byte[] newValue,
+                                 byte[][] deleteColumns) {
+      return delegate.swapAndDelete(row, column, oldValue, newValue, deleteColumns);
+    }
+
+    @Override
+    public void increment(byte[] row, Map<byte[], Long> increments) {
+      delegate.increment(row, increments);
+    }
+
+    @Override
+    public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) {
+      delegate.increment(updates);
+    }
+
+    @Override
+    public long incrementAndGet(byte[] row, byte[] column, long delta) {
+      return delegate.incrementAndGet(row, column, delta);
+    }
+
+    @Override
+    public void delete(byte[] row, byte[][] columns) {
+      delegate.delete(row, columns);
+    }
+
+    @Override
+    public Scanner scan(@Nullable byte[] start, @Nullable byte[] stop, @Nullable FuzzyRowFilter filter) {
+      return delegate.scan(start, stop, filter);
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
 }
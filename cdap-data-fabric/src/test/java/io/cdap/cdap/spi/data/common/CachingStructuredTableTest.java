@@ -0,0 +1,285 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.data.common;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Scopes;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.guice.ConfigModule;
+import io.cdap.cdap.common.metrics.NoOpMetricsCollectionService;
+import io.cdap.cdap.data.runtime.StorageModule;
+import io.cdap.cdap.spi.data.StructuredRow;
+import io.cdap.cdap.spi.data.StructuredTable;
+import io.cdap.cdap.spi.data.StructuredTableAdmin;
+import io.cdap.cdap.spi.data.StructuredTableTest;
+import io.cdap.cdap.spi.data.sql.PostgresInstantiator;
+import io.cdap.cdap.spi.data.table.StructuredTableSpecification;
+import io.cdap.cdap.spi.data.table.field.Field;
+import io.cdap.cdap.spi.data.table.field.Fields;
+import io.cdap.cdap.spi.data.table.field.Range;
+import io.cdap.cdap.spi.data.transaction.TransactionRunner;
+import io.cdap.cdap.spi.data.transaction.TransactionRunners;
+import io.cdap.cdap.spi.data.transaction.TxRunnable;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Test for {@link CachingStructuredTable}, which runs all the {@link StructuredTableTest} through the cache.
+ */
+public class CachingStructuredTableTest extends StructuredTableTest {
+
+  private static final String HIT_METRIC = "structured.table.simpletable.cache.hit";
+  private static final String MISS_METRIC = "structured.table.simpletable.cache.miss";
+
+  private static EmbeddedPostgres pg;
+  private static StructuredTableAdmin tableAdmin;
+  private static TransactionRunner sqlTxRunner;
+
+  private final Map<String, AtomicLong> metrics = new ConcurrentHashMap<>();
+  private TransactionRunner txRunner;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    pg = PostgresInstantiator.createAndStart(cConf, TEMP_FOLDER.newFolder());
+
+    Injector injector = Guice.createInjector(
+      new ConfigModule(cConf),
+      new StorageModule(),
+      new AbstractModule() {
+        @Override
+        protected void configure() {
+          bind(MetricsCollectionService.class).to(NoOpMetricsCollectionService.class).in(Scopes.SINGLETON);
+        }
+      }
+    );
+
+    tableAdmin = injector.getInstance(StructuredTableAdmin.class);
+    sqlTxRunner = injector.getInstance(TransactionRunner.class);
+  }
+
+  @AfterClass
+  public static void afterClass() throws IOException {
+    if (pg != null) {
+      pg.close();
+    }
+  }
+
+  @Before
+  public void createTxRunner() {
+    // The table is recreated for every test, hence a new cache is needed for every test
+    txRunner = createTxRunner(1, TimeUnit.HOURS);
+  }
+
+  @Override
+  protected StructuredTableAdmin getStructuredTableAdmin() {
+    return tableAdmin;
+  }
+
+  @Override
+  protected TransactionRunner getTransactionRunner() {
+    return txRunner;
+  }
+
+  @Test
+  public void testCacheHitMiss() throws Exception {
+    writeRows(txRunner, 0, 5, "v1");
+    metrics.clear();
+
+    // First read of each row is a miss, the second read is a hit
+    for (int i = 0; i < 2; i++) {
+      Assert.assertEquals("v1", readRow(txRunner, 1).orElseThrow(IllegalStateException::new));
+    }
+    Assert.assertEquals(1L, getMetric(MISS_METRIC));
+    Assert.assertEquals(1L, getMetric(HIT_METRIC));
+
+    // Absent rows are cached as well
+    for (int i = 0; i < 2; i++) {
+      Assert.assertFalse(readRow(txRunner, 10).isPresent());
+    }
+    Assert.assertEquals(2L, getMetric(MISS_METRIC));
+    Assert.assertEquals(2L, getMetric(HIT_METRIC));
+
+    // Multi read only reads the rows that are not cached
+    List<String> values = multiReadRows(txRunner, Arrays.asList(0, 1, 2, 10, 11));
+    Assert.assertEquals(Arrays.asList("v1", "v1", "v1"), values);
+    Assert.assertEquals(5L, getMetric(MISS_METRIC));
+    Assert.assertEquals(4L, getMetric(HIT_METRIC));
+
+    values = multiReadRows(txRunner, Arrays.asList(0, 1, 2, 10, 11));
+    Assert.assertEquals(Arrays.asList("v1", "v1", "v1"), values);
+    Assert.assertEquals(5L, getMetric(MISS_METRIC));
+    Assert.assertEquals(9L, getMetric(HIT_METRIC));
+  }
+
+  @Test
+  public void testInvalidation() throws Exception {
+    writeRows(txRunner, 0, 5, "v1");
+    TransactionRunner otherTxRunner = createTxRunner(1, TimeUnit.HOURS);
+
+    // Populate the caches
+    Assert.assertEquals(Optional.of("v1"), readRow(txRunner, 1));
+    Assert.assertEquals(Optional.of("v1"), readRow(otherTxRunner, 1));
+    Assert.assertFalse(readRow(txRunner, 10).isPresent());
+
+    // Writes done through the same runner are visible immediately
+    writeRows(txRunner, 0, 20, "v2");
+    Assert.assertEquals(Optional.of("v2"), readRow(txRunner, 1));
+    Assert.assertEquals(Optional.of("v2"), readRow(txRunner, 10));
+
+    // Writes done through other runner are not visible until the cached rows expire
+    Assert.assertEquals(Optional.of("v1"), readRow(otherTxRunner, 1));
+
+    // The transaction reads its own writes
+    TransactionRunners.run(txRunner, context -> {
+      StructuredTable table = context.getTable(SIMPLE_SPEC.getTableId());
+      table.upsert(getRow(1, "v3"));
+      Assert.assertEquals("v3", table.read(getKey(1)).map(this::getValue).orElse(null));
+      table.delete(getKey(2));
+      Assert.assertFalse(table.read(getKey(2)).isPresent());
+    });
+    Assert.assertEquals(Optional.of("v3"), readRow(txRunner, 1));
+    Assert.assertFalse(readRow(txRunner, 2).isPresent());
+
+    // Failed transaction also invalidates the cache
+    Assert.assertEquals(Optional.of("v2"), readRow(txRunner, 3));
+    try {
+      TransactionRunners.run(txRunner, (TxRunnable) context -> {
+        context.getTable(SIMPLE_SPEC.getTableId()).upsert(getRow(3, "v4"));
+        throw new IllegalStateException("Rollback");
+      }, IllegalStateException.class);
+      Assert.fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    metrics.clear();
+    Assert.assertEquals(Optional.of("v2"), readRow(txRunner, 3));
+    Assert.assertEquals(1L, getMetric(MISS_METRIC));
+
+    // Delete all invalidates all the rows
+    TransactionRunners.run(txRunner, context -> {
+      context.getTable(SIMPLE_SPEC.getTableId()).deleteAll(Range.all());
+    });
+    Assert.assertFalse(readRow(txRunner, 3).isPresent());
+    Assert.assertFalse(readRow(txRunner, 4).isPresent());
+  }
+
+  @Test
+  public void testSnapshotRead() throws Exception {
+    writeRows(txRunner, 0, 2, "v1");
+
+    // A transaction that reads from a snapshot taken before a concurrent write must not cache the stale row
+    TransactionRunners.run(txRunner, context -> {
+      StructuredTable table = context.getTable(SIMPLE_SPEC.getTableId());
+      Assert.assertEquals("v1", table.read(getKey(0)).map(this::getValue).orElse(null));
+      writeRows(txRunner, 1, 2, "v2");
+      table.read(getKey(1));
+    });
+    Assert.assertEquals(Optional.of("v2"), readRow(txRunner, 1));
+  }
+
+  @Test
+  public void testExpiry() throws Exception {
+    writeRows(txRunner, 0, 1, "v1");
+    TransactionRunner otherTxRunner = createTxRunner(200, TimeUnit.MILLISECONDS);
+    Assert.assertEquals(Optional.of("v1"), readRow(otherTxRunner, 0));
+
+    writeRows(txRunner, 0, 1, "v2");
+    Assert.assertEquals(Optional.of("v1"), readRow(otherTxRunner, 0));
+
+    TimeUnit.MILLISECONDS.sleep(300);
+    Assert.assertEquals(Optional.of("v2"), readRow(otherTxRunner, 0));
+  }
+
+  private TransactionRunner createTxRunner(long ttl, TimeUnit unit) {
+    StructuredTableSpecification spec = new StructuredTableSpecification.Builder(SIMPLE_SPEC)
+      .withCacheTtl(ttl, unit)
+      .build();
+    return new CachingTransactionRunner(sqlTxRunner, Collections.singleton(spec), 1000, new MetricsCollector() {
+      @Override
+      public void increment(String metricName, long value) {
+        metrics.computeIfAbsent(metricName, k -> new AtomicLong()).addAndGet(value);
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        metrics.computeIfAbsent(metricName, k -> new AtomicLong()).set(value);
+      }
+    });
+  }
+
+  private long getMetric(String name) {
+    AtomicLong value = metrics.get(name);
+    return value == null ? 0L : value.get();
+  }
+
+  private void writeRows(TransactionRunner txRunner, int start, int end, String value) {
+    TransactionRunners.run(txRunner, context -> {
+      StructuredTable table = context.getTable(SIMPLE_SPEC.getTableId());
+      for (int i = start; i < end; i++) {
+        table.upsert(getRow(i, value));
+      }
+    });
+  }
+
+  private Optional<String> readRow(TransactionRunner txRunner, int key) {
+    return TransactionRunners.run(txRunner, context -> {
+      return context.getTable(SIMPLE_SPEC.getTableId()).read(getKey(key)).map(this::getValue);
+    });
+  }
+
+  private List<String> multiReadRows(TransactionRunner txRunner, Collection<Integer> keys) {
+    return TransactionRunners.run(txRunner, context -> {
+      return context.getTable(SIMPLE_SPEC.getTableId())
+        .multiRead(keys.stream().map(this::getKey).collect(Collectors.toList()))
+        .stream().map(this::getValue).collect(Collectors.toList());
+    });
+  }
+
+  private List<Field<?>> getKey(int key) {
+    return Arrays.asList(Fields.intField("key", key), Fields.longField("key2", (long) key));
+  }
+
+  private List<Field<?>> getRow(int key, String value) {
+    return Arrays.asList(Fields.intField("key", key), Fields.longField("key2", (long) key),
+                         Fields.stringField("col1", value));
+  }
+
+  private String getValue(StructuredRow row) {
+    return row.getString("col1");
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.data.sql.jdbc;
+
+import io.cdap.cdap.spi.data.sql.PostgresInstantiator;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.apache.commons.dbcp2.ConnectionFactory;
+import org.apache.commons.dbcp2.DriverManagerConnectionFactory;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * Unit test for {@link StatementCachingConnectionFactory}.
+ */
+public class StatementCachingConnectionFactoryTest {
+
+  private static final String QUERY = "SELECT v FROM cache_test WHERE k = ?";
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static EmbeddedPostgres pg;
+  private static ConnectionFactory connectionFactory;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    pg = PostgresInstantiator.createAndStart(TEMP_FOLDER.newFolder());
+    connectionFactory = new DriverManagerConnectionFactory(pg.getJdbcUrl("postgres", "postgres"), new Properties());
+    try (Connection connection = connectionFactory.createConnection();
+         Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE cache_test (k INTEGER PRIMARY KEY, v VARCHAR)");
+      statement.execute("INSERT INTO cache_test SELECT i, 'v' || i FROM generate_series(0, 99) AS i");
+    }
+  }
+
+  @AfterClass
+  public static void afterClass() throws Exception {
+    if (pg != null) {
+      pg.close();
+    }
+  }
+
+  @Test
+  public void testCache() throws SQLException {
+    StatementCachingConnectionFactory factory = new StatementCachingConnectionFactory(connectionFactory, 10);
+    try (Connection connection = factory.createConnection()) {
+      PreparedStatement first;
+      try (PreparedStatement statement = connection.prepareStatement(QUERY)) {
+        Assert.assertEquals("v1", query(statement, 1));
+        first = statement;
+      }
+      Assert.assertEquals(0L, factory.getAndResetHits());
+      Assert.assertEquals(1L, factory.getAndResetMisses());
+
+      // The same query should reuse the same statement, with the parameters cleared
+      try (PreparedStatement statement = connection.prepareStatement(QUERY)) {
+        Assert.assertSame(first, statement);
+        Assert.assertEquals("v2", query(statement, 2));
+
+        // A statement that is in use cannot be shared
+        try (PreparedStatement statement2 = connection.prepareStatement(QUERY)) {
+          Assert.assertNotSame(first, statement2);
+          Assert.assertEquals("v3", query(statement2, 3));
+        }
+      }
+      Assert.assertEquals(1L, factory.getAndResetHits());
+      Assert.assertEquals(1L, factory.getAndResetMisses());
+
+      // Different query is cached separately
+      try (PreparedStatement statement = connection.prepareStatement(QUERY + " AND v IS NOT NULL")) {
+        Assert.assertNotSame(first, statement);
+        Assert.assertEquals("v4", query(statement, 4));
+      }
+      Assert.assertEquals(0L, factory.getAndResetHits());
+      Assert.assertEquals(1L, factory.getAndResetMisses());
+    }
+  }
+
+  @Test
+  public void testEviction() throws SQLException {
+    StatementCachingConnectionFactory factory = new StatementCachingConnectionFactory(connectionFactory, 2);
+    try (Connection connection = factory.createConnection()) {
+      for (int i = 0; i < 5; i++) {
+        try (PreparedStatement statement = connection.prepareStatement(QUERY + " AND " + i + " = " + i)) {
+          Assert.assertEquals("v" + i, query(statement, i));
+        }
+      }
+      Assert.assertEquals(0L, factory.getAndResetHits());
+      Assert.assertEquals(5L, factory.getAndResetMisses());
+
+      // Only the two most recently used statements are kept
+      for (int i = 4; i >= 0; i--) {
+        try (PreparedStatement statement = connection.prepareStatement(QUERY + " AND " + i + " = " + i)) {
+          Assert.assertEquals("v" + i, query(statement, i));
+        }
+      }
+      Assert.assertEquals(2L, factory.getAndResetHits());
+      Assert.assertEquals(3L, factory.getAndResetMisses());
+    }
+  }
+
+  @Test
+  public void testTransaction() throws SQLException {
+    StatementCachingConnectionFactory factory = new StatementCachingConnectionFactory(connectionFactory, 10);
+    try (Connection connection = factory.createConnection()) {
+      // Statements are reused within and across transactions
+      for (int txn = 0; txn < 2; txn++) {
+        connection.setAutoCommit(false);
+        for (int i = 0; i < 100; i++) {
+          try (PreparedStatement statement = connection.prepareStatement(QUERY)) {
+            Assert.assertEquals("v" + i, query(statement, i));
+          }
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+      }
+      Assert.assertEquals(199L, factory.getAndResetHits());
+      Assert.assertEquals(1L, factory.getAndResetMisses());
+    }
+  }
+
+  private String query(PreparedStatement statement, int key) throws SQLException {
+    statement.setInt(1, key);
+    try (ResultSet resultSet = statement.executeQuery()) {
+      Assert.assertTrue(resultSet.next());
+      return resultSet.getString(1);
+    }
+  }
+}
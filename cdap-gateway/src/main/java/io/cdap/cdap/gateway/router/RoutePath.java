@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.gateway.router;
+
+import java.util.Arrays;
+
+/**
+ * The segments of a request path, for matching against routes without splitting the path into strings.
+ * Empty segments are ignored, hence {@code "/v3//namespaces/"} has the two segments {@code "v3"} and
+ * {@code "namespaces"}.
+ *
+ * An instance can be reused for different paths by calling {@link #reset(String)}. This class is not thread safe.
+ */
+final class RoutePath {
+
+  private String path = "";
+  private int[] starts = new int[16];
+  private int[] ends = new int[16];
+  private int size;
+
+  /**
+   * Resets this instance to represent the given path.
+   *
+   * @param path the request path
+   * @return this instance
+   */
+  RoutePath reset(String path) {
+    this.path = path;
+    this.size = 0;
+
+    int length = path.length();
+    int idx = 0;
+    while (idx < length) {
+      if (path.charAt(idx) == '/') {
+        idx++;
+        continue;
+      }
+      int start = idx;
+      while (idx < length && path.charAt(idx) != '/') {
+        idx++;
+      }
+      if (size == starts.length) {
+        starts = Arrays.copyOf(starts, size * 2);
+        ends = Arrays.copyOf(ends, size * 2);
+      }
+      starts[size] = start;
+      ends[size] = idx;
+      size++;
+    }
+    return this;
+  }
+
+  /**
+   * Returns the number of segments in the path.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns whether the segment at the given index exists and is equal to the given value.
+   */
+  boolean segmentEquals(int index, String value) {
+    if (index >= size) {
+      return false;
+    }
+    int length = ends[index] - starts[index];
+    return length == value.length() && path.regionMatches(starts[index], value, 0, length);
+  }
+
+  /**
+   * Returns the segment at the given index.
+   *
+   * @throws IndexOutOfBoundsException if the segment does not exist
+   */
+  String segment(int index) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("Segment " + index + " does not exist in path " + path);
+    }
+    return path.substring(starts[index], ends[index]);
+  }
+
+  /**
+   * Determines if the begin or end of the path segments matches an expected sequence of strings.
+   *
+   * <ul><li>
+   *   the path may be longer than the expected one as long as its begin or end matches;
+   * </li><li>
+   *   a null in the expected sequence means "accept any string" in that position.
+   * </li></ul>
+   *
+   * @param expected the expected string array to match; may contain nulls as wildcards.
+   * @param matchEnd whether to match the end of the path
+   *
+   * @return true if the begin or end of the path matches {@code expected}
+   */
+  boolean matches(String[] expected, boolean matchEnd) {
+    if (size < expected.length) {
+      return false;
+    }
+    int offset = matchEnd ? size - expected.length : 0;
+    for (int i = 0; i < expected.length; i++) {
+      if (expected[i] != null && !segmentEquals(offset + i, expected[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -17,25 +17,38 @@
 package io.cdap.cdap.gateway.router;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.service.ServiceDiscoverable;
 import io.cdap.cdap.proto.ProgramType;
 import io.cdap.http.AbstractHttpHandler;
+import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpRequest;
 
-import java.util.stream.StreamSupport;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import javax.annotation.Nullable;
 
 /**
  * Class to match the request path to corresponding service like app-fabric, or metrics service.
+ *
+ * The routes are compiled once into a table that is indexed by the top level resource of the path, which is the
+ * segment after the API version. A request is matched against the routes for its top level resource in order, and
+ * the first matching route determines the destination. Matching is done on the segment boundaries of the path,
+ * without splitting the path into strings.
  */
 public final class RouterPathLookup extends AbstractHttpHandler {
 
-  @SuppressWarnings("unused")
-  private enum AllowedMethod {
-    GET, PUT, POST, DELETE
-  }
+  private static final Set<HttpMethod> ALLOWED_METHODS = ImmutableSet.of(HttpMethod.GET, HttpMethod.PUT,
+                                                                         HttpMethod.POST, HttpMethod.DELETE);
+  private static final String V3 = Constants.Gateway.API_VERSION_3_TOKEN;
+  private static final ThreadLocal<RoutePath> ROUTE_PATH = ThreadLocal.withInitial(RoutePath::new);
 
   public static final RouteDestination APP_FABRIC_HTTP = new RouteDestination(Constants.Service.APP_FABRIC_HTTP);
   public static final RouteDestination METRICS = new RouteDestination(Constants.Service.METRICS);
@@ -55,6 +68,52 @@ public final class RouterPathLookup extends AbstractHttpHandler {
     new RouteDestination(Constants.Service.SUPPORT_BUNDLE_SERVICE);
   public static final RouteDestination DONT_ROUTE = new RouteDestination(Constants.Router.DONT_ROUTE_SERVICE);
 
+  // Destinations of the system service status and stacks paths, keyed by the service name in the path
+  private static final Map<String, RouteDestination> SYSTEM_SERVICES = ImmutableMap.<String, RouteDestination>builder()
+    .put(Constants.Service.LOGSAVER, LOG_SAVER)
+    .put(Constants.Service.TRANSACTION, TRANSACTION)
+    .put(Constants.Service.METRICS_PROCESSOR, METRICS_PROCESSOR)
+    .put(Constants.Service.METRICS, METRICS)
+    .put(Constants.Service.APP_FABRIC_HTTP, APP_FABRIC_HTTP)
+    .put(Constants.Service.DATASET_EXECUTOR, DATASET_EXECUTOR)
+    .put(Constants.Service.METADATA_SERVICE, METADATA_SERVICE)
+    .put(Constants.Service.EXPLORE_HTTP_USER_SERVICE, EXPLORE_HTTP_USER_SERVICE)
+    .put(Constants.Service.MESSAGING_SERVICE, MESSAGING)
+    .put(Constants.Service.RUNTIME, RUNTIME)
+    .put(Constants.Service.SUPPORT_BUNDLE_SERVICE, SUPPORT_BUNDLE_SERVICE)
+    .build();
+
+  // Routes for the top level resources, and routes for all other top level resources
+  private final String[] resources;
+  private final Route[][] resourceRoutes;
+  private final Route[] otherRoutes;
+
+  public RouterPathLookup() {
+    List<Route> routes = createRoutes();
+
+    Map<String, List<Route>> routesByResource = new LinkedHashMap<>();
+    for (Route route : routes) {
+      if (route.resource != null) {
+        routesByResource.put(route.resource, new ArrayList<>());
+      }
+    }
+    // Each resource has the routes that are either for the resource or for any resource, in the original order
+    List<Route> other = new ArrayList<>();
+    for (Route route : routes) {
+      if (route.resource == null) {
+        routesByResource.values().forEach(list -> list.add(route));
+        other.add(route);
+      } else {
+        routesByResource.get(route.resource).add(route);
+      }
+    }
+
+    this.resources = routesByResource.keySet().toArray(new String[0]);
+    this.resourceRoutes = routesByResource.values().stream()
+      .map(list -> list.toArray(new Route[0])).toArray(Route[][]::new);
+    this.otherRoutes = other.toArray(new Route[0]);
+  }
+
   /**
    * Returns the CDAP service which will handle the HttpRequest
    *
@@ -64,144 +123,189 @@ public final class RouterPathLookup extends AbstractHttpHandler {
    */
   @Nullable
   public RouteDestination getRoutingService(String requestPath, HttpRequest httpRequest) {
-    try {
-      String method = httpRequest.method().name();
-      AllowedMethod requestMethod = AllowedMethod.valueOf(method);
-      String[] uriParts = StreamSupport
-        .stream(Splitter.on('/').omitEmptyStrings().split(requestPath).spliterator(), false)
-        .toArray(String[]::new);
-
-      if (uriParts[0].equals(Constants.Gateway.API_VERSION_3_TOKEN)) {
-        return getV3RoutingService(uriParts, requestMethod);
+    HttpMethod method = httpRequest.method();
+    if (!ALLOWED_METHODS.contains(method)) {
+      return APP_FABRIC_HTTP;
+    }
+    RoutePath path = ROUTE_PATH.get().reset(requestPath);
+    if (path.size() < 2 || !path.segmentEquals(0, V3)) {
+      // Default routing to app-fabric.
+      return APP_FABRIC_HTTP;
+    }
+
+    for (Route route : getRoutes(path)) {
+      if (route.matcher.matches(path, method)) {
+        return route.destination.apply(path);
       }
-    } catch (Exception e) {
-      // Ignore exception. Default routing to app-fabric.
     }
     return APP_FABRIC_HTTP;
   }
 
-  private boolean isUserServiceType(String uriPart) {
-    for (ProgramType type : ServiceDiscoverable.getUserServiceTypes()) {
-      if (type.getCategoryName().equals(uriPart)) {
-        return true;
+  private Route[] getRoutes(RoutePath path) {
+    for (int i = 0; i < resources.length; i++) {
+      if (path.segmentEquals(1, resources[i])) {
+        return resourceRoutes[i];
       }
     }
-    return false;
+    return otherRoutes;
   }
 
-  @Nullable
-  private RouteDestination getV3RoutingService(String [] uriParts, AllowedMethod requestMethod) {
-    if ((uriParts.length >= 2) && uriParts[1].equals("feeds")) {
+  /**
+   * Creates the routes for v3 paths, in the order of precedence.
+   */
+  private static List<Route> createRoutes() {
+    return ImmutableList.of(
       // TODO(Rohit) find a better way to handle that - this looks hackish
       // This needs to now changed especially metadata since now it can have custom parts
-      return null;
-    } else if ("bootstrap".equals(uriParts[1])) {
-      return APP_FABRIC_HTTP;
-    } else if ((uriParts.length >= 11) && "versions".equals(uriParts[5]) && isUserServiceType(uriParts[7])
-      && "methods".equals(uriParts[9])) {
+      route("feeds", always(), path -> null),
+      route("bootstrap", always(), APP_FABRIC_HTTP),
+
       // User defined services (version specific) handle methods on them:
       //Path: "/v3/namespaces/{namespace-id}/apps/{app-id}/versions/{version-id}/services/{service-id}/methods/
       //       <user-defined-method-path>"
-      String serviceName = ServiceDiscoverable.getName(uriParts[2], uriParts[4],
-                                                       ProgramType.valueOfCategoryName(uriParts[7]), uriParts[8]);
-      String version = uriParts[6];
-      return new RouteDestination(serviceName, version);
-    } else if ((uriParts.length >= 9) && isUserServiceType(uriParts[5]) && "methods".equals(uriParts[7])) {
+      route(null, minSize(11).and(segment(5, "versions")).and(userServiceType(7)).and(segment(9, "methods")),
+            path -> new RouteDestination(ServiceDiscoverable.getName(
+              path.segment(2), path.segment(4), ProgramType.valueOfCategoryName(path.segment(7)), path.segment(8)),
+                                         path.segment(6))),
       //User defined services handle methods on them:
       //Path: "/v3/namespaces/{namespace-id}/apps/{app-id}/services/{service-id}/methods/<user-defined-method-path>"
-      return new RouteDestination(ServiceDiscoverable.getName(uriParts[2], uriParts[4],
-                                                              ProgramType.valueOfCategoryName(uriParts[5]),
-                                                              uriParts[6]));
-    } else if (beginsWith(uriParts, "v3", "system", "services", null, "logs")) {
+      route(null, minSize(9).and(userServiceType(5)).and(segment(7, "methods")),
+            path -> new RouteDestination(ServiceDiscoverable.getName(
+              path.segment(2), path.segment(4), ProgramType.valueOfCategoryName(path.segment(5)), path.segment(6)))),
+
       //Log Handler Path /v3/system/services/<service-id>/logs
-      return LOG_QUERY;
-    } else if ((!beginsWith(uriParts, "v3", "namespaces", null, "securekeys")) && (endsWith(uriParts, "metadata") ||
+      route("system", prefix(V3, "system", "services", null, "logs"), LOG_QUERY),
+
       // do no intercept the namespaces/<namespace-name>/securekeys/<key>/metadata as that is handled by the
       // SecureStoreHandler
-      endsWith(uriParts, "metadata", "properties") || endsWith(uriParts, "metadata", "properties", null) ||
-      endsWith(uriParts, "metadata", "tags") || endsWith(uriParts, "metadata", "tags", null) ||
-      endsWith(uriParts, "metadata", "search") ||
-      beginsWith(uriParts, "v3", "namespaces", null, "datasets", null, "lineage") ||
-      beginsWith(uriParts, "v3", "metadata", "search"))) {
-      return METADATA_SERVICE;
-    } else if (beginsWith(uriParts, "v3", "security", "authorization") ||
-      beginsWith(uriParts, "v3", "namespaces", null, "securekeys")) {
+      route(null, prefix(V3, "namespaces", null, "securekeys").negate().and(
+        suffix("metadata")
+          .or(suffix("metadata", "properties")).or(suffix("metadata", "properties", null))
+          .or(suffix("metadata", "tags")).or(suffix("metadata", "tags", null))
+          .or(suffix("metadata", "search"))
+          .or(prefix(V3, "namespaces", null, "datasets", null, "lineage"))
+          .or(prefix(V3, "metadata", "search"))), METADATA_SERVICE),
+
       // Authorization and Secure Store Handlers currently run in App Fabric
-      return APP_FABRIC_HTTP;
-    } else if (beginsWith(uriParts, "v3", "security", "store", "namespaces", null)) {
-      return APP_FABRIC_HTTP;
-    } else if (beginsWith(uriParts, "v3", "namespaces", null, "data", "datasets", null, "programs") &&
-      requestMethod.equals(AllowedMethod.GET)) {
-      return APP_FABRIC_HTTP;
-    } else if (beginsWith(uriParts, "v3", "namespaces", null, "profiles") ||
-      beginsWith(uriParts, "v3", "profiles")) {
-      return APP_FABRIC_HTTP;
-    } else if (beginsWith(uriParts, "v3", "namespaces", null, "runs")) {
-      return APP_FABRIC_HTTP;
-    } else if (beginsWith(uriParts, "v3", "namespaces", null, "previews")) {
-      return PREVIEW_HTTP;
-    } else if (beginsWith(uriParts, "v3", "system", "serviceproviders")) {
-      return APP_FABRIC_HTTP;
-    } else if ((uriParts.length >= 8 && uriParts[7].equals("logs")) ||
-      (uriParts.length >= 10 && uriParts[9].equals("logs")) ||
-      (uriParts.length >= 6 && uriParts[5].equals("logs"))) {
+      route("security", prefix(V3, "security", "authorization"), APP_FABRIC_HTTP),
+      route("namespaces", prefix(V3, "namespaces", null, "securekeys"), APP_FABRIC_HTTP),
+      route("security", prefix(V3, "security", "store", "namespaces", null), APP_FABRIC_HTTP),
+      route("namespaces", prefix(V3, "namespaces", null, "data", "datasets", null, "programs")
+        .and(method(HttpMethod.GET)), APP_FABRIC_HTTP),
+      route("namespaces", prefix(V3, "namespaces", null, "profiles"), APP_FABRIC_HTTP),
+      route("profiles", prefix(V3, "profiles"), APP_FABRIC_HTTP),
+      route("namespaces", prefix(V3, "namespaces", null, "runs"), APP_FABRIC_HTTP),
+      route("namespaces", prefix(V3, "namespaces", null, "previews"), PREVIEW_HTTP),
+      route("system", prefix(V3, "system", "serviceproviders"), APP_FABRIC_HTTP),
+
       //Log Handler Paths:
       // /v3/namespaces/<namespaceid>/apps/<appid>/<programid-type>/<programid>/logs
       // /v3/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/runs/{run-id}/logs
-      return LOG_QUERY;
-    } else if (uriParts.length >= 2 && uriParts[1].equals("metrics")) {
+      route(null, segment(7, "logs").or(segment(9, "logs")).or(segment(5, "logs")), LOG_QUERY),
+
       //Metrics Search Handler Path /v3/metrics
-      return METRICS;
-    } else if (uriParts.length >= 5 && uriParts[1].equals("data") && uriParts[2].equals("explore") &&
-      (uriParts[3].equals("queries") || uriParts[3].equals("jdbc") || uriParts[3].equals("namespaces"))) {
+      route("metrics", always(), METRICS),
+
       // non-namespaced explore operations. For example, /v3/data/explore/queries/{id}
-      return EXPLORE_HTTP_USER_SERVICE;
-    } else if (uriParts.length >= 6 && uriParts[3].equals("data") && uriParts[4].equals("explore") &&
-      (uriParts[5].equals("queries") || uriParts[5].equals("datasets")
-        || uriParts[5].equals("tables") || uriParts[5].equals("jdbc"))) {
+      route("data", minSize(5).and(segment(2, "explore")).and(segment(3, "queries", "jdbc", "namespaces")),
+            EXPLORE_HTTP_USER_SERVICE),
       // namespaced explore operations. For example, /v3/namespaces/{namespace-id}/data/explore/datasets/{ds}/enable
-      return EXPLORE_HTTP_USER_SERVICE;
-    } else if ((uriParts.length == 3) && uriParts[1].equals("explore") && uriParts[2].equals("status")) {
-      return EXPLORE_HTTP_USER_SERVICE;
-    } else if (beginsWith(uriParts, "v3", "system", "services", null, "status")
-      || beginsWith(uriParts, "v3", "system", "services", null, "stacks")) {
-      switch (uriParts[3]) {
-        case Constants.Service.LOGSAVER: return LOG_SAVER;
-        case Constants.Service.TRANSACTION: return TRANSACTION;
-        case Constants.Service.METRICS_PROCESSOR: return METRICS_PROCESSOR;
-        case Constants.Service.METRICS: return METRICS;
-        case Constants.Service.APP_FABRIC_HTTP: return APP_FABRIC_HTTP;
-        case Constants.Service.DATASET_EXECUTOR: return DATASET_EXECUTOR;
-        case Constants.Service.METADATA_SERVICE: return METADATA_SERVICE;
-        case Constants.Service.EXPLORE_HTTP_USER_SERVICE: return EXPLORE_HTTP_USER_SERVICE;
-        case Constants.Service.MESSAGING_SERVICE: return MESSAGING;
-        case Constants.Service.RUNTIME: return RUNTIME;
-        case Constants.Service.SUPPORT_BUNDLE_SERVICE: return SUPPORT_BUNDLE_SERVICE;
-        default: return null;
-      }
-    } else if (uriParts.length == 7 && uriParts[3].equals("data") && uriParts[4].equals("datasets") &&
-      (uriParts[6].equals("flows") || uriParts[6].equals("workers") || uriParts[6].equals("mapreduce"))) {
+      route(null, segment(3, "data").and(segment(4, "explore"))
+              .and(segment(5, "queries", "datasets", "tables", "jdbc")), EXPLORE_HTTP_USER_SERVICE),
+      route("explore", size(3).and(segment(2, "status")), EXPLORE_HTTP_USER_SERVICE),
+
+      route("system", prefix(V3, "system", "services", null, "status")
+        .or(prefix(V3, "system", "services", null, "stacks")), RouterPathLookup::getSystemService),
+
       // namespaced app fabric data operations:
       // /v3/namespaces/{namespace-id}/data/datasets/{name}/flows
       // /v3/namespaces/{namespace-id}/data/datasets/{name}/workers
       // /v3/namespaces/{namespace-id}/data/datasets/{name}/mapreduce
-      return APP_FABRIC_HTTP;
-    } else if ((uriParts.length >= 4) && uriParts[3].equals("data")) {
+      route(null, size(7).and(segment(3, "data")).and(segment(4, "datasets"))
+        .and(segment(6, "flows", "workers", "mapreduce")), APP_FABRIC_HTTP),
       // other data operations. For example:
       // /v3/namespaces/{namespace-id}/data/datasets
       // /v3/namespaces/{namespace-id}/data/datasets/{name}
       // /v3/namespaces/{namespace-id}/data/datasets/{name}/properties
       // /v3/namespaces/{namespace-id}/data/datasets/{name}/admin/{method}
-      return DATASET_MANAGER;
-    } else if (beginsWith(uriParts, "v3", "support", "bundles")) {
+      route(null, segment(3, "data"), DATASET_MANAGER),
+
       // Support Bundle Handler Path /v3/support/bundles
-      return SUPPORT_BUNDLE_SERVICE;
-    } else if ((uriParts.length == 3) && uriParts[1].equals("metadata-internals")) {
+      route("support", prefix(V3, "support", "bundles"), SUPPORT_BUNDLE_SERVICE),
+
       // we don't want to expose endpoints for direct metadata mutation from CDAP master
       // /v3/metadata-internals/{mutation-type}
-      return DONT_ROUTE;
+      route("metadata-internals", size(3), DONT_ROUTE)
+    );
+  }
+
+  /**
+   * Returns the destination for the system service status and stacks paths,
+   * /v3/system/services/{service-name}/status and /v3/system/services/{service-name}/stacks.
+   */
+  @Nullable
+  private static RouteDestination getSystemService(RoutePath path) {
+    for (Map.Entry<String, RouteDestination> entry : SYSTEM_SERVICES.entrySet()) {
+      if (path.segmentEquals(3, entry.getKey())) {
+        return entry.getValue();
+      }
     }
-    return APP_FABRIC_HTTP;
+    return null;
+  }
+
+  private static Route route(@Nullable String resource, RouteMatcher matcher, RouteDestination destination) {
+    return new Route(resource, matcher, path -> destination);
+  }
+
+  private static Route route(@Nullable String resource, RouteMatcher matcher,
+                             Function<RoutePath, RouteDestination> destination) {
+    return new Route(resource, matcher, destination);
+  }
+
+  private static RouteMatcher always() {
+    return (path, method) -> true;
+  }
+
+  private static RouteMatcher prefix(String... expected) {
+    return (path, method) -> path.matches(expected, false);
+  }
+
+  private static RouteMatcher suffix(String... expected) {
+    return (path, method) -> path.matches(expected, true);
+  }
+
+  private static RouteMatcher size(int size) {
+    return (path, method) -> path.size() == size;
+  }
+
+  private static RouteMatcher minSize(int size) {
+    return (path, method) -> path.size() >= size;
+  }
+
+  private static RouteMatcher method(HttpMethod expected) {
+    return (path, method) -> expected.equals(method);
+  }
+
+  /**
+   * Matches paths that have the segment at the given index equal to any of the given values.
+   */
+  private static RouteMatcher segment(int index, String... values) {
+    return (path, method) -> {
+      for (String value : values) {
+        if (path.segmentEquals(index, value)) {
+          return true;
+        }
+      }
+      return false;
+    };
+  }
+
+  /**
+   * Matches paths that have the segment at the given index equal to the category name of a user service type.
+   */
+  private static RouteMatcher userServiceType(int index) {
+    return segment(index, ServiceDiscoverable.getUserServiceTypes().stream()
+      .map(ProgramType::getCategoryName).toArray(String[]::new));
   }
 
   /**
@@ -213,14 +317,14 @@ public final class RouterPathLookup extends AbstractHttpHandler {
    *   a null in the expected sequence means "accept any string" in that position.
    * </li></ul>
    *
-   * @param actual the actual string array to check; must not contain nulls.
+   * @param actual the actual string array to check; must not contain nulls or empty strings.
    * @param expected the expected string array to match; may contain nulls as wildcards.
    *
    * @return true if the start of {@code actual} matches {@code expected}
    */
   @VisibleForTesting
   static boolean beginsWith(String[] actual, String ... expected) {
-    return matches(actual, expected, false);
+    return new RoutePath().reset(String.join("/", actual)).matches(expected, false);
   }
 
   /**
@@ -232,41 +336,51 @@ public final class RouterPathLookup extends AbstractHttpHandler {
    *   a null in the expected sequence means "accept any string" in that position.
    * </li></ul>
    *
-   * @param actual the actual string array to check; must not contain nulls.
+   * @param actual the actual string array to check; must not contain nulls or empty strings.
    * @param expected the expected string array to match; may contain nulls as wildcards.
    *
    * @return true if the end of {@code actual} matches {@code expected}
    */
   @VisibleForTesting
   static boolean endsWith(String[] actual, String ... expected) {
-    return matches(actual, expected, true);
+    return new RoutePath().reset(String.join("/", actual)).matches(expected, true);
   }
 
   /**
-   * Determines if the begin or end of an array of strings matches an expected sequence of strings.
-   *
-   * <ul><li>
-   *   the actual sequence may be longer than the expected one as long as its begin or end matches;
-   * </li><li>
-   *   a null in the expected sequence means "accept any string" in that position.
-   * </li></ul>
-   *
-   * @param actual the actual string array to check; must not contain nulls.
-   * @param expected the expected string array to match; may contain nulls as wildcards.
-   * @param matchEnd whether to match the end of the actual sequence
-   *
-   * @return true if the end of {@code actual} matches {@code expected}
+   * Matches a request against a route.
    */
-  private static boolean matches(String[] actual, String[] expected, boolean matchEnd) {
-    if (actual.length < expected.length) {
-      return false;
+  @FunctionalInterface
+  private interface RouteMatcher {
+
+    boolean matches(RoutePath path, HttpMethod method);
+
+    default RouteMatcher and(RouteMatcher other) {
+      return (path, method) -> matches(path, method) && other.matches(path, method);
     }
-    int offset = matchEnd ? actual.length - expected.length : 0;
-    for (int i = 0; i < expected.length; i++) {
-      if (expected[i] != null && !expected[i].equals(actual[offset + i])) {
-        return false;
-      }
+
+    default RouteMatcher or(RouteMatcher other) {
+      return (path, method) -> matches(path, method) || other.matches(path, method);
+    }
+
+    default RouteMatcher negate() {
+      return (path, method) -> !matches(path, method);
+    }
+  }
+
+  /**
+   * A route in the routing table.
+   */
+  private static final class Route {
+    // The top level resource that the route is for, or null if the route is for any resource
+    @Nullable
+    private final String resource;
+    private final RouteMatcher matcher;
+    private final Function<RoutePath, RouteDestination> destination;
+
+    Route(@Nullable String resource, RouteMatcher matcher, Function<RoutePath, RouteDestination> destination) {
+      this.resource = resource;
+      this.matcher = matcher;
+      this.destination = destination;
     }
-    return true;
   }
 }
@@ -72,6 +72,7 @@ import javax.net.ssl.SSLException;
  * A {@link ChannelInboundHandler} for forwarding incoming request to appropriate CDAP service endpoint
  * based on the request. This class doesn't need to be thread safe as Netty will make sure there is no
  * concurrent calls to ChannelHandler and each call always have a happens-before relationship to the previous call.
+ * Connections to the CDAP services are reused across inbound channels through the {@link UpstreamChannelPool}.
  */
 public class HttpRequestRouter extends ChannelDuplexHandler {
 
@@ -79,14 +80,17 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
 
   private final CConfiguration cConf;
   private final RouterServiceLookup serviceLookup;
+  private final UpstreamChannelPool channelPool;
   private final Map<Discoverable, Queue<MessageSender>> messageSenders;
   private int inflightRequests;
   private MessageSender currentMessageSender;
   private ChannelFutureListener failureResponseListener;
 
-  public HttpRequestRouter(CConfiguration cConf, RouterServiceLookup serviceLookup) {
+  public HttpRequestRouter(CConfiguration cConf, RouterServiceLookup serviceLookup,
+                           UpstreamChannelPool channelPool) {
     this.cConf = cConf;
     this.serviceLookup = serviceLookup;
+    this.channelPool = channelPool;
     this.messageSenders = new HashMap<>();
   }
 
@@ -162,8 +166,9 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
       }
       inflightRequests = 0;
 
-      // Recycle the message sender
+      // Release the connection to the pool and recycle the message sender
       if (currentMessageSender != null) {
+        currentMessageSender.release();
         messageSenders.get(currentMessageSender.getDiscoverable()).add(currentMessageSender);
       }
     }
@@ -250,7 +255,7 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
     }
 
     // Create new MessageSender
-    sender = new MessageSender(cConf, inboundChannel, discoverable);
+    sender = new MessageSender(cConf, channelPool, inboundChannel, discoverable);
     LOG.trace("Create new message sender for {}", discoverable);
     return sender;
   }
@@ -282,20 +287,26 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
    */
   private static final class MessageSender implements Flushable, Closeable {
 
+    private final UpstreamChannelPool channelPool;
+    private final Channel inboundChannel;
     private final Discoverable discoverable;
     private final Queue<OutboundMessage> pendingMessages;
+    private final ChannelFutureListener onCloseResetListener;
     private final Bootstrap clientBootstrap;
     private volatile SslContext sslContext;
     private Channel outboundChannel;
     private boolean closed;
     private boolean connecting;
 
-    private MessageSender(final CConfiguration cConf, final Channel inboundChannel, final Discoverable discoverable) {
+    private MessageSender(final CConfiguration cConf, UpstreamChannelPool channelPool,
+                          final Channel inboundChannel, final Discoverable discoverable) {
+      this.channelPool = channelPool;
+      this.inboundChannel = inboundChannel;
       this.discoverable = discoverable;
       this.pendingMessages = new LinkedList<>();
 
       // A channel listener for resetting the state of this message sender on closing of outbound channel
-      final ChannelFutureListener onCloseResetListener = new ChannelFutureListener() {
+      this.onCloseResetListener = new ChannelFutureListener() {
         @Override
         public void operationComplete(ChannelFuture future) {
           outboundChannel = null;
@@ -348,6 +359,17 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
         return;
       }
 
+      // Reuse an idle connection from the pool if there is one
+      Channel channel = channelPool.acquire(inboundChannel.eventLoop(), discoverable);
+      if (channel != null) {
+        LOG.trace("Reuse connection {} for {}", channel, discoverable);
+        channel.pipeline().get(OutboundHandler.class).setInboundChannel(inboundChannel);
+        channel.closeFuture().addListener(onCloseResetListener);
+        outboundChannel = channel;
+        pendingMessages.poll().write(channel);
+        return;
+      }
+
       // Make a new connection
       ChannelFuture connectFuture = clientBootstrap.connect(discoverable.getSocketAddress());
       connectFuture.addListener(new ChannelFutureListener() {
@@ -395,6 +417,21 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
       }
     }
 
+    /**
+     * Releases the outbound channel to the {@link UpstreamChannelPool} after a response is completed, if the
+     * channel can be reused. Otherwise the channel is kept by this sender.
+     */
+    void release() {
+      Channel channel = outboundChannel;
+      if (channel == null || closed || !pendingMessages.isEmpty()) {
+        return;
+      }
+      if (channelPool.release(discoverable, channel)) {
+        channel.closeFuture().removeListener(onCloseResetListener);
+        outboundChannel = null;
+      }
+    }
+
     Discoverable getDiscoverable() {
       return discoverable;
     }
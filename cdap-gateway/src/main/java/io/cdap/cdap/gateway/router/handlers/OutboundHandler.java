@@ -27,42 +27,76 @@ import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 /**
  * A {@link ChannelDuplexHandler} for forwarding requests/responses between the router and the internal service.
  * It also handle idle state event for closing idled internal connections.
+ * The connection can be reused by different inbound channels through the {@link UpstreamChannelPool}.
  */
 public class OutboundHandler extends ChannelDuplexHandler {
   private static final Logger LOG = LoggerFactory.getLogger(OutboundHandler.class);
 
-  private final Channel inboundChannel;
+  private Channel inboundChannel;
   private boolean requestInProgress;
+  private boolean requestCompleted;
+  private boolean requestKeepAlive;
   private boolean keepAlive;
 
   public OutboundHandler(Channel inboundChannel) {
     this.inboundChannel = inboundChannel;
   }
 
+  /**
+   * Sets the inbound channel for forwarding responses to.
+   *
+   * @param inboundChannel the inbound channel or {@code null} if the connection is idle in the pool
+   */
+  void setInboundChannel(@Nullable Channel inboundChannel) {
+    this.inboundChannel = inboundChannel;
+  }
+
+  /**
+   * Returns whether the connection can be used for sending another request, which is the case if the last
+   * request was completely sent, its response was completely received, and both have keep-alive.
+   */
+  boolean isReusable() {
+    return !requestInProgress && requestCompleted && requestKeepAlive && keepAlive;
+  }
+
   @Override
   public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-    // One receiving messages from the internal service, forward it to the inbound channel
-    inboundChannel.write(msg);
+    if (inboundChannel == null) {
+      // Nothing is expected from the internal service for an idle connection
+      LOG.trace("Unexpected message received on idle channel {}. Closing the channel.", ctx.channel());
+      ReferenceCountUtil.release(msg);
+      ctx.channel().close();
+      return;
+    }
 
     if (msg instanceof HttpResponse) {
       keepAlive = HttpUtil.isKeepAlive((HttpResponse) msg);
     }
 
-    // A response is completed by receiving the last http content
+    // A response is completed by receiving the last http content.
+    // The state is updated before forwarding, so that the connection can be released when the response is written.
     if (msg instanceof LastHttpContent) {
       requestInProgress = false;
     }
+
+    // One receiving messages from the internal service, forward it to the inbound channel
+    inboundChannel.write(msg);
   }
 
   @Override
   public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
-    inboundChannel.flush();
+    if (inboundChannel != null) {
+      inboundChannel.flush();
+    }
   }
 
   @Override
@@ -70,25 +104,31 @@ public class OutboundHandler extends ChannelDuplexHandler {
     // A request starts with a HttpRequest
     if (msg instanceof HttpRequest) {
       requestInProgress = true;
-      keepAlive = HttpUtil.isKeepAlive((HttpRequest) msg);
+      requestCompleted = false;
+      requestKeepAlive = HttpUtil.isKeepAlive((HttpRequest) msg);
+      keepAlive = requestKeepAlive;
+    }
+    if (msg instanceof LastHttpContent) {
+      requestCompleted = true;
     }
     ctx.write(msg, promise);
   }
 
   @Override
   public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
-    if (requestInProgress) {
+    if (requestInProgress && inboundChannel != null) {
       final Channel channel = ctx.channel();
+      final Channel inbound = inboundChannel;
       ctx.executor().execute(() -> {
         // If outboundChannel is not saturated anymore, continue accepting
         // the incoming traffic from the inboundChannel.
         if (channel.isWritable()) {
           LOG.trace("Setting inboundChannel readable.");
-          inboundChannel.config().setAutoRead(true);
+          inbound.config().setAutoRead(true);
         } else {
           // If outboundChannel is saturated, do not read inboundChannel
           LOG.trace("Setting inboundChannel non-readable.");
-          inboundChannel.config().setAutoRead(false);
+          inbound.config().setAutoRead(false);
         }
       });
     }
@@ -98,7 +138,7 @@ public class OutboundHandler extends ChannelDuplexHandler {
   @Override
   public void channelInactive(ChannelHandlerContext ctx) throws Exception {
     // Close the inbound channel if there is request in progress, or the last request/response has keep-alive == false
-    if (requestInProgress || !keepAlive) {
+    if (inboundChannel != null && (requestInProgress || !keepAlive)) {
       Channels.closeOnFlush(inboundChannel);
     }
     ctx.fireChannelInactive();
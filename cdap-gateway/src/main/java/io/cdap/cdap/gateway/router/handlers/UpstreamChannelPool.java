@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.gateway.router.handlers;
+
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import org.apache.twill.discovery.Discoverable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+/**
+ * A pool of idle keep-alive connections to the internal services, shared by all the inbound channels of the router.
+ *
+ * The inbound and outbound channels of a request must be served by the same {@link EventLoop} for thread safety
+ * between their callbacks, hence connections are pooled per {@link EventLoop} and {@link Discoverable}, and a pool
+ * of an {@link EventLoop} is only accessed from the thread of that {@link EventLoop}.
+ * Idle connections are closed by the {@link OutboundHandler} in their pipeline after the configured
+ * {@link Constants.Router#CONNECTION_TIMEOUT_SECS idle timeout}.
+ */
+public final class UpstreamChannelPool {
+
+  private static final Logger LOG = LoggerFactory.getLogger(UpstreamChannelPool.class);
+
+  private final int maxIdleConnections;
+  private final ConcurrentMap<EventLoop, Map<Discoverable, Deque<Channel>>> pools;
+
+  public UpstreamChannelPool(CConfiguration cConf) {
+    this.maxIdleConnections = cConf.getInt(Constants.Router.UPSTREAM_POOL_MAX_IDLE_CONNECTIONS);
+    this.pools = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Acquires an idle connection to the given endpoint. This method must be called from the given {@link EventLoop}.
+   *
+   * @param eventLoop the {@link EventLoop} of the inbound channel
+   * @param discoverable the endpoint to connect to
+   * @return an active {@link Channel} or {@code null} if there is no idle connection to the endpoint
+   */
+  @Nullable
+  Channel acquire(EventLoop eventLoop, Discoverable discoverable) {
+    Deque<Channel> channels = getPool(eventLoop).get(discoverable);
+    if (channels == null) {
+      return null;
+    }
+
+    // Use the most recently released connection, as it is the least likely to be closed by the service
+    Channel channel = channels.pollLast();
+    while (channel != null && !isHealthy(channel)) {
+      channel.close();
+      channel = channels.pollLast();
+    }
+    return channel;
+  }
+
+  /**
+   * Releases a connection to the pool after a request completed on it. The connection is only taken by the pool if
+   * it can be reused, otherwise it is left to the caller. If the pool is full, the least recently used connection to
+   * the same endpoint is closed. This method must be called from the {@link EventLoop} of the given channel.
+   *
+   * @param discoverable the endpoint that the channel is connected to
+   * @param channel the {@link Channel} to release
+   * @return {@code true} if the connection is taken by the pool
+   */
+  boolean release(Discoverable discoverable, Channel channel) {
+    if (maxIdleConnections <= 0 || !isHealthy(channel)) {
+      return false;
+    }
+
+    Deque<Channel> channels = getPool(channel.eventLoop()).computeIfAbsent(discoverable, k -> new ArrayDeque<>());
+    channels.removeIf(c -> !c.isActive());
+    if (channels.size() >= maxIdleConnections) {
+      channels.pollFirst().close();
+    }
+
+    channel.pipeline().get(OutboundHandler.class).setInboundChannel(null);
+    channels.addLast(channel);
+    LOG.trace("Released connection {} to {} to the pool", channel, discoverable);
+    return true;
+  }
+
+  /**
+   * Returns whether the given channel can be used for sending a new request.
+   */
+  private boolean isHealthy(Channel channel) {
+    if (!channel.isActive() || !channel.isWritable()) {
+      return false;
+    }
+    OutboundHandler handler = channel.pipeline().get(OutboundHandler.class);
+    return handler != null && handler.isReusable();
+  }
+
+  private Map<Discoverable, Deque<Channel>> getPool(EventLoop eventLoop) {
+    return pools.computeIfAbsent(eventLoop, k -> new HashMap<>());
+  }
+}
@@ -358,6 +358,28 @@ public abstract class NettyRouterTestBase {
     Assert.assertEquals(1, defaultServer1.getNumConnectionsClosed());
   }
 
+  @Test
+  public void testUpstreamConnectionReuse() throws Exception {
+    // Only use server1
+    defaultServer2.cancelRegistration();
+
+    URI uri = new URI(resolveURI("/v2/ping"));
+    int times = 50;
+    for (int i = 0; i < times; i++) {
+      // Each request is made on a new client connection
+      try (Socket socket = getSocketFactory().createSocket(uri.getHost(), uri.getPort())) {
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        Assert.assertEquals("HTTP/1.1 200 OK", makeRequest(uri, out, socket.getInputStream()));
+      }
+    }
+
+    // The server side connections are reused across client connections, hence there is at most one connection
+    // per router worker thread
+    Assert.assertEquals(times, defaultServer1.getNumRequests());
+    int workerThreads = CConfiguration.create().getInt(Constants.Router.SERVER_WORKER_THREADS);
+    Assert.assertTrue(defaultServer1.getNumConnectionsOpened() <= workerThreads);
+  }
+
   private String makeRequest(URI uri, PrintWriter out, InputStream inputStream) throws IOException {
     //Send request
     out.print("GET " + uri.getPath() + " HTTP/1.1\r\n" +
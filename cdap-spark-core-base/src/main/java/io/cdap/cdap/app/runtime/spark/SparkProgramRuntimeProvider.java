@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016-2021 Cask Data, Inc.
+ * Copyright © 2016-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -30,6 +30,7 @@ import com.google.inject.ProvisionException;
 import com.google.inject.spi.InstanceBinding;
 import io.cdap.cdap.app.runtime.ProgramRunner;
 import io.cdap.cdap.app.runtime.ProgramRuntimeProvider;
+import io.cdap.cdap.app.runtime.spark.classloader.SparkClassRewriteCache;
 import io.cdap.cdap.app.runtime.spark.classloader.SparkRunnerClassLoader;
 import io.cdap.cdap.app.runtime.spark.distributed.DistributedSparkProgramRunner;
 import io.cdap.cdap.common.conf.CConfiguration;
@@ -54,6 +55,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import javax.annotation.Nullable;
 
 /**
  * A {@link ProgramRuntimeProvider} that provides runtime system support for {@link ProgramType#SPARK} program.
@@ -93,6 +95,8 @@ public abstract class SparkProgramRuntimeProvider implements ProgramRuntimeProvi
 
     boolean rewriteCheckpointTempFileName =
       conf.getBoolean(SparkRuntimeUtils.SPARK_STREAMING_CHECKPOINT_REWRITE_ENABLED);
+    SparkClassRewriteCache rewriteCache =
+      SparkClassRewriteCache.create(conf.get(SparkRuntimeUtils.SPARK_CLASS_REWRITE_CACHE_DIR));
 
     switch (mode) {
       case LOCAL:
@@ -102,7 +106,7 @@ public abstract class SparkProgramRuntimeProvider implements ProgramRuntimeProvi
         boolean rewriteYarnClient = conf.getBoolean(Constants.AppFabric.SPARK_YARN_CLIENT_REWRITE);
         try {
           SparkRunnerClassLoader classLoader = createClassLoader(filterScalaClasses, rewriteYarnClient,
-                                                                 rewriteCheckpointTempFileName);
+                                                                 rewriteCheckpointTempFileName, rewriteCache);
           try {
             // Closing of the SparkRunnerClassLoader is done by the SparkProgramRunner when the program execution
             // finished.
@@ -125,7 +129,7 @@ public abstract class SparkProgramRuntimeProvider implements ProgramRuntimeProvi
         // no SparkContext being created, hence no need to provide runtime isolation.
         // This also limits the amount of permgen usage to be constant in the CDAP master regardless of how
         // many Spark programs are running. We never need to close the SparkRunnerClassLoader until process shutdown.
-        ClassLoader classLoader = getDistributedRunnerClassLoader(rewriteCheckpointTempFileName);
+        ClassLoader classLoader = getDistributedRunnerClassLoader(rewriteCheckpointTempFileName, rewriteCache);
         return createSparkProgramRunner(createRunnerInjector(injector, classLoader),
                                         DistributedSparkProgramRunner.class.getName(),
                                         classLoader);
@@ -174,11 +178,12 @@ public abstract class SparkProgramRuntimeProvider implements ProgramRuntimeProvi
     });
   }
 
-  private synchronized ClassLoader getDistributedRunnerClassLoader(boolean rewriteCheckpointTempFileName) {
+  private synchronized ClassLoader getDistributedRunnerClassLoader(boolean rewriteCheckpointTempFileName,
+                                                                   @Nullable SparkClassRewriteCache rewriteCache) {
     try {
       if (distributedRunnerClassLoader == null) {
         // Never needs to rewrite yarn client in CDAP master, which is the only place using distributed program runner
-        distributedRunnerClassLoader = createClassLoader(true, false, rewriteCheckpointTempFileName);
+        distributedRunnerClassLoader = createClassLoader(true, false, rewriteCheckpointTempFileName, rewriteCache);
       }
       return distributedRunnerClassLoader;
     } catch (IOException e) {
@@ -295,7 +300,9 @@ public abstract class SparkProgramRuntimeProvider implements ProgramRuntimeProvi
    */
   private synchronized SparkRunnerClassLoader createClassLoader(boolean filterScalaClasses,
                                                                 boolean rewriteYarnClient,
-                                                                boolean rewriteCheckpointTempName) throws IOException {
+                                                                boolean rewriteCheckpointTempName,
+                                                                @Nullable SparkClassRewriteCache rewriteCache)
+    throws IOException {
     // Determine if needs to filter Scala classes or not.
     FilterClassLoader filteredBaseParent = new FilterClassLoader(getClass().getClassLoader(), createClassFilter());
     ClassLoader runnerParentClassLoader = filterScalaClasses
@@ -308,7 +315,8 @@ public abstract class SparkProgramRuntimeProvider implements ProgramRuntimeProvi
     return new SparkRunnerClassLoader(classLoaderUrls,
                                       runnerParentClassLoader,
                                       rewriteYarnClient,
-                                      rewriteCheckpointTempName);
+                                      rewriteCheckpointTempName,
+                                      rewriteCache);
   }
 
   /**
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016-2021 Cask Data, Inc.
+ * Copyright © 2016-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -21,6 +21,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicates;
+import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
@@ -609,6 +610,13 @@ final class SparkRuntimeService extends AbstractExecutionThreadService {
                     cConf.get(SparkRuntimeUtils.SPARK_STREAMING_CHECKPOINT_REWRITE_ENABLED));
     prependConfig(configs, "spark.driver.extraJavaOptions", sparkCheckpointTempRewrite, " ");
     prependConfig(configs, "spark.executor.extraJavaOptions", sparkCheckpointTempRewrite, " ");
+    String classRewriteCacheDir = cConf.get(SparkRuntimeUtils.SPARK_CLASS_REWRITE_CACHE_DIR);
+    if (!Strings.isNullOrEmpty(classRewriteCacheDir)) {
+      String sparkClassRewriteCache = String.format("-D%s=%s", SparkRuntimeUtils.CLASS_REWRITE_CACHE_DIR,
+                                                    classRewriteCacheDir);
+      prependConfig(configs, "spark.driver.extraJavaOptions", sparkClassRewriteCache, " ");
+      prependConfig(configs, "spark.executor.extraJavaOptions", sparkClassRewriteCache, " ");
+    }
 
     // CDAP-5854: On Windows * is a reserved character which cannot be used in paths. So adding the below to
     // classpaths will fail. Please see CDAP-5854.
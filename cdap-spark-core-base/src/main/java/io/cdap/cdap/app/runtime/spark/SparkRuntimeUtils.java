@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016-2021 Cask Data, Inc.
+ * Copyright © 2016-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -85,6 +85,11 @@ public final class SparkRuntimeUtils {
   // Configuration option used to control rewriting behavior in the cdap-site.xml file.
   public static final String SPARK_STREAMING_CHECKPOINT_REWRITE_ENABLED =
     "spark." + STREAMING_CHECKPOINT_REWRITE_ENABLED;
+  // Configuration option used to supply the directory of the rewritten Spark classes cache in Drivers and Executors.
+  // This configuration option is used in the SparkRuntimeService
+  public static final String CLASS_REWRITE_CACHE_DIR = "class.rewrite.cache.dir";
+  // Configuration option used to control the rewritten Spark classes cache in the cdap-site.xml file.
+  public static final String SPARK_CLASS_REWRITE_CACHE_DIR = "spark." + CLASS_REWRITE_CACHE_DIR;
 
   private static final String LOCALIZED_RESOURCES = "spark.cdap.localized.resources";
   private static final int CHUNK_SIZE = 1 << 15;  // 32K
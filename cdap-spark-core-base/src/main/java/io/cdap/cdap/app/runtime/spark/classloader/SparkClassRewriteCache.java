@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.app.runtime.spark.classloader;
+
+import com.google.common.base.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * A node local cache of class bytecode rewritten by the {@link SparkClassRewriter}. Entries are stored as files
+ * named by the cache key, which is the hash of everything that determines the rewrite result, hence entries never
+ * need to be invalidated. Processes of the same user that use the same directory share the cache.
+ *
+ * Since the cached classes are loaded without verification, the cache directory is created to be only accessible by
+ * the owner, and a directory that is owned by another user or is writable by other users is refused.
+ *
+ * The cache is best effort. Failure to read or write an entry only results in rewriting the class again.
+ */
+public final class SparkClassRewriteCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SparkClassRewriteCache.class);
+
+  // An entry of this size records that the class needs no rewrite
+  private static final byte[] NO_REWRITE = new byte[0];
+  private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+  private final Path cacheDir;
+
+  /**
+   * Creates a cache in the given directory. The directory is created if it doesn't exist.
+   *
+   * @throws IOException if failed to create the directory, or the directory is not safe to use as described in
+   *                     the class description
+   */
+  public SparkClassRewriteCache(File cacheDir) throws IOException {
+    this.cacheDir = cacheDir.toPath();
+    checkCacheDir(this.cacheDir);
+  }
+
+  /**
+   * Creates a cache in the given directory.
+   *
+   * @param cacheDir the cache directory or {@code null} or empty if caching is disabled
+   * @return the cache or {@code null} if caching is disabled or the directory cannot be used
+   */
+  @Nullable
+  public static SparkClassRewriteCache create(@Nullable String cacheDir) {
+    if (Strings.isNullOrEmpty(cacheDir)) {
+      return null;
+    }
+    try {
+      return new SparkClassRewriteCache(new File(cacheDir));
+    } catch (IOException e) {
+      LOG.warn("Not caching rewritten Spark classes in directory {}", cacheDir, e);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the rewritten bytecode of the given key from the cache, or rewrites the class and caches the result if
+   * the key is not in the cache.
+   *
+   * @param key the cache key
+   * @param rewriter the function to rewrite the class on cache miss
+   * @return the rewritten bytecode or {@code null} if the class needs no rewrite
+   * @throws IOException if the rewriter failed
+   */
+  @Nullable
+  public byte[] getOrRewrite(String key, Rewriter rewriter) throws IOException {
+    Path path = cacheDir.resolve(key.substring(0, 2)).resolve(key + ".class");
+    byte[] bytecode = read(path);
+    if (bytecode != null) {
+      return bytecode.length == 0 ? null : bytecode;
+    }
+
+    bytecode = rewriter.rewrite();
+    write(path, bytecode == null ? NO_REWRITE : bytecode);
+    return bytecode;
+  }
+
+  /**
+   * Reads an entry from the cache.
+   *
+   * @return the content of the entry or {@code null} if the entry is not in the cache or not valid
+   */
+  @Nullable
+  private byte[] read(Path path) {
+    try {
+      byte[] bytecode = Files.readAllBytes(path);
+      if (bytecode.length == 0 || isClassFile(bytecode)) {
+        LOG.trace("Found rewritten class {} in cache directory {}", path.getFileName(), cacheDir);
+        return bytecode;
+      }
+      LOG.debug("Ignoring invalid rewritten class {} in cache directory {}", path.getFileName(), cacheDir);
+    } catch (NoSuchFileException e) {
+      // Not in the cache
+    } catch (IOException e) {
+      LOG.debug("Failed to read rewritten class {} from cache directory {}", path.getFileName(), cacheDir, e);
+    }
+    return null;
+  }
+
+  /**
+   * Writes an entry to the cache. The entry is written to a temporary file first and then atomically moved, such
+   * that concurrent readers never see a partially written entry.
+   */
+  private void write(Path path, byte[] bytecode) {
+    try {
+      Path dir = Files.createDirectories(path.getParent(), PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+      Path tempFile = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+      try {
+        Files.write(tempFile, bytecode);
+        Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tempFile);
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to write rewritten class {} to cache directory {}", path.getFileName(), cacheDir, e);
+    }
+  }
+
+  /**
+   * Creates the given cache directory to be only accessible by the owner if it doesn't exist, and checks that an
+   * existing directory is owned by the current user and is not writable by other users.
+   */
+  private static void checkCacheDir(Path cacheDir) throws IOException {
+    if (!cacheDir.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      throw new IOException("File permissions cannot be checked for cache directory " + cacheDir);
+    }
+    if (!Files.exists(cacheDir)) {
+      Files.createDirectories(cacheDir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+    }
+    UserPrincipal user = cacheDir.getFileSystem().getUserPrincipalLookupService()
+      .lookupPrincipalByName(System.getProperty("user.name"));
+    if (!user.equals(Files.getOwner(cacheDir))) {
+      throw new IOException(String.format("Cache directory %s is owned by %s instead of %s",
+                                          cacheDir, Files.getOwner(cacheDir).getName(), user.getName()));
+    }
+    Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(cacheDir);
+    if (permissions.contains(PosixFilePermission.GROUP_WRITE)
+      || permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+      throw new IOException(String.format("Cache directory %s is writable by other users with permissions %s",
+                                          cacheDir, PosixFilePermissions.toString(permissions)));
+    }
+  }
+
+  private static boolean isClassFile(byte[] bytecode) {
+    return bytecode.length > 4
+      && (bytecode[0] & 0xff) == 0xca && (bytecode[1] & 0xff) == 0xfe
+      && (bytecode[2] & 0xff) == 0xba && (bytecode[3] & 0xff) == 0xbe;
+  }
+
+  /**
+   * Rewrites a class on cache miss.
+   */
+  public interface Rewriter {
+
+    /**
+     * @return the rewritten bytecode or {@code null} if the class needs no rewrite
+     */
+    @Nullable
+    byte[] rewrite() throws IOException;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.app.runtime.spark.classloader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Fills a {@link SparkClassRewriteCache} ahead of time by rewriting the classes of the Spark assembly, such that the
+ * first Spark program on a node doesn't need to rewrite them. Classes are rewritten both for distributed and local
+ * mode.
+ *
+ * Usage: {@code SparkClassRewriteCacheWarmer <cache-dir> <jar-or-directory>...}, where a directory stands for all
+ * the jars in it, such as the {@code jars} directory of the Spark installation.
+ */
+public final class SparkClassRewriteCacheWarmer {
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println(String.format("Usage: java %s <cache-dir> <jar-or-directory>...",
+                                       SparkClassRewriteCacheWarmer.class.getName()));
+      System.exit(1);
+    }
+
+    List<File> jars = new ArrayList<>();
+    for (String path : Arrays.asList(args).subList(1, args.length)) {
+      File file = new File(path);
+      File[] files = file.isDirectory() ? file.listFiles((dir, name) -> name.endsWith(".jar")) : new File[] { file };
+      if (files != null) {
+        jars.addAll(Arrays.asList(files));
+      }
+    }
+
+    int count = warm(new SparkClassRewriteCache(new File(args[0])), jars);
+    System.out.println(String.format("Rewrote %d classes from %d jars into %s", count, jars.size(), args[0]));
+  }
+
+  /**
+   * Rewrites the cacheable classes in the given jars into the given cache.
+   *
+   * @return the number of classes rewritten
+   */
+  static int warm(SparkClassRewriteCache cache, List<File> jars) throws IOException {
+    URL[] urls = new URL[jars.size()];
+    for (int i = 0; i < urls.length; i++) {
+      urls[i] = jars.get(i).toURI().toURL();
+    }
+
+    int count = 0;
+    try (URLClassLoader classLoader = new URLClassLoader(urls, null)) {
+      // Checkpoint temp file name rewrite is on by default, and the flag only adds classes to the cacheable set
+      List<SparkClassRewriter> rewriters = Arrays.asList(
+        new SparkClassRewriter(classLoader::getResourceAsStream, false, true, true, cache),
+        new SparkClassRewriter(classLoader::getResourceAsStream, false, true, false, cache));
+
+      for (File jar : jars) {
+        try (JarFile jarFile = new JarFile(jar)) {
+          Enumeration<JarEntry> entries = jarFile.entries();
+          while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            String name = entry.getName();
+            if (!name.endsWith(".class")) {
+              continue;
+            }
+            String className = name.substring(0, name.length() - ".class".length()).replace('/', '.');
+            if (!rewriters.get(0).isCacheable(className)) {
+              continue;
+            }
+            for (SparkClassRewriter rewriter : rewriters) {
+              try (InputStream is = jarFile.getInputStream(entry)) {
+                rewriter.rewriteClass(className, is);
+              }
+            }
+            count++;
+          }
+        }
+      }
+    }
+    return count;
+  }
+}
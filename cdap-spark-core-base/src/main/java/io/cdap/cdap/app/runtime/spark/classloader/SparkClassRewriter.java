@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017-2021 Cask Data, Inc.
+ * Copyright © 2017-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,6 +18,9 @@ package io.cdap.cdap.app.runtime.spark.classloader;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
 import com.google.common.reflect.TypeToken;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
@@ -26,6 +29,7 @@ import io.cdap.cdap.app.runtime.spark.SparkPackageUtils;
 import io.cdap.cdap.app.runtime.spark.SparkRuntimeEnv;
 import io.cdap.cdap.common.lang.ClassRewriter;
 import io.cdap.cdap.common.logging.RedirectedPrintStream;
+import io.cdap.cdap.common.utils.ProjectInfo;
 import io.cdap.cdap.internal.asm.Classes;
 import io.cdap.cdap.internal.asm.Methods;
 import io.cdap.cdap.internal.asm.Signatures;
@@ -43,12 +47,14 @@ import org.objectweb.asm.commons.Method;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
 import java.lang.reflect.Modifier;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -146,22 +152,81 @@ public class SparkClassRewriter implements ClassRewriter {
   private static final String UNMODIFIABLE_SERIALIZERS_TYPE_FORMAT =
     "io/cdap/cdap/app/runtime/spark/serializer/Unmodifiable%sSerializer";
 
+  // Classes that are rewritten solely based on their own bytecode and the distributed flag, hence the rewrite result
+  // can be cached. The yarn Client and akka Remoting are not, since their rewrites depend on the environment
+  // and other classes.
+  private static final Set<String> CACHEABLE_CLASSES = ImmutableSet.of(
+    SPARK_CONTEXT_TYPE.getClassName(), SPARK_STREAMING_CONTEXT_TYPE.getClassName(), SPARK_CONF_TYPE.getClassName(),
+    SPARK_PYTHON_RUNNER_TYPE.getClassName(), SPARK_PYTHON_RUNNER_COMPANION_TYPE.getClassName(),
+    SPARK_PYTHON_WORKER_FACTORY_TYPE.getClassName(), SPARK_PYTHON_WORKER_MONITOR_THREAD_TYPE.getClassName(),
+    SPARK_DSTREAM_GRAPH_TYPE.getClassName(), SPARK_BATCHED_WRITE_AHEAD_LOG_TYPE.getClassName(),
+    RATE_CONTROLLER_TYPE.getClassName(), SPARK_EXECUTOR_CLASSLOADER_TYPE.getClassName(),
+    YARN_SPARK_HADOOP_UTIL_TYPE.getClassName(), KRYO_TYPE.getClassName(), SPARK_DISK_STORE.getClassName(),
+    SPARK_OUTPUT_METRICS.getClassName()
+  );
+
   private final Function<String, InputStream> resourceLookup;
   private final boolean rewriteYarnClient;
   private final boolean rewriteCheckpointTempFileName;
   private final boolean distributed;
+  private final SparkClassRewriteCache cache;
 
   public SparkClassRewriter(Function<String, InputStream> resourceLookup, boolean rewriteYarnClient,
                             boolean rewriteCheckpointTempFileName) {
+    this(resourceLookup, rewriteYarnClient, rewriteCheckpointTempFileName, null);
+  }
+
+  /**
+   * Creates a rewriter that caches the rewritten bytecode of the classes that can be cached.
+   *
+   * @param cache the cache for the rewritten bytecode or {@code null} to rewrite classes without caching
+   */
+  public SparkClassRewriter(Function<String, InputStream> resourceLookup, boolean rewriteYarnClient,
+                            boolean rewriteCheckpointTempFileName, @Nullable SparkClassRewriteCache cache) {
+    this(resourceLookup, rewriteYarnClient, rewriteCheckpointTempFileName,
+         Boolean.parseBoolean(System.getenv("SPARK_YARN_MODE")), cache);
+  }
+
+  SparkClassRewriter(Function<String, InputStream> resourceLookup, boolean rewriteYarnClient,
+                     boolean rewriteCheckpointTempFileName, boolean distributed,
+                     @Nullable SparkClassRewriteCache cache) {
     this.resourceLookup = resourceLookup;
     this.rewriteYarnClient = rewriteYarnClient;
     this.rewriteCheckpointTempFileName = rewriteCheckpointTempFileName;
-    this.distributed = Boolean.parseBoolean(System.getenv("SPARK_YARN_MODE"));
+    this.distributed = distributed;
+    this.cache = cache;
   }
 
   @Nullable
   @Override
   public byte[] rewriteClass(String className, InputStream input) throws IOException {
+    if (cache == null || !isCacheable(className)) {
+      return rewrite(className, input);
+    }
+
+    // The rewrite result is determined by the rewriter version, the distributed flag and the original bytecode
+    byte[] bytecode = ByteStreams.toByteArray(input);
+    String key = Hashing.sha256().newHasher()
+      .putString(RewriterVersion.VERSION, StandardCharsets.UTF_8)
+      .putBoolean(distributed)
+      .putString(className, StandardCharsets.UTF_8)
+      .putBytes(bytecode)
+      .hash().toString();
+    return cache.getOrRewrite(key, () -> rewrite(className, new ByteArrayInputStream(bytecode)));
+  }
+
+  /**
+   * Returns whether the rewrite result of the given class can be cached with {@link SparkClassRewriteCache}.
+   */
+  boolean isCacheable(String className) {
+    return CACHEABLE_CLASSES.contains(className)
+      || className.startsWith(SPARK_SUBMIT_TYPE.getClassName())
+      || className.startsWith("org.apache.spark.network.")
+      || (rewriteCheckpointTempFileName && className.startsWith(CHECKPOINT_WRITE_HANDLER_TYPE.getClassName()));
+  }
+
+  @Nullable
+  private byte[] rewrite(String className, InputStream input) throws IOException {
     if (className.equals(SPARK_CONTEXT_TYPE.getClassName())) {
       // Rewrite the SparkContext class by rewriting the constructor to save the context to SparkRuntimeEnv
       return rewriteContext(SPARK_CONTEXT_TYPE, input);
@@ -1405,4 +1470,28 @@ public class SparkClassRewriter implements ClassRewriter {
     }
   }
 
+
+  /**
+   * Holder of the version of the rewriter that is part of the {@link SparkClassRewriteCache} key, such that cache
+   * entries written by a different CDAP build or a modified rewriter are not used. It is computed on first use.
+   */
+  private static final class RewriterVersion {
+
+    private static final String VERSION = computeVersion();
+
+    private static String computeVersion() {
+      Hasher hasher = Hashing.sha256().newHasher();
+      hasher.putString(ProjectInfo.getVersion().toString(), StandardCharsets.UTF_8);
+      String resourceName = SparkClassRewriter.class.getSimpleName() + ".class";
+      try (InputStream is = SparkClassRewriter.class.getResourceAsStream(resourceName)) {
+        if (is != null) {
+          hasher.putBytes(ByteStreams.toByteArray(is));
+        }
+      } catch (IOException e) {
+        // Not expected. The CDAP version alone still identifies the rewriter.
+        LOG.debug("Failed to read the bytecode of {}", SparkClassRewriter.class, e);
+      }
+      return hasher.hash().toString();
+    }
+  }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017 Cask Data, Inc.
+ * Copyright © 2017-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -39,9 +39,21 @@ public class SparkContainerClassLoader extends MainClassLoader {
    * @param parent the parent classloader for delegation
    */
   public SparkContainerClassLoader(URL[] urls, ClassLoader parent, boolean rewriteCheckpointTempFileName) {
+    this(urls, parent, rewriteCheckpointTempFileName, null);
+  }
+
+  /**
+   * Creates a new instance for the following set of {@link URL}.
+   *
+   * @param urls the URLs from which to load classes and resources
+   * @param parent the parent classloader for delegation
+   * @param rewriteCache the cache of rewritten Spark classes or {@code null} to rewrite classes without caching
+   */
+  public SparkContainerClassLoader(URL[] urls, ClassLoader parent, boolean rewriteCheckpointTempFileName,
+                                   @Nullable SparkClassRewriteCache rewriteCache) {
     super(urls, parent);
     this.sparkClassRewriter = new SparkClassRewriter(name -> ClassLoaders.openResource(this, name), false,
-                                                     rewriteCheckpointTempFileName);
+                                                     rewriteCheckpointTempFileName, rewriteCache);
   }
 
   @Override
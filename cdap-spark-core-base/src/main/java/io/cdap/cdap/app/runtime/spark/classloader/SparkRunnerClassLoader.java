@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017 Cask Data, Inc.
+ * Copyright © 2017-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -84,13 +84,19 @@ public final class SparkRunnerClassLoader extends URLClassLoader {
 
   public SparkRunnerClassLoader(URL[] urls, @Nullable ClassLoader parent, boolean rewriteYarnClient,
                                 boolean rewriteCheckpointTempFileName) {
+    this(urls, parent, rewriteYarnClient, rewriteCheckpointTempFileName, null);
+  }
+
+  public SparkRunnerClassLoader(URL[] urls, @Nullable ClassLoader parent, boolean rewriteYarnClient,
+                                boolean rewriteCheckpointTempFileName, @Nullable SparkClassRewriteCache rewriteCache) {
     super(urls, parent);
     // Copy from URLClassLoader, which also uses WeakHashMap
     this.closeables = new WeakHashMap<>();
     this.closeablesLock = new ReentrantLock();
     this.rewriter = new SparkClassRewriter(name -> ClassLoaders.openResource(this, name),
                                            rewriteYarnClient,
-                                           rewriteCheckpointTempFileName);
+                                           rewriteCheckpointTempFileName,
+                                           rewriteCache);
   }
 
   @Override
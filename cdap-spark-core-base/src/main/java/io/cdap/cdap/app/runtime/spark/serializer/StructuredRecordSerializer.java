@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017 Cask Data, Inc.
+ * Copyright © 2017-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -21,28 +21,105 @@ import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.api.data.schema.SchemaCache;
+import io.cdap.cdap.api.data.schema.SchemaHash;
+import io.cdap.cdap.api.spark.SparkClientContext;
 import io.cdap.cdap.format.io.StructuredRecordDatumReader;
 import io.cdap.cdap.format.io.StructuredRecordDatumWriter;
+import io.cdap.cdap.internal.io.ASMStructuredRecordDatumWriter;
+import org.apache.spark.SparkEnv;
 
 import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nullable;
 
 /**
  * A Kryo {@link Serializer} for {@link StructuredRecord}.
+ *
+ * The schemas listed in the {@link #SHARED_SCHEMAS_CONF} Spark configuration are known to the driver and all the
+ * executors of the program, hence a record with such schema only carries the schema hash. This is what keeps
+ * shuffled records small, since Spark serializes each shuffled record on its own.
+ *
+ * Other schemas are written inline, as the raw schema hash followed by the schema JSON, the first time they are
+ * seen in a Kryo object graph. Every schema written is registered with an id in the graph context, and the following
+ * records with the same schema in the same graph only write the id. Since Kryo resets the graph context after each
+ * top level object, every top level object stays self-contained, which is required by Spark for relocating
+ * serialized records in shuffles. Inline schemas are resolved from the hash through an executor wide cache, such
+ * that the schema JSON is only decoded and parsed the first time a schema is read.
+ *
+ * The schema is preceded by a marker byte that the format of earlier versions never starts with, such that records
+ * serialized by earlier versions, e.g. in Spark Streaming checkpoints, can still be read.
  */
 public class StructuredRecordSerializer extends Serializer<StructuredRecord> {
 
-  private static final StructuredRecordDatumWriter DATUM_WRITER = new StructuredRecordDatumWriter();
+  /**
+   * Spark configuration of the schemas shared by the driver and all the executors of the program.
+   */
+  public static final String SHARED_SCHEMAS_CONF = SparkClientContext.SHARED_RECORD_SCHEMAS_CONF;
+
+  private static final StructuredRecordDatumWriter DATUM_WRITER = new ASMStructuredRecordDatumWriter();
   private static final StructuredRecordDatumReader DATUM_READER = new StructuredRecordDatumReader();
+  private static final Gson GSON = new Gson();
+  private static final Type STRING_LIST_TYPE = new TypeToken<List<String>>() { }.getType();
+
+  // The format of earlier versions starts with a Kryo reference id or a string, which is never a zero byte
+  private static final byte FORMAT_MARKER = 0;
+
+  // Byte following the marker, telling how the schema is written
+  private static final byte SCHEMA_INLINE = 0;
+  private static final byte SCHEMA_REF = 1;
+  private static final byte SCHEMA_SHARED = 2;
+  private static final int SCHEMA_HASH_SIZE = 16;
+
+  // Keys in the Kryo graph context for the schemas written to and read from the current object graph
+  private static final Object WRITE_SCHEMAS_KEY = new Object();
+  private static final Object READ_SCHEMAS_KEY = new Object();
+
+  private static final Cache<SchemaHash, RegisteredSchema> SCHEMA_REGISTRY = CacheBuilder.newBuilder()
+    .maximumSize(1000)
+    .build();
+
+  // Parsed shared schemas by the configuration value. There is one entry per program in the JVM.
+  private static final Cache<String, Map<SchemaHash, Schema>> SHARED_SCHEMAS = CacheBuilder.newBuilder()
+    .maximumSize(16)
+    .build();
+
+  private final Map<SchemaHash, Schema> sharedSchemas;
+
+  public StructuredRecordSerializer() {
+    this(getSharedSchemasConf());
+  }
+
+  /**
+   * Creates a serializer with the given shared schemas.
+   *
+   * @param sharedSchemas the value of the {@link #SHARED_SCHEMAS_CONF} configuration or {@code null} if there is
+   *                      no shared schema
+   */
+  @VisibleForTesting
+  StructuredRecordSerializer(@Nullable String sharedSchemas) {
+    this.sharedSchemas = sharedSchemas == null ? Collections.emptyMap() : parseSharedSchemas(sharedSchemas);
+  }
 
   @Override
   public void write(Kryo kryo, Output output, StructuredRecord record) {
-    // First write out the schema as two fields: hash and json representation
-    // Later with the cache we may skip deserializing JSON if schema is present in cache
-    kryo.writeObject(output, record.getSchema().getSchemaHash().toString());
-    kryo.writeObject(output, record.getSchema().toString());
+    writeSchema(kryo, output, record.getSchema());
 
     // Then write out the data
     try {
@@ -54,14 +131,155 @@ public class StructuredRecordSerializer extends Serializer<StructuredRecord> {
 
   @Override
   public StructuredRecord read(Kryo kryo, Input input, Class<StructuredRecord> type) {
-    // Read the schema
-    String schemaHashStr = kryo.readObject(input, String.class);
-    String schemaJson = kryo.readObject(input, String.class);
-    Schema schema = SchemaCache.fromJson(schemaHashStr, schemaJson);
+    Schema schema = readSchema(kryo, input);
     try {
       return DATUM_READER.read(new KryoDecoder(input), schema);
     } catch (IOException e) {
       throw new KryoException("Failed to decode StructuredRecord " + schema.getRecordName(), e);
     }
   }
+
+  /**
+   * Writes the schema as an id if it was already written in the current object graph, as the schema hash if it is
+   * a shared schema, otherwise inline.
+   */
+  @SuppressWarnings("unchecked")
+  private void writeSchema(Kryo kryo, Output output, Schema schema) {
+    SchemaHash hash = schema.getSchemaHash();
+    Map<SchemaHash, Integer> schemaIds = (Map<SchemaHash, Integer>) kryo.getGraphContext().get(WRITE_SCHEMAS_KEY);
+    if (schemaIds == null) {
+      schemaIds = new HashMap<>();
+      kryo.getGraphContext().put(WRITE_SCHEMAS_KEY, schemaIds);
+    }
+
+    output.writeByte(FORMAT_MARKER);
+    Integer id = schemaIds.get(hash);
+    if (id != null) {
+      output.writeByte(SCHEMA_REF);
+      output.writeVarInt(id, true);
+      return;
+    }
+
+    if (sharedSchemas.containsKey(hash)) {
+      output.writeByte(SCHEMA_SHARED);
+      output.writeBytes(hash.toByteArray());
+    } else {
+      byte[] json = getRegisteredSchema(hash, schema).json;
+      output.writeByte(SCHEMA_INLINE);
+      output.writeBytes(hash.toByteArray());
+      output.writeVarInt(json.length, true);
+      output.writeBytes(json);
+    }
+    schemaIds.put(hash, schemaIds.size());
+  }
+
+  /**
+   * Reads a schema written by {@link #writeSchema(Kryo, Output, Schema)} or by earlier versions.
+   */
+  @SuppressWarnings("unchecked")
+  private Schema readSchema(Kryo kryo, Input input) {
+    if (input.readByte() != FORMAT_MARKER) {
+      // Format of earlier versions, which is the schema hash and the schema JSON as two strings
+      input.setPosition(input.position() - 1);
+      String schemaHashStr = kryo.readObject(input, String.class);
+      String schemaJson = kryo.readObject(input, String.class);
+      return SchemaCache.fromJson(schemaHashStr, schemaJson);
+    }
+
+    byte form = input.readByte();
+    if (form != SCHEMA_INLINE && form != SCHEMA_REF && form != SCHEMA_SHARED) {
+      throw new KryoException("Unsupported schema form " + form);
+    }
+
+    List<Schema> schemas = (List<Schema>) kryo.getGraphContext().get(READ_SCHEMAS_KEY);
+    if (schemas == null) {
+      schemas = new ArrayList<>();
+      kryo.getGraphContext().put(READ_SCHEMAS_KEY, schemas);
+    }
+
+    if (form == SCHEMA_REF) {
+      int id = input.readVarInt(true);
+      if (id >= schemas.size()) {
+        throw new KryoException("Unknown schema id " + id + " in the object graph");
+      }
+      return schemas.get(id);
+    }
+
+    SchemaHash hash = new SchemaHash(ByteBuffer.wrap(input.readBytes(SCHEMA_HASH_SIZE)));
+    Schema schema;
+    if (form == SCHEMA_SHARED) {
+      schema = sharedSchemas.get(hash);
+      if (schema == null) {
+        throw new KryoException(String.format("Schema with hash %s is not in the shared schemas configured by %s",
+                                              hash, SHARED_SCHEMAS_CONF));
+      }
+    } else {
+      int jsonLength = input.readVarInt(true);
+      RegisteredSchema registered = SCHEMA_REGISTRY.getIfPresent(hash);
+      if (registered == null) {
+        byte[] json = input.readBytes(jsonLength);
+        Schema parsed = SchemaCache.fromJson(hash.toString(), new String(json, StandardCharsets.UTF_8));
+        registered = new RegisteredSchema(parsed, json);
+        SCHEMA_REGISTRY.put(hash, registered);
+      } else {
+        // No need to decode the JSON of a known schema
+        input.skip(jsonLength);
+      }
+      schema = registered.schema;
+    }
+    schemas.add(schema);
+    return schema;
+  }
+
+  /**
+   * Returns the {@link RegisteredSchema} of the given schema from the registry, or registers it if it is absent.
+   */
+  private RegisteredSchema getRegisteredSchema(SchemaHash hash, Schema schema) {
+    RegisteredSchema registered = SCHEMA_REGISTRY.getIfPresent(hash);
+    if (registered == null) {
+      registered = new RegisteredSchema(schema, schema.toString().getBytes(StandardCharsets.UTF_8));
+      SCHEMA_REGISTRY.put(hash, registered);
+    }
+    return registered;
+  }
+
+  /**
+   * Returns the value of the {@link #SHARED_SCHEMAS_CONF} configuration of the current Spark environment.
+   */
+  @Nullable
+  private static String getSharedSchemasConf() {
+    SparkEnv env = SparkEnv.get();
+    return env == null ? null : env.conf().get(SHARED_SCHEMAS_CONF, null);
+  }
+
+  /**
+   * Parses the value of the {@link #SHARED_SCHEMAS_CONF} configuration into schemas by hash.
+   */
+  private static Map<SchemaHash, Schema> parseSharedSchemas(String value) {
+    try {
+      return SHARED_SCHEMAS.get(value, () -> {
+        Map<SchemaHash, Schema> schemas = new HashMap<>();
+        for (String json : GSON.<List<String>>fromJson(value, STRING_LIST_TYPE)) {
+          Schema schema = Schema.parseJson(json);
+          schemas.put(schema.getSchemaHash(), schema);
+        }
+        return Collections.unmodifiableMap(schemas);
+      });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new IllegalArgumentException("Invalid value for configuration " + SHARED_SCHEMAS_CONF, e.getCause());
+    }
+  }
+
+  /**
+   * A schema in the registry, together with its encoded JSON representation.
+   */
+  private static final class RegisteredSchema {
+    private final Schema schema;
+    private final byte[] json;
+
+    private RegisteredSchema(Schema schema, byte[] json) {
+      this.schema = schema;
+      this.json = json;
+    }
+  }
 }
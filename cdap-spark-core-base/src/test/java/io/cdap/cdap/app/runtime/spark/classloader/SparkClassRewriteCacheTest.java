@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.app.runtime.spark.classloader;
+
+import org.apache.spark.SparkContext;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for {@link SparkClassRewriteCache} and {@link SparkClassRewriteCacheWarmer}.
+ */
+public class SparkClassRewriteCacheTest {
+
+  private static final String KEY = "0123456789abcdef";
+  private static final byte[] BYTECODE = new byte[] { (byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe, 0, 0, 0 };
+
+  @Rule
+  public final TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testCache() throws IOException {
+    File cacheDir = tmpFolder.newFolder();
+    SparkClassRewriteCache cache = new SparkClassRewriteCache(cacheDir);
+
+    Assert.assertArrayEquals(BYTECODE, cache.getOrRewrite(KEY, () -> BYTECODE));
+    Assert.assertArrayEquals(BYTECODE, cache.getOrRewrite(KEY, SparkClassRewriteCacheTest::failRewrite));
+
+    // Classes that need no rewrite are cached too
+    Assert.assertNull(cache.getOrRewrite("1" + KEY, () -> null));
+    Assert.assertNull(cache.getOrRewrite("1" + KEY, SparkClassRewriteCacheTest::failRewrite));
+
+    // Invalid entries are rewritten again
+    Path entry = cacheDir.toPath().resolve(KEY.substring(0, 2)).resolve(KEY + ".class");
+    Files.write(entry, new byte[] { 1, 2, 3 });
+    Assert.assertArrayEquals(BYTECODE, cache.getOrRewrite(KEY, () -> BYTECODE));
+    Assert.assertArrayEquals(BYTECODE, Files.readAllBytes(entry));
+  }
+
+  @Test
+  public void testCacheDir() throws IOException {
+    // A missing directory is created to be only accessible by the owner
+    File cacheDir = new File(tmpFolder.newFolder(), "cache");
+    SparkClassRewriteCache cache = SparkClassRewriteCache.create(cacheDir.getAbsolutePath());
+    Assert.assertNotNull(cache);
+    Assert.assertEquals(PosixFilePermissions.fromString("rwx------"),
+                        Files.getPosixFilePermissions(cacheDir.toPath()));
+
+    cache.getOrRewrite(KEY, () -> BYTECODE);
+    Assert.assertEquals(PosixFilePermissions.fromString("rwx------"),
+                        Files.getPosixFilePermissions(cacheDir.toPath().resolve(KEY.substring(0, 2))));
+
+    // A directory that is writable by other users is refused
+    for (String permissions : Arrays.asList("rwxrwxr-x", "rwxr-xrwx")) {
+      Files.setPosixFilePermissions(cacheDir.toPath(), PosixFilePermissions.fromString(permissions));
+      Assert.assertNull(SparkClassRewriteCache.create(cacheDir.getAbsolutePath()));
+      try {
+        new SparkClassRewriteCache(cacheDir);
+        Assert.fail("Expected the cache directory to be refused");
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testRewriter() throws IOException {
+    File cacheDir = tmpFolder.newFolder();
+    SparkClassRewriteCache cache = new SparkClassRewriteCache(cacheDir);
+    String className = SparkContext.class.getName();
+
+    byte[] expected = rewrite(new SparkClassRewriter(this::openResource, false, true, false, null), className);
+    Assert.assertNotNull(expected);
+    for (int i = 0; i < 2; i++) {
+      byte[] bytecode = rewrite(new SparkClassRewriter(this::openResource, false, true, false, cache), className);
+      Assert.assertArrayEquals(expected, bytecode);
+      Assert.assertEquals(1, listEntries(cacheDir).size());
+    }
+
+    // Rewrites in distributed mode are cached separately
+    rewrite(new SparkClassRewriter(this::openResource, false, true, true, cache), className);
+    Assert.assertEquals(2, listEntries(cacheDir).size());
+  }
+
+  @Test
+  public void testWarmer() throws Exception {
+    File cacheDir = tmpFolder.newFolder();
+    File sparkCoreJar = new File(SparkContext.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+
+    int count = SparkClassRewriteCacheWarmer.warm(new SparkClassRewriteCache(cacheDir),
+                                                  Collections.singletonList(sparkCoreJar));
+    Assert.assertTrue(count > 0);
+    // Every class is rewritten for both local and distributed mode
+    Assert.assertEquals(count * 2, listEntries(cacheDir).size());
+
+    // The rewriter finds the classes in the cache
+    SparkClassRewriteCache cache = new SparkClassRewriteCache(cacheDir);
+    SparkClassRewriter rewriter = new SparkClassRewriter(this::openResource, false, true, false, cache);
+    Assert.assertNotNull(rewrite(rewriter, SparkContext.class.getName()));
+    Assert.assertEquals(count * 2, listEntries(cacheDir).size());
+  }
+
+  private InputStream openResource(String name) {
+    return getClass().getClassLoader().getResourceAsStream(name);
+  }
+
+  private byte[] rewrite(SparkClassRewriter rewriter, String className) throws IOException {
+    try (InputStream is = openResource(className.replace('.', '/') + ".class")) {
+      return rewriter.rewriteClass(className, is);
+    }
+  }
+
+  private List<Path> listEntries(File cacheDir) throws IOException {
+    try (Stream<Path> paths = Files.walk(cacheDir.toPath())) {
+      return paths.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+  }
+
+  private static byte[] failRewrite() {
+    throw new AssertionError("Class should not be rewritten");
+  }
+}
@@ -17,12 +17,16 @@
 package io.cdap.cdap.app.runtime.spark.serializer;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.format.StructuredRecordStringConverter;
+import io.cdap.cdap.internal.io.ASMStructuredRecordDatumWriter;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -34,6 +38,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -251,6 +256,122 @@ public class KryoSerializerTest {
     Assert.assertSame(newRecord.getSchema(), newRecord2.getSchema());
   }
 
+  @Test
+  public void testStructuredRecordSchemaRef() throws IOException {
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      records.add(StructuredRecord.builder(schema).set("id", i).set("name", "name" + i).build());
+    }
+
+    Kryo kryo = new Kryo();
+    kryo.addDefaultSerializer(StructuredRecord.class, StructuredRecordSerializer.class);
+
+    byte[] singleBytes = serialize(kryo, records.get(0));
+    byte[] listBytes = serialize(kryo, records);
+
+    // The schema is only written inline once in the object graph
+    int schemaSize = schema.toString().length();
+    Assert.assertTrue(listBytes.length < singleBytes.length + records.size() * 32);
+    Assert.assertTrue(singleBytes.length > schemaSize);
+
+    List<?> newRecords = kryo.readObject(new Input(listBytes), ArrayList.class);
+    Assert.assertEquals(records.size(), newRecords.size());
+    for (int i = 0; i < records.size(); i++) {
+      StructuredRecord newRecord = (StructuredRecord) newRecords.get(i);
+      Assert.assertEquals(StructuredRecordStringConverter.toJsonString(records.get(i)),
+                          StructuredRecordStringConverter.toJsonString(newRecord));
+      Assert.assertSame(((StructuredRecord) newRecords.get(0)).getSchema(), newRecord.getSchema());
+    }
+
+    // Each top level object is self-contained
+    Input input = new Input(serialize(kryo, records.get(1)));
+    Assert.assertEquals(StructuredRecordStringConverter.toJsonString(records.get(1)),
+                        StructuredRecordStringConverter.toJsonString(kryo.readObject(input, StructuredRecord.class)));
+  }
+
+  @Test
+  public void testStructuredRecordSharedSchema() throws IOException {
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+    StructuredRecord record = StructuredRecord.builder(schema).set("id", 1).set("name", "name").build();
+    String sharedSchemas = new Gson().toJson(Collections.singletonList(schema.toString()));
+
+    Kryo kryo = new Kryo();
+    kryo.addDefaultSerializer(StructuredRecord.class, new StructuredRecordSerializer(sharedSchemas));
+
+    // Only the schema hash is written
+    byte[] bytes = serialize(kryo, record);
+    Assert.assertTrue(bytes.length < 32);
+    StructuredRecord newRecord = kryo.readObject(new Input(bytes), StructuredRecord.class);
+    Assert.assertEquals(StructuredRecordStringConverter.toJsonString(record),
+                        StructuredRecordStringConverter.toJsonString(newRecord));
+
+    // Reading without the shared schema fails
+    Kryo otherKryo = new Kryo();
+    otherKryo.addDefaultSerializer(StructuredRecord.class, new StructuredRecordSerializer(null));
+    try {
+      otherKryo.readObject(new Input(bytes), StructuredRecord.class);
+      Assert.fail("Expected KryoException");
+    } catch (KryoException e) {
+      // expected
+    }
+
+    // Records with other schemas are written inline
+    Schema otherSchema = Schema.recordOf("other", Schema.Field.of("id", Schema.of(Schema.Type.INT)));
+    StructuredRecord otherRecord = StructuredRecord.builder(otherSchema).set("id", 2).build();
+    bytes = serialize(kryo, otherRecord);
+    Assert.assertTrue(bytes.length > otherSchema.toString().length());
+    Assert.assertEquals(StructuredRecordStringConverter.toJsonString(otherRecord),
+                        StructuredRecordStringConverter.toJsonString(
+                          otherKryo.readObject(new Input(bytes), StructuredRecord.class)));
+  }
+
+  @Test
+  public void testStructuredRecordLegacyFormat() throws IOException {
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      records.add(StructuredRecord.builder(schema).set("id", i).set("name", "name" + i).build());
+    }
+
+    // Records written in the format of earlier versions, with and without Kryo reference tracking
+    for (boolean references : Arrays.asList(true, false)) {
+      Kryo legacyKryo = new Kryo();
+      legacyKryo.setReferences(references);
+      legacyKryo.addDefaultSerializer(StructuredRecord.class, new LegacyStructuredRecordSerializer());
+      Kryo kryo = new Kryo();
+      kryo.setReferences(references);
+      kryo.addDefaultSerializer(StructuredRecord.class, StructuredRecordSerializer.class);
+
+      StructuredRecord newRecord = kryo.readObject(new Input(serialize(legacyKryo, records.get(0))),
+                                                   StructuredRecord.class);
+      Assert.assertEquals(StructuredRecordStringConverter.toJsonString(records.get(0)),
+                          StructuredRecordStringConverter.toJsonString(newRecord));
+
+      // In a list, the schema hash strings after the first one are written as Kryo references
+      List<?> newRecords = kryo.readObject(new Input(serialize(legacyKryo, records)), ArrayList.class);
+      Assert.assertEquals(records.size(), newRecords.size());
+      for (int i = 0; i < records.size(); i++) {
+        Assert.assertEquals(StructuredRecordStringConverter.toJsonString(records.get(i)),
+                            StructuredRecordStringConverter.toJsonString((StructuredRecord) newRecords.get(i)));
+      }
+    }
+  }
+
+  private byte[] serialize(Kryo kryo, Object object) {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (Output output = new Output(bos)) {
+      kryo.writeObject(output, object);
+    }
+    return bos.toByteArray();
+  }
+
   @Test
   public void testAllTypesChecked() {
     Schema schema = createSchema();
@@ -300,4 +421,26 @@ public class KryoSerializerTest {
                            .collect(Collectors.toList())
     );
   }
+
+  /**
+   * The {@link StructuredRecord} serializer of earlier versions.
+   */
+  private static final class LegacyStructuredRecordSerializer extends Serializer<StructuredRecord> {
+
+    @Override
+    public void write(Kryo kryo, Output output, StructuredRecord record) {
+      kryo.writeObject(output, record.getSchema().getSchemaHash().toString());
+      kryo.writeObject(output, record.getSchema().toString());
+      try {
+        new ASMStructuredRecordDatumWriter().encode(record, new KryoEncoder(output));
+      } catch (IOException e) {
+        throw new KryoException(e);
+      }
+    }
+
+    @Override
+    public StructuredRecord read(Kryo kryo, Input input, Class<StructuredRecord> type) {
+      throw new UnsupportedOperationException();
+    }
+  }
 }
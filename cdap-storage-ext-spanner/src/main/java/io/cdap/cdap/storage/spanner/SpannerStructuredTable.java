@@ -44,6 +44,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -96,8 +97,67 @@ public class SpannerStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public void multiUpsert(Collection<? extends Collection<Field<?>>> multiFields) throws InvalidFieldException {
+    // Find out which of the rows already exist with a single read, and then send all the inserts and updates
+    // in one batch DML request. Batch DML is used instead of mutations, since mutations are only applied on commit
+    // and would not be visible to subsequent reads in the same transaction.
+    List<Key> keys = new ArrayList<>();
+    for (Collection<Field<?>> fields : multiFields) {
+      Map<String, Field<?>> fieldMap = fields.stream().collect(Collectors.toMap(Field::getName, Function.identity()));
+      List<Field<?>> primaryKeyFields = new ArrayList<>();
+      for (String key : schema.getPrimaryKeys()) {
+        Field<?> field = fieldMap.get(key);
+        if (field == null) {
+          throw new InvalidFieldException(schema.getTableId(), key, "Missing primary key field " + key);
+        }
+        fieldValidator.validateField(field);
+        primaryKeyFields.add(field);
+      }
+      keys.add(getKey(primaryKeyFields));
+    }
+    if (keys.isEmpty()) {
+      return;
+    }
+
+    Set<Key> existingKeys = new HashSet<>();
+    KeySet.Builder keySet = KeySet.newBuilder();
+    keys.forEach(keySet::addKey);
+    try (ResultSet resultSet = transactionContext.read(schema.getTableId().getName(), keySet.build(),
+                                                       schema.getPrimaryKeys())) {
+      while (resultSet.next()) {
+        existingKeys.add(getKey(new SpannerStructuredRow(schema, resultSet.getCurrentRowAsStruct()).getPrimaryKeys()));
+      }
+    }
+
+    List<Statement> statements = new ArrayList<>();
+    Iterator<Key> keyIterator = keys.iterator();
+    for (Collection<Field<?>> fields : multiFields) {
+      // A row appearing more than once is inserted the first time and updated afterwards
+      Statement statement = existingKeys.add(keyIterator.next()) ? getInsertStatement(fields)
+        : getUpdateStatement(fields);
+      if (statement != null) {
+        statements.add(statement);
+      }
+    }
+    if (!statements.isEmpty()) {
+      transactionContext.batchUpdate(statements);
+    }
+  }
+
   @Override
   public void update(Collection<Field<?>> fields) throws InvalidFieldException {
+    Statement statement = getUpdateStatement(fields);
+    if (statement != null) {
+      transactionContext.executeUpdate(statement);
+    }
+  }
+
+  /**
+   * Returns the UPDATE {@link Statement} for the given fields, or {@code null} if there is no column to update.
+   */
+  @Nullable
+  private Statement getUpdateStatement(Collection<Field<?>> fields) throws InvalidFieldException {
     List<Field<?>> primaryKeyFields = new ArrayList<>();
     List<Field<?>> updateFields = new ArrayList<>();
     Set<String> fieldNames = new HashSet<>();
@@ -118,19 +178,21 @@ public class SpannerStructuredTable implements StructuredTable {
                                                       "primary keys %s", fieldNames, schema.getPrimaryKeys()));
     }
 
+    if (updateFields.isEmpty()) {
+      return null;
+    }
+
     String sql = "UPDATE " + escapeName(schema.getTableId().getName())
       + " SET " + updateFields.stream().map(this::fieldToParam).collect(Collectors.joining(", "))
       + " WHERE " + primaryKeyFields.stream().map(this::fieldToParam).collect(Collectors.joining(" AND "));
 
     LOG.trace("Updating row: {}", sql);
 
-    Statement statement = fields.stream()
+    return fields.stream()
       .reduce(Statement.newBuilder(sql),
               (builder, field) -> builder.bind(field.getName()).to(getValue(field)),
               (builder1, builder2) -> builder1)
       .build();
-
-    transactionContext.executeUpdate(statement);
   }
 
   @Override
@@ -287,17 +349,30 @@ public class SpannerStructuredTable implements StructuredTable {
 
   @Override
   public void delete(Collection<Field<?>> keys) throws InvalidFieldException {
+    transactionContext.executeUpdate(getDeleteStatement(keys));
+  }
+
+  @Override
+  public void multiDelete(Collection<? extends Collection<Field<?>>> multiKeys) throws InvalidFieldException {
+    List<Statement> statements = new ArrayList<>();
+    for (Collection<Field<?>> keys : multiKeys) {
+      statements.add(getDeleteStatement(keys));
+    }
+    if (!statements.isEmpty()) {
+      transactionContext.batchUpdate(statements);
+    }
+  }
+
+  private Statement getDeleteStatement(Collection<Field<?>> keys) throws InvalidFieldException {
     fieldValidator.validatePrimaryKeys(keys, false);
     String sql = "DELETE FROM " + escapeName(schema.getTableId().getName()) + " WHERE "
       + keys.stream().map(f -> escapeName(f.getName()) + " = @" + f.getName()).collect(Collectors.joining(" AND "));
 
-    Statement statement = keys.stream()
+    return keys.stream()
       .reduce(Statement.newBuilder(sql),
               (builder, field) -> builder.bind(field.getName()).to(getValue(field)),
               (builder1, builder2) -> builder1)
       .build();
-
-    transactionContext.executeUpdate(statement);
   }
 
   @Override
@@ -424,6 +499,10 @@ public class SpannerStructuredTable implements StructuredTable {
   }
 
   private void insert(Collection<Field<?>> fields) throws InvalidFieldException {
+    transactionContext.executeUpdate(getInsertStatement(fields));
+  }
+
+  private Statement getInsertStatement(Collection<Field<?>> fields) throws InvalidFieldException {
     List<Field<?>> insertFields = new ArrayList<>();
     for (Field<?> field : fields) {
       fieldValidator.validateField(field);
@@ -437,13 +516,11 @@ public class SpannerStructuredTable implements StructuredTable {
 
     LOG.trace("Inserting row: {}", sql);
 
-    Statement statement = fields.stream()
+    return fields.stream()
       .reduce(Statement.newBuilder(sql),
               (builder, field) -> builder.bind(field.getName()).to(getValue(field)),
               (builder1, builder2) -> builder1)
       .build();
-
-    transactionContext.executeUpdate(statement);
   }
 
   private Key createKey(Collection<Field<?>> fields) {
@@ -28,6 +28,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -39,6 +40,8 @@ import java.util.stream.Collectors;
  *   <li>fields - the schema of the table, consists of the column names and their types</li>
  *   <li>primaryKeys - the primary key for each row</li>
  *   <li>indexes - the columns to index on. Only one column can be part of an index</li>
+ *   <li>cacheTtlMillis - optional, how long rows read by primary key can be cached by the storage layer.
+ *   Rows are never cached if it is {@code 0}</li>
  * </ul>
  */
 @Beta
@@ -51,16 +54,18 @@ public final class StructuredTableSpecification {
   private final List<FieldType> fieldTypes;
   private final List<String> primaryKeys;
   private final List<String> indexes;
+  private final long cacheTtlMillis;
 
   /**
    * Use {@link Builder} to create instances.
    */
   private StructuredTableSpecification(StructuredTableId tableId, List<FieldType> fieldTypes, List<String> primaryKeys,
-                                       List<String> indexes) {
+                                       List<String> indexes, long cacheTtlMillis) {
     this.tableId = tableId;
     this.fieldTypes = Collections.unmodifiableList(fieldTypes);
     this.primaryKeys = Collections.unmodifiableList(primaryKeys);
     this.indexes = Collections.unmodifiableList(indexes);
+    this.cacheTtlMillis = cacheTtlMillis;
   }
 
   /**
@@ -91,6 +96,13 @@ public final class StructuredTableSpecification {
     return indexes;
   }
 
+  /**
+   * @return the number of milliseconds rows of the table can be cached for, or {@code 0} if rows are not cached
+   */
+  public long getCacheTtlMillis() {
+    return cacheTtlMillis;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -103,12 +115,13 @@ public final class StructuredTableSpecification {
     return Objects.equals(tableId, that.tableId) &&
       Objects.equals(fieldTypes, that.fieldTypes) &&
       Objects.equals(primaryKeys, that.primaryKeys) &&
-      Objects.equals(indexes, that.indexes);
+      Objects.equals(indexes, that.indexes) &&
+      cacheTtlMillis == that.cacheTtlMillis;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(tableId, fieldTypes, primaryKeys, indexes);
+    return Objects.hash(tableId, fieldTypes, primaryKeys, indexes, cacheTtlMillis);
   }
 
   @Override
@@ -118,6 +131,7 @@ public final class StructuredTableSpecification {
       ", fieldTypes=" + fieldTypes +
       ", primaryKeys=" + primaryKeys +
       ", indexes=" + indexes +
+      ", cacheTtlMillis=" + cacheTtlMillis +
       '}';
   }
 
@@ -129,6 +143,7 @@ public final class StructuredTableSpecification {
     private List<FieldType> fieldTypes;
     private List<String> primaryKeys;
     private List<String> indexes;
+    private long cacheTtlMillis;
 
     /**
      * Create a builder that is initialized with all the information from an existing specification.
@@ -147,6 +162,7 @@ public final class StructuredTableSpecification {
       this.fieldTypes = new ArrayList<>(existing.getFieldTypes());
       this.primaryKeys = new ArrayList<>(existing.getPrimaryKeys());
       this.indexes = new ArrayList<>(existing.getIndexes());
+      this.cacheTtlMillis = existing.getCacheTtlMillis();
     }
 
     /**
@@ -193,13 +209,26 @@ public final class StructuredTableSpecification {
       return this;
     }
 
+    /**
+     * Allow rows read by primary key to be cached by the storage layer for the given amount of time. Writes done
+     * through the same process invalidate the cached rows immediately, while writes done by other processes
+     * only become visible after the cached rows expire. By default rows are not cached.
+     * @param ttl how long a row can be cached for. Rows are not cached if it is {@code 0}
+     * @param unit the unit of the ttl
+     * @return Builder instance
+     */
+    public Builder withCacheTtl(long ttl, TimeUnit unit) {
+      this.cacheTtlMillis = unit.toMillis(ttl);
+      return this;
+    }
+
     /**
      * Build the table specification
      * @return the table specification
      */
     public StructuredTableSpecification build() throws InvalidFieldException {
       validate();
-      return new StructuredTableSpecification(tableId, fieldTypes, primaryKeys, indexes);
+      return new StructuredTableSpecification(tableId, fieldTypes, primaryKeys, indexes, cacheTtlMillis);
     }
 
     private void validate() throws InvalidFieldException {
@@ -223,6 +252,10 @@ public final class StructuredTableSpecification {
         throw new IllegalArgumentException("No primary keys specified for the table " + tableId);
       }
 
+      if (cacheTtlMillis < 0) {
+        throw new IllegalArgumentException("Cache TTL cannot be negative for the table " + tableId);
+      }
+
       // Validate the field names are made up of valid characters
       for (FieldType fieldType : fieldTypes) {
         if (!IDENTIFIER_NAME_PATTERN.matcher(fieldType.getName()).matches()) {
@@ -174,6 +174,99 @@ public abstract class StructuredTableTest {
     Assert.assertEquals(new HashSet<>(keys), result);
   }
 
+  @Test
+  public void testMultiUpsertDelete() throws Exception {
+    int max = 10;
+
+    // Write rows with different set of columns, with the first row written twice
+    List<Collection<Field<?>>> rows = new ArrayList<>();
+    for (int i = 0; i < max; i++) {
+      List<Field<?>> fields = new ArrayList<>(Arrays.asList(Fields.intField(KEY, i), Fields.longField(KEY2, (long) i),
+                                                            Fields.stringField(STRING_COL, VAL + i)));
+      if (i % 2 == 0) {
+        fields.add(Fields.doubleField(DOUBLE_COL, (double) i));
+      }
+      rows.add(fields);
+    }
+    rows.add(Arrays.asList(Fields.intField(KEY, 0), Fields.longField(KEY2, 0L), Fields.stringField(STRING_COL, VAL)));
+
+    getTransactionRunner().run(context -> context.getTable(SIMPLE_TABLE).multiUpsert(rows));
+
+    List<Collection<Field<?>>> expected = new ArrayList<>(rows.subList(0, max));
+    expected.set(0, Arrays.asList(Fields.intField(KEY, 0), Fields.longField(KEY2, 0L),
+                                  Fields.stringField(STRING_COL, VAL), Fields.doubleField(DOUBLE_COL, 0d)));
+    for (int i = 1; i < max; i++) {
+      if (i % 2 != 0) {
+        List<Field<?>> fields = new ArrayList<>(expected.get(i));
+        fields.add(Fields.doubleField(DOUBLE_COL, null));
+        expected.set(i, fields);
+      }
+    }
+    List<Collection<Field<?>>> actual = TransactionRunners.run(getTransactionRunner(), context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      try (CloseableIterator<StructuredRow> iterator = table.scan(Range.all(), max * 2)) {
+        return convertRowsToFields(iterator, Arrays.asList(KEY, KEY2, STRING_COL, DOUBLE_COL));
+      }
+    });
+    Assert.assertEquals(expected, actual);
+
+    // Writing a row without all the primary keys should fail, without any row written
+    List<Collection<Field<?>>> invalidRows = Arrays.asList(
+      Arrays.asList(Fields.intField(KEY, max), Fields.longField(KEY2, (long) max)),
+      Collections.singletonList(Fields.intField(KEY, max + 1)));
+    try {
+      TransactionRunners.run(getTransactionRunner(), context -> {
+        context.getTable(SIMPLE_TABLE).multiUpsert(invalidRows);
+      }, InvalidFieldException.class);
+      Assert.fail("Expected InvalidFieldException");
+    } catch (InvalidFieldException e) {
+      // expected
+    }
+    Assert.assertEquals(max, (long) TransactionRunners.run(getTransactionRunner(), context -> {
+      return context.getTable(SIMPLE_TABLE).count(Collections.singleton(Range.all()));
+    }));
+
+    // Delete all the even rows
+    List<Collection<Field<?>>> keys = new ArrayList<>();
+    for (int i = 0; i < max; i += 2) {
+      keys.add(Arrays.asList(Fields.intField(KEY, i), Fields.longField(KEY2, (long) i)));
+    }
+    getTransactionRunner().run(context -> context.getTable(SIMPLE_TABLE).multiDelete(keys));
+
+    List<Collection<Field<?>>> remaining = TransactionRunners.run(getTransactionRunner(), context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      try (CloseableIterator<StructuredRow> iterator = table.scan(Range.all(), max)) {
+        return convertRowsToFields(iterator, Arrays.asList(KEY, KEY2));
+      }
+    });
+    List<Collection<Field<?>>> expectedRemaining = new ArrayList<>();
+    for (int i = 1; i < max; i += 2) {
+      expectedRemaining.add(Arrays.asList(Fields.intField(KEY, i), Fields.longField(KEY2, (long) i)));
+    }
+    Assert.assertEquals(expectedRemaining, remaining);
+  }
+
+  @Test
+  public void testMultiUpsertManyRows() throws Exception {
+    // Use more rows than a single batch of the batching implementations
+    int numRows = 2500;
+    List<Collection<Field<?>>> rows = new ArrayList<>(numRows);
+    for (int i = 0; i < numRows; i++) {
+      rows.add(Arrays.asList(Fields.intField(KEY, i), Fields.longField(KEY2, (long) i),
+                             Fields.stringField(STRING_COL, VAL + i), Fields.doubleField(DOUBLE_COL, (double) i),
+                             Fields.longField(LONG_COL, (long) i)));
+    }
+    getTransactionRunner().run(context -> context.getTable(SIMPLE_TABLE).multiUpsert(rows));
+
+    List<Collection<Field<?>>> actual = TransactionRunners.run(getTransactionRunner(), context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      try (CloseableIterator<StructuredRow> iterator = table.scan(Range.all(), numRows + 1)) {
+        return convertRowsToFields(iterator, Arrays.asList(KEY, KEY2, STRING_COL, DOUBLE_COL, LONG_COL));
+      }
+    });
+    Assert.assertEquals(rows, actual);
+  }
+
   @Test
   public void testSimpleScan() throws Exception {
     int max = 100;
@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging;
+
+import io.cdap.cdap.messaging.data.RawMessage;
+import io.netty.buffer.ByteBuf;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Helper class for the length-prefixed binary framing of messages, which is an alternative to the
+ * {@link Schemas.V1.ConsumeResponse} avro encoding for responding to fetch requests.
+ *
+ * Each message is encoded as
+ *
+ * <pre>
+ *   [id length (int)][payload length (int)][id bytes][payload bytes]
+ * </pre>
+ *
+ * and the end of the messages is marked by an id length of {@code -1}. Since the payload is written as is,
+ * the server can send stored payloads without re-encoding them.
+ */
+public final class MessageFrames {
+
+  /**
+   * The content type for the binary framed messages.
+   */
+  public static final String CONTENT_TYPE = "application/x-cdap-tms-frames";
+
+  /**
+   * Size of the lengths prefix of each frame.
+   */
+  public static final int LENGTHS_SIZE = 8;
+
+  private static final int END_OF_MESSAGES = -1;
+
+  private MessageFrames() {
+    // protect the constructor
+  }
+
+  /**
+   * Returns the size of the frame header for the given message, which is the lengths prefix plus the message id.
+   */
+  public static int getHeaderSize(RawMessage message) {
+    return LENGTHS_SIZE + message.getId().length;
+  }
+
+  /**
+   * Writes the frame header of the given message to the given {@link ByteBuf}.
+   * The payload of the message should be written right after the header.
+   */
+  public static void writeHeader(RawMessage message, ByteBuf buffer) {
+    buffer.writeInt(message.getId().length);
+    buffer.writeInt(message.getPayload().length);
+    buffer.writeBytes(message.getId());
+  }
+
+  /**
+   * Writes the end of messages marker to the given {@link ByteBuf}.
+   */
+  public static void writeEnd(ByteBuf buffer) {
+    buffer.writeInt(END_OF_MESSAGES);
+  }
+
+  /**
+   * A reader to decode framed messages from an {@link InputStream}.
+   */
+  public static final class Reader {
+
+    private final DataInputStream input;
+    private boolean ended;
+
+    public Reader(InputStream input) {
+      this.input = new DataInputStream(input);
+    }
+
+    /**
+     * Reads the next message.
+     *
+     * @return the next {@link RawMessage} or {@code null} if there is no more message
+     * @throws IOException if failed to read or if the stream ended before the end of messages marker
+     */
+    @Nullable
+    public RawMessage next() throws IOException {
+      if (ended) {
+        return null;
+      }
+      int idLength = input.readInt();
+      if (idLength == END_OF_MESSAGES) {
+        ended = true;
+        return null;
+      }
+      int payloadLength = input.readInt();
+      if (idLength < 0 || payloadLength < 0) {
+        throw new IOException("Invalid message frame with id length " + idLength
+                                + " and payload length " + payloadLength);
+      }
+
+      // Read directly into arrays of the exact size, which are handed to the caller without further copying
+      byte[] id = new byte[idLength];
+      byte[] payload = new byte[payloadLength];
+      try {
+        input.readFully(id);
+        input.readFully(payload);
+      } catch (EOFException e) {
+        throw new IOException("Incomplete message frame", e);
+      }
+      return new RawMessage(id, payload);
+    }
+  }
+}
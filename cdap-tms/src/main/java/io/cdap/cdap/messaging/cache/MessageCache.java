@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017 Cask Data, Inc.
+ * Copyright © 2017-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -63,7 +63,7 @@ import javax.annotation.Nullable;
  *
  * @param <T> type of entry stored in the cache
  */
-public class MessageCache<T> {
+public class MessageCache<T> implements MessageEntryCache<T> {
 
   private static final String METRICS_WEIGHT = "cache.weight";
   private static final String METRICS_ENTRIES_ADDED = "cache.entries.added";
@@ -106,6 +106,7 @@ public class MessageCache<T> {
   /**
    * Returns the {@link Comparator} used by this cache.
    */
+  @Override
   public Comparator<T> getComparator() {
     return comparator;
   }
@@ -119,6 +120,7 @@ public class MessageCache<T> {
    * @throws IllegalArgumentException if the entries provided are not in strictly increasing order
    *                                  or not larger existing cached entries
    */
+  @Override
   public void addAll(Iterator<T> entries) {
     if (!adding.compareAndSet(false, true)) {
       // This is to guard against bug, otherwise this shouldn't happen
@@ -189,6 +191,7 @@ public class MessageCache<T> {
    * @param limit maximum number of entries to fetch
    * @return a {@link Scanner} for accessing to the fetched entries
    */
+  @Override
   public Scanner<T> scan(T startEntry, boolean includeStart, int limit, MessageFilter<T> filter) {
     List<T> entries = new LinkedList<>();
 
@@ -238,6 +241,7 @@ public class MessageCache<T> {
    * @param endEntry the ending entry for the update to end (inclusive)
    * @param updater a {@link EntryUpdater} to update the content of a entry
    */
+  @Override
   public void updateEntries(T startEntry, T endEntry, EntryUpdater<T> updater) {
     CacheEntry<T> startCacheEntry = new CacheEntry<>(startEntry, 0);
 
@@ -280,6 +284,7 @@ public class MessageCache<T> {
    * Clears the cache. The caller is responsible to make sure there is no concurrent call to the
    * {@link #addAll(Iterator)} method.
    */
+  @Override
   public void clear() {
     // To clear the cache, first set the limit to 0, the reset it back to proper limit
     Limits oldLimits = limits.get();
@@ -292,6 +297,7 @@ public class MessageCache<T> {
    *
    * @param limits the new limits for this cache.
    */
+  @Override
   public void resize(Limits limits) {
     cacheLock.writeLock().lock();
     try {
@@ -305,6 +311,7 @@ public class MessageCache<T> {
   /**
    * Returns the current soft and hard limits of this cache.
    */
+  @Override
   public Limits getLimits() {
     return limits.get();
   }
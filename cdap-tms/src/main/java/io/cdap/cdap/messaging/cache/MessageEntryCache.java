@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.cache;
+
+import io.cdap.cdap.messaging.store.MessageFilter;
+
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+
+/**
+ * A cache of ordered message entries, shared between the single publisher and the fetchers of the same topic.
+ * See {@link MessageCache} for the on-heap implementation and the meaning of the {@link MessageCache.Limits}.
+ *
+ * @param <T> type of entry stored in the cache
+ */
+public interface MessageEntryCache<T> {
+
+  /**
+   * Returns the {@link Comparator} used by this cache.
+   */
+  Comparator<T> getComparator();
+
+  /**
+   * Adds a list of entries to the cache. The entries provided must be in strictly increasing order and should be
+   * larger than existing entries in the cache. Also, this method doesn't allow concurrent invocation.
+   *
+   * @param entries a {@link Iterator} to provide entries to be added to the cache
+   * @throws ConcurrentModificationException if called by multiple threads concurrently
+   * @throws IllegalArgumentException if the entries provided are not in strictly increasing order
+   *                                  or not larger existing cached entries
+   */
+  void addAll(Iterator<T> entries);
+
+  /**
+   * Creates a {@link MessageCache.Scanner} for fetching cached entries in ascending order.
+   *
+   * @param startEntry the entry to start fetching from
+   * @param includeStart {@code true} to include the startEntry in the resulting scanner if it exists in the cache
+   * @param limit maximum number of entries to fetch
+   * @param filter a {@link MessageFilter} for filtering the entries
+   * @return a {@link MessageCache.Scanner} for accessing to the fetched entries
+   */
+  MessageCache.Scanner<T> scan(T startEntry, boolean includeStart, int limit, MessageFilter<T> filter);
+
+  /**
+   * Updates entries in the cache. Update to each entry shouldn't change the ordering of the entry based on the
+   * {@link Comparator} of this cache.
+   *
+   * @param startEntry the starting entry for the update to start (inclusive)
+   * @param endEntry the ending entry for the update to end (inclusive)
+   * @param updater a {@link MessageCache.EntryUpdater} to update the content of a entry
+   */
+  void updateEntries(T startEntry, T endEntry, MessageCache.EntryUpdater<T> updater);
+
+  /**
+   * Clears the cache. The caller is responsible to make sure there is no concurrent call to the
+   * {@link #addAll(Iterator)} method.
+   */
+  void clear();
+
+  /**
+   * Resize the cache limits.
+   *
+   * @param limits the new limits for this cache.
+   */
+  void resize(MessageCache.Limits limits);
+
+  /**
+   * Returns the current limits of this cache.
+   */
+  MessageCache.Limits getLimits();
+}
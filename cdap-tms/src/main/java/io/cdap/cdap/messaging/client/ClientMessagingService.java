@@ -38,6 +38,7 @@ import io.cdap.cdap.common.internal.remote.RemoteClient;
 import io.cdap.cdap.common.internal.remote.RemoteClientFactory;
 import io.cdap.cdap.internal.io.ExposedByteArrayOutputStream;
 import io.cdap.cdap.messaging.MessageFetcher;
+import io.cdap.cdap.messaging.MessageFrames;
 import io.cdap.cdap.messaging.MessagingService;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.Schemas;
@@ -103,17 +104,26 @@ public final class ClientMessagingService implements MessagingService {
 
   private final RemoteClient remoteClient;
   private final boolean compressPayload;
+  private final boolean binaryFrames;
 
   @Inject
   public ClientMessagingService(CConfiguration cConf, RemoteClientFactory remoteClientFactory) {
-    this(remoteClientFactory, cConf.getBoolean(Constants.MessagingSystem.HTTP_COMPRESS_PAYLOAD));
+    this(remoteClientFactory, cConf.getBoolean(Constants.MessagingSystem.HTTP_COMPRESS_PAYLOAD),
+         cConf.getBoolean(Constants.MessagingSystem.HTTP_FETCH_BINARY_FRAMES));
   }
 
   @VisibleForTesting
   public ClientMessagingService(RemoteClientFactory remoteClientFactory, boolean compressPayload) {
+    this(remoteClientFactory, compressPayload, false);
+  }
+
+  @VisibleForTesting
+  public ClientMessagingService(RemoteClientFactory remoteClientFactory,
+                                boolean compressPayload, boolean binaryFrames) {
     this.remoteClient = remoteClientFactory.createRemoteClient(
       Constants.Service.MESSAGING_SERVICE, HTTP_REQUEST_CONFIG, "/v1/namespaces/");
     this.compressPayload = compressPayload;
+    this.binaryFrames = binaryFrames;
   }
 
   @Override
@@ -373,18 +383,24 @@ public final class ClientMessagingService implements MessagingService {
    * Verifies the content-type in the header matches with the required type.
    */
   private void verifyContentType(Map<String, ? extends Collection<String>> headers, String requiredContentType) {
+    if (!requiredContentType.equalsIgnoreCase(getContentType(headers))) {
+      throw new IllegalArgumentException("Only " + requiredContentType + " content type is support.");
+    }
+  }
+
+  /**
+   * Returns the content-type in the header or {@code null} if it is absent.
+   */
+  @Nullable
+  private String getContentType(Map<String, ? extends Collection<String>> headers) {
     // Netty 4.1 has all headers set with lower case name
     // However, the cdap-http library doesn't handle it well, hence we iterate all headers instead of lookup in here
-    boolean passed = false;
     for (Map.Entry<String, ? extends Collection<String>> entry : headers.entrySet()) {
       if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(entry.getKey())) {
-        passed = requiredContentType.equalsIgnoreCase(Iterables.getFirst(entry.getValue(), null));
-        break;
+        return Iterables.getFirst(entry.getValue(), null);
       }
     }
-    if (!passed) {
-      throw new IllegalArgumentException("Only " + requiredContentType + " content type is support.");
-    }
+    return null;
   }
 
   /**
@@ -428,6 +444,10 @@ public final class ClientMessagingService implements MessagingService {
       if (compressPayload) {
         urlConn.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
       }
+      if (binaryFrames) {
+        // Prefer the binary frames, which avoids payload re-encoding on the server. Fallback to avro if not supported.
+        urlConn.setRequestProperty(HttpHeaders.ACCEPT, MessageFrames.CONTENT_TYPE + ", avro/binary");
+      }
 
       // Send the request
       Encoder encoder = EncoderFactory.get().directBinaryEncoder(urlConn.getOutputStream(), null);
@@ -452,6 +472,10 @@ public final class ClientMessagingService implements MessagingService {
           urlConn.disconnect();
         }
       }, "Failed to update topic " + topicId);
+
+      if (binaryFrames && MessageFrames.CONTENT_TYPE.equalsIgnoreCase(getContentType(urlConn.getHeaderFields()))) {
+        return readFrames(urlConn);
+      }
       verifyContentType(urlConn.getHeaderFields(), "avro/binary");
 
       // Decode the avro array manually instead of using DatumReader in order to support streaming decode.
@@ -499,6 +523,32 @@ public final class ClientMessagingService implements MessagingService {
       };
     }
 
+    /**
+     * Returns a {@link CloseableIterator} that reads messages encoded with {@link MessageFrames}
+     * from the given {@link HttpURLConnection}.
+     */
+    private CloseableIterator<RawMessage> readFrames(HttpURLConnection urlConn) throws IOException {
+      InputStream inputStream = decompressIfNeeded(urlConn, urlConn.getInputStream());
+      MessageFrames.Reader reader = new MessageFrames.Reader(inputStream);
+      return new AbstractCloseableIterator<RawMessage>() {
+        @Override
+        protected RawMessage computeNext() {
+          try {
+            RawMessage message = reader.next();
+            return message == null ? endOfData() : message;
+          } catch (IOException e) {
+            throw Throwables.propagate(e);
+          }
+        }
+
+        @Override
+        public void close() {
+          Closeables.closeQuietly(inputStream);
+          urlConn.disconnect();
+        }
+      };
+    }
+
     /**
      * Based on the given {@link HttpURLConnection} content encoding,
      * optionally wrap the given {@link InputStream} with either gzip or deflate decompression.
@@ -28,6 +28,7 @@ import io.cdap.cdap.common.io.ByteBuffers;
 import io.cdap.cdap.common.logging.LogSamplers;
 import io.cdap.cdap.common.logging.Loggers;
 import io.cdap.cdap.messaging.MessageFetcher;
+import io.cdap.cdap.messaging.MessageFrames;
 import io.cdap.cdap.messaging.MessagingService;
 import io.cdap.cdap.messaging.Schemas;
 import io.cdap.cdap.messaging.data.RawMessage;
@@ -37,8 +38,10 @@ import io.cdap.http.AbstractHttpHandler;
 import io.cdap.http.BodyProducer;
 import io.cdap.http.HttpResponder;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpRequest;
@@ -114,8 +117,15 @@ public final class FetchHandler extends AbstractHttpHandler {
     // Fetch the messages
     CloseableIterator<RawMessage> iterator = fetchMessages(datumReader.read(null, decoder), topicId);
     try {
-      responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
-                            new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+      // Respond with binary frames if the client accepts it, otherwise use the avro encoding
+      String accept = request.headers().get(HttpHeaderNames.ACCEPT);
+      if (accept != null && accept.contains(MessageFrames.CONTENT_TYPE)) {
+        responder.sendContent(HttpResponseStatus.OK, new MessageFramesBodyProducer(iterator, messageChunkSize),
+                              new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, MessageFrames.CONTENT_TYPE));
+      } else {
+        responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
+                              new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+      }
     } catch (Throwable t) {
       iterator.close();
       throw t;
@@ -156,6 +166,103 @@ public final class FetchHandler extends AbstractHttpHandler {
     return fetcher.fetch();
   }
 
+  /**
+   * Handles error raised while streaming messages back to client.
+   */
+  private static void handleStreamingError(@Nullable Throwable cause) {
+    // Since response header is already sent, there is nothing we can send back to client. Simply log the failure
+    if (cause instanceof SocketException
+      || cause instanceof ClosedChannelException
+      || (cause instanceof IOException && KNOWN_IO_EXCEPTION_MESSAGES.contains(cause.getMessage()))) {
+      // This can easily caused by client close connection prematurely. Don't want to flood the log.
+      LOG.trace("Connection closed by client prematurely while sending messages back to client", cause);
+    } else {
+      // Use sampling logger to log to avoid flooding the log if there is any systematic failure
+      SAMPLING_LOG.warn("Exception raised when sending messages back to client", cause);
+      // Also log a trace to provide a way to see every error if needed
+      LOG.trace("Exception raised when sending messages back to client", cause);
+    }
+  }
+
+  /**
+   * A {@link BodyProducer} to send back messages using the {@link MessageFrames} encoding.
+   * The message payloads are not copied. Instead, each chunk is a {@link CompositeByteBuf} that interleaves
+   * frame headers, which are written to a single pooled buffer, with the payload arrays wrapped as is.
+   */
+  private static class MessageFramesBodyProducer extends BodyProducer {
+
+    private final CloseableIterator<RawMessage> iterator;
+    private final List<RawMessage> messages;
+    private final int messageChunkSize;
+    private boolean ended;
+
+    MessageFramesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
+      this.iterator = iterator;
+      this.messages = new ArrayList<>();
+      this.messageChunkSize = messageChunkSize;
+    }
+
+    @Override
+    public ByteBuf nextChunk() {
+      // Already sent all messages, return empty to signal the end of response
+      if (ended) {
+        return Unpooled.EMPTY_BUFFER;
+      }
+
+      // Try to buffer up to buffer size
+      int size = 0;
+      int headersSize = 0;
+      messages.clear();
+      while (iterator.hasNext() && size < messageChunkSize) {
+        RawMessage message = iterator.next();
+        messages.add(message);
+        int headerSize = MessageFrames.getHeaderSize(message);
+        headersSize += headerSize;
+        size += headerSize + message.getPayload().length;
+      }
+
+      ended = !iterator.hasNext();
+      if (ended) {
+        headersSize += Integer.BYTES;
+      }
+
+      ByteBuf headers = ByteBufAllocator.DEFAULT.buffer(headersSize);
+      CompositeByteBuf chunk = ByteBufAllocator.DEFAULT.compositeBuffer(messages.size() * 2 + 1);
+      try {
+        for (RawMessage message : messages) {
+          int start = headers.writerIndex();
+          MessageFrames.writeHeader(message, headers);
+          chunk.addComponent(true, headers.retainedSlice(start, headers.writerIndex() - start));
+          if (message.getPayload().length > 0) {
+            chunk.addComponent(true, Unpooled.wrappedBuffer(message.getPayload()));
+          }
+        }
+        if (ended) {
+          int start = headers.writerIndex();
+          MessageFrames.writeEnd(headers);
+          chunk.addComponent(true, headers.retainedSlice(start, headers.writerIndex() - start));
+        }
+      } catch (Throwable t) {
+        chunk.release();
+        throw t;
+      } finally {
+        headers.release();
+      }
+      return chunk;
+    }
+
+    @Override
+    public void finished() {
+      iterator.close();
+    }
+
+    @Override
+    public void handleError(@Nullable Throwable cause) {
+      iterator.close();
+      handleStreamingError(cause);
+    }
+  }
+
   /**
    * A {@link BodyProducer} to encode and send back messages.
    * Instead of using GenericDatumWriter, we perform the array encoding manually so that we don't have to buffer
@@ -250,18 +357,7 @@ public final class FetchHandler extends AbstractHttpHandler {
     @Override
     public void handleError(@Nullable Throwable cause) {
       iterator.close();
-      // Since response header is already sent, there is nothing we can send back to client. Simply log the failure
-      if (cause instanceof SocketException
-        || cause instanceof ClosedChannelException
-        || (cause instanceof IOException && KNOWN_IO_EXCEPTION_MESSAGES.contains(cause.getMessage()))) {
-        // This can easily caused by client close connection prematurely. Don't want to flood the log.
-        LOG.trace("Connection closed by client prematurely while sending messages back to client", cause);
-      } else {
-        // Use sampling logger to log to avoid flooding the log if there is any systematic failure
-        SAMPLING_LOG.warn("Exception raised when sending messages back to client", cause);
-        // Also log a trace to provide a way to see every error if needed
-        LOG.trace("Exception raised when sending messages back to client", cause);
-      }
+      handleStreamingError(cause);
     }
   }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -26,11 +26,16 @@ import io.cdap.cdap.messaging.TopicMetadata;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
@@ -58,6 +63,13 @@ import javax.annotation.concurrent.ThreadSafe;
  *
  * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
  * get written and flushed.
+ *
+ * Alternatively, the writer can operate in group-commit mode, in which flush tasks running on an executor shared by
+ * all writers drain the queue instead of the caller threads. A flush is scheduled when the first request is added
+ * to an empty queue, and runs either when the max linger time since that request has passed, or as soon as the total
+ * payload size of the queued requests reaches the max batch bytes. At most one flush per writer is in progress at a
+ * time. Caller threads block until the batch that contains their requests is written. This trades a bounded amount
+ * of write latency for fewer and larger writes to the underlying storage.
  */
 @ThreadSafe
 final class ConcurrentMessageWriter implements Closeable {
@@ -67,6 +79,17 @@ final class ConcurrentMessageWriter implements Closeable {
   private final PendingStoreQueue pendingStoreQueue;
   private final AtomicBoolean writerFlag;
   private final AtomicBoolean closed;
+  // Set by close() while holding the writer flag. Requests enqueued after that are rejected.
+  private boolean writerClosed;
+
+  // Fields below are only used in group-commit mode. The mutable ones are guarded by the groupCommitQueue.
+  private final ScheduledExecutorService groupCommitExecutor;
+  private final Queue<PendingStoreRequest> groupCommitQueue;
+  private final long maxLingerNanos;
+  private final long maxBatchBytes;
+  private long queuedBytes;
+  private ScheduledFuture<?> flushFuture;
+  private boolean flushing;
 
   /**
    * Constructor with a {@link NoopMetricsContext}. This constructor should only be used in unit-testing.
@@ -88,6 +111,41 @@ final class ConcurrentMessageWriter implements Closeable {
     this.pendingStoreQueue = new PendingStoreQueue(metricsCollector);
     this.writerFlag = new AtomicBoolean();
     this.closed = new AtomicBoolean();
+    this.groupCommitExecutor = null;
+    this.groupCommitQueue = null;
+    this.maxLingerNanos = 0L;
+    this.maxBatchBytes = 0L;
+  }
+
+  /**
+   * Constructor for a writer that operates in group-commit mode.
+   *
+   * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
+   * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   * @param groupCommitExecutor the executor for running flush tasks, which is shared by all writers and is not
+   *                            shut down when this writer is closed
+   * @param maxLingerMillis maximum time in milliseconds that a request can wait in the queue for more requests
+   *                        to join the same batch
+   * @param maxBatchBytes maximum total payload size in bytes of a batch before it is written without waiting
+   *                      for the linger time
+   */
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                          ScheduledExecutorService groupCommitExecutor, long maxLingerMillis, long maxBatchBytes) {
+    if (maxLingerMillis < 0) {
+      throw new IllegalArgumentException("Max linger time cannot be negative: " + maxLingerMillis);
+    }
+    if (maxBatchBytes <= 0) {
+      throw new IllegalArgumentException("Max batch bytes must be positive: " + maxBatchBytes);
+    }
+    this.messagesWriter = messagesWriter;
+    this.metricsCollector = metricsCollector;
+    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector);
+    this.writerFlag = new AtomicBoolean();
+    this.closed = new AtomicBoolean();
+    this.groupCommitExecutor = groupCommitExecutor;
+    this.groupCommitQueue = new ArrayDeque<>();
+    this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+    this.maxBatchBytes = maxBatchBytes;
   }
 
   /**
@@ -106,14 +164,31 @@ final class ConcurrentMessageWriter implements Closeable {
       throw new IOException("Message writer is already closed");
     }
 
-    PendingStoreRequest pendingStoreRequest = new PendingStoreRequest(storeRequest, metadata);
-    pendingStoreQueue.enqueue(pendingStoreRequest);
+    PendingStoreRequest pendingStoreRequest;
+    if (groupCommitExecutor == null) {
+      pendingStoreRequest = new PendingStoreRequest(storeRequest, metadata);
+      pendingStoreQueue.enqueue(pendingStoreRequest);
+
+      metricsCollector.increment("persist.requested", 1L);
+
+      while (!pendingStoreRequest.isCompleted()) {
+        if (!tryWrite()) {
+          Thread.yield();
+        }
+      }
+    } else {
+      pendingStoreRequest = new PendingStoreRequest(storeRequest, metadata, true);
+      int queueSize = enqueueGroupCommit(pendingStoreRequest);
 
-    metricsCollector.increment("persist.requested", 1L);
+      metricsCollector.increment("persist.requested", 1L);
+      metricsCollector.gauge("persist.queue.size", queueSize);
 
-    while (!pendingStoreRequest.isCompleted()) {
-      if (!tryWrite()) {
-        Thread.yield();
+      try {
+        pendingStoreRequest.awaitCompletion();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for message to be written to "
+                                + storeRequest.getTopicId(), e);
       }
     }
 
@@ -144,27 +219,201 @@ final class ConcurrentMessageWriter implements Closeable {
       return false;
     }
     try {
-      pendingStoreQueue.persist(messagesWriter);
+      if (writerClosed) {
+        pendingStoreQueue.reject(new IOException("Message writer is already closed"));
+      } else {
+        pendingStoreQueue.persist(messagesWriter);
+      }
     } finally {
       writerFlag.set(false);
     }
     return true;
   }
 
+  /**
+   * Adds a request to the group-commit queue and makes sure a flush is scheduled for it.
+   *
+   * @return the number of requests in the queue after adding the given one
+   * @throws IOException if this writer is already closed
+   */
+  private int enqueueGroupCommit(PendingStoreRequest request) throws IOException {
+    synchronized (groupCommitQueue) {
+      // Checked under the same lock that close() takes to drain the queue, hence no request is left behind
+      if (closed.get()) {
+        throw new IOException("Message writer is already closed");
+      }
+      groupCommitQueue.add(request);
+      queuedBytes += request.getPayloadBytes();
+
+      // An in progress flush schedules the next one when it is done
+      if (!flushing) {
+        try {
+          if (flushFuture == null) {
+            scheduleFlush();
+          } else if (queuedBytes >= maxBatchBytes && flushFuture.getDelay(TimeUnit.NANOSECONDS) > 0
+            && flushFuture.cancel(false)) {
+            // The batch is full, don't wait for the linger time
+            scheduleFlush();
+          }
+        } catch (RejectedExecutionException e) {
+          groupCommitQueue.remove(request);
+          queuedBytes -= request.getPayloadBytes();
+          throw new IOException("Failed to schedule write of message to " + request.getTopicId(), e);
+        }
+      }
+      return groupCommitQueue.size();
+    }
+  }
+
+  /**
+   * Schedules a flush of the group-commit queue, which must be non-empty. It runs immediately if the queue already
+   * holds a full batch, otherwise when the first request in the queue has lingered long enough.
+   * This method must be called while holding the lock on the queue.
+   */
+  private void scheduleFlush() {
+    long delayNanos = 0L;
+    if (queuedBytes < maxBatchBytes) {
+      delayNanos = Math.max(0L, groupCommitQueue.peek().getEnqueueNanos() + maxLingerNanos - System.nanoTime());
+    }
+    flushFuture = groupCommitExecutor.schedule(this::flushGroupCommit, delayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Flush task of the group-commit mode. It writes one batch from the queue, and schedules the next flush if there
+   * are more requests.
+   */
+  private void flushGroupCommit() {
+    List<PendingStoreRequest> batch = new ArrayList<>();
+    long batchBytes;
+    synchronized (groupCommitQueue) {
+      // A flush that got cancelled after it started, or that runs after close, finds another one in progress
+      if (flushing) {
+        return;
+      }
+      flushing = true;
+      flushFuture = null;
+      batchBytes = pollBatch(batch, maxBatchBytes);
+    }
+
+    try {
+      writeBatch(batch, batchBytes);
+    } finally {
+      synchronized (groupCommitQueue) {
+        flushing = false;
+        if (!closed.get() && flushFuture == null && !groupCommitQueue.isEmpty()) {
+          scheduleFlush();
+        }
+        // Wake up close(), which waits for the flush in progress
+        groupCommitQueue.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Moves requests from the group-commit queue to the given batch until the total payload size reaches the given
+   * limit. This method must be called while holding the lock on the queue.
+   *
+   * @return the total payload size of the batch
+   */
+  private long pollBatch(List<PendingStoreRequest> batch, long limit) {
+    long batchBytes = 0L;
+    PendingStoreRequest request = groupCommitQueue.poll();
+    while (request != null) {
+      batch.add(request);
+      batchBytes += request.getPayloadBytes();
+      if (batchBytes >= limit) {
+        break;
+      }
+      request = groupCommitQueue.poll();
+    }
+    queuedBytes -= batchBytes;
+    return batchBytes;
+  }
+
+  /**
+   * Writes the given batch of requests with the {@link StoreRequestWriter} and completes all of them.
+   */
+  private void writeBatch(List<PendingStoreRequest> batch, long batchBytes) {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    metricsCollector.gauge("persist.batch.requests", batch.size());
+    metricsCollector.gauge("persist.batch.bytes", batchBytes);
+    metricsCollector.gauge("persist.queue.wait.ms",
+                           TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batch.get(0).getEnqueueNanos()));
+    metricsCollector.increment("persist.batch.count", 1L);
+
+    Throwable failure = null;
+    try {
+      messagesWriter.write(batch.iterator());
+    } catch (Throwable t) {
+      failure = t;
+    }
+    for (PendingStoreRequest request : batch) {
+      request.completed(failure);
+    }
+  }
+
   @Override
   public void close() throws IOException {
     if (!closed.compareAndSet(false, true)) {
       return;
     }
-    // Flush everything in the queue.
-    // When this thread can grab the writer flag, all pending write requests must be completed since the closed
-    // flag was already set to false.
-    while (!tryWrite()) {
+    if (groupCommitExecutor != null) {
+      closeGroupCommit();
+      messagesWriter.close();
+      return;
+    }
+
+    // Flush everything in the queue. Requests that are enqueued by threads that passed the closed check in persist()
+    // after this will be rejected by whichever thread acquires the writer flag next.
+    while (!writerFlag.compareAndSet(false, true)) {
       Thread.yield();
     }
+    try {
+      pendingStoreQueue.persist(messagesWriter);
+      writerClosed = true;
+    } finally {
+      writerFlag.set(false);
+    }
     messagesWriter.close();
   }
 
+  /**
+   * Waits for the flush in progress, then writes out all requests left in the group-commit queue from the
+   * caller thread. No flush task will write after this method returns.
+   */
+  private void closeGroupCommit() {
+    List<PendingStoreRequest> batch = new ArrayList<>();
+    long batchBytes;
+    boolean interrupted = false;
+    synchronized (groupCommitQueue) {
+      if (flushFuture != null) {
+        flushFuture.cancel(false);
+        flushFuture = null;
+      }
+      while (flushing) {
+        try {
+          groupCommitQueue.wait();
+        } catch (InterruptedException e) {
+          // Still need to wait, otherwise the flush in progress may write after the writer is closed
+          interrupted = true;
+        }
+      }
+      // Keep the flag set, such that flush tasks that are still scheduled do nothing
+      flushing = true;
+      batchBytes = pollBatch(batch, Long.MAX_VALUE);
+    }
+    try {
+      writeBatch(batch, batchBytes);
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   /**
    * A resettable {@link Iterator} to provide {@link StoreRequest} to {@link StoreRequestWriter}.
    * Except the {@link #enqueue(PendingStoreRequest)} method, all methods on this class can only be
@@ -216,6 +465,19 @@ final class ConcurrentMessageWriter implements Closeable {
       }
     }
 
+    /**
+     * Fails all {@link PendingStoreRequest} currently in the queue with the given cause.
+     */
+    void reject(Throwable cause) {
+      inflightRequests.clear();
+      PendingStoreRequest request = writeQueue.poll();
+      while (request != null) {
+        inflightRequests.add(request);
+        request = writeQueue.poll();
+      }
+      completeAll(cause);
+    }
+
     /**
      * Marks all inflight requests as collected through the {@link Iterator#next()} method as completed.
      * This method must be called while holding the writer flag.
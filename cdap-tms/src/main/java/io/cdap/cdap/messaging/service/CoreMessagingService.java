@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -65,6 +65,7 @@ import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
@@ -83,6 +84,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   private final LoadingCache<TopicId, TopicMetadata> topicCache;
   private final LoadingCache<TopicId, ConcurrentMessageWriter> messageTableWriterCache;
   private final LoadingCache<TopicId, ConcurrentMessageWriter> payloadTableWriterCache;
+  // Shared by the writers of all topics in group-commit mode, null if group-commit is disabled
+  private final ScheduledExecutorService groupCommitExecutor;
   private final TimeProvider timeProvider;
   private final MetricsCollectionService metricsCollectionService;
   private final long txMaxLifeTimeInMillis;
@@ -99,6 +102,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     this.cConf = cConf;
     this.tableFactory = tableFactory;
     this.topicCache = createTopicCache();
+    this.groupCommitExecutor = createGroupCommitExecutor(cConf);
     this.messageTableWriterCache = createTableWriterCache(true, cConf);
     this.payloadTableWriterCache = createTableWriterCache(false, cConf);
     this.timeProvider = timeProvider;
@@ -253,6 +257,10 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   protected void shutDown() throws Exception {
     messageTableWriterCache.invalidateAll();
     payloadTableWriterCache.invalidateAll();
+    if (groupCommitExecutor != null) {
+      // Writers flush their pending requests when closed, hence no scheduled flush is needed anymore
+      groupCommitExecutor.shutdownNow();
+    }
     Closeables.closeQuietly(tableFactory);
     LOG.info("Core Messaging Service stopped");
   }
@@ -367,11 +375,36 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
             Constants.Metrics.Tag.TABLE, messageTable ? "message" : "payload"
           ));
 
-          return new ConcurrentMessageWriter(messagesWriter, metricsContext);
+          if (groupCommitExecutor == null) {
+            return new ConcurrentMessageWriter(messagesWriter, metricsContext);
+          }
+          return new ConcurrentMessageWriter(messagesWriter, metricsContext, groupCommitExecutor,
+                                             cConf.getLong(Constants.MessagingSystem.GROUP_COMMIT_MAX_LINGER_MS),
+                                             cConf.getLong(Constants.MessagingSystem.GROUP_COMMIT_MAX_BATCH_BYTES));
         }
       });
   }
 
+  /**
+   * Creates the executor for writing group-commit batches, or returns {@code null} if group-commit is disabled.
+   */
+  @Nullable
+  private ScheduledExecutorService createGroupCommitExecutor(CConfiguration cConf) {
+    if (!cConf.getBoolean(Constants.MessagingSystem.GROUP_COMMIT_ENABLED)) {
+      return null;
+    }
+    int threads = cConf.getInt(Constants.MessagingSystem.GROUP_COMMIT_THREADS);
+    if (threads <= 0) {
+      throw new IllegalArgumentException(String.format("Configuration %s must be positive: %d",
+                                                       Constants.MessagingSystem.GROUP_COMMIT_THREADS, threads));
+    }
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+      threads, Threads.createDaemonThreadFactory("tms-group-commit-%d"));
+    // Flushes get cancelled when a batch fills up before the linger time, don't keep them in the queue
+    executor.setRemoveOnCancelPolicy(true);
+    return executor;
+  }
+
   /**
    * Creates a new instance of {@link MetadataTable}.
    */
@@ -19,7 +19,9 @@ package io.cdap.cdap.messaging.service;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import javax.annotation.Nullable;
 
 /**
@@ -29,8 +31,11 @@ final class PendingStoreRequest extends StoreRequest {
 
   private final StoreRequest originalRequest;
   private final TopicMetadata metadata;
+  private final long enqueueNanos;
+  private final List<byte[]> bufferedPayloads;
+  private final long payloadBytes;
 
-  private boolean completed;
+  private volatile boolean completed;
   private long startTimestamp;
   private long endTimestamp;
   private int startSequenceId;
@@ -38,20 +43,73 @@ final class PendingStoreRequest extends StoreRequest {
   private Throwable failureCause;
 
   PendingStoreRequest(StoreRequest originalRequest, TopicMetadata topicMetadata) {
+    this(originalRequest, topicMetadata, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param originalRequest the {@link StoreRequest} to be written
+   * @param topicMetadata {@link TopicMetadata} for the topic in the request
+   * @param bufferPayloads {@code true} to copy the payloads into memory up front, so that the size of the request is
+   *                       known before it is being written.
+   */
+  PendingStoreRequest(StoreRequest originalRequest, TopicMetadata topicMetadata, boolean bufferPayloads) {
     super(originalRequest.getTopicId(), originalRequest.isTransactional(),
           originalRequest.getTransactionWritePointer());
     this.originalRequest = originalRequest;
     this.metadata = topicMetadata;
+    this.enqueueNanos = System.nanoTime();
+
+    if (bufferPayloads) {
+      List<byte[]> payloads = new ArrayList<>();
+      long bytes = 0L;
+      for (byte[] payload : originalRequest) {
+        payloads.add(payload);
+        bytes += payload.length;
+      }
+      this.bufferedPayloads = payloads;
+      this.payloadBytes = bytes;
+    } else {
+      this.bufferedPayloads = null;
+      this.payloadBytes = -1L;
+    }
   }
 
   TopicMetadata getTopicMetadata() {
     return metadata;
   }
 
+  /**
+   * Returns the {@link System#nanoTime()} when this request was created.
+   */
+  long getEnqueueNanos() {
+    return enqueueNanos;
+  }
+
+  /**
+   * Returns the total size of the payloads in bytes if the payloads were buffered when this request was created;
+   * otherwise {@code -1} will be returned.
+   */
+  long getPayloadBytes() {
+    return payloadBytes;
+  }
+
   boolean isCompleted() {
     return completed;
   }
 
+  /**
+   * Blocks until this request is completed.
+   *
+   * @throws InterruptedException if the current thread is interrupted while waiting
+   */
+  synchronized void awaitCompletion() throws InterruptedException {
+    while (!completed) {
+      wait();
+    }
+  }
+
   boolean isSuccess() {
     if (!isCompleted()) {
       throw new IllegalStateException("Write is not yet completed");
@@ -64,9 +122,10 @@ final class PendingStoreRequest extends StoreRequest {
     return failureCause;
   }
 
-  void completed(@Nullable Throwable failureCause) {
-    completed = true;
+  synchronized void completed(@Nullable Throwable failureCause) {
     this.failureCause = failureCause;
+    completed = true;
+    notifyAll();
   }
 
   void setStartTimestamp(long startTimestamp) {
@@ -103,12 +162,12 @@ final class PendingStoreRequest extends StoreRequest {
 
   @Override
   public boolean hasPayload() {
-    return originalRequest.hasPayload();
+    return bufferedPayloads == null ? originalRequest.hasPayload() : !bufferedPayloads.isEmpty();
   }
 
   @Override
   public Iterator<byte[]> iterator() {
-    return originalRequest.iterator();
+    return bufferedPayloads == null ? originalRequest.iterator() : bufferedPayloads.iterator();
   }
 
   @Override
@@ -27,6 +27,7 @@ import io.cdap.cdap.common.utils.TimeProvider;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.TopicMetadata;
 import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.cache.MessageEntryCache;
 import io.cdap.cdap.messaging.data.MessageId;
 import io.cdap.cdap.messaging.store.MessageFilter;
 import io.cdap.cdap.messaging.store.MessageTable;
@@ -42,7 +43,7 @@ import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
- * A {@link MessageTable} that uses {@link MessageCache} for caching recently published messages.
+ * A {@link MessageTable} that uses {@link MessageEntryCache} for caching recently published messages.
  */
 final class CachingMessageTable implements MessageTable {
 
@@ -73,7 +74,7 @@ final class CachingMessageTable implements MessageTable {
   @Override
   public CloseableIterator<Entry> fetch(TopicMetadata metadata, long startTime,
                                         int limit, @Nullable Transaction transaction) throws IOException {
-    MessageCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
+    MessageEntryCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
     if (messageCache == null) {
       // If no caching for the given topic, just return result from table directly
       return messageTable.fetch(metadata, startTime, limit, transaction);
@@ -100,7 +101,7 @@ final class CachingMessageTable implements MessageTable {
   public CloseableIterator<Entry> fetch(TopicMetadata metadata, MessageId messageId, boolean inclusive,
                                         int limit, @Nullable Transaction transaction) throws IOException {
 
-    MessageCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
+    MessageEntryCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
     if (messageCache == null) {
       // If no caching for the given topic, just return result from table directly
       return messageTable.fetch(metadata, messageId, inclusive, limit, transaction);
@@ -133,7 +134,7 @@ final class CachingMessageTable implements MessageTable {
 
     Multimap<TopicId, Entry> topicEntries = iterator.getEntries();
     for (Map.Entry<TopicId, Collection<Entry>> entry : topicEntries.asMap().entrySet()) {
-      MessageCache<Entry> messageCache = cacheProvider.getMessageCache(entry.getKey());
+      MessageEntryCache<Entry> messageCache = cacheProvider.getMessageCache(entry.getKey());
       // Write it to the cache if it is enabled for the topic
       if (messageCache != null) {
         messageCache.addAll(entry.getValue().iterator());
@@ -143,7 +144,7 @@ final class CachingMessageTable implements MessageTable {
 
   @Override
   public void rollback(TopicMetadata metadata, RollbackDetail rollbackDetail) throws IOException {
-    MessageCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
+    MessageEntryCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
     if (messageCache != null) {
       // Rollback from the cache first so that we don't have to worry about invalid list pruning for the cache,
       // assuming the rollback from cache shouldn't fail.
@@ -356,6 +357,29 @@ final class CachingMessageTable implements MessageTable {
       this.sequenceId = sequenceId;
     }
 
+    CacheMessageTableEntry(TopicId topicId, int generation, long publishTimestamp, short sequenceId) {
+      this.lookupOnly = true;
+      this.topicId = topicId;
+      this.generation = generation;
+      this.transactional = false;
+      this.payload = null;
+      this.publishTimestamp = publishTimestamp;
+      this.sequenceId = sequenceId;
+    }
+
+    CacheMessageTableEntry(TopicId topicId, int generation, boolean transactional, long transactionWritePointer,
+                           @Nullable byte[] payload, long publishTimestamp, short sequenceId, boolean rollback) {
+      this.lookupOnly = false;
+      this.topicId = topicId;
+      this.generation = generation;
+      this.transactional = transactional;
+      this.transactionWritePointer = transactionWritePointer;
+      this.payload = payload;
+      this.publishTimestamp = publishTimestamp;
+      this.sequenceId = sequenceId;
+      this.rollback = rollback;
+    }
+
     CacheMessageTableEntry(Entry other) {
       this.lookupOnly = false;
       this.topicId = other.getTopicId();
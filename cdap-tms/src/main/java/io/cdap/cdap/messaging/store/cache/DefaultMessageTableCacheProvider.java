@@ -24,6 +24,7 @@ import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.messaging.MessagingServiceUtils;
 import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.cache.MessageEntryCache;
 import io.cdap.cdap.messaging.store.MessageTable;
 import io.cdap.cdap.proto.id.TopicId;
 
@@ -38,9 +39,12 @@ import javax.annotation.Nullable;
  */
 public class DefaultMessageTableCacheProvider implements MessageTableCacheProvider {
 
+  private static final String HEAP_CACHE_TYPE = "heap";
+  private static final String OFF_HEAP_CACHE_TYPE = "offheap";
+
   private final CConfiguration cConf;
   private final MetricsCollectionService metricsCollectionService;
-  private Map<TopicId, MessageCache<MessageTable.Entry>> topicMessageCaches;
+  private Map<TopicId, MessageEntryCache<MessageTable.Entry>> topicMessageCaches;
   private volatile boolean initialized;
 
   @Inject
@@ -54,11 +58,11 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
 
   @Nullable
   @Override
-  public MessageCache<MessageTable.Entry> getMessageCache(TopicId topicId) {
+  public MessageEntryCache<MessageTable.Entry> getMessageCache(TopicId topicId) {
     if (!initialized) {
       synchronized (this) {
         if (!initialized) {
-          Map<TopicId, MessageCache<MessageTable.Entry>> caches = new HashMap<>();
+          Map<TopicId, MessageEntryCache<MessageTable.Entry>> caches = new HashMap<>();
 
           long cacheSize = cConf.getInt(Constants.MessagingSystem.CACHE_SIZE_MB) * 1024 * 1024;
           Set<TopicId> systemTopics = MessagingServiceUtils.getSystemTopics(cConf, true);
@@ -75,9 +79,13 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
               // Have reduce trigger as 70% of the hard limit and min retain as 50% of the hard limit
               // In future, it can be adjusted dynamically based on metrics
               MessageCache.Limits limits = new MessageCache.Limits(hardLimit / 2, hardLimit * 7 / 10, hardLimit);
+              boolean offHeap = OFF_HEAP_CACHE_TYPE.equalsIgnoreCase(
+                cConf.get(Constants.MessagingSystem.CACHE_TYPE, HEAP_CACHE_TYPE));
               for (TopicId topic : systemTopics) {
-                caches.put(topic, new MessageCache<>(comparator, weigher, limits,
-                                                     createMetricsContext(cConf, topic, metricsCollectionService)));
+                MetricsContext metricsContext = createMetricsContext(cConf, topic, metricsCollectionService);
+                caches.put(topic, offHeap
+                  ? new OffHeapMessageTableCache(topic, limits, metricsContext)
+                  : new MessageCache<>(comparator, weigher, limits, metricsContext));
               }
             }
           }
@@ -93,7 +101,7 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
 
   @Override
   public void clear() {
-    Collection<MessageCache<MessageTable.Entry>> caches;
+    Collection<MessageEntryCache<MessageTable.Entry>> caches;
 
     synchronized (this) {
       initialized = false;
@@ -102,7 +110,7 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
     }
 
     if (caches != null) {
-      for (MessageCache<MessageTable.Entry> cache : caches) {
+      for (MessageEntryCache<MessageTable.Entry> cache : caches) {
         cache.clear();
       }
     }
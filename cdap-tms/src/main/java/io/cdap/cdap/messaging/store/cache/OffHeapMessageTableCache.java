@@ -0,0 +1,688 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.cache.MessageCache.EntryUpdater;
+import io.cdap.cdap.messaging.cache.MessageCache.Limits;
+import io.cdap.cdap.messaging.cache.MessageCache.Scanner;
+import io.cdap.cdap.messaging.cache.MessageEntryCache;
+import io.cdap.cdap.messaging.store.MessageFilter;
+import io.cdap.cdap.messaging.store.MessageTable;
+import io.cdap.cdap.messaging.store.cache.CachingMessageTable.CacheMessageTableEntry;
+import io.cdap.cdap.proto.id.TopicId;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link MessageEntryCache} for {@link MessageTable.Entry} of a single topic that stores cached entries in off-heap
+ * memory. It leverages the same TMS properties as the {@link MessageCache}, namely single writer, concurrent fetchers
+ * and strictly increasing entries.
+ *
+ * The cache memory is organized as a ring of fixed size segments, each backed by a direct {@link ByteBuffer}.
+ * Entries are serialized and appended to the current segment. When the current segment is full, the writer moves
+ * to the next segment in the ring. If the ring is full, the oldest segment is dropped as a whole and reused.
+ * Hence there is no per entry eviction, and the cache holds between {@code (n - 1) / n} and all of the hard limit
+ * worth of entries, where {@code n} is the number of segments.
+ *
+ * Instead of a read-write lock, each segment carries a version number that follows the seqlock scheme.
+ * Modifications to the content that readers can already see, which are segment reuse and rollback of entries,
+ * increment the version before and after the change. Appending doesn't need that, since readers only read up to
+ * the published size of a segment. Readers never block; they validate the version after decoding the entries
+ * and retry the scan if the segment was modified concurrently.
+ *
+ * The min retain and reduce trigger limits of {@link MessageCache.Limits} are not used by this cache.
+ */
+final class OffHeapMessageTableCache implements MessageEntryCache<MessageTable.Entry> {
+
+  private static final String METRICS_WEIGHT = "cache.weight";
+  private static final String METRICS_OFFHEAP_BYTES = "cache.offheap.bytes";
+  private static final String METRICS_HEAP_BYTES = "cache.heap.bytes";
+  private static final String METRICS_ENTRIES_ADDED = "cache.entries.added";
+  private static final String METRICS_ENTRIES_REMOVED = "cache.entries.removed";
+  private static final String METRICS_ADD_REQUESTS = "cache.add.requests";
+  private static final String METRICS_SCAN_REQUESTS = "cache.scan.requests";
+  private static final String METRICS_SCAN_RETRIES = "cache.scan.retries";
+
+  // Number of segments in the ring
+  @VisibleForTesting
+  static final int NUM_SEGMENTS = 16;
+
+  // Number of times a scan is retried when racing with the writer before giving up on the cache
+  private static final int MAX_SCAN_ATTEMPTS = 3;
+
+  // Rough estimation of on-heap memory used by each segment, which is the object header, fields and the
+  // ByteBuffer object
+  private static final int SEGMENT_HEAP_OVERHEAD = 128;
+
+  // Entry layout: length (int), generation (int), publish timestamp (long), sequence id (short),
+  // flags (byte), transaction write pointer (long), followed by the payload
+  private static final int HEADER_SIZE = 4 + 4 + 8 + 2 + 1 + 8;
+  private static final int OFFSET_GENERATION = 4;
+  private static final int OFFSET_PUBLISH_TIMESTAMP = 8;
+  private static final int OFFSET_SEQUENCE_ID = 16;
+  private static final int OFFSET_FLAGS = 18;
+  private static final int OFFSET_TX_WRITE_POINTER = 19;
+
+  private static final byte FLAG_TRANSACTIONAL = 0x01;
+  private static final byte FLAG_HAS_PAYLOAD = 0x02;
+  private static final byte FLAG_ROLLBACK = 0x04;
+
+  private final MessageTableEntryComparator comparator;
+  private final TopicId topicId;
+  private final MetricsContext metricsContext;
+  private final AtomicBoolean adding;
+  private final Object writeLock;
+
+  private volatile Limits limits;
+  private volatile Ring ring;
+
+  // Fields below are only accessed while holding the writeLock
+  private boolean hasLastEntry;
+  private int lastGeneration;
+  private long lastPublishTimestamp;
+  private short lastSequenceId;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param topicId the topic that entries in this cache belong to
+   * @param limits the limits of this cache. Only the hard limit is used, which determines the off-heap memory size
+   * @param metricsContext a {@link MetricsContext} for emitting metrics about this cache.
+   */
+  OffHeapMessageTableCache(TopicId topicId, Limits limits, MetricsContext metricsContext) {
+    this.comparator = new MessageTableEntryComparator();
+    this.topicId = topicId;
+    this.metricsContext = metricsContext;
+    this.adding = new AtomicBoolean();
+    this.writeLock = new Object();
+    this.limits = limits;
+    this.ring = new Ring(limits.getHardLimit());
+  }
+
+  @Override
+  public Comparator<MessageTable.Entry> getComparator() {
+    return comparator;
+  }
+
+  @Override
+  public void addAll(Iterator<MessageTable.Entry> entries) {
+    if (!adding.compareAndSet(false, true)) {
+      // This is to guard against bug, otherwise this shouldn't happen
+      throw new ConcurrentModificationException(
+        "The MessageCache.addAll method shouldn't be called concurrently by multiple threads.");
+    }
+
+    try {
+      int entriesAdded = 0;
+      synchronized (writeLock) {
+        Ring ring = this.ring;
+        while (entries.hasNext()) {
+          MessageTable.Entry entry = entries.next();
+
+          // Entries must be in strictly increasing order
+          if (hasLastEntry && compare(lastGeneration, lastPublishTimestamp, lastSequenceId, entry) >= 0) {
+            // Clear the cache to reset state. This is just for precaution, as this shouldn't happen,
+            // unless there is bug in the TMS system (from the caller side).
+            clear();
+            throw new IllegalArgumentException(String.format(
+              "Cache entry must be in strictly increasing order. Entry %s is smaller than or equal to " +
+                "the last entry with generation %d, publish timestamp %d and sequence id %d",
+              entry, lastGeneration, lastPublishTimestamp, lastSequenceId));
+          }
+          hasLastEntry = true;
+          lastGeneration = entry.getGeneration();
+          lastPublishTimestamp = entry.getPublishTimestamp();
+          lastSequenceId = entry.getSequenceId();
+
+          if (ring.append(entry)) {
+            entriesAdded++;
+          } else {
+            // The entry cannot be cached. Need to drop everything to maintain the invariant that the cache
+            // always contains a contiguous range of entries.
+            metricsContext.increment(METRICS_ENTRIES_REMOVED, ring.reset());
+          }
+        }
+        metricsContext.increment(METRICS_ENTRIES_REMOVED, ring.getAndResetEntriesEvicted());
+        emitSizeMetrics(ring);
+      }
+      metricsContext.increment(METRICS_ADD_REQUESTS, 1L);
+      metricsContext.increment(METRICS_ENTRIES_ADDED, entriesAdded);
+    } finally {
+      adding.set(false);
+    }
+  }
+
+  @Override
+  public Scanner<MessageTable.Entry> scan(MessageTable.Entry startEntry, boolean includeStart, int limit,
+                                          MessageFilter<MessageTable.Entry> filter) {
+    metricsContext.increment(METRICS_SCAN_REQUESTS, 1L);
+
+    for (int i = 0; i < MAX_SCAN_ATTEMPTS; i++) {
+      if (i > 0) {
+        metricsContext.increment(METRICS_SCAN_RETRIES, 1L);
+      }
+      EntriesScanner scanner = ring.scan(startEntry, includeStart, limit, filter);
+      if (scanner != null) {
+        return scanner;
+      }
+    }
+
+    // Keep racing with the writer. Return an empty result so that the caller will read from the table.
+    return new EntriesScanner(new ArrayList<>(), null);
+  }
+
+  @Override
+  public void updateEntries(MessageTable.Entry startEntry, MessageTable.Entry endEntry,
+                            EntryUpdater<MessageTable.Entry> updater) {
+    synchronized (writeLock) {
+      try {
+        ring.update(startEntry, endEntry, updater);
+      } catch (RuntimeException e) {
+        clear();
+        throw e;
+      }
+    }
+  }
+
+  @Override
+  public void clear() {
+    synchronized (writeLock) {
+      Ring ring = this.ring;
+      metricsContext.increment(METRICS_ENTRIES_REMOVED, ring.reset());
+      hasLastEntry = false;
+      emitSizeMetrics(ring);
+    }
+  }
+
+  @Override
+  public void resize(Limits limits) {
+    synchronized (writeLock) {
+      Ring oldRing = this.ring;
+      Ring newRing = new Ring(limits.getHardLimit());
+      this.limits = limits;
+      this.ring = newRing;
+
+      // Invalidates all segments in the old ring, so that readers using it will retry with the new ring
+      metricsContext.increment(METRICS_ENTRIES_REMOVED, oldRing.retire());
+      hasLastEntry = false;
+      emitSizeMetrics(newRing);
+    }
+  }
+
+  @Override
+  public Limits getLimits() {
+    return limits;
+  }
+
+  /**
+   * Returns the number of bytes used by the entries in the cache.
+   */
+  @VisibleForTesting
+  long getUsedBytes() {
+    return ring.usedBytes;
+  }
+
+  /**
+   * Returns the number of off-heap bytes allocated by the cache.
+   */
+  @VisibleForTesting
+  long getOffHeapBytes() {
+    return ring.allocatedBytes;
+  }
+
+  private void emitSizeMetrics(Ring ring) {
+    metricsContext.gauge(METRICS_WEIGHT, ring.usedBytes);
+    metricsContext.gauge(METRICS_OFFHEAP_BYTES, ring.allocatedBytes);
+    metricsContext.gauge(METRICS_HEAP_BYTES, (long) ring.segments.length * SEGMENT_HEAP_OVERHEAD);
+  }
+
+  /**
+   * Compares the key of an entry with the given entry, using the same ordering as {@link MessageTableEntryComparator}.
+   */
+  private static int compare(int generation, long publishTimestamp, short sequenceId, MessageTable.Entry entry) {
+    int cmp = Integer.compare(generation, entry.getGeneration());
+    if (cmp != 0) {
+      return cmp;
+    }
+    cmp = Long.compare(publishTimestamp, entry.getPublishTimestamp());
+    if (cmp != 0) {
+      return cmp;
+    }
+    return Integer.compare(sequenceId & 0xFFFF, entry.getSequenceId() & 0xFFFF);
+  }
+
+  /**
+   * A ring of {@link Segment}. Segments are identified by a monotonically increasing logical sequence number,
+   * with the segment at position {@code sequence % segments.length} in the ring.
+   */
+  private final class Ring {
+
+    private final Segment[] segments;
+    private final int segmentSize;
+
+    // Sequence number of the oldest and the current (newest) segment
+    private volatile long head;
+    private volatile long tail;
+
+    // Fields below are only updated while holding the writeLock
+    private volatile long usedBytes;
+    private volatile long allocatedBytes;
+    private long entriesEvicted;
+
+    Ring(long capacity) {
+      int segmentSize = (int) Math.min(Integer.MAX_VALUE, capacity / NUM_SEGMENTS);
+      this.segmentSize = segmentSize;
+      this.segments = new Segment[segmentSize > HEADER_SIZE ? NUM_SEGMENTS : 0];
+      for (int i = 0; i < segments.length; i++) {
+        segments[i] = new Segment();
+      }
+      if (segments.length > 0) {
+        segments[0].sequence = 0L;
+      }
+    }
+
+    /**
+     * Appends the given entry to the current segment. Must be called with the writeLock held.
+     *
+     * @return {@code true} if the entry is appended, {@code false} if the entry is too large to fit in a segment
+     */
+    boolean append(MessageTable.Entry entry) {
+      byte[] payload = entry.getPayload();
+      int entrySize = HEADER_SIZE + (payload == null ? 0 : payload.length);
+      if (segments.length == 0 || entrySize > segmentSize) {
+        return false;
+      }
+
+      Segment segment = segments[(int) (tail % segments.length)];
+      if (segment.size + entrySize > segmentSize) {
+        segment = nextSegment();
+      }
+      if (segment.buffer == null) {
+        segment.buffer = ByteBuffer.allocateDirect(segmentSize);
+        allocatedBytes += segmentSize;
+      }
+
+      ByteBuffer buffer = segment.buffer;
+      int offset = segment.size;
+      byte flags = (byte) ((entry.isTransactional() ? FLAG_TRANSACTIONAL : 0)
+        | (payload == null ? 0 : FLAG_HAS_PAYLOAD));
+      buffer.putInt(offset, entrySize);
+      buffer.putInt(offset + OFFSET_GENERATION, entry.getGeneration());
+      buffer.putLong(offset + OFFSET_PUBLISH_TIMESTAMP, entry.getPublishTimestamp());
+      buffer.putShort(offset + OFFSET_SEQUENCE_ID, entry.getSequenceId());
+      buffer.put(offset + OFFSET_FLAGS, flags);
+      buffer.putLong(offset + OFFSET_TX_WRITE_POINTER,
+                     entry.isTransactional() ? entry.getTransactionWritePointer() : -1L);
+      if (payload != null) {
+        ByteBuffer dest = buffer.duplicate();
+        dest.position(offset + HEADER_SIZE);
+        dest.put(payload);
+      }
+      if (offset == 0) {
+        segment.firstGeneration = entry.getGeneration();
+        segment.firstPublishTimestamp = entry.getPublishTimestamp();
+        segment.firstSequenceId = entry.getSequenceId();
+      }
+      segment.count++;
+
+      // Publish the entry to readers
+      segment.size = offset + entrySize;
+      usedBytes += entrySize;
+      return true;
+    }
+
+    /**
+     * Moves to the next segment in the ring, dropping the oldest segment if the ring is full.
+     * Must be called with the writeLock held.
+     */
+    private Segment nextSegment() {
+      long newTail = tail + 1;
+      Segment segment = segments[(int) (newTail % segments.length)];
+
+      segment.beginWrite();
+      if (newTail - head >= segments.length) {
+        // Drop the oldest segment, which is the one being reused
+        head = head + 1;
+        usedBytes -= segment.size;
+        entriesEvicted += segment.count;
+      }
+      segment.size = 0;
+      segment.count = 0;
+      segment.sequence = newTail;
+      segment.endWrite();
+
+      tail = newTail;
+      return segment;
+    }
+
+    /**
+     * Drops all entries. Must be called with the writeLock held.
+     *
+     * @return number of entries dropped
+     */
+    long reset() {
+      long removed = entriesEvicted;
+      entriesEvicted = 0;
+      if (segments.length == 0) {
+        return removed;
+      }
+
+      for (long seq = head; seq <= tail; seq++) {
+        Segment segment = segments[(int) (seq % segments.length)];
+        segment.beginWrite();
+        removed += segment.count;
+        segment.size = 0;
+        segment.count = 0;
+        segment.sequence = -1L;
+        segment.endWrite();
+      }
+
+      // Start from a fresh segment
+      long newTail = tail + 1;
+      Segment segment = segments[(int) (newTail % segments.length)];
+      segment.sequence = newTail;
+      head = newTail;
+      tail = newTail;
+      usedBytes = 0L;
+      return removed;
+    }
+
+    /**
+     * Invalidates all segments permanently. The buffers are left untouched, since readers may still be decoding
+     * from them. The off-heap memory is released when the ring is garbage collected, which can only happen after
+     * all readers using it are done. Must be called with the writeLock held.
+     *
+     * @return number of entries dropped
+     */
+    long retire() {
+      long removed = entriesEvicted;
+      for (Segment segment : segments) {
+        // Leave the version odd so that any reader will retry
+        segment.beginWrite();
+        removed += segment.count;
+        segment.size = 0;
+        segment.count = 0;
+        segment.sequence = -1L;
+      }
+      usedBytes = 0L;
+      allocatedBytes = 0L;
+      return removed;
+    }
+
+    long getAndResetEntriesEvicted() {
+      long evicted = entriesEvicted;
+      entriesEvicted = 0;
+      return evicted;
+    }
+
+    /**
+     * Scans entries from this ring.
+     *
+     * @return a {@link EntriesScanner} or {@code null} if the scan raced with the writer and should be retried
+     */
+    @Nullable
+    EntriesScanner scan(MessageTable.Entry startEntry, boolean includeStart, int limit,
+                        MessageFilter<MessageTable.Entry> filter) {
+      if (segments.length == 0) {
+        return new EntriesScanner(new ArrayList<>(), null);
+      }
+
+      List<MessageTable.Entry> entries = new ArrayList<>();
+      MessageTable.Entry firstInCache = null;
+      long tail = this.tail;
+      long head = this.head;
+
+      try {
+        boolean done = false;
+        for (long seq = head; seq <= tail && !done; seq++) {
+          Segment segment = segments[(int) (seq % segments.length)];
+          long version = segment.version;
+          if ((version & 1) != 0 || segment.sequence != seq) {
+            return null;
+          }
+          int size = segment.size;
+          if (size == 0) {
+            continue;
+          }
+
+          if (seq == head) {
+            firstInCache = new CacheMessageTableEntry(topicId, segment.firstGeneration,
+                                                      segment.firstPublishTimestamp, segment.firstSequenceId);
+          }
+
+          // Skip the whole segment if the next segment starts at or before the start entry
+          if (seq < tail) {
+            Segment nextSegment = segments[(int) ((seq + 1) % segments.length)];
+            long nextVersion = nextSegment.version;
+            boolean skip = nextSegment.size > 0
+              && compare(nextSegment.firstGeneration, nextSegment.firstPublishTimestamp,
+                         nextSegment.firstSequenceId, startEntry) <= 0;
+            if (nextVersion != nextSegment.version || (nextVersion & 1) != 0) {
+              return null;
+            }
+            if (skip) {
+              if (version != segment.version) {
+                return null;
+              }
+              continue;
+            }
+          }
+
+          done = segment.scan(size, startEntry, includeStart, limit, filter, entries);
+
+          // Validate nothing was changed in the segment while reading
+          if (version != segment.version) {
+            return null;
+          }
+        }
+      } catch (InconsistentReadException | IndexOutOfBoundsException | BufferUnderflowException e) {
+        // Inconsistent read due to concurrent modification
+        return null;
+      }
+
+      return new EntriesScanner(entries, firstInCache);
+    }
+
+    /**
+     * Updates entries between the start and end entries (both inclusive). Must be called with the writeLock held.
+     */
+    void update(MessageTable.Entry startEntry, MessageTable.Entry endEntry,
+                EntryUpdater<MessageTable.Entry> updater) {
+      if (segments.length == 0) {
+        return;
+      }
+      for (long seq = head; seq <= tail; seq++) {
+        Segment segment = segments[(int) (seq % segments.length)];
+        ByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset < segment.size) {
+          int entrySize = buffer.getInt(offset);
+          int generation = buffer.getInt(offset + OFFSET_GENERATION);
+          long publishTimestamp = buffer.getLong(offset + OFFSET_PUBLISH_TIMESTAMP);
+          short sequenceId = buffer.getShort(offset + OFFSET_SEQUENCE_ID);
+
+          if (compare(generation, publishTimestamp, sequenceId, endEntry) > 0) {
+            return;
+          }
+          if (compare(generation, publishTimestamp, sequenceId, startEntry) >= 0) {
+            CacheMessageTableEntry entry = decode(buffer, offset, entrySize);
+            updater.updateEntry(entry);
+
+            // Check the ordering hasn't been altered.
+            if (compare(generation, publishTimestamp, sequenceId, entry) != 0) {
+              throw new IllegalStateException("Entry order should not be altered after update.");
+            }
+            byte flags = buffer.get(offset + OFFSET_FLAGS);
+            if (entry.isRollback() && (flags & FLAG_ROLLBACK) == 0) {
+              segment.beginWrite();
+              buffer.put(offset + OFFSET_FLAGS, (byte) (flags | FLAG_ROLLBACK));
+              segment.endWrite();
+            }
+          }
+          offset += entrySize;
+        }
+      }
+    }
+  }
+
+  /**
+   * A segment in the {@link Ring}.
+   */
+  private final class Segment {
+
+    // Incremented before and after modifying entries that are visible to readers.
+    // An odd version means modification is in progress.
+    private volatile long version;
+    private volatile long sequence = -1L;
+    // Number of bytes that are visible to readers
+    private volatile int size;
+
+    // Fields below are written by the writer before publishing through the size field
+    private ByteBuffer buffer;
+    private int count;
+    private int firstGeneration;
+    private long firstPublishTimestamp;
+    private short firstSequenceId;
+
+    void beginWrite() {
+      version++;
+    }
+
+    void endWrite() {
+      version++;
+    }
+
+    /**
+     * Decodes entries from this segment.
+     *
+     * @return {@code true} if no more entries should be scanned
+     */
+    boolean scan(int size, MessageTable.Entry startEntry, boolean includeStart, int limit,
+                 MessageFilter<MessageTable.Entry> filter, List<MessageTable.Entry> entries) {
+      ByteBuffer buffer = this.buffer;
+      if (buffer == null || size > buffer.capacity()) {
+        throw new InconsistentReadException();
+      }
+      int offset = 0;
+      while (offset < size) {
+        if (entries.size() >= limit) {
+          return true;
+        }
+        // Validate the size before using it, since it can be garbage if the segment is being reused
+        int entrySize = buffer.getInt(offset);
+        if (entrySize < HEADER_SIZE || entrySize > size - offset) {
+          throw new InconsistentReadException();
+        }
+
+        int cmp = compare(buffer.getInt(offset + OFFSET_GENERATION), buffer.getLong(offset + OFFSET_PUBLISH_TIMESTAMP),
+                          buffer.getShort(offset + OFFSET_SEQUENCE_ID), startEntry);
+        if (cmp > 0 || (cmp == 0 && includeStart)) {
+          CacheMessageTableEntry entry = decode(buffer, offset, entrySize);
+          MessageFilter.Result result = filter.apply(entry);
+          if (result == MessageFilter.Result.ACCEPT) {
+            entries.add(entry);
+          } else if (result == MessageFilter.Result.HOLD) {
+            // Hold means not to scan more
+            return true;
+          }
+        }
+        offset += entrySize;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Decodes the entry at the given offset into a {@link CacheMessageTableEntry}.
+   *
+   * @param entrySize the size of the entry, which must already be validated against the bounds of the segment
+   */
+  private CacheMessageTableEntry decode(ByteBuffer buffer, int offset, int entrySize) {
+    byte flags = buffer.get(offset + OFFSET_FLAGS);
+    byte[] payload = null;
+    if ((flags & FLAG_HAS_PAYLOAD) != 0) {
+      payload = new byte[entrySize - HEADER_SIZE];
+      ByteBuffer src = buffer.duplicate();
+      src.position(offset + HEADER_SIZE);
+      src.get(payload);
+    }
+    return new CacheMessageTableEntry(topicId, buffer.getInt(offset + OFFSET_GENERATION),
+                                      (flags & FLAG_TRANSACTIONAL) != 0,
+                                      buffer.getLong(offset + OFFSET_TX_WRITE_POINTER), payload,
+                                      buffer.getLong(offset + OFFSET_PUBLISH_TIMESTAMP),
+                                      buffer.getShort(offset + OFFSET_SEQUENCE_ID),
+                                      (flags & FLAG_ROLLBACK) != 0);
+  }
+
+  /**
+   * Thrown when a reader sees inconsistent content in a segment due to concurrent modification by the writer.
+   */
+  private static final class InconsistentReadException extends RuntimeException {
+
+    InconsistentReadException() {
+      // No need for the stack trace, as the scan is simply retried
+      super(null, null, false, false);
+    }
+  }
+
+  /**
+   * A {@link Scanner} over a list of decoded entries.
+   */
+  private static final class EntriesScanner extends AbstractCloseableIterator<MessageTable.Entry>
+    implements Scanner<MessageTable.Entry> {
+
+    private final Iterator<MessageTable.Entry> iterator;
+    private final MessageTable.Entry firstInCache;
+    private boolean closed;
+
+    private EntriesScanner(List<MessageTable.Entry> entries, @Nullable MessageTable.Entry firstInCache) {
+      this.iterator = entries.iterator();
+      this.firstInCache = firstInCache;
+    }
+
+    @Override
+    protected MessageTable.Entry computeNext() {
+      if (!closed && iterator.hasNext()) {
+        return iterator.next();
+      }
+      return endOfData();
+    }
+
+    @Nullable
+    @Override
+    public MessageTable.Entry getFirstInCache() {
+      return firstInCache;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
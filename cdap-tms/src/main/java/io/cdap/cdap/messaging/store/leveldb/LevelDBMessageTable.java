@@ -38,6 +38,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.function.BiFunction;
 import javax.annotation.Nullable;
 
@@ -75,9 +76,18 @@ final class LevelDBMessageTable extends AbstractMessageTable {
   }
 
   private final LevelDBPartitionManager partitionManager;
+  private final Executor readAheadExecutor;
 
   LevelDBMessageTable(LevelDBPartitionManager partitionManager) {
+    this(partitionManager, null);
+  }
+
+  /**
+   * Creates an instance with an optional {@link Executor} for reading the next partition ahead during scans.
+   */
+  LevelDBMessageTable(LevelDBPartitionManager partitionManager, @Nullable Executor readAheadExecutor) {
     this.partitionManager = partitionManager;
+    this.readAheadExecutor = readAheadExecutor;
   }
 
   @Override
@@ -97,7 +107,8 @@ final class LevelDBMessageTable extends AbstractMessageTable {
     };
 
     return new PartitionedDBScanIterator<>(partitions.iterator(), scanRequest.getStartRow(), scanRequest.getStopRow(),
-                                           decodeFunction);
+                                           decodeFunction, entry -> entry.getKey().getPublishTimestamp(),
+                                           readAheadExecutor);
   }
 
   @Override
@@ -110,9 +110,7 @@ public class LevelDBPartitionManager implements Closeable {
    * Get existing partitions for publish times equal to or greater than the given timestamp.
    */
   public Collection<LevelDBPartition> getPartitions(long startTime) throws IOException {
-    if (initialized.compareAndSet(false, true)) {
-      initPartitions();
-    }
+    ensureInitialized();
     Long partitionStartTime = partitions.floorKey(startTime);
     return partitionStartTime == null ? partitions.values() : partitions.tailMap(partitionStartTime, true).values();
   }
@@ -125,9 +123,7 @@ public class LevelDBPartitionManager implements Closeable {
    * @return partitions responsible for data between the specified start and end times
    */
   public Collection<LevelDBPartition> getPartitions(long startTime, long endTime) throws IOException {
-    if (initialized.compareAndSet(false, true)) {
-      initPartitions();
-    }
+    ensureInitialized();
     Long partitionEndTime = partitions.floorKey(endTime);
     if (partitionEndTime == null) {
       // partitionEndTime can only be null if the partitions map is empty, or the endTime is less than the
@@ -179,7 +175,23 @@ public class LevelDBPartitionManager implements Closeable {
     return null;
   }
 
-  private synchronized void initPartitions() throws IOException {
+  /**
+   * Loads the existing partitions from the topic directory if it hasn't been done yet. The partitions map is the
+   * index from publish time to partition, hence callers must not see it before all partitions are loaded.
+   */
+  private void ensureInitialized() throws IOException {
+    if (initialized.get()) {
+      return;
+    }
+    synchronized (this) {
+      if (!initialized.get()) {
+        initPartitions();
+        initialized.set(true);
+      }
+    }
+  }
+
+  private void initPartitions() throws IOException {
     ensureDirExists(topicDir);
 
     for (File partitionDir : DirUtils.listFiles(topicDir)) {
@@ -200,9 +212,7 @@ public class LevelDBPartitionManager implements Closeable {
   }
 
   private LevelDBPartition getOrCreateDBPartition(long publishTime) throws IOException {
-    if (initialized.compareAndSet(false, true)) {
-      initPartitions();
-    }
+    ensureInitialized();
 
     long closestEndTime = Long.MAX_VALUE;
     long closestStartTime = Long.MAX_VALUE;
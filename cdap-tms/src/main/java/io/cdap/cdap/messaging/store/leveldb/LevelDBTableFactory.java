@@ -50,9 +50,11 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * A {@link TableFactory} for creating tables used by the messaging system using the LevelDB implementation.
@@ -72,6 +74,8 @@ public final class LevelDBTableFactory implements TableFactory {
   private final ConcurrentMap<File, DB> levelDBs;
   private final ConcurrentMap<File, LevelDBPartitionManager> partitionedLevelDBs;
   private final long partitionSizeMillis;
+  @Nullable
+  private final ExecutorService readAheadExecutor;
 
   private LevelDBMetadataTable metadataTable;
 
@@ -96,6 +100,10 @@ public final class LevelDBTableFactory implements TableFactory {
     this.levelDBs = new ConcurrentHashMap<>();
     this.partitionedLevelDBs = new ConcurrentHashMap<>();
     this.partitionSizeMillis = cConf.getLong(Constants.MessagingSystem.LOCAL_DATA_PARTITION_SECONDS) * 1000;
+
+    int readAheadThreads = cConf.getInt(Constants.MessagingSystem.LOCAL_DATA_PARTITION_READ_AHEAD_THREADS);
+    this.readAheadExecutor = readAheadThreads <= 0 ? null : Executors.newFixedThreadPool(
+      readAheadThreads, Threads.createDaemonThreadFactory("leveldb-tms-partition-read-ahead-%d"));
   }
 
   @Override
@@ -174,7 +182,7 @@ public final class LevelDBTableFactory implements TableFactory {
 
   @Override
   public MessageTable createMessageTable(TopicMetadata topicMetadata) throws IOException {
-    return new LevelDBMessageTable(getPartitionedLevelDB(topicMetadata, messageTableName));
+    return new LevelDBMessageTable(getPartitionedLevelDB(topicMetadata, messageTableName), readAheadExecutor);
   }
 
   @Override
@@ -197,6 +205,9 @@ public final class LevelDBTableFactory implements TableFactory {
     dbs.clear();
     partitionedLevelDBs.values().forEach(Closeables::closeQuietly);
     partitionedLevelDBs.clear();
+    if (readAheadExecutor != null) {
+      readAheadExecutor.shutdown();
+    }
   }
 
   @VisibleForTesting
@@ -16,36 +16,82 @@
 
 package io.cdap.cdap.messaging.store.leveldb;
 
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.BiFunction;
+import java.util.function.ToLongFunction;
+import javax.annotation.Nullable;
 
 /**
  * An iterator that scans over multiple partitions of a MessageTable.
  *
+ * If a read-ahead {@link Executor} is provided, once the scan reaches the last part of the time range of the current
+ * partition, the next partition is opened and its first block is read in the background, so that moving across
+ * partitions does not stall the scan. This mainly helps subscribers that are catching up on a large number of
+ * messages, while short scans that stop early in a partition don't open the next one.
+ *
  * @param <T> type of object to scan
  */
 public class PartitionedDBScanIterator<T> extends AbstractCloseableIterator<T> {
+  // The next partition is read ahead once the scan is in the last 1/READ_AHEAD_DIVISOR of the current partition
+  private static final int READ_AHEAD_DIVISOR = 10;
+
   private final Iterator<LevelDBPartition> partitionIter;
   private final byte[] startRow;
   private final byte[] stopRow;
   private final BiFunction<byte[], byte[], T> decodeFunction;
+  private final ToLongFunction<T> timeFunction;
+  private final Executor readAheadExecutor;
   private boolean closed;
   private CloseableIterator<Map.Entry<byte[], byte[]>> currentPartition;
+  private long readAheadTime;
+  private LevelDBPartition nextPartitionInfo;
+  private CompletableFuture<CloseableIterator<Map.Entry<byte[], byte[]>>> nextPartition;
 
   public PartitionedDBScanIterator(Iterator<LevelDBPartition> partitionIter, byte[] startRow, byte[] stopRow,
                                    BiFunction<byte[], byte[], T> decodeFunction) throws IOException {
+    this(partitionIter, startRow, stopRow, decodeFunction, null, null);
+  }
+
+  /**
+   * Creates an iterator that reads ahead the next partition if an {@link Executor} is provided.
+   *
+   * @param timeFunction returns the publish time of a scanned object, which tells how close the scan is to the end
+   *                     of the current partition. It must be provided if the read-ahead executor is provided.
+   * @param readAheadExecutor the {@link Executor} to open the next partition in, or {@code null} to disable read-ahead
+   */
+  public PartitionedDBScanIterator(Iterator<LevelDBPartition> partitionIter, byte[] startRow, byte[] stopRow,
+                                   BiFunction<byte[], byte[], T> decodeFunction,
+                                   @Nullable ToLongFunction<T> timeFunction,
+                                   @Nullable Executor readAheadExecutor) throws IOException {
+    if (readAheadExecutor != null && timeFunction == null) {
+      throw new IllegalArgumentException("A time function must be provided for reading ahead partitions");
+    }
     this.partitionIter = partitionIter;
     this.startRow = startRow;
     this.stopRow = stopRow;
     this.decodeFunction = decodeFunction;
+    this.timeFunction = timeFunction;
+    this.readAheadExecutor = readAheadExecutor;
     this.closed = false;
-    this.currentPartition = partitionIter.hasNext() ?
-      new DBScanIterator(partitionIter.next().getLevelDB(), startRow, stopRow) : CloseableIterator.empty();
+    this.readAheadTime = Long.MAX_VALUE;
+    if (partitionIter.hasNext()) {
+      LevelDBPartition partition = partitionIter.next();
+      this.currentPartition = new DBScanIterator(partition.getLevelDB(), startRow, stopRow);
+      this.readAheadTime = getReadAheadTime(partition);
+    } else {
+      this.currentPartition = CloseableIterator.empty();
+    }
   }
 
   @Override
@@ -54,34 +100,106 @@ public class PartitionedDBScanIterator<T> extends AbstractCloseableIterator<T> {
       return endOfData();
     }
 
-    if (!currentPartition.hasNext()) {
-      while (partitionIter.hasNext()) {
-        try {
-          currentPartition = new DBScanIterator(partitionIter.next().getLevelDB(), startRow, stopRow);
-        } catch (IOException e) {
-          throw new RuntimeException(e);
-        }
-        if (currentPartition.hasNext()) {
-          break;
-        }
+    while (!currentPartition.hasNext()) {
+      if (!moveToNextPartition()) {
+        return endOfData();
       }
     }
 
-    if (!currentPartition.hasNext()) {
-      return endOfData();
-    }
-
     Map.Entry<byte[], byte[]> row = currentPartition.next();
-    return decodeFunction.apply(row.getKey(), row.getValue());
+    T result = decodeFunction.apply(row.getKey(), row.getValue());
+    if (readAheadExecutor != null && timeFunction.applyAsLong(result) >= readAheadTime) {
+      readAhead();
+    }
+    return result;
   }
 
   @Override
   public void close() {
     try {
+      // Close the read ahead partition once it is opened
+      if (nextPartition != null) {
+        nextPartition.thenAccept(CloseableIterator::close);
+        nextPartition = null;
+      }
       currentPartition.close();
     } finally {
       endOfData();
       closed = true;
     }
   }
+
+  /**
+   * Returns the publish time from which the next partition is read ahead while scanning the given partition.
+   */
+  private long getReadAheadTime(LevelDBPartition partition) {
+    if (readAheadExecutor == null) {
+      return Long.MAX_VALUE;
+    }
+    return partition.getEndTime() - (partition.getEndTime() - partition.getStartTime()) / READ_AHEAD_DIVISOR;
+  }
+
+  /**
+   * Opens the next partition in the background if there is no pending read-ahead.
+   */
+  private void readAhead() {
+    // Only read ahead once per partition
+    readAheadTime = Long.MAX_VALUE;
+    if (nextPartition != null || !partitionIter.hasNext()) {
+      return;
+    }
+    LevelDBPartition partition = partitionIter.next();
+    nextPartitionInfo = partition;
+    try {
+      nextPartition = CompletableFuture.supplyAsync(() -> {
+        CloseableIterator<Map.Entry<byte[], byte[]>> iterator = openPartition(partition);
+        // Fetch the first row so that the seek and the first block read happen in the background
+        iterator.hasNext();
+        return iterator;
+      }, readAheadExecutor);
+    } catch (RejectedExecutionException e) {
+      // The executor is shutting down, open the partition in the current thread.
+      nextPartition = CompletableFuture.completedFuture(openPartition(partition));
+    }
+  }
+
+  /**
+   * Closes the current partition and moves to the next one, which is either the one read ahead, or opened in the
+   * current thread.
+   *
+   * @return {@code true} if moved to the next partition, or {@code false} if there is no more partition
+   */
+  private boolean moveToNextPartition() {
+    LevelDBPartition partition;
+    CloseableIterator<Map.Entry<byte[], byte[]>> iterator;
+    if (nextPartition != null) {
+      CompletableFuture<CloseableIterator<Map.Entry<byte[], byte[]>>> future = nextPartition;
+      partition = nextPartitionInfo;
+      nextPartition = null;
+      nextPartitionInfo = null;
+      try {
+        iterator = Uninterruptibles.getUninterruptibly(future);
+      } catch (ExecutionException e) {
+        throw Throwables.propagate(e.getCause());
+      }
+    } else if (partitionIter.hasNext()) {
+      partition = partitionIter.next();
+      iterator = openPartition(partition);
+    } else {
+      return false;
+    }
+
+    currentPartition.close();
+    currentPartition = iterator;
+    readAheadTime = getReadAheadTime(partition);
+    return true;
+  }
+
+  private CloseableIterator<Map.Entry<byte[], byte[]>> openPartition(LevelDBPartition partition) {
+    try {
+      return new DBScanIterator(partition.getLevelDB(), startRow, stopRow);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
 }
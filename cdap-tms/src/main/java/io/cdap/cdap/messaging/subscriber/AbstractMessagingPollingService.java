@@ -17,6 +17,7 @@
 package io.cdap.cdap.messaging.subscriber;
 
 import com.google.common.collect.AbstractIterator;
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.messaging.Message;
@@ -32,13 +33,22 @@ import io.cdap.cdap.common.service.RetryStrategy;
 import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.messaging.data.MessageId;
 import io.cdap.cdap.proto.id.TopicId;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.annotation.Nullable;
 
 /**
@@ -55,8 +65,10 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
   private final MetricsContext metricsContext;
   private final int fetchSize;
   private final long emptyFetchDelayMillis;
+  private final Deque<CompletableFuture<FetchedBatch>> prefetchedBatches;
   private boolean messageIdInitialized;
   private String messageId;
+  private ExecutorService prefetchExecutor;
 
   protected AbstractMessagingPollingService(TopicId topicId, MetricsContext metricsContext, int fetchSize,
                                             long emptyFetchDelayMillis, RetryStrategy retryStrategy) {
@@ -65,6 +77,7 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
     this.metricsContext = metricsContext;
     this.fetchSize = fetchSize;
     this.emptyFetchDelayMillis = emptyFetchDelayMillis;
+    this.prefetchedBatches = new LinkedList<>();
   }
 
   /**
@@ -113,6 +126,19 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
   @Nullable
   protected abstract String processMessages(Iterator<ImmutablePair<String, T>> messages) throws Exception;
 
+  /**
+   * Returns the maximum number of batches to fetch ahead while the current batch is being processed.
+   * Prefetching only happens when the previous batch was full, which means the service is lagging behind the topic.
+   * A prefetched batch is only used if it starts from the message id returned by
+   * {@link #processMessages(Iterator)}, otherwise it is discarded and refetched, hence the processing and
+   * checkpointing semantics are the same as without prefetching.
+   * When this is enabled, the {@link #fetchMessages(String)} method will be called from a separate thread.
+   * By default this method returns {@code 0}, which disables prefetching.
+   */
+  protected int getMaxPrefetchBatches() {
+    return 0;
+  }
+
   /**
    * Perform pre-processing before a batch of messages will be processed.
    */
@@ -144,6 +170,18 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
     return true;
   }
 
+  @Override
+  protected void doShutdown() throws Exception {
+    try {
+      clearPrefetchedBatches();
+      if (prefetchExecutor != null) {
+        prefetchExecutor.shutdownNow();
+      }
+    } finally {
+      super.doShutdown();
+    }
+  }
+
   @Override
   protected final long runTask() throws Exception {
     try {
@@ -191,16 +229,22 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
     long startTime = System.currentTimeMillis();
 
     // Collects batch of messages for processing.
-    List<Message> messages = fetchMessages(messageId);
+    int maxPrefetchBatches = getMaxPrefetchBatches();
+    List<Message> messages = maxPrefetchBatches > 0
+      ? fetchMessagesPipelined(messageId, maxPrefetchBatches)
+      : fetchMessages(messageId);
     metricsContext.gauge("tms.fetch.time.ms", System.currentTimeMillis() - startTime);
     metricsContext.increment("tms.fetch.messages", messages.size());
 
     // Return if stopping or request to sleep for configured number of milliseconds if there is no message fetched.
     if (messages.isEmpty() || state() != State.RUNNING) {
+      metricsContext.gauge("process.lag.ms", 0L);
       return Math.max(0L, emptyFetchDelayMillis - (System.currentTimeMillis() - startTime));
     }
 
     startTime = System.currentTimeMillis();
+    // The lag is how long the oldest unprocessed message has been waiting since it was published
+    metricsContext.gauge("process.lag.ms", startTime - getMessagePublishTime(messages.get(0).getId()));
 
     MessageIterator iterator = new MessageIterator(messages.iterator());
     String messageId = processMessages(iterator);
@@ -219,6 +263,86 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
     return 0L;
   }
 
+  /**
+   * Returns the batch of messages starting after the given message id, using the prefetched batch if
+   * available, and schedules fetching of the following batches in the background.
+   */
+  private List<Message> fetchMessagesPipelined(@Nullable String messageId,
+                                               int maxPrefetchBatches) throws TopicNotFoundException, IOException {
+    List<Message> messages = null;
+    // Whether a prefetch was issued for this batch, which is not the case if the previous batch was not full
+    boolean prefetched = false;
+    CompletableFuture<FetchedBatch> future = prefetchedBatches.poll();
+    if (future != null) {
+      try {
+        FetchedBatch batch = Uninterruptibles.getUninterruptibly(future);
+        prefetched = batch != null;
+        // Only use the prefetched batch if it starts from where the processing is up to
+        if (batch != null && Objects.equals(batch.startMessageId, messageId)) {
+          messages = batch.messages;
+        }
+      } catch (ExecutionException e) {
+        prefetched = true;
+        LOG.debug("Failed to prefetch messages from topic {}. Fetching again.", topicId, e.getCause());
+      }
+    }
+
+    if (messages == null) {
+      // Prefetched batches are not usable, discard all of them and fetch in the current thread
+      if (prefetched) {
+        metricsContext.increment("tms.prefetch.miss", 1L);
+      }
+      clearPrefetchedBatches();
+      messages = fetchMessages(messageId);
+    } else {
+      metricsContext.increment("tms.prefetch.hit", 1L);
+    }
+
+    // Schedule prefetching of the following batches, each starts after the last message of the batch before it
+    CompletableFuture<FetchedBatch> previous = prefetchedBatches.isEmpty()
+      ? CompletableFuture.completedFuture(new FetchedBatch(messageId, messages))
+      : prefetchedBatches.getLast();
+    while (prefetchedBatches.size() < maxPrefetchBatches && state() == State.RUNNING) {
+      previous = previous.thenApplyAsync(this::prefetchNext, getPrefetchExecutor());
+      prefetchedBatches.add(previous);
+    }
+    metricsContext.gauge("tms.prefetch.batches", prefetchedBatches.size());
+    return messages;
+  }
+
+  /**
+   * Fetches the batch after the given batch. Returns {@code null} if the given batch is not full,
+   * which means there is no point to prefetch.
+   */
+  @Nullable
+  private FetchedBatch prefetchNext(@Nullable FetchedBatch previous) {
+    if (previous == null || previous.messages.size() < fetchSize || state() != State.RUNNING) {
+      return null;
+    }
+    String startMessageId = previous.messages.get(previous.messages.size() - 1).getId();
+    try {
+      return new FetchedBatch(startMessageId, fetchMessages(startMessageId));
+    } catch (Exception e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  private void clearPrefetchedBatches() {
+    CompletableFuture<FetchedBatch> future = prefetchedBatches.poll();
+    while (future != null) {
+      future.cancel(true);
+      future = prefetchedBatches.poll();
+    }
+  }
+
+  private ExecutorService getPrefetchExecutor() {
+    if (prefetchExecutor == null) {
+      prefetchExecutor = Executors.newSingleThreadExecutor(
+        Threads.createDaemonThreadFactory(getServiceName() + "-prefetch"));
+    }
+    return prefetchExecutor;
+  }
+
   /**
    * Returns the publish time encoded in the given message id.
    *
@@ -229,6 +353,19 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
     return new MessageId(Bytes.fromHexString(messageId)).getPublishTimestamp();
   }
 
+  /**
+   * A batch of fetched messages together with the message id that the fetch started from.
+   */
+  private static final class FetchedBatch {
+    private final String startMessageId;
+    private final List<Message> messages;
+
+    FetchedBatch(@Nullable String startMessageId, List<Message> messages) {
+      this.startMessageId = startMessageId;
+      this.messages = messages;
+    }
+  }
+
   /**
    * An {@link Iterator} that decodes {@link Message} to a given object type through the {@link #decodeMessage(Message)}
    * method.
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.messaging.data.RawMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit test for {@link MessageFrames}.
+ */
+public class MessageFramesTest {
+
+  @Test
+  public void testEncodeDecode() throws IOException {
+    List<RawMessage> messages = Arrays.asList(
+      new RawMessage(Bytes.toBytes("id1"), Bytes.toBytes("payload1")),
+      new RawMessage(Bytes.toBytes("id2"), new byte[0]),
+      new RawMessage(Bytes.toBytes("id3"), Bytes.toBytes("payload3"))
+    );
+
+    ByteBuf buffer = Unpooled.buffer();
+    for (RawMessage message : messages) {
+      int start = buffer.writerIndex();
+      MessageFrames.writeHeader(message, buffer);
+      Assert.assertEquals(MessageFrames.getHeaderSize(message), buffer.writerIndex() - start);
+      buffer.writeBytes(message.getPayload());
+    }
+    MessageFrames.writeEnd(buffer);
+
+    MessageFrames.Reader reader = new MessageFrames.Reader(new ByteBufInputStream(buffer));
+    for (RawMessage expected : messages) {
+      RawMessage message = reader.next();
+      Assert.assertNotNull(message);
+      Assert.assertArrayEquals(expected.getId(), message.getId());
+      Assert.assertArrayEquals(expected.getPayload(), message.getPayload());
+    }
+    Assert.assertNull(reader.next());
+    Assert.assertNull(reader.next());
+  }
+
+  @Test(expected = IOException.class)
+  public void testIncompleteFrame() throws IOException {
+    ByteBuf buffer = Unpooled.buffer();
+    MessageFrames.writeHeader(new RawMessage(Bytes.toBytes("id"), Bytes.toBytes("payload")), buffer);
+    buffer.writeBytes(Bytes.toBytes("pay"));
+
+    new MessageFrames.Reader(new ByteBufInputStream(buffer)).next();
+  }
+}
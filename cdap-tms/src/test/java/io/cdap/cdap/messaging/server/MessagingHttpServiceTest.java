@@ -75,11 +75,13 @@ import java.util.stream.Collectors;
 @RunWith(Parameterized.class)
 public class MessagingHttpServiceTest {
 
-  @Parameterized.Parameters(name = "{index}: compressPayload = {0}")
+  @Parameterized.Parameters(name = "{index}: compressPayload = {0}, binaryFrames = {1}")
   public static Collection<Object[]> parameters() {
     return Arrays.asList(new Object[][]{
-      {false},
-      {true},
+      {false, false},
+      {true, false},
+      {false, true},
+      {true, true},
     });
   }
 
@@ -87,12 +89,14 @@ public class MessagingHttpServiceTest {
   public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
 
   private final boolean compressPayload;
+  private final boolean binaryFrames;
   private CConfiguration cConf;
   private MessagingHttpService httpService;
   private MessagingService client;
 
-  public MessagingHttpServiceTest(boolean compressPayload) {
+  public MessagingHttpServiceTest(boolean compressPayload, boolean binaryFrames) {
     this.compressPayload = compressPayload;
+    this.binaryFrames = binaryFrames;
   }
 
   @Before
@@ -106,6 +110,7 @@ public class MessagingHttpServiceTest {
     // Reduce the buffer size for the http request buffer to test "large" message request
     cConf.setInt(Constants.MessagingSystem.HTTP_SERVER_MAX_REQUEST_SIZE_MB, 1);
     cConf.setBoolean(Constants.MessagingSystem.HTTP_COMPRESS_PAYLOAD, compressPayload);
+    cConf.setBoolean(Constants.MessagingSystem.HTTP_FETCH_BINARY_FRAMES, binaryFrames);
 
     Injector injector = Guice.createInjector(
       new ConfigModule(cConf),
@@ -124,7 +129,8 @@ public class MessagingHttpServiceTest {
 
     httpService = injector.getInstance(MessagingHttpService.class);
     httpService.startAndWait();
-    client = new ClientMessagingService(injector.getInstance(RemoteClientFactory.class), compressPayload);
+    client = new ClientMessagingService(injector.getInstance(RemoteClientFactory.class),
+                                         compressPayload, binaryFrames);
   }
 
   @After
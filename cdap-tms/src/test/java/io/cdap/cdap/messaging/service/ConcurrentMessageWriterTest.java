@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -22,6 +22,7 @@ import com.google.common.collect.ListMultimap;
 import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.common.utils.TimeProvider;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
@@ -45,7 +46,10 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 
 /**
@@ -268,6 +272,170 @@ public class ConcurrentMessageWriterTest {
     }
   }
 
+  @Test
+  public void testGroupCommit() throws Exception {
+    int payloadsPerRequest = 10;
+    int threadCount = 10;
+    int requestPerThread = 20;
+
+    TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+
+    List<String> payload = new ArrayList<>(payloadsPerRequest);
+    for (int i = 0; i < payloadsPerRequest; i++) {
+      payload.add(Integer.toString(i));
+    }
+
+    // Use a long linger time and a batch size that fits exactly the requests from all threads.
+    // Each payload is one byte, hence each round of requests from all threads should be written in one batch.
+    AtomicLong maxQueueSize = new AtomicLong();
+    MetricsCollector metricsCollector = new MetricsCollector() {
+      @Override
+      public void increment(String metricName, long value) {
+        // No-op
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        if ("persist.queue.size".equals(metricName)) {
+          maxQueueSize.accumulateAndGet(value, Math::max);
+        }
+      }
+    };
+    ScheduledExecutorService groupCommitExecutor = Executors.newSingleThreadScheduledExecutor();
+    ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, metricsCollector, groupCommitExecutor,
+                                                                 TimeUnit.MINUTES.toMillis(1),
+                                                                 payloadsPerRequest * threadCount);
+    try {
+      ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+      CyclicBarrier barrier = new CyclicBarrier(threadCount);
+      for (int i = 0; i < threadCount; i++) {
+        executor.submit(() -> {
+          try {
+            for (int j = 0; j < requestPerThread; j++) {
+              barrier.await();
+              writer.persist(new TestStoreRequest(topicId, payload), metadata);
+            }
+          } catch (Exception e) {
+            LOG.error("Exception raised when persisting.", e);
+          }
+        });
+      }
+      executor.shutdown();
+      Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    } finally {
+      writer.close();
+      groupCommitExecutor.shutdownNow();
+    }
+
+    List<RawMessage> messages = testWriter.getMessages().get(topicId);
+    Assert.assertEquals(payloadsPerRequest * threadCount * requestPerThread, messages.size());
+    Assert.assertEquals(requestPerThread, testWriter.getWriteCount());
+    // All requests of a round are queued before the batch is written
+    Assert.assertEquals(threadCount, maxQueueSize.get());
+
+    // The message id must be sorted
+    RawMessage lastMessage = null;
+    for (RawMessage message : messages) {
+      if (lastMessage != null) {
+        Assert.assertTrue(Bytes.compareTo(lastMessage.getId(), message.getId()) < 0);
+      }
+      lastMessage = message;
+    }
+
+    // Persist after close should fail
+    try {
+      writer.persist(new TestStoreRequest(topicId, payload), metadata);
+      Assert.fail("Expected failure on persisting to a closed writer");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testGroupCommitLinger() throws Exception {
+    TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+
+    TopicId topicId2 = NamespaceId.DEFAULT.topic("t2");
+    TopicMetadata metadata2 = new TopicMetadata(topicId2, new HashMap<String, String>(), 1);
+    TestStoreRequestWriter testWriter2 = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+
+    // With a large batch size, a single request should still get written after the linger time.
+    // Writers share the executor, hence a single thread serves both of them.
+    ScheduledExecutorService groupCommitExecutor = Executors.newSingleThreadScheduledExecutor();
+    try (
+      ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new NoopMetricsContext(),
+                                                                   groupCommitExecutor, 10L, Long.MAX_VALUE);
+      ConcurrentMessageWriter writer2 = new ConcurrentMessageWriter(testWriter2, new NoopMetricsContext(),
+                                                                    groupCommitExecutor, 10L, Long.MAX_VALUE)
+    ) {
+      writer.persist(new TestStoreRequest(topicId, Arrays.asList("1", "2", "3")), metadata);
+      Assert.assertEquals(3, testWriter.getMessages().get(topicId).size());
+      Assert.assertEquals(1, testWriter.getWriteCount());
+
+      writer2.persist(new TestStoreRequest(topicId2, Arrays.asList("1", "2")), metadata2);
+      Assert.assertEquals(2, testWriter2.getMessages().get(topicId2).size());
+      Assert.assertEquals(1, testWriter2.getWriteCount());
+    } finally {
+      groupCommitExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testCloseWithConcurrentPersist() throws Exception {
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+    testCloseWithConcurrentPersist(testWriter, new ConcurrentMessageWriter(testWriter));
+
+    ScheduledExecutorService groupCommitExecutor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+      testCloseWithConcurrentPersist(testWriter, new ConcurrentMessageWriter(testWriter, new NoopMetricsContext(),
+                                                                             groupCommitExecutor, 1L, 100L));
+    } finally {
+      groupCommitExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Closes the given writer while other threads keep persisting. Every persist call should either fail or have
+   * its messages written before the underlying writer gets closed.
+   */
+  private void testCloseWithConcurrentPersist(TestStoreRequestWriter testWriter,
+                                              ConcurrentMessageWriter writer) throws Exception {
+    TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+    int threadCount = 5;
+
+    AtomicInteger succeeded = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(threadCount);
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    for (int i = 0; i < threadCount; i++) {
+      executor.submit(() -> {
+        started.countDown();
+        try {
+          while (true) {
+            writer.persist(new TestStoreRequest(topicId, Arrays.asList("1", "2")), metadata);
+            succeeded.incrementAndGet();
+          }
+        } catch (IOException e) {
+          // expected once the writer is closed
+        }
+      });
+    }
+
+    started.await();
+    TimeUnit.MILLISECONDS.sleep(50);
+    writer.close();
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+    Assert.assertTrue(testWriter.isClosed());
+    Assert.assertEquals(succeeded.get() * 2, testWriter.getMessages().get(topicId).size());
+  }
+
   /**
    * A {@link StoreRequestWriter} that turns all payloads to {@link RawMessage} and stores it in a List.
    */
@@ -275,6 +443,8 @@ public class ConcurrentMessageWriterTest {
 
     private final ListMultimap<TopicId, RawMessage> messages = ArrayListMultimap.create();
     private long writeDelayMillis;
+    private int writeCount;
+    private volatile boolean closed;
 
     TestStoreRequestWriter(TimeProvider timeProvider) {
       super(timeProvider, false);
@@ -297,6 +467,10 @@ public class ConcurrentMessageWriterTest {
 
     @Override
     protected void doWrite(Iterator<TestEntry> entries) throws IOException {
+      if (closed) {
+        throw new IllegalStateException("Writer is already closed");
+      }
+      writeCount++;
       while (entries.hasNext()) {
         TestEntry entry = entries.next();
         byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
@@ -315,9 +489,17 @@ public class ConcurrentMessageWriterTest {
       return messages;
     }
 
+    int getWriteCount() {
+      return writeCount;
+    }
+
+    boolean isClosed() {
+      return closed;
+    }
+
     @Override
     public void close() throws IOException {
-      // No-op
+      closed = true;
     }
   }
 
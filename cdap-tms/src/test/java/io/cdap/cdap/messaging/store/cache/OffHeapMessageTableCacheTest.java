@@ -0,0 +1,279 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.cache;
+
+import com.google.common.collect.Lists;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.store.MessageFilter;
+import io.cdap.cdap.messaging.store.MessageTable;
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.proto.id.TopicId;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unit test for {@link OffHeapMessageTableCache}.
+ */
+public class OffHeapMessageTableCacheTest {
+
+  private static final TopicId TOPIC = NamespaceId.SYSTEM.topic("test");
+
+  @Test
+  public void testBasic() {
+    OffHeapMessageTableCache cache = createCache(64 * 1024);
+    cache.addAll(createEntries(1, 10).iterator());
+    Assert.assertTrue(cache.getUsedBytes() > 0);
+    Assert.assertTrue(cache.getOffHeapBytes() > 0);
+
+    MessageFilter<MessageTable.Entry> filter = MessageFilter.alwaysAccept();
+
+    // Scan from the beginning
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(lookup(0), true, 100, filter)) {
+      Assert.assertEquals(1L, scanner.getFirstInCache().getPublishTimestamp());
+      Assert.assertEquals(range(1, 10), toTimestamps(scanner));
+    }
+
+    // Scan with start inclusive and limit
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(lookup(3), true, 3, filter)) {
+      Assert.assertEquals(Arrays.asList(3L, 4L, 5L), toTimestamps(scanner));
+    }
+
+    // Scan with start exclusive
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(lookup(3), false, 3, filter)) {
+      Assert.assertEquals(Arrays.asList(4L, 5L, 6L), toTimestamps(scanner));
+    }
+
+    // Scan with hold filter
+    MessageFilter<MessageTable.Entry> holdAtFive = new MessageFilter<MessageTable.Entry>() {
+      @Override
+      public Result apply(MessageTable.Entry input) {
+        return input.getPublishTimestamp() == 5L ? Result.HOLD : Result.ACCEPT;
+      }
+    };
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(lookup(0), true, 100, holdAtFive)) {
+      Assert.assertEquals(range(1, 4), toTimestamps(scanner));
+    }
+
+    // Payloads should be preserved
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(lookup(7), true, 1, filter)) {
+      MessageTable.Entry entry = scanner.next();
+      Assert.assertEquals("Payload 7", Bytes.toString(entry.getPayload()));
+      Assert.assertEquals(TOPIC, entry.getTopicId());
+      Assert.assertTrue(entry.isTransactional());
+      Assert.assertEquals(7L, entry.getTransactionWritePointer());
+    }
+
+    cache.clear();
+    Assert.assertEquals(0L, cache.getUsedBytes());
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(lookup(0), true, 100, filter)) {
+      Assert.assertNull(scanner.getFirstInCache());
+      Assert.assertFalse(scanner.hasNext());
+    }
+  }
+
+  @Test
+  public void testSegmentEviction() {
+    // Each segment can hold only a few entries
+    OffHeapMessageTableCache cache = createCache(OffHeapMessageTableCache.NUM_SEGMENTS * 128);
+    cache.addAll(createEntries(1, 1000).iterator());
+
+    // Oldest segments should be dropped, the remaining ones must be contiguous and end with the last entry
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(lookup(0), true, 10000,
+                                                                       MessageFilter.alwaysAccept())) {
+      long first = scanner.getFirstInCache().getPublishTimestamp();
+      Assert.assertTrue(first > 1L);
+      Assert.assertEquals(range(first, 1000), toTimestamps(scanner));
+    }
+    Assert.assertTrue(cache.getUsedBytes() <= OffHeapMessageTableCache.NUM_SEGMENTS * 128);
+  }
+
+  @Test
+  public void testOversizedEntry() {
+    OffHeapMessageTableCache cache = createCache(OffHeapMessageTableCache.NUM_SEGMENTS * 128);
+    cache.addAll(createEntries(1, 5).iterator());
+    cache.addAll(Collections.singletonList(createEntry(6, new byte[1024])).iterator());
+    cache.addAll(createEntries(7, 8).iterator());
+
+    // The cache must not contain entries before the oversized one
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(lookup(0), true, 100,
+                                                                       MessageFilter.alwaysAccept())) {
+      Assert.assertEquals(7L, scanner.getFirstInCache().getPublishTimestamp());
+      Assert.assertEquals(Arrays.asList(7L, 8L), toTimestamps(scanner));
+    }
+  }
+
+  @Test
+  public void testRollback() {
+    OffHeapMessageTableCache cache = createCache(64 * 1024);
+    cache.addAll(createEntries(1, 10).iterator());
+
+    cache.updateEntries(lookup(3), lookup(5), new MessageCache.EntryUpdater<MessageTable.Entry>() {
+      @Override
+      public void updateEntry(MessageTable.Entry entry) {
+        ((CachingMessageTable.CacheMessageTableEntry) entry).rollback();
+      }
+    });
+
+    List<Long> rollbacks = new ArrayList<>();
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(lookup(0), true, 100,
+                                                                       MessageFilter.alwaysAccept())) {
+      while (scanner.hasNext()) {
+        CachingMessageTable.CacheMessageTableEntry entry = (CachingMessageTable.CacheMessageTableEntry) scanner.next();
+        if (entry.isRollback()) {
+          rollbacks.add(entry.getPublishTimestamp());
+        }
+      }
+    }
+    Assert.assertEquals(Arrays.asList(3L, 4L, 5L), rollbacks);
+  }
+
+  @Test
+  public void testAddError() {
+    OffHeapMessageTableCache cache = createCache(64 * 1024);
+    cache.addAll(createEntries(5, 8).iterator());
+    try {
+      cache.addAll(createEntries(1, 4).iterator());
+      Assert.fail("Expected failure for adding out of order");
+    } catch (IllegalArgumentException e) {
+      // Expected. The cache should be cleared
+      Assert.assertEquals(0L, cache.getUsedBytes());
+    }
+
+    // Adding after the failure should work
+    cache.addAll(createEntries(1, 4).iterator());
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(lookup(0), true, 100,
+                                                                       MessageFilter.alwaysAccept())) {
+      Assert.assertEquals(range(1, 4), toTimestamps(scanner));
+    }
+  }
+
+  @Test
+  public void testResize() {
+    OffHeapMessageTableCache cache = createCache(64 * 1024);
+    cache.addAll(createEntries(1, 10).iterator());
+
+    cache.resize(new MessageCache.Limits(0, 0, 0));
+    Assert.assertEquals(0L, cache.getOffHeapBytes());
+    cache.addAll(createEntries(11, 20).iterator());
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(lookup(0), true, 100,
+                                                                       MessageFilter.alwaysAccept())) {
+      Assert.assertFalse(scanner.hasNext());
+    }
+
+    cache.resize(new MessageCache.Limits(0, 0, 64 * 1024));
+    cache.addAll(createEntries(21, 30).iterator());
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(lookup(0), true, 100,
+                                                                       MessageFilter.alwaysAccept())) {
+      Assert.assertEquals(range(21, 30), toTimestamps(scanner));
+    }
+  }
+
+  @Test
+  public void testConcurrentScan() throws Exception {
+    OffHeapMessageTableCache cache = createCache(OffHeapMessageTableCache.NUM_SEGMENTS * 1024);
+    AtomicBoolean stopped = new AtomicBoolean();
+
+    // Readers keep scanning while the writer keeps adding and evicting segments, and resizing the cache.
+    // Every scan must return a contiguous list of entries.
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        futures.add(executor.submit(() -> {
+          int scans = 0;
+          while (!stopped.get()) {
+            try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(lookup(0), true, 100000,
+                                                                               MessageFilter.alwaysAccept())) {
+              List<Long> timestamps = toTimestamps(scanner);
+              for (int j = 1; j < timestamps.size(); j++) {
+                Assert.assertEquals(timestamps.get(j - 1) + 1, (long) timestamps.get(j));
+              }
+            }
+            scans++;
+          }
+          return scans;
+        }));
+      }
+
+      for (int i = 0; i < 2000; i++) {
+        cache.addAll(createEntries(i * 10 + 1, i * 10 + 10).iterator());
+        if (i % 500 == 499) {
+          cache.resize(cache.getLimits());
+        }
+      }
+      stopped.set(true);
+      for (Future<Integer> future : futures) {
+        Assert.assertTrue(future.get(1, TimeUnit.MINUTES) > 0);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private OffHeapMessageTableCache createCache(long hardLimit) {
+    return new OffHeapMessageTableCache(TOPIC, new MessageCache.Limits(0, 0, hardLimit), new NoopMetricsContext());
+  }
+
+  private List<MessageTable.Entry> createEntries(long startTimestamp, long endTimestamp) {
+    List<MessageTable.Entry> entries = new ArrayList<>();
+    for (long i = startTimestamp; i <= endTimestamp; i++) {
+      entries.add(createEntry(i, Bytes.toBytes("Payload " + i)));
+    }
+    return entries;
+  }
+
+  private MessageTable.Entry createEntry(long publishTimestamp, byte[] payload) {
+    return new CachingMessageTable.CacheMessageTableEntry(TOPIC, 1, true, publishTimestamp, payload,
+                                                          publishTimestamp, (short) 0, false);
+  }
+
+  private MessageTable.Entry lookup(long publishTimestamp) {
+    return new CachingMessageTable.CacheMessageTableEntry(TOPIC, 1, publishTimestamp, (short) 0);
+  }
+
+  private List<Long> range(long start, long end) {
+    List<Long> result = new ArrayList<>();
+    for (long i = start; i <= end; i++) {
+      result.add(i);
+    }
+    return result;
+  }
+
+  private List<Long> toTimestamps(Iterable<MessageTable.Entry> entries) {
+    List<Long> result = new ArrayList<>();
+    for (MessageTable.Entry entry : entries) {
+      result.add(entry.getPublishTimestamp());
+    }
+    return result;
+  }
+
+  private List<Long> toTimestamps(MessageCache.Scanner<MessageTable.Entry> scanner) {
+    return toTimestamps(Lists.newArrayList(scanner));
+  }
+}
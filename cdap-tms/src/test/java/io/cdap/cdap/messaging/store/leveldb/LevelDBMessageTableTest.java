@@ -16,6 +16,8 @@
 
 package io.cdap.cdap.messaging.store.leveldb;
 
+import com.google.common.base.Stopwatch;
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
@@ -27,11 +29,14 @@ import io.cdap.cdap.messaging.store.MetadataTable;
 import io.cdap.cdap.messaging.store.TableFactory;
 import io.cdap.cdap.messaging.store.TestMessageEntry;
 import io.cdap.cdap.proto.id.TopicId;
+import org.iq80.leveldb.Options;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
@@ -41,11 +46,15 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Tests for {@link LevelDBMessageTable}.
  */
 public class LevelDBMessageTableTest extends MessageTableTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LevelDBMessageTableTest.class);
   private static final int PARTITION_SECONDS = 10;
 
   @ClassRule
@@ -151,4 +160,115 @@ public class LevelDBMessageTableTest extends MessageTableTest {
       Assert.assertEquals(expected, actual);
     }
   }
+
+  @Test
+  public void testCatchUpReadAhead() throws Exception {
+    // Simulate a subscriber catching up on a topic that spans many partitions
+    File baseDir = tmpFolder.newFolder();
+    TopicId topicId = new TopicId("default", "catchup");
+    int generation = 1;
+    TopicMetadata topicMetadata =
+      new TopicMetadata(topicId, Collections.singletonMap(TopicMetadata.GENERATION_KEY, String.valueOf(generation)));
+    int numPartitions = 50;
+    int messagesPerPartition = 1000;
+
+    LevelDBTableFactory tableFactory = createCatchUpTableFactory(baseDir, 2);
+    try (MessageTable table = tableFactory.createMessageTable(topicMetadata)) {
+      List<MessageTable.Entry> writes = new ArrayList<>();
+      for (int i = 0; i < numPartitions; i++) {
+        for (int j = 0; j < messagesPerPartition; j++) {
+          writes.add(new TestMessageEntry(topicId, generation, i * 1000L + j, 0, null, Bytes.toBytes(j)));
+        }
+      }
+      table.store(writes.iterator());
+    }
+    tableFactory.close();
+
+    // Scan all messages with and without read ahead. Both should return all messages in order.
+    for (int readAheadThreads : new int[] { 0, 2 }) {
+      tableFactory = createCatchUpTableFactory(baseDir, readAheadThreads);
+      try (MessageTable table = tableFactory.createMessageTable(topicMetadata)) {
+        Stopwatch stopwatch = new Stopwatch().start();
+        int count = 0;
+        long lastPublishTime = -1L;
+        try (CloseableIterator<MessageTable.Entry> iter = table.fetch(topicMetadata, 0L, Integer.MAX_VALUE, null)) {
+          while (iter.hasNext()) {
+            MessageTable.Entry entry = iter.next();
+            Assert.assertTrue(entry.getPublishTimestamp() > lastPublishTime);
+            Assert.assertEquals(entry.getPublishTimestamp() % 1000, Bytes.toInt(entry.getPayload()));
+            lastPublishTime = entry.getPublishTimestamp();
+            count++;
+          }
+        }
+        LOG.info("Catch up scan of {} messages with {} read ahead threads took {} ms",
+                 count, readAheadThreads, stopwatch.elapsedMillis());
+        Assert.assertEquals(numPartitions * messagesPerPartition, count);
+
+        // Start from time should only return messages from that time onward
+        try (CloseableIterator<MessageTable.Entry> iter = table.fetch(topicMetadata, 42500L, 10, null)) {
+          Assert.assertTrue(iter.hasNext());
+          Assert.assertEquals(42500L, iter.next().getPublishTimestamp());
+        }
+      } finally {
+        tableFactory.close();
+      }
+    }
+  }
+
+  @Test
+  public void testLazyReadAhead() throws Exception {
+    TopicId topicId = new TopicId("default", "readahead");
+    int generation = 1;
+    TopicMetadata topicMetadata =
+      new TopicMetadata(topicId, Collections.singletonMap(TopicMetadata.GENERATION_KEY, String.valueOf(generation)));
+    int numPartitions = 5;
+    int messagesPerPartition = 100;
+
+    // Count the partitions being read ahead, opening them in the calling thread
+    AtomicInteger readAheads = new AtomicInteger();
+    Executor readAheadExecutor = command -> {
+      readAheads.incrementAndGet();
+      command.run();
+    };
+
+    Options dbOptions = new Options().errorIfExists(false).createIfMissing(true);
+    try (LevelDBPartitionManager partitionManager = new LevelDBPartitionManager(tmpFolder.newFolder(), dbOptions,
+                                                                                1000L)) {
+      MessageTable table = new LevelDBMessageTable(partitionManager, readAheadExecutor);
+      List<MessageTable.Entry> writes = new ArrayList<>();
+      for (int i = 0; i < numPartitions; i++) {
+        for (int j = 0; j < messagesPerPartition; j++) {
+          writes.add(new TestMessageEntry(topicId, generation, i * 1000L + j * 10, 0, null, Bytes.toBytes(j)));
+        }
+      }
+      table.store(writes.iterator());
+
+      // A scan that stops early in a partition should not open the next partition
+      try (CloseableIterator<MessageTable.Entry> iter = table.fetch(topicMetadata, 0L, 10, null)) {
+        while (iter.hasNext()) {
+          iter.next();
+        }
+      }
+      Assert.assertEquals(0, readAheads.get());
+
+      // A scan over all partitions reads ahead every partition after the first one
+      int count = 0;
+      try (CloseableIterator<MessageTable.Entry> iter = table.fetch(topicMetadata, 0L, Integer.MAX_VALUE, null)) {
+        while (iter.hasNext()) {
+          iter.next();
+          count++;
+        }
+      }
+      Assert.assertEquals(numPartitions * messagesPerPartition, count);
+      Assert.assertEquals(numPartitions - 1, readAheads.get());
+    }
+  }
+
+  private LevelDBTableFactory createCatchUpTableFactory(File baseDir, int readAheadThreads) {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.MessagingSystem.LOCAL_DATA_DIR, baseDir.getAbsolutePath());
+    cConf.set(Constants.MessagingSystem.LOCAL_DATA_PARTITION_SECONDS, Integer.toString(1));
+    cConf.setInt(Constants.MessagingSystem.LOCAL_DATA_PARTITION_READ_AHEAD_THREADS, readAheadThreads);
+    return new LevelDBTableFactory(cConf);
+  }
 }
@@ -0,0 +1,320 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.subscriber;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.api.messaging.Message;
+import io.cdap.cdap.api.messaging.MessageFetcher;
+import io.cdap.cdap.api.messaging.MessagePublisher;
+import io.cdap.cdap.api.messaging.MessagingContext;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.common.service.RetryStrategies;
+import io.cdap.cdap.common.utils.ImmutablePair;
+import io.cdap.cdap.common.utils.Tasks;
+import io.cdap.cdap.messaging.data.MessageId;
+import io.cdap.cdap.proto.id.NamespaceId;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * Unit test for {@link AbstractMessagingPollingService}.
+ */
+public class AbstractMessagingPollingServiceTest {
+
+  private static final int NUM_MESSAGES = 500;
+  private static final int FETCH_SIZE = 10;
+
+  @Test
+  public void testSequential() throws Exception {
+    TestPollingService service = new TestPollingService(0);
+    runService(service);
+    Assert.assertEquals(0, service.getBackgroundFetchCount());
+  }
+
+  @Test
+  public void testPipelined() throws Exception {
+    TestPollingService service = new TestPollingService(3);
+    runService(service);
+    Assert.assertTrue(service.getBackgroundFetchCount() > 0);
+
+    // Polls after all the messages are processed have no prefetched batch, since the last batch was not full,
+    // hence they are not misses
+    CountingMetricsContext metricsContext = service.getMetricsContext();
+    Assert.assertTrue(metricsContext.getCount("tms.prefetch.hit") > 0);
+    Assert.assertEquals(service.getProcessedMissCount(), metricsContext.getCount("tms.prefetch.miss"));
+  }
+
+  private void runService(TestPollingService service) throws Exception {
+    service.startAndWait();
+    try {
+      Assert.assertTrue(service.awaitProcessed(1, TimeUnit.MINUTES));
+      // Keep polling after all the messages are processed
+      int fetchCount = service.getFetchCount();
+      Tasks.waitFor(true, () -> service.getFetchCount() >= fetchCount + 5, 1, TimeUnit.MINUTES);
+    } finally {
+      service.stopAndWait();
+    }
+
+    // Messages must be processed exactly once and in order, even though some batches are only partially processed
+    List<String> expected = new ArrayList<>();
+    for (Message message : service.messages) {
+      expected.add(message.getPayloadAsString());
+    }
+    Assert.assertEquals(expected, service.getProcessed());
+  }
+
+  /**
+   * A {@link AbstractMessagingPollingService} that fetches from an in memory list of messages.
+   */
+  private static final class TestPollingService extends AbstractMessagingPollingService<String> {
+
+    private final int maxPrefetchBatches;
+    private final CountingMetricsContext metricsContext;
+    private final List<Message> messages;
+    private final Map<String, Integer> messageIndices;
+    private final List<String> processed;
+    private final CountDownLatch processedLatch;
+    private final AtomicInteger fetchCount;
+    private final AtomicInteger backgroundFetchCount;
+    private volatile long processedMissCount;
+    private Thread serviceThread;
+    private int batchCount;
+
+    TestPollingService(int maxPrefetchBatches) {
+      this(maxPrefetchBatches, new CountingMetricsContext());
+    }
+
+    private TestPollingService(int maxPrefetchBatches, CountingMetricsContext metricsContext) {
+      super(NamespaceId.SYSTEM.topic("test"), metricsContext, FETCH_SIZE, 10L,
+            RetryStrategies.fixDelay(10L, TimeUnit.MILLISECONDS));
+      this.metricsContext = metricsContext;
+      this.maxPrefetchBatches = maxPrefetchBatches;
+      this.messages = new ArrayList<>();
+      this.messageIndices = new HashMap<>();
+      for (int i = 0; i < NUM_MESSAGES; i++) {
+        byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
+        MessageId.putRawId(System.currentTimeMillis(), (short) i, 0L, (short) 0, rawId, 0);
+        Message message = new TestMessage(Bytes.toHexString(rawId), "message " + i);
+        messages.add(message);
+        messageIndices.put(message.getId(), i);
+      }
+      this.processed = Collections.synchronizedList(new ArrayList<>());
+      this.processedLatch = new CountDownLatch(NUM_MESSAGES);
+      this.fetchCount = new AtomicInteger();
+      this.backgroundFetchCount = new AtomicInteger();
+      this.processedMissCount = -1L;
+    }
+
+    @Override
+    protected int getMaxPrefetchBatches() {
+      return maxPrefetchBatches;
+    }
+
+    @Override
+    protected MessagingContext getMessagingContext() {
+      return new MessagingContext() {
+        @Override
+        public MessagePublisher getMessagePublisher() {
+          throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MessagePublisher getDirectMessagePublisher() {
+          throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MessageFetcher getMessageFetcher() {
+          return new MessageFetcher() {
+            @Override
+            public CloseableIterator<Message> fetch(String namespace, String topic, int limit, long timestamp) {
+              throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CloseableIterator<Message> fetch(String namespace, String topic, int limit,
+                                                    @Nullable String afterMessageId) {
+              fetchCount.incrementAndGet();
+              if (Thread.currentThread() != serviceThread) {
+                backgroundFetchCount.incrementAndGet();
+              }
+              // Simulate the fetch latency
+              Uninterruptibles.sleepUninterruptibly(2, TimeUnit.MILLISECONDS);
+              int start = afterMessageId == null ? 0 : messageIndices.get(afterMessageId) + 1;
+              Iterator<Message> iterator = messages.subList(start, Math.min(start + limit, messages.size())).iterator();
+              return new CloseableIterator<Message>() {
+                @Override
+                public void close() {
+                  // no-op
+                }
+
+                @Override
+                public boolean hasNext() {
+                  return iterator.hasNext();
+                }
+
+                @Override
+                public Message next() {
+                  return iterator.next();
+                }
+              };
+            }
+          };
+        }
+      };
+    }
+
+    @Override
+    protected String decodeMessage(Message message) {
+      return message.getPayloadAsString();
+    }
+
+    @Nullable
+    @Override
+    protected String loadMessageId() {
+      serviceThread = Thread.currentThread();
+      return null;
+    }
+
+    @Nullable
+    @Override
+    protected String processMessages(Iterator<ImmutablePair<String, String>> messages) {
+      // Only process part of every third batch
+      int limit = batchCount++ % 3 == 0 ? FETCH_SIZE / 2 : Integer.MAX_VALUE;
+      String lastMessageId = null;
+      for (int i = 0; i < limit && messages.hasNext(); i++) {
+        ImmutablePair<String, String> message = messages.next();
+        processed.add(message.getSecond());
+        processedLatch.countDown();
+        lastMessageId = message.getFirst();
+      }
+      if (processedLatch.getCount() == 0 && processedMissCount < 0) {
+        processedMissCount = metricsContext.getCount("tms.prefetch.miss");
+      }
+      return lastMessageId;
+    }
+
+    boolean awaitProcessed(long timeout, TimeUnit unit) throws InterruptedException {
+      return processedLatch.await(timeout, unit);
+    }
+
+    List<String> getProcessed() {
+      return new ArrayList<>(processed);
+    }
+
+    int getFetchCount() {
+      return fetchCount.get();
+    }
+
+    int getBackgroundFetchCount() {
+      return backgroundFetchCount.get();
+    }
+
+    /**
+     * Returns the number of prefetch misses when all the messages were processed.
+     */
+    long getProcessedMissCount() {
+      return processedMissCount;
+    }
+
+    CountingMetricsContext getMetricsContext() {
+      return metricsContext;
+    }
+  }
+
+  /**
+   * A {@link MetricsContext} that keeps the sum of the increments of each metric.
+   */
+  private static final class CountingMetricsContext implements MetricsContext {
+    private final Map<String, AtomicLong> counts = new ConcurrentHashMap<>();
+
+    long getCount(String metricName) {
+      AtomicLong count = counts.get(metricName);
+      return count == null ? 0L : count.get();
+    }
+
+    @Override
+    public MetricsContext childContext(Map<String, String> tags) {
+      return this;
+    }
+
+    @Override
+    public MetricsContext childContext(String tagName, String tagValue) {
+      return this;
+    }
+
+    @Override
+    public Map<String, String> getTags() {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public void increment(String metricName, long value) {
+      counts.computeIfAbsent(metricName, k -> new AtomicLong()).addAndGet(value);
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      // no-op
+    }
+
+    @Override
+    public void event(String metricName, long value) {
+      // no-op
+    }
+  }
+
+  /**
+   * A {@link Message} with a string payload.
+   */
+  private static final class TestMessage implements Message {
+
+    private final String id;
+    private final String payload;
+
+    TestMessage(String id, String payload) {
+      this.id = id;
+      this.payload = payload;
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @Override
+    public byte[] getPayload() {
+      return payload.getBytes(StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -61,6 +61,14 @@ public interface MetricStore {
    */
   void deleteTTLExpired();
 
+  /**
+   * Packs the metric data of the time windows that no longer receive writes in the resolution tables into
+   * a compact storage format. By default it does nothing.
+   */
+  default void pack() {
+    // no-op
+  }
+
   /**
    * Deletes all metric data specified by the {@link MetricDeleteQuery}
    * @param query specifies what to delete
@@ -17,6 +17,7 @@
 package io.cdap.cdap.logging.logbuffer;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.common.util.concurrent.Futures;
@@ -25,6 +26,8 @@ import com.google.common.util.concurrent.Service;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import io.cdap.cdap.api.logging.AppenderContext;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsContext;
 import io.cdap.cdap.common.HttpExceptionHandler;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
@@ -46,6 +49,7 @@ import io.cdap.cdap.logging.meta.CheckpointManagerFactory;
 import io.cdap.cdap.logging.pipeline.LogProcessorPipelineContext;
 import io.cdap.cdap.logging.pipeline.logbuffer.LogBufferPipelineConfig;
 import io.cdap.cdap.logging.pipeline.logbuffer.LogBufferProcessorPipeline;
+import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.http.NettyHttpService;
 import org.apache.twill.common.Cancellable;
 import org.apache.twill.discovery.DiscoveryService;
@@ -73,6 +77,7 @@ public class LogBufferService extends AbstractIdleService {
   private final List<Service> pipelines = new ArrayList<>();
   private final List<CheckpointManager<LogBufferFileOffset>> checkpointManagers = new ArrayList<>();
   private final CommonNettyHttpServiceFactory commonNettyHttpServiceFactory;
+  private final MetricsCollectionService metricsCollectionService;
 
   private Cancellable cancellable;
   private NettyHttpService httpService;
@@ -82,13 +87,15 @@ public class LogBufferService extends AbstractIdleService {
   public LogBufferService(CConfiguration cConf, SConfiguration sConf, DiscoveryService discoveryService,
                           CheckpointManagerFactory checkpointManagerFactory,
                           Provider<AppenderContext> contextProvider,
-                          CommonNettyHttpServiceFactory commonNettyHttpServiceFactory) {
+                          CommonNettyHttpServiceFactory commonNettyHttpServiceFactory,
+                          MetricsCollectionService metricsCollectionService) {
     this.cConf = cConf;
     this.sConf = sConf;
     this.contextProvider = contextProvider;
     this.checkpointManagerFactory = checkpointManagerFactory;
     this.discoveryService = discoveryService;
     this.commonNettyHttpServiceFactory = commonNettyHttpServiceFactory;
+    this.metricsCollectionService = metricsCollectionService;
   }
 
   @Override
@@ -103,7 +110,11 @@ public class LogBufferService extends AbstractIdleService {
     // when it is done recovering data. So while recovery service is running, cleanup task will be a no-op
     AtomicBoolean startCleanup = new AtomicBoolean(false);
     // start log recovery service to recover all the pending logs.
-    recoveryService = new LogBufferRecoveryService(cConf, bufferPipelines, checkpointManagers, startCleanup);
+    MetricsContext metricsContext = metricsCollectionService.getContext(
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+                      Constants.Metrics.Tag.COMPONENT, Constants.Service.LOG_BUFFER_SERVICE));
+    recoveryService = new LogBufferRecoveryService(cConf, bufferPipelines, checkpointManagers, startCleanup,
+                                                   metricsContext);
     recoveryService.startAndWait();
 
     // create concurrent writer
@@ -22,15 +22,15 @@ import io.cdap.cdap.logging.logbuffer.LogBufferEvent;
 import io.cdap.cdap.logging.logbuffer.LogBufferFileOffset;
 import io.cdap.cdap.logging.serialize.LoggingEventSerializer;
 
-import java.io.BufferedInputStream;
 import java.io.Closeable;
-import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.List;
 
 /**
@@ -121,13 +121,20 @@ public class LogBufferReader implements Closeable {
 
 
   /**
-   * Log buffer event reader to read log events from a log buffer file.
+   * Log buffer event reader to read log events from a log buffer file. The file is memory mapped, so that events
+   * are read straight from the page cache without going through stream buffers.
    */
   private static final class LogBufferEventReader implements Closeable {
-    private static final int BUFFER_SIZE = 32 * 1024; // 32k buffer
-    private final DataInputStream inputStream;
+    // Maximum size of a single mapping, which is limited by the int position of ByteBuffer
+    private static final long MAX_MAP_SIZE = Integer.MAX_VALUE;
+
+    private final RandomAccessFile file;
     private final LoggingEventSerializer serializer;
-    private long fileId;
+    private final long fileId;
+    private final long fileSize;
+    private MappedByteBuffer buffer;
+    // position in the file of the start of the mapped buffer
+    private long mappedPos;
     private long pos;
 
     LogBufferEventReader(String baseDir, long fileId) throws IOException {
@@ -137,38 +144,73 @@ public class LogBufferReader implements Closeable {
     LogBufferEventReader(String baseDir, long fileId, long pos) throws IOException {
       this.fileId = fileId;
       this.pos = pos;
-      FileInputStream fis = new FileInputStream(new File(baseDir, fileId + FILE_SUFFIX));
-      // seek to the position if the position is not zero
-      if (pos != 0) {
-        fis.getChannel().position(pos);
-      }
-      this.inputStream = new DataInputStream(new BufferedInputStream(fis, BUFFER_SIZE));
+      this.file = new RandomAccessFile(new File(baseDir, fileId + FILE_SUFFIX), "r");
+      this.fileSize = file.length();
       this.serializer = new LoggingEventSerializer();
+      map(pos);
     }
 
     /**
      * Reads next event from log buffer file pointed by this reader.
      *
      * @return log buffer event
+     * @throws EOFException if there is no more complete event in the file
      * @throws IOException error while reading log buffer file
      */
     LogBufferEvent read() throws IOException {
-      int length = inputStream.readInt();
-      byte[] eventBytes = new byte[length];
-      inputStream.read(eventBytes);
-      LogBufferEvent event = new LogBufferEvent(serializer.fromBytes(ByteBuffer.wrap(eventBytes)),
-                                                eventBytes.length, new LogBufferFileOffset(fileId, pos));
-      // update curr position to point to next event
-      pos = pos + Bytes.SIZEOF_INT + length;
-      return event;
+      try {
+        ensureMapped(Bytes.SIZEOF_INT);
+        int length = buffer.getInt();
+        if (length < 0) {
+          // The length is corrupted, which can only be the case at the end of the file after the log saver failed
+          throw new EOFException("Invalid log buffer event length " + length + " at position " + pos
+                                   + " in file " + fileId);
+        }
+        ensureMapped(length);
+
+        // Copy the event into heap memory, which is retained by the decoded event for the log appenders
+        byte[] eventBytes = new byte[length];
+        buffer.get(eventBytes);
+        LogBufferEvent event = new LogBufferEvent(serializer.fromBytes(ByteBuffer.wrap(eventBytes)),
+                                                  eventBytes.length, new LogBufferFileOffset(fileId, pos));
+        // update curr position to point to next event
+        pos = pos + Bytes.SIZEOF_INT + length;
+        return event;
+      } catch (IOException | RuntimeException e) {
+        // Move back to the start of the event, such that a failed read can be retried
+        map(pos);
+        throw e;
+      }
+    }
+
+    /**
+     * Makes sure the given number of bytes can be read from the mapped buffer, remapping the file from the
+     * current position if the mapping doesn't cover it.
+     */
+    private void ensureMapped(int size) throws IOException {
+      if (buffer.remaining() >= size) {
+        return;
+      }
+      long filePos = mappedPos + buffer.position();
+      if (filePos + size > fileSize) {
+        // The file ends with an incomplete event, which happens if the log saver stopped in the middle of a write.
+        throw new EOFException("Incomplete log buffer event at position " + filePos + " in file " + fileId);
+      }
+      map(filePos);
+    }
+
+    private void map(long pos) throws IOException {
+      long size = Math.max(0L, Math.min(fileSize - pos, MAX_MAP_SIZE));
+      buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, Math.min(pos, fileSize), size);
+      mappedPos = pos;
     }
 
     /**
      * Closes this reader.
      */
     public void close() {
-      // close input stream wrapped by this reader
-      Closeables.closeQuietly(inputStream);
+      // The mapped buffer stays valid after closing the file. It is released when garbage collected.
+      Closeables.closeQuietly(file);
     }
   }
 }
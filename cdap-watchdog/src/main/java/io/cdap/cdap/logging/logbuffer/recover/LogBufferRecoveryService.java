@@ -18,6 +18,9 @@ package io.cdap.cdap.logging.logbuffer.recover;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.logging.LogSamplers;
@@ -26,22 +29,28 @@ import io.cdap.cdap.logging.logbuffer.LogBufferEvent;
 import io.cdap.cdap.logging.logbuffer.LogBufferFileOffset;
 import io.cdap.cdap.logging.meta.CheckpointManager;
 import io.cdap.cdap.logging.pipeline.logbuffer.LogBufferProcessorPipeline;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
 
 /**
  * Log buffer recovery service which recovers logs upon log saver restart and sends them to log buffer pipeline for
  * further processing. This service first scans all the files to figure out max file id till which it should recover.
  * This is because while recovery service is running, new files can be created. Recovery service should not recover
- * those logs.
+ * those logs. The next batch of logs is read in the background while the current batch is being processed by the
+ * pipelines.
  */
 public class LogBufferRecoveryService extends AbstractExecutionThreadService {
   private static final Logger LOG = LoggerFactory.getLogger(LogBufferRecoveryService.class);
@@ -57,21 +66,30 @@ public class LogBufferRecoveryService extends AbstractExecutionThreadService {
   private final int batchSize;
   private final CountDownLatch stopLatch;
   private final AtomicBoolean startCleanup;
+  private final MetricsContext metricsContext;
 
   private LogBufferReader reader;
   private volatile boolean stopped;
 
   public LogBufferRecoveryService(CConfiguration cConf, List<LogBufferProcessorPipeline> pipelines,
                                   List<CheckpointManager<LogBufferFileOffset>> checkpointManagers,
-                                  AtomicBoolean startCleanup) {
+                                  AtomicBoolean startCleanup, MetricsContext metricsContext) {
     this(pipelines, checkpointManagers, cConf.get(Constants.LogBuffer.LOG_BUFFER_BASE_DIR),
-         cConf.getInt(Constants.LogBuffer.LOG_BUFFER_RECOVERY_BATCH_SIZE), startCleanup);
+         cConf.getInt(Constants.LogBuffer.LOG_BUFFER_RECOVERY_BATCH_SIZE), startCleanup, metricsContext);
   }
 
   @VisibleForTesting
   LogBufferRecoveryService(List<LogBufferProcessorPipeline> pipelines,
                            List<CheckpointManager<LogBufferFileOffset>> checkpointManager,
                            String baseLogDir, int batchSize, AtomicBoolean startCleanup) {
+    this(pipelines, checkpointManager, baseLogDir, batchSize, startCleanup, new NoopMetricsContext());
+  }
+
+  @VisibleForTesting
+  LogBufferRecoveryService(List<LogBufferProcessorPipeline> pipelines,
+                           List<CheckpointManager<LogBufferFileOffset>> checkpointManager,
+                           String baseLogDir, int batchSize, AtomicBoolean startCleanup,
+                           MetricsContext metricsContext) {
     this.pipelines = pipelines;
     this.checkpointManagers = checkpointManager;
     this.baseLogDir = baseLogDir;
@@ -79,6 +97,7 @@ public class LogBufferRecoveryService extends AbstractExecutionThreadService {
     this.batchSize = batchSize;
     this.stopLatch = new CountDownLatch(1);
     this.startCleanup = startCleanup;
+    this.metricsContext = metricsContext;
   }
 
   @Override
@@ -94,25 +113,64 @@ public class LogBufferRecoveryService extends AbstractExecutionThreadService {
   @Override
   protected void run() throws Exception {
     if (baseDirExists) {
-      List<LogBufferEvent> logBufferEvents = new LinkedList<>();
-      boolean hasReadEvents = true;
-      while (!stopped && hasReadEvents) {
-        try {
-          hasReadEvents = reader.readEvents(logBufferEvents) > 0;
-          recoverLogs(logBufferEvents, pipelines);
-        } catch (Exception e) {
+      long startTime = System.currentTimeMillis();
+      long recoveredEvents = 0;
+      // Read the next batch in the background while the current batch is being processed by the pipelines
+      ExecutorService readExecutor =
+        Executors.newSingleThreadExecutor(Threads.createDaemonThreadFactory("log-buffer-recovery-reader"));
+      try {
+        Future<ReadResult> nextBatch = readExecutor.submit(this::readBatch);
+        boolean hasReadEvents = true;
+        while (!stopped && hasReadEvents) {
+          ReadResult result = Uninterruptibles.getUninterruptibly(nextBatch);
+          List<LogBufferEvent> logBufferEvents = result.getEvents();
+          hasReadEvents = !logBufferEvents.isEmpty();
+          if (result.getFailure() == null && hasReadEvents) {
+            nextBatch = readExecutor.submit(this::readBatch);
+          }
+
           // even though error occurred while reading, whatever logs were read, those should be processed. This is
           // because recovery service should be finished quickly so that the logs are persisted in almost sorted order.
-          recoverLogs(logBufferEvents, pipelines);
-          OUTAGE_LOG.warn("Failed to recover logs from log buffer. Read will be retried.", e);
-          // in case of failure to read, sleep and then retry
-          stopLatch.await(500, TimeUnit.MILLISECONDS);
+          recoveredEvents += recoverLogs(logBufferEvents, pipelines);
+
+          if (result.getFailure() != null) {
+            hasReadEvents = true;
+            metricsContext.increment("log.buffer.recovery.read.failures", 1);
+            OUTAGE_LOG.warn("Failed to recover logs from log buffer. Read will be retried.", result.getFailure());
+            // in case of failure to read, sleep and then retry
+            stopLatch.await(500, TimeUnit.MILLISECONDS);
+            nextBatch = readExecutor.submit(this::readBatch);
+          }
+        }
+      } finally {
+        // wait for the in flight read to finish before the reader gets closed
+        readExecutor.shutdown();
+        if (!readExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+          readExecutor.shutdownNow();
         }
       }
+
+      long timeTaken = System.currentTimeMillis() - startTime;
+      metricsContext.gauge("log.buffer.recovery.time.ms", timeTaken);
+      LOG.info("Recovered {} log events from log buffer in {} ms", recoveredEvents, timeTaken);
     }
     startCleanup.set(true);
   }
 
+  /**
+   * Reads the next batch of events. Failure is returned together with the events read before it, so that
+   * those events are still processed.
+   */
+  private ReadResult readBatch() {
+    List<LogBufferEvent> events = new ArrayList<>(batchSize);
+    try {
+      reader.readEvents(events);
+      return new ReadResult(events, null);
+    } catch (Exception e) {
+      return new ReadResult(events, e);
+    }
+  }
+
   @Override
   protected void shutDown() throws Exception {
     if (reader != null) {
@@ -145,11 +203,43 @@ public class LogBufferRecoveryService extends AbstractExecutionThreadService {
     return minOffset;
   }
 
-  private void recoverLogs(List<LogBufferEvent> logBufferEvents, List<LogBufferProcessorPipeline> pipelines) {
+  private int recoverLogs(List<LogBufferEvent> logBufferEvents, List<LogBufferProcessorPipeline> pipelines) {
+    if (logBufferEvents.isEmpty()) {
+      return 0;
+    }
     for (LogBufferProcessorPipeline pipeline : pipelines) {
       pipeline.processLogEvents(logBufferEvents.iterator());
     }
-    logBufferEvents.clear();
+
+    long bytes = 0;
+    for (LogBufferEvent event : logBufferEvents) {
+      bytes += event.getEventSize();
+    }
+    metricsContext.increment("log.buffer.recovery.events", logBufferEvents.size());
+    metricsContext.increment("log.buffer.recovery.bytes", bytes);
+    return logBufferEvents.size();
+  }
+
+  /**
+   * Events read in a batch together with the failure that stopped the read, if any.
+   */
+  private static final class ReadResult {
+    private final List<LogBufferEvent> events;
+    private final Exception failure;
+
+    ReadResult(List<LogBufferEvent> events, @Nullable Exception failure) {
+      this.events = events;
+      this.failure = failure;
+    }
+
+    List<LogBufferEvent> getEvents() {
+      return events;
+    }
+
+    @Nullable
+    Exception getFailure() {
+      return failure;
+    }
   }
 
   private long getMaxFileId(String baseDir) {
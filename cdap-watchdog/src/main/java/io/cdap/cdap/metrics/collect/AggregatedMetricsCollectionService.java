@@ -15,9 +15,6 @@
  */
 package io.cdap.cdap.metrics.collect;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
@@ -33,25 +30,31 @@ import io.cdap.cdap.common.conf.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.WeakReference;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Base class for {@link MetricsCollectionService} which collect metrics through a set of cached
  * {@link AggregatedMetricsEmitter}.
+ *
+ * Each distinct set of tags is interned as a {@link TagSet}, which is shared by the {@link MetricsContext} of those
+ * tags, so that emitting a metric only needs a lookup by the metric name. A {@link TagSet} is dropped
+ * once its {@link MetricsContext} is no longer referenced and it has no more metrics to publish.
  */
 public abstract class AggregatedMetricsCollectionService extends AbstractExecutionThreadService
                                                          implements MetricsCollectionService {
 
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsCollectionService.class);
-  private static final long CACHE_EXPIRE_MINUTES = 1;
 
-  private final LoadingCache<Map<String, String>, MetricsContext> collectors;
-  private final LoadingCache<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> emitters;
+  private final ConcurrentMap<Map<String, String>, TagSet> tagSets;
   // maximum number of milliseconds to sleep between each publish
   private final long publishIntervalInMillis;
   private final CountDownLatch shutdownLatch;
@@ -60,28 +63,7 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
     // the longest sleep time will be 1 min
     this.publishIntervalInMillis = Math.min(publishIntervalInMillis, Constants.Metrics.PROCESS_INTERVAL_MILLIS);
     this.shutdownLatch = new CountDownLatch(1);
-    this.collectors = CacheBuilder.newBuilder()
-      .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
-      .build(createCollectorLoader());
-
-    this.emitters = CacheBuilder.newBuilder()
-      // NOTE : we don't need to have removalListener to  emit metrics, as we have expireAfterAccess set for a minute,
-      // emitters.get() is used to increment/gauge and that would reset the access time,
-      // and since runOneIteration() emits all the metrics for the scheduled duration (every 1 second)
-      // there wont be any loss of emitter entries.
-      .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
-      .build(new CacheLoader<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
-        @Override
-        public LoadingCache<String, AggregatedMetricsEmitter> load(Map<String, String> tags) throws Exception {
-          return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).
-            build(new CacheLoader<String, AggregatedMetricsEmitter>() {
-              @Override
-              public AggregatedMetricsEmitter load(String metricName) throws Exception {
-                return new AggregatedMetricsEmitter(metricName);
-              }
-            });
-        }
-      });
+    this.tagSets = new ConcurrentHashMap<>();
   }
 
   /**
@@ -157,7 +139,25 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
 
   @Override
   public final MetricsContext getContext(final Map<String, String> tags) {
-    return collectors.getUnchecked(tags);
+    TagSet tagSet = tagSets.get(tags);
+    MetricsContext context = tagSet == null ? null : tagSet.getContext();
+    if (context != null) {
+      return context;
+    }
+
+    // Creates the context with a strong reference held until it is returned, since the tag set only holds
+    // a weak reference to it. The tags of an existing tag set are reused as the key to avoid copying them again.
+    MetricsContextImpl[] newContext = new MetricsContextImpl[1];
+    tagSets.compute(tagSet == null ? ImmutableMap.copyOf(tags) : tagSet.tags, (key, existing) -> {
+      TagSet result = existing == null ? new TagSet(key) : existing;
+      newContext[0] = result.getContext();
+      if (newContext[0] == null) {
+        newContext[0] = new MetricsContextImpl(result);
+        result.setContext(newContext[0]);
+      }
+      return result;
+    });
+    return newContext[0];
   }
 
   @Override
@@ -172,16 +172,22 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
   }
 
   private Iterator<MetricValues> getMetrics(final long timestamp) {
-    // NOTE : emitters.asMap does not reset the access time in cache,
-    // so it's the preferred way to access the cache entries. as we access and emit metrics every second.
-    final Iterator<Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>> iterator =
-      emitters.asMap().entrySet().iterator();
+    final Iterator<Map.Entry<Map<String, String>, TagSet>> iterator = tagSets.entrySet().iterator();
     return new AbstractIterator<MetricValues>() {
       @Override
       protected MetricValues computeNext() {
         while (iterator.hasNext()) {
-          Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> entry = iterator.next();
-          Map<String, AggregatedMetricsEmitter> metricEmitters = entry.getValue().asMap();
+          Map.Entry<Map<String, String>, TagSet> entry = iterator.next();
+          TagSet tagSet = entry.getValue();
+
+          // Remove the tag set if its context is no longer referenced and it had nothing to publish the last time.
+          // Since no one can emit to it anymore, it is safe to publish the remaining metrics after the removal.
+          // Keeping idle tag sets for one more round means that callers which get a new context for every
+          // call keep using the same tag set, instead of creating it again after each garbage collection.
+          tagSets.computeIfPresent(entry.getKey(), (key, existing) ->
+            existing == tagSet && existing.idle && existing.getContext() == null ? null : existing);
+
+          Map<String, AggregatedMetricsEmitter> metricEmitters = tagSet.emitters;
           // +1 because we add extra metric about how many metric values did we emit in this context (see below)
           List<MetricValue> metricValues = Lists.newArrayListWithCapacity(metricEmitters.size() + 1);
           for (Map.Entry<String, AggregatedMetricsEmitter> emitterEntry : metricEmitters.entrySet()) {
@@ -197,6 +203,7 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
             metricValues.add(metricValue);
           }
 
+          tagSet.idle = metricValues.isEmpty();
           if (metricValues.isEmpty()) {
             // skip if there are no metric values to send
             continue;
@@ -213,48 +220,71 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
     };
   }
 
-  private CacheLoader<Map<String, String>, MetricsContext> createCollectorLoader() {
-    return new CacheLoader<Map<String, String>, MetricsContext>() {
-      @Override
-      public MetricsContext load(final Map<String, String> collectorKey) throws Exception {
-        return new MetricsContextImpl(collectorKey);
-      }
-    };
+  /**
+   * An interned set of tags, with the {@link AggregatedMetricsEmitter} of each metric emitted with those tags.
+   */
+  private static final class TagSet {
+
+    private final Map<String, String> tags;
+    private final ConcurrentMap<String, AggregatedMetricsEmitter> emitters;
+    private volatile WeakReference<MetricsContextImpl> context;
+    // Whether there was nothing to publish the last time metrics were published. Only used by the publishing thread.
+    private boolean idle;
+
+    private TagSet(Map<String, String> tags) {
+      this.tags = tags;
+      this.emitters = new ConcurrentHashMap<>();
+      this.context = new WeakReference<>(null);
+    }
+
+    @Nullable
+    MetricsContextImpl getContext() {
+      return context.get();
+    }
+
+    void setContext(MetricsContextImpl context) {
+      this.context = new WeakReference<>(context);
+    }
+
+    AggregatedMetricsEmitter getEmitter(String metricName) {
+      AggregatedMetricsEmitter emitter = emitters.get(metricName);
+      return emitter == null ? emitters.computeIfAbsent(metricName, AggregatedMetricsEmitter::new) : emitter;
+    }
   }
 
   private final class MetricsContextImpl implements MetricsContext {
 
-    private final Map<String, String> tags;
+    private final TagSet tagSet;
 
-    private MetricsContextImpl(final Map<String, String> tags) {
-      this.tags = ImmutableMap.copyOf(tags);
+    private MetricsContextImpl(TagSet tagSet) {
+      this.tagSet = tagSet;
     }
 
     @Override
     public void increment(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).increment(value);
+      tagSet.getEmitter(metricName).increment(value);
     }
 
     @Override
     public void gauge(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).gauge(value);
+      tagSet.getEmitter(metricName).gauge(value);
     }
 
     @Override
     public MetricsContext childContext(String tagName, String tagValue) {
       ImmutableMap<String, String> allTags = ImmutableMap.<String, String>builder()
-        .putAll(tags).put(tagName, tagValue).build();
-      return collectors.getUnchecked(allTags);
+        .putAll(tagSet.tags).put(tagName, tagValue).build();
+      return getContext(allTags);
     }
 
     @Override
     public Map<String, String> getTags() {
-      return tags;
+      return tagSet.tags;
     }
 
     @Override
     public void event(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).event(value);
+      tagSet.getEmitter(metricName).event(value);
     }
 
     @Override
@@ -264,9 +294,9 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
       }
       // todo: may be warn when duplicate tag is provided? for now ok
       Map<String, String> allTags = Maps.newHashMap();
-      allTags.putAll(this.tags);
+      allTags.putAll(tagSet.tags);
       allTags.putAll(tags);
-      return collectors.getUnchecked(allTags);
+      return getContext(allTags);
     }
   }
 }
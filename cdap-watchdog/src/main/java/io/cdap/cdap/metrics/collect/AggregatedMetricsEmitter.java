@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -20,17 +20,29 @@ import io.cdap.cdap.api.metrics.MetricValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * {@link MetricsEmitter} that aggregates  values for a metric
  * during collection and emit the aggregated value when emit.
+ *
+ * Counters and gauges are updated with atomics only. Increments go to a {@link LongAdder} that is never reset,
+ * and emitting takes the difference from the sum at the previous emit, hence increments made concurrently with emit
+ * are never lost. If both counter and gauge updates happen to a metric between two emits, the type of the last
+ * update is emitted. Events are recorded in a {@link Distribution}, which is not thread safe, hence they are
+ * guarded by the lock of this emitter.
  */
 final class AggregatedMetricsEmitter implements MetricsEmitter {
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsEmitter.class);
 
   private final String name;
-  private long value;
-
-  private MetricType metricType = MetricType.COUNTER;
+  private final LongAdder counter;
+  private final AtomicLong gaugeValue;
+  private final AtomicReference<MetricType> metricType;
+  // Only accessed by emit(), which is called from the publishing thread
+  private long emittedCount;
   private Distribution distribution;
 
   AggregatedMetricsEmitter(String name) {
@@ -39,16 +51,21 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
     }
 
     this.name = name;
+    this.counter = new LongAdder();
+    this.gaugeValue = new AtomicLong();
+    this.metricType = new AtomicReference<>(MetricType.COUNTER);
   }
 
-  public synchronized void increment(long incrementValue) {
-    this.value += incrementValue;
-    this.metricType = MetricType.COUNTER;
+  public void increment(long incrementValue) {
+    counter.add(incrementValue);
+    setMetricType(MetricType.COUNTER);
   }
 
   @Override
   public synchronized MetricValue emit() {
-    if (metricType == MetricType.DISTRIBUTION) {
+    // The type is reset before reading the value, so that an update racing with emit is emitted next time
+    MetricType type = metricType.getAndSet(MetricType.COUNTER);
+    if (type == MetricType.DISTRIBUTION) {
       Distribution oldVal;
       // TODO emit maybe made faster using CAS inside Distribution.
       // https://cdap.atlassian.net/browse/CDAP-18792 has more context
@@ -61,15 +78,15 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
       return new Distribution().getMetricValue(name);
     }
 
-    MetricValue returnVal = new MetricValue(name, metricType, this.value);
-    this.value = 0;
-    this.metricType = MetricType.COUNTER;
-    return returnVal;
+    long count = counter.sum();
+    long increments = count - emittedCount;
+    emittedCount = count;
+    return new MetricValue(name, type, type == MetricType.GAUGE ? gaugeValue.get() : increments);
   }
 
-  public synchronized void gauge(long value) {
-    this.value = value;
-    this.metricType = MetricType.GAUGE;
+  public void gauge(long value) {
+    gaugeValue.set(value);
+    setMetricType(MetricType.GAUGE);
   }
 
   public synchronized void event(long value) {
@@ -77,6 +94,16 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
       distribution = new Distribution();
     }
     distribution.add(value);
-    this.metricType = MetricType.DISTRIBUTION;
+    setMetricType(MetricType.DISTRIBUTION);
+  }
+
+  /**
+   * Sets the metric type. The write is skipped if the type is not changed to avoid
+   * invalidating the cache line on other cores unnecessarily.
+   */
+  private void setMetricType(MetricType type) {
+    if (metricType.get() != type) {
+      metricType.set(type);
+    }
   }
 }
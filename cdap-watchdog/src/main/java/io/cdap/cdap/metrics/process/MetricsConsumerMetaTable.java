@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017-2019 Cask Data, Inc.
+ * Copyright © 2017-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -34,6 +34,12 @@ public class MetricsConsumerMetaTable {
   private static final byte[] PROCESS_TIMESTAMP_OLDEST = Bytes.toBytes("pto");
   private static final byte[] LAST_PROCESS_TIMESTAMP = Bytes.toBytes("lpt");
   private static final byte[] PROCESS_TIMESTAMP_LATEST = Bytes.toBytes("ptl");
+  // Row of the packed timestamps of the metrics tables, with one column per resolution. It doesn't contain ":",
+  // hence never collides with the rows of the topics.
+  private static final byte[] PACKED_TIMESTAMP_ROW = Bytes.toBytes("pack.watermark");
+  // Column of the lease to pack the metrics tables in the packed timestamp row. It is longer than the resolution
+  // columns, hence never collides with them.
+  private static final byte[] PACK_LEASE_COLUMN = Bytes.toBytes("lease");
 
   private final MetricsTable metaTable;
 
@@ -80,6 +86,63 @@ public class MetricsConsumerMetaTable {
   }
 
 
+  /**
+   * Gets the end timestamp of the last pack of the metrics table of the given resolution.
+   *
+   * @param resolution the resolution of the metrics table
+   * @return the timestamp in seconds, or {@code 0} if the table was never packed
+   */
+  public long getPackedTimestamp(int resolution) {
+    return getLong(PACKED_TIMESTAMP_ROW, Bytes.toBytes(resolution));
+  }
+
+  /**
+   * Saves the end timestamp of the last pack of the metrics table of the given resolution.
+   *
+   * @param resolution the resolution of the metrics table
+   * @param timestamp the timestamp in seconds
+   */
+  public void savePackedTimestamp(int resolution, long timestamp) {
+    SortedMap<byte[], SortedMap<byte[], byte[]>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    SortedMap<byte[], byte[]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    columns.put(Bytes.toBytes(resolution), Bytes.toBytes(timestamp));
+    updates.put(PACKED_TIMESTAMP_ROW, columns);
+    metaTable.putBytes(updates);
+  }
+
+  /**
+   * Acquires or renews the lease to pack the metrics tables, such that only one process packs them at a time. The
+   * lease is acquired if it is not held by another owner, or if the lease of the other owner has expired.
+   *
+   * @param owner the id of the process that packs the tables
+   * @param expirationMillis the time in milliseconds at which the lease expires unless it is renewed
+   * @return {@code true} if the given owner holds the lease
+   */
+  public boolean acquirePackLease(String owner, long expirationMillis) {
+    byte[] lease = metaTable.get(PACKED_TIMESTAMP_ROW, PACK_LEASE_COLUMN);
+    if (lease != null && !owner.equals(getLeaseOwner(lease)) && Bytes.toLong(lease) > System.currentTimeMillis()) {
+      return false;
+    }
+    return metaTable.swap(PACKED_TIMESTAMP_ROW, PACK_LEASE_COLUMN, lease,
+                          Bytes.add(Bytes.toBytes(expirationMillis), Bytes.toBytes(owner)));
+  }
+
+  /**
+   * Releases the lease to pack the metrics tables, if it is held by the given owner.
+   *
+   * @param owner the id of the process that packs the tables
+   */
+  public void releasePackLease(String owner) {
+    byte[] lease = metaTable.get(PACKED_TIMESTAMP_ROW, PACK_LEASE_COLUMN);
+    if (lease != null && owner.equals(getLeaseOwner(lease))) {
+      metaTable.swap(PACKED_TIMESTAMP_ROW, PACK_LEASE_COLUMN, lease, null);
+    }
+  }
+
+  private static String getLeaseOwner(byte[] lease) {
+    return Bytes.toString(lease, Bytes.SIZEOF_LONG, lease.length - Bytes.SIZEOF_LONG);
+  }
+
   private synchronized long getLong(byte[] rowKey, byte[] column) {
     byte[] result = metaTable.get(rowKey, column);
     if (result == null) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2019 Cask Data, Inc.
+ * Copyright 2015-2022 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -82,7 +82,11 @@ public class DefaultMetricDatasetFactory implements MetricDatasetFactory {
     }
 
     MetricsTable table = getOrCreateMetricsTable(tableName, props.build());
-    return new FactTable(table, entityTable.get(), resolution, getRollTime(resolution));
+    FactTable factTable = new FactTable(table, entityTable.get(), resolution, getRollTime(resolution));
+    if (cConf.getBoolean(Constants.Metrics.TIME_SERIES_TABLE_PACK_ENABLED)) {
+      factTable.setPackDelay(cConf.getLong(Constants.Metrics.TIME_SERIES_TABLE_PACK_DELAY_SECONDS));
+    }
+    return factTable;
   }
 
   @Override
@@ -24,7 +24,6 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
-import io.cdap.cdap.api.dataset.lib.cube.Cube;
 import io.cdap.cdap.api.dataset.lib.cube.CubeDeleteQuery;
 import io.cdap.cdap.api.dataset.lib.cube.CubeExploreQuery;
 import io.cdap.cdap.api.dataset.lib.cube.CubeFact;
@@ -58,6 +57,8 @@ import io.cdap.cdap.metrics.process.TopicIdMetaKey;
 import io.cdap.cdap.metrics.process.TopicProcessMeta;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -65,6 +66,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -72,9 +74,13 @@ import javax.annotation.Nullable;
  * Default implementation of {@link MetricStore}.
  */
 public class DefaultMetricStore implements MetricStore {
+  private static final Logger LOG = LoggerFactory.getLogger(DefaultMetricStore.class);
+
   public static final Map<String, Aggregation> AGGREGATIONS;
 
   private static final int TOTALS_RESOLUTION = Integer.MAX_VALUE;
+  // Duration of the lease to pack the metrics tables, after which another process may take over if it isn't renewed
+  private static final long PACK_LEASE_MILLIS = TimeUnit.HOURS.toMillis(1L);
   private static final String BY_NAMESPACE = "namespace";
   private static final String BY_APP = "app";
   private static final String BY_MAPREDUCE = "mapreduce";
@@ -90,11 +96,14 @@ public class DefaultMetricStore implements MetricStore {
                     new AggregationAlias(ImmutableMap.of(Constants.Metrics.Tag.RUN_ID,
                                                          Constants.Metrics.Tag.WORKFLOW_RUN_ID)));
 
-  private final Supplier<Cube> cube;
+  private final Supplier<DefaultCube> cube;
   private final Supplier<MetricsConsumerMetaTable> metaTableSupplier;
   private MetricsContext metricsContext;
   private final List<TopicId> metricsTopics;
   private final Map<Integer, Long> resolutionTTLMap;
+  private final boolean packEnabled;
+  private final long packDelaySecs;
+  private final String packOwner = UUID.randomUUID().toString();
 
 
   static {
@@ -216,14 +225,16 @@ public class DefaultMetricStore implements MetricStore {
       builder.put(minimumResolution, cConf.getLong(Constants.Metrics.MINIMUM_RESOLUTION_RETENTION_SECONDS));
     }
     this.resolutionTTLMap = builder.build();
+    this.packEnabled = cConf.getBoolean(Constants.Metrics.TIME_SERIES_TABLE_PACK_ENABLED);
+    this.packDelaySecs = cConf.getLong(Constants.Metrics.TIME_SERIES_TABLE_PACK_DELAY_SECONDS);
     FactTableSupplier factTableSupplier = (resolution, ignoredRollTime) -> {
       // roll time will be taken from configuration
       // TODO: remove roll time from the supplier api, https://issues.cask.co/browse/CDAP-14730
       return dsFactory.getOrCreateFactTable(resolution);
     };
-    this.cube = Suppliers.memoize(new Supplier<Cube>() {
+    this.cube = Suppliers.memoize(new Supplier<DefaultCube>() {
       @Override
-      public Cube get() {
+      public DefaultCube get() {
         DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS,
                                            writeParallelism);
         cube.setMetricsCollector(metricsContext);
@@ -311,6 +322,41 @@ public class DefaultMetricStore implements MetricStore {
     }
   }
 
+  @Override
+  public void pack() {
+    if (!packEnabled) {
+      return;
+    }
+    MetricsConsumerMetaTable metaTable = metaTableSupplier.get();
+    // Only one process packs at a time, since every metrics service instance runs the clean up
+    if (!metaTable.acquirePackLease(packOwner, System.currentTimeMillis() + PACK_LEASE_MILLIS)) {
+      LOG.debug("Not packing metrics tables, since another process holds the lease to pack them");
+      return;
+    }
+    try {
+      long endTs = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - packDelaySecs;
+      // Only pack the resolution tables with TTL, since the totals table always receive writes
+      for (int resolution : resolutionTTLMap.keySet()) {
+        // Packing starts from 0 to pack existing data, and then continues from the end of the last pack
+        long startTs = metaTable.getPackedTimestamp(resolution);
+        if (startTs >= endTs) {
+          continue;
+        }
+        // Renew the lease, packing the existing data of a table can take long
+        if (!metaTable.acquirePackLease(packOwner, System.currentTimeMillis() + PACK_LEASE_MILLIS)) {
+          LOG.warn("Lost the lease to pack metrics tables, stop packing");
+          return;
+        }
+        int packedRows = cube.get().pack(resolution, startTs, endTs);
+        LOG.debug("Packed {} rows of metrics table with resolution {} between {} and {}",
+                  packedRows, resolution, startTs, endTs);
+        metaTable.savePackedTimestamp(resolution, endTs);
+      }
+    } finally {
+      metaTable.releasePackLease(packOwner);
+    }
+  }
+
   @Override
   public void delete(MetricDeleteQuery query) {
     cube.get().delete(buildCubeDeleteQuery(query));
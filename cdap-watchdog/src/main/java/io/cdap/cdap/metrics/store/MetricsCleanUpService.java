@@ -22,6 +22,8 @@ import io.cdap.cdap.api.metrics.MetricStore;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -31,6 +33,8 @@ import java.util.concurrent.TimeUnit;
  * The metrics clean up service that will clean up resolution metrics table periodically based on their retention time.
  */
 public class MetricsCleanUpService extends AbstractScheduledService {
+  private static final Logger LOG = LoggerFactory.getLogger(MetricsCleanUpService.class);
+
   private final MetricStore metricStore;
   private final long cleanUpInterval;
   private ScheduledExecutorService executor;
@@ -51,6 +55,13 @@ public class MetricsCleanUpService extends AbstractScheduledService {
   protected void runOneIteration() {
     // delete metrics from resolution table
     metricStore.deleteTTLExpired();
+    // pack metrics of the time windows that are no longer written to
+    try {
+      metricStore.pack();
+    } catch (Exception e) {
+      // packing is an optimization, don't fail the clean up because of it
+      LOG.warn("Failed to pack metrics tables. Will retry in next run.", e);
+    }
   }
 
   @Override
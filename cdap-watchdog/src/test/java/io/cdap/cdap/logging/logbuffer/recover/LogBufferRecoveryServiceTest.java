@@ -23,6 +23,7 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.LoggingEvent;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.metrics.MetricsContext;
 import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.common.conf.CConfiguration;
@@ -30,6 +31,8 @@ import io.cdap.cdap.common.logging.LoggingContext;
 import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.logging.appender.LogMessage;
 import io.cdap.cdap.logging.context.WorkerLoggingContext;
+import io.cdap.cdap.logging.logbuffer.LogBufferEvent;
+import io.cdap.cdap.logging.logbuffer.LogBufferFileOffset;
 import io.cdap.cdap.logging.logbuffer.LogBufferWriter;
 import io.cdap.cdap.logging.logbuffer.MockCheckpointManager;
 import io.cdap.cdap.logging.pipeline.LogPipelineTestUtil;
@@ -38,12 +41,23 @@ import io.cdap.cdap.logging.pipeline.MockAppender;
 import io.cdap.cdap.logging.pipeline.logbuffer.LogBufferPipelineConfig;
 import io.cdap.cdap.logging.pipeline.logbuffer.LogBufferProcessorPipeline;
 import io.cdap.cdap.logging.serialize.LoggingEventSerializer;
+import org.junit.Assert;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * Tests for {@link LogBufferRecoveryService}.
@@ -95,6 +109,66 @@ public class LogBufferRecoveryServiceTest {
     loggerContext.stop();
   }
 
+  @Test
+  public void testReadFailure() throws Exception {
+    String absolutePath = TMP_FOLDER.newFolder().getAbsolutePath();
+
+    LoggerContext loggerContext = LogPipelineTestUtil.createLoggerContext("WARN",
+                                                                          ImmutableMap.of("test.logger", "INFO"),
+                                                                          MockAppender.class.getName());
+    final MockAppender appender = LogPipelineTestUtil.getAppender(loggerContext.getLogger(Logger.ROOT_LOGGER_NAME),
+                                                                  "Test", MockAppender.class);
+    MockCheckpointManager checkpointManager = new MockCheckpointManager();
+    LogBufferPipelineConfig config = new LogBufferPipelineConfig(1024L, 300L, 500L, 4);
+    loggerContext.start();
+    LogBufferProcessorPipeline pipeline = new LogBufferProcessorPipeline(
+      new LogProcessorPipelineContext(CConfiguration.create(), "test", loggerContext, NO_OP_METRICS_CONTEXT, 0),
+      config, checkpointManager, 0);
+    pipeline.startAndWait();
+
+    LogBufferWriter writer = new LogBufferWriter(absolutePath, 250, () -> { });
+    ImmutableList<byte[]> events = getLoggingEvents();
+    List<LogBufferEvent> writtenEvents = ImmutableList.copyOf(writer.write(events.iterator()));
+    writer.close();
+
+    // Corrupt the third event, such that reading it fails until it is restored
+    LogBufferFileOffset offset = writtenEvents.get(2).getOffset();
+    byte[] corrupted = new byte[events.get(2).length];
+    Arrays.fill(corrupted, (byte) 0xff);
+    writeEventBody(absolutePath, offset, corrupted);
+
+    CountingMetricsContext metricsContext = new CountingMetricsContext();
+    AtomicBoolean startCleanup = new AtomicBoolean(false);
+    LogBufferRecoveryService service = new LogBufferRecoveryService(ImmutableList.of(pipeline),
+                                                                    ImmutableList.of(checkpointManager),
+                                                                    absolutePath, 2, startCleanup, metricsContext);
+    service.startAndWait();
+
+    // The read is retried, and recovery doesn't complete while the event cannot be read
+    Tasks.waitFor(true, () -> metricsContext.getCount("log.buffer.recovery.read.failures") > 1,
+                  30, TimeUnit.SECONDS, 100, TimeUnit.MILLISECONDS);
+    Assert.assertFalse(startCleanup.get());
+
+    // Once the event is readable, recovery resumes from it without skipping or repeating events
+    writeEventBody(absolutePath, offset, events.get(2));
+    Tasks.waitFor(true, startCleanup::get, 30, TimeUnit.SECONDS, 100, TimeUnit.MILLISECONDS);
+    Tasks.waitFor(5, () -> appender.getEvents().size(), 120, TimeUnit.SECONDS, 100, TimeUnit.MILLISECONDS);
+    Assert.assertEquals(Arrays.asList("0", "1", "2", "4", "5"),
+                        appender.getEvents().stream().map(ILoggingEvent::getMessage).collect(Collectors.toList()));
+    Assert.assertEquals(6L, metricsContext.getCount("log.buffer.recovery.events"));
+
+    service.stopAndWait();
+    pipeline.stopAndWait();
+    loggerContext.stop();
+  }
+
+  private void writeEventBody(String baseDir, LogBufferFileOffset offset, byte[] body) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(new File(baseDir, offset.getFileId() + ".buf"), "rw")) {
+      file.seek(offset.getFilePos() + Bytes.SIZEOF_INT);
+      file.write(body);
+    }
+  }
+
   private ImmutableList<byte[]> getLoggingEvents() {
     WorkerLoggingContext loggingContext =
       new WorkerLoggingContext("default", "app1", "worker1", "run1", "instance1");
@@ -117,4 +191,46 @@ public class LogBufferRecoveryServiceTest {
     event.setTimeStamp(timestamp);
     return new LogMessage(event, loggingContext);
   }
+
+  /**
+   * A {@link MetricsContext} that keeps the sum of the increments of each metric.
+   */
+  private static final class CountingMetricsContext implements MetricsContext {
+    private final Map<String, AtomicLong> counts = new ConcurrentHashMap<>();
+
+    long getCount(String metricName) {
+      AtomicLong count = counts.get(metricName);
+      return count == null ? 0L : count.get();
+    }
+
+    @Override
+    public MetricsContext childContext(Map<String, String> tags) {
+      return this;
+    }
+
+    @Override
+    public MetricsContext childContext(String tagName, String tagValue) {
+      return this;
+    }
+
+    @Override
+    public Map<String, String> getTags() {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public void increment(String metricName, long value) {
+      counts.computeIfAbsent(metricName, k -> new AtomicLong()).addAndGet(value);
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      // no-op
+    }
+
+    @Override
+    public void event(String metricName, long value) {
+      // no-op
+    }
+  }
 }
@@ -20,10 +20,12 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.LoggingEvent;
 import com.google.common.collect.ImmutableList;
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.common.logging.LoggingContext;
 import io.cdap.cdap.logging.appender.LogMessage;
 import io.cdap.cdap.logging.context.WorkerLoggingContext;
 import io.cdap.cdap.logging.logbuffer.LogBufferEvent;
+import io.cdap.cdap.logging.logbuffer.LogBufferFileOffset;
 import io.cdap.cdap.logging.logbuffer.LogBufferWriter;
 import io.cdap.cdap.logging.logbuffer.recover.LogBufferReader;
 import io.cdap.cdap.logging.serialize.LoggingEventSerializer;
@@ -32,7 +34,11 @@ import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -72,6 +78,90 @@ public class LogBufferReaderTest {
     reader.close();
   }
 
+  @Test
+  public void testIncompleteEvent() throws Exception {
+    String absolutePath = TMP_FOLDER.newFolder().getAbsolutePath();
+
+    LogBufferWriter writer = new LogBufferWriter(absolutePath, 250, () -> { });
+    ImmutableList<byte[]> events = getLoggingEvents();
+    Iterable<LogBufferEvent> writtenEvents = writer.write(events.iterator());
+    writer.close();
+
+    // Simulate a partially written event at the end of the last file
+    File lastFile = new File(absolutePath, "3.buf");
+    try (FileOutputStream os = new FileOutputStream(lastFile, true)) {
+      os.write(Bytes.toBytes(events.get(0).length));
+      os.write(events.get(0), 0, events.get(0).length / 2);
+    }
+
+    List<LogBufferEvent> logBufferEvents = new LinkedList<>();
+    try (LogBufferReader reader = new LogBufferReader(absolutePath, 4, 3, -1, -1)) {
+      verifyEvents(logBufferEvents, reader, writtenEvents.iterator());
+    }
+  }
+
+  @Test
+  public void testNegativeLength() throws Exception {
+    String absolutePath = TMP_FOLDER.newFolder().getAbsolutePath();
+
+    LogBufferWriter writer = new LogBufferWriter(absolutePath, 250, () -> { });
+    ImmutableList<byte[]> events = getLoggingEvents();
+    Iterable<LogBufferEvent> writtenEvents = writer.write(events.iterator());
+    writer.close();
+
+    // Simulate a corrupted event length at the end of the last file
+    File lastFile = new File(absolutePath, "3.buf");
+    try (FileOutputStream os = new FileOutputStream(lastFile, true)) {
+      os.write(Bytes.toBytes(-1));
+      os.write(events.get(0));
+    }
+
+    List<LogBufferEvent> logBufferEvents = new LinkedList<>();
+    try (LogBufferReader reader = new LogBufferReader(absolutePath, 4, 3, -1, -1)) {
+      verifyEvents(logBufferEvents, reader, writtenEvents.iterator());
+    }
+  }
+
+  @Test
+  public void testReadRetry() throws Exception {
+    String absolutePath = TMP_FOLDER.newFolder().getAbsolutePath();
+
+    LogBufferWriter writer = new LogBufferWriter(absolutePath, 250, () -> { });
+    ImmutableList<byte[]> events = getLoggingEvents();
+    List<LogBufferEvent> writtenEvents = ImmutableList.copyOf(writer.write(events.iterator()));
+    writer.close();
+
+    // Corrupt the third event, such that it fails to decode
+    LogBufferFileOffset offset = writtenEvents.get(2).getOffset();
+    byte[] corrupted = new byte[events.get(2).length];
+    Arrays.fill(corrupted, (byte) 0xff);
+    writeEventBody(absolutePath, offset, corrupted);
+
+    List<LogBufferEvent> logBufferEvents = new LinkedList<>();
+    try (LogBufferReader reader = new LogBufferReader(absolutePath, 10, 3, -1, -1)) {
+      try {
+        reader.readEvents(logBufferEvents);
+        Assert.fail("Expected failure to read the corrupted event");
+      } catch (Exception e) {
+        // expected
+      }
+      // Events before the corrupted one are read
+      Assert.assertEquals(2, logBufferEvents.size());
+
+      // Once the event is readable, the read resumes from it
+      writeEventBody(absolutePath, offset, events.get(2));
+      logBufferEvents.clear();
+      verifyEvents(logBufferEvents, reader, writtenEvents.subList(2, writtenEvents.size()).iterator());
+    }
+  }
+
+  private void writeEventBody(String baseDir, LogBufferFileOffset offset, byte[] body) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(new File(baseDir, offset.getFileId() + ".buf"), "rw")) {
+      file.seek(offset.getFilePos() + Bytes.SIZEOF_INT);
+      file.write(body);
+    }
+  }
+
   private void verifyEvents(List<LogBufferEvent> logBufferEvents, LogBufferReader reader,
                             Iterator<LogBufferEvent> iterator) throws IOException {
     while (reader.readEvents(logBufferEvents) > 0) {
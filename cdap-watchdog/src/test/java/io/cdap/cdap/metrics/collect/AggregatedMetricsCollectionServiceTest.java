@@ -27,15 +27,23 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -275,4 +283,79 @@ public class AggregatedMetricsCollectionServiceTest {
     Assert.assertNull(published.poll());
   }
 
+  @Test
+  public void testConcurrentEmitters() throws Exception {
+    Map<String, String> tags = ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE);
+    Map<String, String> childTags = ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE,
+                                                    Constants.Metrics.Tag.APP, APP);
+    Map<Map<String, String>, AtomicLong> publishedCounts = new ConcurrentHashMap<>();
+    AtomicLong publishedEvents = new AtomicLong();
+    AtomicLong lastGauge = new AtomicLong(-1L);
+
+    // Publish frequently so that emits happen concurrently with the updates
+    AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService(10L) {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        while (metrics.hasNext()) {
+          MetricValues metricValues = metrics.next();
+          for (MetricValue metricValue : metricValues.getMetrics()) {
+            switch (metricValue.getName()) {
+              case METRIC:
+                publishedCounts.computeIfAbsent(metricValues.getTags(), k -> new AtomicLong())
+                  .addAndGet(metricValue.getValue());
+                break;
+              case GAUGE_METRIC:
+                if (metricValue.getType() == MetricType.GAUGE) {
+                  lastGauge.set(metricValue.getValue());
+                }
+                break;
+              case DISTRIBUTION_METRIC:
+                publishedEvents.addAndGet(Arrays.stream(metricValue.getBucketCounts()).sum());
+                break;
+            }
+          }
+        }
+      }
+    };
+    service.startAndWait();
+
+    int threads = 8;
+    int updatesPerThread = 50000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      MetricsContext context = service.getContext(tags);
+      CyclicBarrier barrier = new CyclicBarrier(threads);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> {
+          barrier.await();
+          for (int j = 0; j < updatesPerThread; j++) {
+            context.increment(METRIC, 1L);
+            // Callers that get a new context for every update should aggregate to the same tags
+            service.getContext(new HashMap<>(tags)).childContext(Constants.Metrics.Tag.APP, APP).increment(METRIC, 2L);
+            context.gauge(GAUGE_METRIC, j);
+            if (j % 10 == 0) {
+              context.event(DISTRIBUTION_METRIC, j);
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(1, TimeUnit.MINUTES);
+      }
+      // The last gauge value should be published
+      context.gauge(GAUGE_METRIC, Integer.MAX_VALUE);
+    } finally {
+      executor.shutdownNow();
+      // Stopping the service publishes all remaining metrics
+      service.stopAndWait();
+    }
+
+    // No update should be lost
+    Assert.assertEquals((long) threads * updatesPerThread, publishedCounts.get(tags).get());
+    Assert.assertEquals(2L * threads * updatesPerThread, publishedCounts.get(childTags).get());
+    Assert.assertEquals((long) threads * updatesPerThread / 10, publishedEvents.get());
+    Assert.assertEquals(Integer.MAX_VALUE, lastGauge.get());
+  }
 }